@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.benchmarks;
+
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import cz.cas.lib.proarc.common.dublincore.DcStreamEditor;
+import cz.cas.lib.proarc.common.dublincore.DcUtils;
+import cz.cas.lib.proarc.common.export.mets.MetsUtils;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.oaidublincore.OaiDcType;
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Dublin Core serialization and the schema validation of export documents.
+ *
+ * @author Jan Pokorsky
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DcBenchmark {
+
+    @Param({Samples.PERIODICAL_ISSUE, Samples.PAGE, Samples.MONOGRAPH_VOLUME})
+    public String sample;
+
+    private String dcXml;
+    private OaiDcType dc;
+    private Document dcDocument;
+    private URL dcSchema;
+
+    @Setup
+    public void setUp() throws Exception {
+        DigitalObject dobj = FoxmlUtils.unmarshal(Samples.read(sample), DigitalObject.class);
+        dcXml = Samples.datastream(dobj, DcStreamEditor.DATASTREAM_ID);
+        dc = unmarshal();
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        dcDocument = dbf.newDocumentBuilder().parse(
+                new ByteArrayInputStream(dcXml.getBytes(StandardCharsets.UTF_8)));
+        dcSchema = OaiDcType.class.getResource("dc_oai.xsd");
+    }
+
+    @Benchmark
+    public OaiDcType unmarshal() {
+        return DcUtils.unmarshal(dcXml, OaiDcType.class);
+    }
+
+    @Benchmark
+    public String marshal() {
+        return DcUtils.toXml(dc, false);
+    }
+
+    /**
+     * Validates the DOM document as the METS export does.
+     */
+    @Benchmark
+    public List<String> validate() throws Exception {
+        return MetsUtils.validateAgainstXSD(dcDocument, dcSchema);
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.benchmarks;
+
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FOXML serialization and RELS-EXT parsing.
+ *
+ * @author Jan Pokorsky
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoxmlBenchmark {
+
+    @Param({Samples.PERIODICAL_ISSUE, Samples.PAGE, Samples.MONOGRAPH_VOLUME})
+    public String sample;
+
+    private String xml;
+    private DigitalObject dobj;
+    private LocalObject local;
+
+    @Setup
+    public void setUp() throws IOException {
+        xml = Samples.read(sample);
+        dobj = FoxmlUtils.unmarshal(xml, DigitalObject.class);
+        local = new LocalStorage().create(dobj);
+    }
+
+    @Benchmark
+    public DigitalObject unmarshal() {
+        return FoxmlUtils.unmarshal(xml, DigitalObject.class);
+    }
+
+    @Benchmark
+    public String marshal() {
+        return FoxmlUtils.toXml(dobj, false);
+    }
+
+    /**
+     * Each editor parses RELS-EXT again like a new request does.
+     */
+    @Benchmark
+    public List<String> relsExtMembers() throws DigitalObjectException {
+        return new RelationEditor(local).getMembers();
+    }
+
+    @Benchmark
+    public String relsExtModel() throws DigitalObjectException {
+        return new RelationEditor(local).getModel();
+    }
+
+}
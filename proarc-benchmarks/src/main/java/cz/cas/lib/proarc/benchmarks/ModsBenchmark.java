@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.benchmarks;
+
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import cz.cas.lib.proarc.common.dublincore.DcUtils;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.mods.ModsStreamEditor;
+import cz.cas.lib.proarc.common.mods.ModsUtils;
+import cz.cas.lib.proarc.common.mods.ndk.NdkMapper;
+import cz.cas.lib.proarc.common.mods.ndk.NdkMapper.Context;
+import cz.cas.lib.proarc.common.mods.ndk.NdkMapperFactory;
+import cz.cas.lib.proarc.mods.ModsDefinition;
+import cz.cas.lib.proarc.oaidublincore.OaiDcType;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.stream.StreamSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * MODS serialization and the NDK mapping that runs on each MODS save.
+ *
+ * @author Jan Pokorsky
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModsBenchmark {
+
+    @Param({Samples.PERIODICAL_ISSUE, Samples.PAGE, Samples.MONOGRAPH_VOLUME})
+    public String sample;
+
+    private String modsXml;
+    private ModsDefinition mods;
+    private NdkMapper mapper;
+    private Context context;
+
+    @Setup
+    public void setUp() throws Exception {
+        DigitalObject dobj = FoxmlUtils.unmarshal(Samples.read(sample), DigitalObject.class);
+        String model = new RelationEditor(new LocalStorage().create(dobj)).getModel();
+        modsXml = Samples.datastream(dobj, ModsStreamEditor.DATASTREAM_ID);
+        mapper = new NdkMapperFactory().get(model);
+        context = new Context(dobj.getPID());
+        mods = unmarshal();
+        mapper.createMods(mods, context);
+    }
+
+    @Benchmark
+    public ModsDefinition unmarshal() {
+        return ModsUtils.unmarshalModsType(new StreamSource(new StringReader(modsXml)));
+    }
+
+    @Benchmark
+    public String marshal() {
+        return ModsUtils.toXml(mods, false);
+    }
+
+    @Benchmark
+    public OaiDcType toDc() {
+        return mapper.toDc(mods, context);
+    }
+
+    @Benchmark
+    public String toLabel() {
+        return mapper.toLabel(mods);
+    }
+
+    /**
+     * The whole chain of the MODS save: read, complete, derive DC and label, write.
+     */
+    @Benchmark
+    public void save(Blackhole bh) {
+        ModsDefinition saved = unmarshal();
+        mapper.createMods(saved, context);
+        OaiDcType dc = mapper.toDc(saved, context);
+        bh.consume(mapper.toLabel(saved));
+        bh.consume(DcUtils.toXml(dc, false));
+        bh.consume(ModsUtils.toXml(saved, false));
+    }
+
+}
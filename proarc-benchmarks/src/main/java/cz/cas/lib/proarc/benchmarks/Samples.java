@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.benchmarks;
+
+import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+/**
+ * Sample documents of benchmarks. FOXML samples are a periodical issue,
+ * a page with ALTO and a monograph volume. The MARC XML sample is
+ * a catalog record.
+ *
+ * @author Jan Pokorsky
+ */
+final class Samples {
+
+    static final String PERIODICAL_ISSUE = "periodical-issue.xml";
+    static final String PAGE = "page.xml";
+    static final String MONOGRAPH_VOLUME = "monograph-volume.xml";
+    static final String MIX = "mix.xml";
+    static final String MARC = "marc.xml";
+
+    private Samples() {
+    }
+
+    /**
+     * Reads the sample as a string.
+     */
+    static String read(String name) throws IOException {
+        try (InputStream is = Samples.class.getResourceAsStream(name)) {
+            if (is == null) {
+                throw new IOException("Missing sample: " + name);
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            for (int length; (length = is.read(buffer)) > 0;) {
+                bos.write(buffer, 0, length);
+            }
+            return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Gets the inline XML of the datastream.
+     */
+    static String datastream(DigitalObject dobj, String dsId) throws TransformerException {
+        DatastreamVersionType version = FoxmlUtils.findDataStreamVersion(dobj, dsId);
+        if (version == null || version.getXmlContent() == null) {
+            throw new IllegalStateException(dobj.getPID() + ", missing " + dsId);
+        }
+        Transformer t = TransformerFactory.newInstance().newTransformer();
+        StringWriter xml = new StringWriter();
+        t.transform(new DOMSource(version.getXmlContent().getAny().get(0)), new StreamResult(xml));
+        return xml.toString();
+    }
+
+    /**
+     * Generates ALTO of a page. ALTO files of the test packages are empty.
+     * @param lines the number of text lines
+     * @param words the number of words per line
+     */
+    static String alto(int lines, int words) {
+        StringBuilder sb = new StringBuilder(lines * words * 120);
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v2#\">\n")
+                .append("<Description><MeasurementUnit>pixel</MeasurementUnit>")
+                .append("<sourceImageInformation><fileName>page.jp2</fileName></sourceImageInformation>")
+                .append("</Description>\n")
+                .append("<Layout><Page ID=\"P1\" PHYSICAL_IMG_NR=\"1\" HEIGHT=\"4000\" WIDTH=\"3000\">")
+                .append("<PrintSpace HPOS=\"0\" VPOS=\"0\" HEIGHT=\"4000\" WIDTH=\"3000\">")
+                .append("<TextBlock ID=\"TB1\" HPOS=\"100\" VPOS=\"100\" HEIGHT=\"3800\" WIDTH=\"2800\">\n");
+        int id = 0;
+        for (int line = 0; line < lines; line++) {
+            int vpos = 100 + line * 60;
+            sb.append("<TextLine HPOS=\"100\" VPOS=\"").append(vpos)
+                    .append("\" HEIGHT=\"50\" WIDTH=\"2800\">");
+            for (int word = 0; word < words; word++) {
+                if (word > 0) {
+                    sb.append("<SP/>");
+                }
+                sb.append("<String ID=\"S").append(++id)
+                        .append("\" HPOS=\"").append(100 + word * 300)
+                        .append("\" VPOS=\"").append(vpos)
+                        .append("\" HEIGHT=\"50\" WIDTH=\"280\" WC=\"0.93\" CONTENT=\"slovo")
+                        .append(id).append("\"/>");
+            }
+            sb.append("</TextLine>\n");
+        }
+        sb.append("</TextBlock></PrintSpace></Page></Layout></alto>\n");
+        return sb.toString();
+    }
+
+}
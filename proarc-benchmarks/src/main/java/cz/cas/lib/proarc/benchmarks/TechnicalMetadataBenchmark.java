@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.benchmarks;
+
+import cz.cas.lib.proarc.common.ocr.AltoDatastream;
+import cz.cas.lib.proarc.mix.MixType;
+import cz.cas.lib.proarc.mix.MixUtils;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * MIX serialization and the ALTO validation of the page import.
+ *
+ * @author Jan Pokorsky
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TechnicalMetadataBenchmark {
+
+    private String mixXml;
+    private MixType mix;
+    private String altoXml;
+    private Schema altoSchema;
+
+    @Setup
+    public void setUp() throws IOException, SAXException {
+        mixXml = Samples.read(Samples.MIX);
+        mix = unmarshalMix();
+        // a page of a newspaper
+        altoXml = Samples.alto(80, 10);
+        altoSchema = AltoDatastream.getSchema();
+    }
+
+    @Benchmark
+    public MixType unmarshalMix() {
+        return MixUtils.unmarshal(mixXml, MixType.class);
+    }
+
+    @Benchmark
+    public String marshalMix() {
+        return MixUtils.toXml(mix, false);
+    }
+
+    @Benchmark
+    public void validateAlto() throws IOException, SAXException {
+        altoSchema.newValidator().validate(new StreamSource(new StringReader(altoXml)));
+    }
+
+}
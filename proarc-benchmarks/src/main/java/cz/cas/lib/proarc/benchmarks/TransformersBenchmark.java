@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.benchmarks;
+
+import cz.cas.lib.proarc.common.mods.ModsUtils;
+import cz.cas.lib.proarc.common.xml.Transformers;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.xml.transform.stream.StreamSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * XSLT transformations of catalog records and of the object label.
+ * Run with {@code -Dproarc.xslt.factory=...} to compare XSLT processors.
+ *
+ * @author Jan Pokorsky
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformersBenchmark {
+
+    private Transformers transformers;
+    private String marcXml;
+    private byte[] mods;
+    private Map<String, Object> htmlParams;
+    private Map<String, Object> labelParams;
+
+    @Setup
+    public void setUp() throws Exception {
+        transformers = new Transformers();
+        marcXml = Samples.read(Samples.MARC);
+        mods = toMods();
+        htmlParams = ModsUtils.modsAsHtmlParameters(Locale.ENGLISH);
+        labelParams = new HashMap<String, Object>();
+        labelParams.put("MODEL", "model:monograph");
+    }
+
+    @Benchmark
+    public byte[] toMods() throws Exception {
+        return transformers.transformAsBytes(
+                new StreamSource(new StringReader(marcXml)), Transformers.Format.MarcxmlAsMods3);
+    }
+
+    @Benchmark
+    public byte[] toHtml() throws Exception {
+        return transformers.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(mods)), Transformers.Format.ModsAsHtml, htmlParams);
+    }
+
+    @Benchmark
+    public byte[] toTitle() throws Exception {
+        return transformers.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(mods)), Transformers.Format.ModsAsTitle);
+    }
+
+    @Benchmark
+    public byte[] toLabel() throws Exception {
+        return transformers.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(mods)), Transformers.Format.ModsAsFedoraLabel, labelParams);
+    }
+
+    /**
+     * MARC XML to the MODS title in a single pass without the MODS document.
+     */
+    @Benchmark
+    public byte[] toTitleChained() throws Exception {
+        return transformers.transformAsBytes(new StreamSource(new StringReader(marcXml)),
+                Collections.<String, Object>emptyMap(),
+                Transformers.Format.MarcxmlAsMods3, Transformers.Format.ModsAsTitle);
+    }
+
+    /**
+     * The catalog record as it is prepared for the client.
+     */
+    @Benchmark
+    public void record(Blackhole bh) throws Exception {
+        byte[] result = toMods();
+        bh.consume(transformers.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(result)), Transformers.Format.ModsAsHtml, htmlParams));
+        bh.consume(transformers.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(result)), Transformers.Format.ModsAsTitle));
+    }
+
+    /**
+     * Concurrent records to exercise the transformer pool.
+     */
+    @Benchmark
+    @Threads(4)
+    public void recordConcurrent(Blackhole bh) throws Exception {
+        record(bh);
+    }
+
+}
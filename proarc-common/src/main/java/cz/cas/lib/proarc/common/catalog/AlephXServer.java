@@ -158,10 +158,9 @@ public final class AlephXServer implements BibliographicCatalog {
 //        source = transformers.dump2Temp(source, "2AlephOaiMarcFixedElement.xml");
         
 
-        Source marcxmlSrc = transformers.transform(source, Transformers.Format.OaimarcAsMarc21slim);
-//        marcxmlSrc = transformers.dump2Temp(marcxmlSrc, "3OaimarcAsMarc21slim.xml");
-        byte[] modsBytes = transformers.transformAsBytes(
-                marcxmlSrc, Transformers.Format.MarcxmlAsMods3);
+        // OAI MARC -> MARC XML -> MODS; MARC XML is passed as a DOM tree instead of serialized bytes
+        byte[] modsBytes = transformers.transformAsBytes(source, Collections.<String, Object>emptyMap(),
+                Transformers.Format.OaimarcAsMarc21slim, Transformers.Format.MarcxmlAsMods3);
 //        try {
 //            FileOutputStream tmp = new FileOutputStream("/tmp/aleph/4mods.xml");
 //            tmp.write(modsBytes);
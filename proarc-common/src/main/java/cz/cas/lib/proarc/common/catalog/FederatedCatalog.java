@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import cz.cas.lib.proarc.common.mods.ModsUtils;
+import cz.cas.lib.proarc.mods.IdentifierDefinition;
+import cz.cas.lib.proarc.mods.ModsDefinition;
+import cz.cas.lib.proarc.mods.RecordIdentifierDefinition;
+import cz.cas.lib.proarc.mods.RecordInfoDefinition;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.bind.DataBindingException;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Queries several catalogs at once. Each catalog is queried in its own thread
+ * and its results are merged as they arrive. A catalog that does not respond
+ * in its timeout is skipped and reported by {@link #getFailures()}. Records found in more catalogs are included just
+ * once according to their ISBN, ISSN, ČNB or record identifiers.
+ *
+ * <p>Results of particular catalogs are cached so that a repeated query
+ * does not transform the same records again.</p>
+ *
+ * <p>The query can also run in the background, see {@link #start}.
+ * Clients {@link Query#poll poll} it for records merged since their last poll,
+ * so the first records arrive as soon as the fastest catalog responds.</p>
+ *
+ * @author Jan Pokorsky
+ */
+public final class FederatedCatalog implements BibliographicCatalog {
+
+    private static final Logger LOG = Logger.getLogger(FederatedCatalog.class.getName());
+    private static final int CACHE_SIZE = 200;
+    static final long CACHE_TTL = TimeUnit.MINUTES.toMillis(5);
+    private static final ResultCache<List<MetadataItem>> CACHE = new ResultCache<List<MetadataItem>>(CACHE_SIZE);
+    /** Background queries to poll. */
+    private static final ResultCache<Query> QUERIES = new ResultCache<Query>(CACHE_SIZE);
+    /** Identifier types used to recognize duplicate records. */
+    private static final Set<String> KEY_TYPES = new HashSet<String>(Arrays.asList("isbn", "issn", "ccnb"));
+
+    private final List<Source> sources = new ArrayList<Source>();
+    private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+    /**
+     * Adds the catalog to query.
+     * @param id catalog ID
+     * @param catalog catalog
+     * @param timeout the time in milliseconds to wait for results of the catalog
+     * @return this
+     */
+    public FederatedCatalog add(String id, BibliographicCatalog catalog, long timeout) {
+        sources.add(new Source(id, catalog, timeout));
+        return this;
+    }
+
+    /**
+     * Gets catalogs that failed or timed out in the last query.
+     * @return the map of catalog IDs and error messages
+     */
+    public Map<String, String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Queries all catalogs.
+     * @return merged records
+     * @throws IOException the query was interrupted
+     */
+    @Override
+    public List<MetadataItem> find(String fieldName, String value, Locale locale) throws IOException {
+
+        failures.clear();
+        Query query = execute(fieldName, value, locale);
+        try {
+            Results results = query.await();
+            failures.putAll(results.getFailures());
+            return results.getItems();
+        } catch (InterruptedException ex) {
+            query.cancel();
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    /**
+     * Starts the query of all catalogs in the background.
+     * @return the query to {@link Query#poll poll}; it can be looked up with
+     *      {@link #getQuery} for {@link #CACHE_TTL}
+     */
+    public Query start(String fieldName, String value, Locale locale) {
+        Query query = execute(fieldName, value, locale);
+        QUERIES.put(query.getId(), query, CACHE_TTL);
+        return query;
+    }
+
+    /**
+     * Gets the query started with {@link #start}.
+     * @param id query ID
+     * @return the query or {@code null} if it is unknown or expired
+     */
+    public static Query getQuery(String id) {
+        return QUERIES.get(id);
+    }
+
+    private Query execute(String fieldName, String value, Locale locale) {
+        List<Source> querySources = new ArrayList<Source>(sources);
+        Query query = new Query(UUID.randomUUID().toString(), querySources);
+        if (querySources.isEmpty()) {
+            return query;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(querySources.size() + 1);
+        query.coordinator = pool.submit(() -> {
+            try {
+                merge(query, querySources, pool, fieldName, value, locale);
+            } catch (InterruptedException ex) {
+                query.cancelPending("Interrupted");
+            } finally {
+                pool.shutdownNow();
+            }
+        });
+        return query;
+    }
+
+    /**
+     * Merges results of catalogs to the query as they arrive.
+     */
+    private static void merge(Query query, List<Source> sources, ExecutorService pool,
+            String fieldName, String value, Locale locale) throws InterruptedException {
+
+        CompletionService<List<MetadataItem>> completion = new ExecutorCompletionService<List<MetadataItem>>(pool);
+        Map<Future<List<MetadataItem>>, Source> pending = new HashMap<Future<List<MetadataItem>>, Source>();
+        long start = System.currentTimeMillis();
+        for (Source source : sources) {
+            pending.put(completion.submit(() -> source.find(fieldName, value, locale)), source);
+        }
+        while (!pending.isEmpty()) {
+            long now = System.currentTimeMillis();
+            long deadline = Long.MAX_VALUE;
+            for (Source source : pending.values()) {
+                deadline = Math.min(deadline, start + source.timeout);
+            }
+            Future<List<MetadataItem>> done = completion.poll(Math.max(0, deadline - now), TimeUnit.MILLISECONDS);
+            if (done == null) {
+                expire(query, pending, start, System.currentTimeMillis());
+                continue;
+            }
+            Source source = pending.remove(done);
+            try {
+                query.merge(source.id, done.get());
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                LOG.log(Level.WARNING, source.id, cause);
+                query.fail(source.id, String.valueOf(cause.getMessage()));
+            }
+        }
+    }
+
+    private static void expire(Query query, Map<Future<List<MetadataItem>>, Source> pending, long start, long now) {
+        for (Iterator<Map.Entry<Future<List<MetadataItem>>, Source>> it = pending.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Future<List<MetadataItem>>, Source> entry = it.next();
+            Source source = entry.getValue();
+            if (now - start >= source.timeout) {
+                it.remove();
+                entry.getKey().cancel(true);
+                LOG.log(Level.WARNING, "{0}: timeout {1} ms", new Object[]{source.id, source.timeout});
+                query.fail(source.id, "Timeout");
+            }
+        }
+    }
+
+    /**
+     * Adds records that are not duplicates to the result.
+     */
+    static void merge(String catalogId, List<MetadataItem> items,
+            Set<String> keys, List<MetadataItem> result) {
+
+        for (MetadataItem item : items) {
+            Set<String> itemKeys = getKeys(item.getMods());
+            if (!Collections.disjoint(keys, itemKeys)) {
+                continue;
+            }
+            keys.addAll(itemKeys);
+            result.add(new MetadataItem(item, result.size() + 1, catalogId));
+        }
+    }
+
+    /**
+     * Gets identifiers of the record.
+     * @param mods MODS
+     * @return keys like {@code isbn:80-01234-56-7}
+     */
+    static Set<String> getKeys(String mods) {
+        Set<String> keys = new LinkedHashSet<String>();
+        if (mods == null) {
+            return keys;
+        }
+        ModsDefinition modsType;
+        try {
+            modsType = ModsUtils.unmarshalModsType(new StreamSource(new StringReader(mods)));
+        } catch (DataBindingException | IllegalStateException ex) {
+            LOG.log(Level.FINE, mods, ex);
+            return keys;
+        }
+        for (IdentifierDefinition id : modsType.getIdentifier()) {
+            String type = id.getType() == null ? null : id.getType().toLowerCase(Locale.ENGLISH);
+            if (KEY_TYPES.contains(type) && id.getValue() != null) {
+                keys.add(type + ':' + normalize(id.getValue()));
+            }
+        }
+        for (RecordInfoDefinition recordInfo : modsType.getRecordInfo()) {
+            for (RecordIdentifierDefinition recordId : recordInfo.getRecordIdentifier()) {
+                if (recordId.getValue() != null) {
+                    keys.add("001:" + recordId.getSource() + ':' + normalize(recordId.getValue()));
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static String normalize(String id) {
+        return id.replaceAll("[\\s-]", "").toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * The running or finished query of catalogs.
+     */
+    public static final class Query {
+
+        private final String id;
+        private final List<MetadataItem> items = new ArrayList<MetadataItem>();
+        private final Set<String> keys = new HashSet<String>();
+        private final Set<String> pending = new LinkedHashSet<String>();
+        private final Map<String, String> failures = new LinkedHashMap<String, String>();
+        private volatile Future<?> coordinator;
+
+        Query(String id, List<Source> sources) {
+            this.id = id;
+            for (Source source : sources) {
+                pending.add(source.id);
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Waits for records merged after the already read ones. It returns
+         * as soon as there is a new record or no catalog is pending.
+         * @param from the number of already read records
+         * @param timeout the maximum time to wait in milliseconds
+         * @return records following {@code from}, pending catalogs and failures
+         * @throws InterruptedException interrupted
+         */
+        public synchronized Results poll(int from, long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (items.size() <= from && !pending.isEmpty()) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    break;
+                }
+                wait(wait);
+            }
+            return results(from);
+        }
+
+        /**
+         * Waits for all catalogs.
+         * @return all records and failures
+         * @throws InterruptedException interrupted
+         */
+        public synchronized Results await() throws InterruptedException {
+            while (!pending.isEmpty()) {
+                wait();
+            }
+            return results(0);
+        }
+
+        private Results results(int from) {
+            List<MetadataItem> newItems = from < items.size()
+                    ? new ArrayList<MetadataItem>(items.subList(Math.max(0, from), items.size()))
+                    : new ArrayList<MetadataItem>();
+            return new Results(newItems, new ArrayList<String>(pending),
+                    new LinkedHashMap<String, String>(failures));
+        }
+
+        synchronized void merge(String catalogId, List<MetadataItem> catalogItems) {
+            FederatedCatalog.merge(catalogId, catalogItems, keys, items);
+            pending.remove(catalogId);
+            notifyAll();
+        }
+
+        synchronized void fail(String catalogId, String message) {
+            failures.put(catalogId, message);
+            pending.remove(catalogId);
+            notifyAll();
+        }
+
+        synchronized void cancelPending(String message) {
+            for (String catalogId : pending) {
+                failures.put(catalogId, message);
+            }
+            pending.clear();
+            notifyAll();
+        }
+
+        void cancel() {
+            Future<?> task = coordinator;
+            if (task != null) {
+                task.cancel(true);
+            }
+        }
+
+    }
+
+    /**
+     * The snapshot of the query.
+     */
+    public static final class Results {
+
+        private final List<MetadataItem> items;
+        private final List<String> pending;
+        private final Map<String, String> failures;
+
+        Results(List<MetadataItem> items, List<String> pending, Map<String, String> failures) {
+            this.items = items;
+            this.pending = pending;
+            this.failures = failures;
+        }
+
+        /**
+         * Gets merged records. Their IDs give the order within the whole query.
+         */
+        public List<MetadataItem> getItems() {
+            return items;
+        }
+
+        /**
+         * Gets IDs of catalogs without response yet.
+         */
+        public List<String> getPending() {
+            return pending;
+        }
+
+        /**
+         * Gets catalogs that failed or timed out.
+         * @return the map of catalog IDs and error messages
+         */
+        public Map<String, String> getFailures() {
+            return failures;
+        }
+
+        public boolean isDone() {
+            return pending.isEmpty();
+        }
+
+    }
+
+    private static final class Source {
+
+        private final String id;
+        private final BibliographicCatalog catalog;
+        private final long timeout;
+
+        Source(String id, BibliographicCatalog catalog, long timeout) {
+            this.id = id;
+            this.catalog = catalog;
+            this.timeout = timeout;
+        }
+
+        List<MetadataItem> find(String fieldName, String value, Locale locale) throws Exception {
+            String key = id + '\n' + fieldName + '\n' + value + '\n' + locale;
+            List<MetadataItem> items = CACHE.get(key);
+            if (items == null) {
+                items = Collections.unmodifiableList(catalog.find(fieldName, value, locale));
+                CACHE.put(key, items, CACHE_TTL);
+            }
+            return items;
+        }
+    }
+
+}
@@ -34,6 +34,8 @@ public class MetadataItem {
     private String preview;
     /** short descriptor of the item; used in ListGrid */
     private String title;
+    /** ID of the source catalog; optional */
+    private String catalog;
 
     public MetadataItem() {
     }
@@ -45,6 +47,14 @@ public class MetadataItem {
         this.title = title;
     }
 
+    /**
+     * Copies the item found in the catalog.
+     */
+    public MetadataItem(MetadataItem item, int id, String catalog) {
+        this(id, item.mods, item.preview, item.title);
+        this.catalog = catalog;
+    }
+
     public int getId() {
         return id;
     }
@@ -61,4 +71,8 @@ public class MetadataItem {
         return title;
     }
 
+    public String getCatalog() {
+        return catalog;
+    }
+
 }
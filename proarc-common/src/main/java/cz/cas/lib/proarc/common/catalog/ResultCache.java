@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The size bounded cache of catalog results. Each entry expires after
+ * its time to live and the least recently used entries are evicted
+ * when the cache is full.
+ *
+ * @param <V> the result type
+ *
+ * @author Jan Pokorsky
+ */
+final class ResultCache<V> {
+
+    private final LinkedHashMap<String, Entry<V>> entries;
+
+    /**
+     * @param maxSize the maximum number of cached results
+     */
+    ResultCache(final int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry<V>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the cached result.
+     * @return the result or {@code null} if it is missing or expired
+     */
+    public V get(String key) {
+        return get(key, System.currentTimeMillis());
+    }
+
+    synchronized V get(String key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (now >= entry.expires) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Caches the result.
+     * @param ttl the time to live in milliseconds
+     */
+    public void put(String key, V value, long ttl) {
+        put(key, value, ttl, System.currentTimeMillis());
+    }
+
+    synchronized void put(String key, V value, long ttl, long now) {
+        entries.put(key, new Entry<V>(value, now + ttl));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+}
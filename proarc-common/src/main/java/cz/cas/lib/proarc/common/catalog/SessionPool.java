@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Keeps idle sessions of a remote catalog for reuse. Sessions idle longer
+ * than the keep alive time are closed when the pool is accessed.
+ * The number of borrowed sessions is limited; further borrowers wait
+ * for a released session.
+ *
+ * @param <T> the session type
+ *
+ * @author Jan Pokorsky
+ */
+final class SessionPool<T> {
+
+    private final Supplier<T> factory;
+    private final Consumer<T> closer;
+    private final int maxActive;
+    private final int maxIdle;
+    private final long keepAlive;
+    private final Semaphore active;
+    /** Idle sessions; the most recently used first. */
+    private final Deque<Idle<T>> idle = new ArrayDeque<Idle<T>>();
+    private boolean closed;
+
+    /**
+     * @param factory creates new sessions
+     * @param closer closes discarded sessions
+     * @param maxActive the maximum number of borrowed sessions
+     * @param maxIdle the maximum number of idle sessions
+     * @param keepAlive the time in milliseconds to keep an idle session
+     */
+    SessionPool(Supplier<T> factory, Consumer<T> closer, int maxActive, int maxIdle, long keepAlive) {
+        this.factory = factory;
+        this.closer = closer;
+        this.maxActive = Math.max(1, maxActive);
+        this.active = new Semaphore(this.maxActive, true);
+        this.maxIdle = Math.max(0, maxIdle);
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Gets an idle session or creates a new one. It waits in case
+     * the maximum number of sessions is borrowed.
+     * @return the session to {@link #release}
+     * @throws InterruptedException interrupted waiting
+     */
+    public T borrow() throws InterruptedException {
+        active.acquire();
+        try {
+            evict(System.currentTimeMillis());
+            Idle<T> session;
+            synchronized (idle) {
+                session = idle.pollFirst();
+            }
+            return session != null ? session.session : factory.get();
+        } catch (RuntimeException | Error ex) {
+            active.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the session to the pool.
+     * @param session the borrowed session
+     * @param valid {@code false} if the session failed and should be closed
+     */
+    public void release(T session, boolean valid) {
+        try {
+            if (valid) {
+                synchronized (idle) {
+                    if (!closed && idle.size() < maxIdle) {
+                        idle.addFirst(new Idle<T>(session, System.currentTimeMillis()));
+                        return ;
+                    }
+                }
+            }
+            closer.accept(session);
+        } finally {
+            active.release();
+        }
+    }
+
+    /**
+     * Closes all idle sessions.
+     */
+    public void clear() {
+        List<Idle<T>> closing;
+        synchronized (idle) {
+            closing = new ArrayList<Idle<T>>(idle);
+            idle.clear();
+        }
+        for (Idle<T> session : closing) {
+            closer.accept(session.session);
+        }
+    }
+
+    /**
+     * Closes all idle sessions and sessions released later.
+     */
+    public void close() {
+        synchronized (idle) {
+            closed = true;
+        }
+        clear();
+    }
+
+    int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    int getActiveCount() {
+        return maxActive - active.availablePermits();
+    }
+
+    /**
+     * Closes expired sessions. They are at the end of the queue.
+     */
+    void evict(long now) {
+        List<Idle<T>> expired = new ArrayList<Idle<T>>();
+        synchronized (idle) {
+            for (Idle<T> last = idle.peekLast(); last != null && now - last.time > keepAlive; last = idle.peekLast()) {
+                expired.add(idle.pollLast());
+            }
+        }
+        for (Idle<T> session : expired) {
+            closer.accept(session.session);
+        }
+    }
+
+    private static final class Idle<T> {
+
+        private final T session;
+        private final long time;
+
+        Idle(T session, long time) {
+            this.session = session;
+            this.time = time;
+        }
+    }
+
+}
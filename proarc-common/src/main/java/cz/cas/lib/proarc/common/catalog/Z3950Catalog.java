@@ -24,6 +24,7 @@ import cz.cas.lib.proarc.z3950.Z3950Client;
 import cz.cas.lib.proarc.z3950.Z3950ClientException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -34,6 +35,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.transform.Source;
@@ -45,6 +49,11 @@ import org.w3c.dom.Document;
 /**
  * Z39.50 metadata provider.
  *
+ * <p>Z39.50 sessions are pooled per server, database and pool settings and their
+ * associations are kept open between searches. The number of concurrent sessions
+ * is limited with {@link #PROPERTY_MAX_SESSIONS}. Found MARC records are cached for
+ * {@link #PROPERTY_CACHE_TTL} seconds.
+ *
  * @author Jan Pokorsky
  */
 public final class Z3950Catalog implements BibliographicCatalog {
@@ -56,14 +65,36 @@ public final class Z3950Catalog implements BibliographicCatalog {
     static final String PROPERTY_RECORD_CHARSET = "recordCharset";
     /** Configuration property name to define field's query. */
     static final String PROPERTY_FIELD_QUERY = "query";
-    
+    /** Configuration property name to define the number of idle sessions kept open. */
+    static final String PROPERTY_POOL_SIZE = "poolSize";
+    /** Configuration property name to define the maximum number of concurrent sessions. */
+    static final String PROPERTY_MAX_SESSIONS = "maxSessions";
+    /** Configuration property name to define seconds to keep an idle session open. */
+    static final String PROPERTY_KEEP_ALIVE = "keepAlive";
+    /** Configuration property name to define seconds to cache search results. 0 disables the cache. */
+    static final String PROPERTY_CACHE_TTL = "cacheTtl";
+    static final int DEFAULT_POOL_SIZE = 2;
+    static final int DEFAULT_MAX_SESSIONS = 4;
+    static final int DEFAULT_KEEP_ALIVE = 60;
+    static final int DEFAULT_CACHE_TTL = 300;
+    private static final int CACHE_SIZE = 200;
+
     private static final Logger LOG = Logger.getLogger(Z3950Catalog.class.getName());
+    /** server/base?settings -> sessions */
+    private static final ConcurrentMap<String, SessionPool<Z3950Client>> POOLS
+            = new ConcurrentHashMap<String, SessionPool<Z3950Client>>();
+    private static final ResultCache<List<byte[]>> CACHE = new ResultCache<List<byte[]>>(CACHE_SIZE);
     private Transformers transformers = new Transformers();
-    private final Z3950Client client;
     private final String host;
     private final String base;
     private final int port;
     private final Charset recordCharset;
+    private int poolSize = DEFAULT_POOL_SIZE;
+    private int maxSessions = DEFAULT_MAX_SESSIONS;
+    /** In seconds. */
+    private int keepAlive = DEFAULT_KEEP_ALIVE;
+    /** In seconds. */
+    private int cacheTtl = DEFAULT_CACHE_TTL;
     /** fieldId -> field */
     private final Map<String, Z3950Field> fields;
 
@@ -104,7 +135,13 @@ public final class Z3950Catalog implements BibliographicCatalog {
         }
 
         Map<String, Z3950Field> fields = readFields(c);
-        return new Z3950Catalog(host, port, base, charset, fields);
+        Z3950Catalog catalog = new Z3950Catalog(host, port, base, charset, fields);
+        catalog.poolSize = c.getProperties().getInt(PROPERTY_POOL_SIZE, DEFAULT_POOL_SIZE);
+        catalog.maxSessions = Math.max(catalog.poolSize,
+                c.getProperties().getInt(PROPERTY_MAX_SESSIONS, DEFAULT_MAX_SESSIONS));
+        catalog.keepAlive = c.getProperties().getInt(PROPERTY_KEEP_ALIVE, DEFAULT_KEEP_ALIVE);
+        catalog.cacheTtl = c.getProperties().getInt(PROPERTY_CACHE_TTL, DEFAULT_CACHE_TTL);
+        return catalog;
     }
 
     static Map<String, Z3950Field> readFields(CatalogConfiguration c) {
@@ -121,7 +158,6 @@ public final class Z3950Catalog implements BibliographicCatalog {
         this.port = port;
         this.base = base;
         this.recordCharset = recordCharset;
-        client = new Z3950Client(host, port, base);
         this.fields = fields;
     }
 
@@ -134,29 +170,97 @@ public final class Z3950Catalog implements BibliographicCatalog {
         }
         ArrayList<MetadataItem> result = new ArrayList<MetadataItem>();
         int index = 1;
+        for (byte[] content : search(query)) {
+            String charset = recordCharset == null ? null : recordCharset.name();
+            if (LOG.isLoggable(Level.FINE)) {
+                String marc21 = new String(content, charset == null ? "UTF-8" : charset);
+                LOG.fine(marc21);
+            }
+
+            Document marcXml = Z3950Client.toMarcXml(content, charset);
+            if (LOG.isLoggable(Level.FINE)) {
+                StringBuilder sb = new StringBuilder();
+                transformers.dump(new DOMSource(marcXml), sb);
+                LOG.fine(sb.toString());
+            }
+            MetadataItem item = createResponse(index++, new DOMSource(marcXml), locale);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * Gets MARC records of the query from the cache or from the server.
+     */
+    private List<byte[]> search(String query) throws IOException {
+        String key = getServerKey() + '\n' + query;
+        List<byte[]> records = cacheTtl > 0 ? CACHE.get(key) : null;
+        if (records != null) {
+            return records;
+        }
+        SessionPool<Z3950Client> pool = getPool();
+        Z3950Client client;
+        try {
+            client = pool.borrow();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(getServerKey());
+        }
+        boolean valid = false;
         try {
+            records = new ArrayList<byte[]>();
             for (byte[] content : client.search(query)) {
-                String charset = recordCharset == null ? null : recordCharset.name();
-                if (LOG.isLoggable(Level.FINE)) {
-                    String marc21 = new String(content, charset == null ? "UTF-8" : charset);
-                    LOG.fine(marc21);
-                }
-
-                Document marcXml = Z3950Client.toMarcXml(content, charset);
-                if (LOG.isLoggable(Level.FINE)) {
-                    StringBuilder sb = new StringBuilder();
-                    transformers.dump(new DOMSource(marcXml), sb);
-                    LOG.fine(sb.toString());
-                }
-                MetadataItem item = createResponse(index++, new DOMSource(marcXml), locale);
-                result.add(item);
+                records.add(content);
             }
-            return result;
+            records = Collections.unmodifiableList(records);
+            valid = true;
         } catch (Z3950ClientException ex) {
             throw new IOException(ex);
         } finally {
-            client.close();
+            pool.release(client, valid);
+        }
+        if (cacheTtl > 0) {
+            CACHE.put(key, records, TimeUnit.SECONDS.toMillis(cacheTtl));
         }
+        return records;
+    }
+
+    private SessionPool<Z3950Client> getPool() {
+        String key = getSessionKey();
+        SessionPool<Z3950Client> pool = POOLS.get(key);
+        if (pool == null) {
+            pool = new SessionPool<Z3950Client>(
+                    () -> new Z3950Client(host, port, base),
+                    client -> client.close(),
+                    maxSessions, poolSize, TimeUnit.SECONDS.toMillis(keepAlive));
+            SessionPool<Z3950Client> old = POOLS.putIfAbsent(key, pool);
+            pool = old != null ? old : pool;
+        }
+        return pool;
+    }
+
+    /**
+     * Closes pooled sessions of all catalogs.
+     */
+    public static void closePools() {
+        for (String key : POOLS.keySet()) {
+            SessionPool<Z3950Client> pool = POOLS.remove(key);
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    private String getServerKey() {
+        return host + ':' + port + '/' + base;
+    }
+
+    /**
+     * Catalogs of the same server with different settings use own pools.
+     */
+    String getSessionKey() {
+        return getServerKey() + "?maxSessions=" + maxSessions
+                + "&poolSize=" + poolSize + "&keepAlive=" + keepAlive;
     }
 
     Charset getRecordCharset() {
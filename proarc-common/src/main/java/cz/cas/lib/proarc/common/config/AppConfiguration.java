@@ -16,9 +16,14 @@
  */
 package cz.cas.lib.proarc.common.config;
 
+import cz.cas.lib.proarc.common.export.DataStreamExport;
 import cz.cas.lib.proarc.common.export.Kramerius4ExportOptions;
 import cz.cas.lib.proarc.common.export.desa.DesaServices;
+import cz.cas.lib.proarc.common.fedora.FedoraHttpClient;
+import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject;
+import cz.cas.lib.proarc.common.imports.DerivativeStore;
 import cz.cas.lib.proarc.common.imports.ImportProfile;
+import cz.cas.lib.proarc.common.object.DisseminationCache;
 import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
 import cz.cas.lib.proarc.common.urnnbn.UrnNbnConfiguration;
 import java.io.BufferedReader;
@@ -68,9 +73,12 @@ public final class AppConfiguration {
      */
     public static final String PROPERTY_APP_HOME = "proarc.home";
     private static final String PROPERTY_DIGOBJECT_PLUGINS = "digobject.plugins";
+    private static final String PROPERTY_EXPORT_DATASTREAM_THREADS = "export.datastream.threads";
     private static final String PROPERTY_FEDORA_CLIENT_PASSWORD = "fedora.client.password";
     private static final String PROPERTY_FEDORA_CLIENT_URL = "fedora.client.url";
     private static final String PROPERTY_FEDORA_CLIENT_USERNAME = "fedora.client.username";
+    private static final String PROPERTY_FEDORA_PURGE_THREADS = "fedora.purge.threads";
+    private static final String PROPERTY_METRICS_JMX = "metrics.jmx";
     private static final String PROPERTY_USERS_HOME = "proarc.users.home";
     
     private static final Logger LOG = Logger.getLogger(AppConfiguration.class.getName());
@@ -114,6 +122,18 @@ public final class AppConfiguration {
         return config.getString(PROPERTY_FEDORA_CLIENT_URL);
     }
 
+    public FedoraHttpClient.Options getFedoraClientOptions() {
+        return FedoraHttpClient.Options.from(config);
+    }
+
+    public DisseminationCache.Options getDisseminationCacheOptions() {
+        return DisseminationCache.Options.from(config, new File(configHome, "cache"));
+    }
+
+    public DerivativeStore.Options getDerivativeStoreOptions() {
+        return DerivativeStore.Options.from(config, new File(configHome, "derivatives"));
+    }
+
     public Catalogs getCatalogs() {
         return new Catalogs(config);
     }
@@ -157,6 +177,34 @@ public final class AppConfiguration {
         return Kramerius4ExportOptions.from(config);
     }
 
+    /**
+     * Gets the number of parallel downloads of the datastream export.
+     */
+    public int getDataStreamExportThreads() {
+        return config.getInt(PROPERTY_EXPORT_DATASTREAM_THREADS, DataStreamExport.DEFAULT_THREADS);
+    }
+
+    /**
+     * Gets the number of parallel deletions of digital objects.
+     */
+    public int getPurgeThreads() {
+        return config.getInt(PROPERTY_FEDORA_PURGE_THREADS, PurgeFedoraObject.DEFAULT_THREADS);
+    }
+
+    /**
+     * Gets the folder of journals of running deletions.
+     */
+    public File getPurgeJobFolder() {
+        return new File(configHome, "purge");
+    }
+
+    /**
+     * Gets whether to expose application metrics with JMX.
+     */
+    public boolean isMetricsJmx() {
+        return config.getBoolean(PROPERTY_METRICS_JMX, true);
+    }
+
     public Configuration getAuthenticators() {
         return config;
     }
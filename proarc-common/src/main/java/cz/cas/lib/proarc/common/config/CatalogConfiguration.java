@@ -46,6 +46,9 @@ public final class CatalogConfiguration {
     public static final String PROPERTY_FIELDS = "fields";
     /** The configuration property prefix of field's properties. */
     public static final String FIELD_PREFIX = "field";
+    /** The configuration property name to limit seconds to wait for results of the federated search. */
+    public static final String PROPERTY_TIMEOUT = "timeout";
+    static final int DEFAULT_TIMEOUT = 10;
 
     private final String id;
     private final String prefix;
@@ -73,6 +76,13 @@ public final class CatalogConfiguration {
         return properties.getString(PROPERTY_TYPE);
     }
 
+    /**
+     * Gets the time in seconds to wait for results of the federated search.
+     */
+    public int getTimeout() {
+        return properties.getInt(PROPERTY_TIMEOUT, DEFAULT_TIMEOUT);
+    }
+
     public String getUrl() {
         return fixUrlProtocol(properties.getString(PROPERTY_URL));
     }
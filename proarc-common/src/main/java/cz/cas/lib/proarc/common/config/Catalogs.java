@@ -19,10 +19,13 @@ package cz.cas.lib.proarc.common.config;
 import cz.cas.lib.proarc.common.catalog.AlephXServer;
 import cz.cas.lib.proarc.common.catalog.BibliographicCatalog;
 import cz.cas.lib.proarc.common.catalog.DigitizationRegistryCatalog;
+import cz.cas.lib.proarc.common.catalog.FederatedCatalog;
 import cz.cas.lib.proarc.common.catalog.OaiCatalog;
 import cz.cas.lib.proarc.common.catalog.Z3950Catalog;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.configuration.Configuration;
@@ -69,6 +72,34 @@ public final class Catalogs {
         if (props == null) {
             return null;
         }
+        return createCatalog(props);
+    }
+
+    /**
+     * Creates the catalog querying catalogs that support the field at once.
+     * @param ids IDs of catalogs to query; {@code null} or empty stands for all catalogs
+     * @param fieldName the queried field
+     * @return the catalog
+     */
+    public FederatedCatalog findFederatedCatalog(Collection<String> ids, String fieldName) {
+        FederatedCatalog federated = new FederatedCatalog();
+        for (CatalogConfiguration props : getConfigurations()) {
+            if (ids != null && !ids.isEmpty() && !ids.contains(props.getId())) {
+                continue;
+            }
+            boolean supported = false;
+            for (CatalogQueryField field : props.getQueryFields()) {
+                supported |= field.getName().equals(fieldName);
+            }
+            BibliographicCatalog catalog = supported ? createCatalog(props) : null;
+            if (catalog != null) {
+                federated.add(props.getId(), catalog, TimeUnit.SECONDS.toMillis(props.getTimeout()));
+            }
+        }
+        return federated;
+    }
+
+    private BibliographicCatalog createCatalog(CatalogConfiguration props) {
         BibliographicCatalog catalog = DigitizationRegistryCatalog.get(props);
         if (catalog != null) {
             return catalog;
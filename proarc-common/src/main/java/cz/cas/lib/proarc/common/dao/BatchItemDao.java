@@ -16,6 +16,7 @@
  */
 package cz.cas.lib.proarc.common.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -33,6 +34,32 @@ public interface BatchItemDao extends Dao {
 
     void removeItems(int batchId);
 
+    /**
+     * Removes items of the batch with the given type.
+     * @param batchId batch ID
+     * @param type the item type
+     * @param states {@code null} or states of items to remove
+     * @return the number of removed items
+     */
+    int removeItems(int batchId, String type, Collection<String> states);
+
     void update(BatchItem item);
 
+    /**
+     * Inserts new items with a single batch of statements. Unlike
+     * {@link #update(BatchItem)} IDs of inserted items are not read back.
+     * @param items new items
+     */
+    void insert(Collection<BatchItem> items);
+
+    /**
+     * Changes the state of all items of the batch with the given PIDs at once.
+     * @param batchId batch ID
+     * @param pids PIDs of items
+     * @param type {@code null} or the item type
+     * @param state the new state
+     * @return the number of updated items
+     */
+    int updateState(int batchId, Collection<String> pids, String type, String state);
+
 }
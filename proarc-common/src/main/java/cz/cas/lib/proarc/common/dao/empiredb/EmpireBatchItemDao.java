@@ -19,7 +19,12 @@ package cz.cas.lib.proarc.common.dao.empiredb;
 import cz.cas.lib.proarc.common.dao.BatchItemDao;
 import cz.cas.lib.proarc.common.dao.BatchItem;
 import cz.cas.lib.proarc.common.dao.empiredb.ProarcDatabase.BatchItemTable;
+import cz.cas.lib.proarc.common.sql.DbUtils;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import org.apache.empire.data.bean.BeanResult;
@@ -32,6 +37,11 @@ import org.apache.empire.db.DBRecord;
  */
 public class EmpireBatchItemDao extends EmpireDao implements BatchItemDao {
 
+    /** The number of rows sent to the database at once. */
+    static final int JDBC_BATCH_SIZE = 500;
+    /** The maximal number of values of the SQL IN condition. */
+    static final int IN_LIMIT = 1000;
+
     private final BatchItemTable table;
 
     public EmpireBatchItemDao(ProarcDatabase db) {
@@ -63,6 +73,66 @@ public class EmpireBatchItemDao extends EmpireDao implements BatchItemDao {
         }
     }
 
+    @Override
+    public void insert(Collection<BatchItem> items) {
+        if (items.isEmpty()) {
+            return ;
+        }
+        String query = String.format("INSERT INTO %s (%s, %s, %s, %s, %s, %s, %s, %s, %s)"
+                + " VALUES (nextval('%s'), ?, ?, ?, ?, ?, ?, ?, ?)",
+                table.getName(), table.id.getName(), table.batchId.getName(), table.pid.getName(),
+                table.dsId.getName(), table.file.getName(), table.state.getName(),
+                table.type.getName(), table.log.getName(), table.timestamp.getName(),
+                table.id.getSequenceName());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        PreparedStatement stmt = null;
+        try {
+            stmt = getConnection().prepareStatement(query);
+            int count = 0;
+            for (BatchItem item : items) {
+                item.setTimestamp(now);
+                stmt.setInt(1, item.getBatchId());
+                stmt.setString(2, item.getPid());
+                stmt.setString(3, item.getDsId());
+                stmt.setString(4, item.getFile());
+                stmt.setString(5, item.getState());
+                stmt.setString(6, item.getTypeAsString());
+                stmt.setString(7, item.getLog());
+                stmt.setTimestamp(8, now);
+                stmt.addBatch();
+                if (++count % JDBC_BATCH_SIZE == 0) {
+                    stmt.executeBatch();
+                }
+            }
+            if (count % JDBC_BATCH_SIZE != 0) {
+                stmt.executeBatch();
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(query, ex);
+        } finally {
+            DbUtils.close(stmt);
+        }
+    }
+
+    @Override
+    public int updateState(int batchId, Collection<String> pids, String type, String state) {
+        List<String> pidList = new ArrayList<String>(pids);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int count = 0;
+        for (int i = 0; i < pidList.size(); i += IN_LIMIT) {
+            DBCommand cmd = db.createCommand();
+            cmd.set(table.state.to(state));
+            cmd.set(table.timestamp.to(now));
+            cmd.where(table.batchId.is(batchId));
+            cmd.where(table.pid.in(pidList.subList(i, Math.min(i + IN_LIMIT, pidList.size()))));
+            if (type != null) {
+                cmd.where(table.type.is(type));
+            }
+            count += db.executeUpdate(cmd, getConnection());
+        }
+        return count;
+    }
+
     @Override
     public BatchItem find(int id) {
         DBRecord dbr = new DBRecord();
@@ -106,4 +176,15 @@ public class EmpireBatchItemDao extends EmpireDao implements BatchItemDao {
         db.executeDelete(table, cmd, getConnection());
     }
 
+    @Override
+    public int removeItems(int batchId, String type, Collection<String> states) {
+        DBCommand cmd = db.createCommand();
+        cmd.where(table.batchId.is(batchId));
+        cmd.where(table.type.is(type));
+        if (states != null) {
+            cmd.where(table.state.in(states));
+        }
+        return db.executeDelete(table, cmd, getConnection());
+    }
+
 }
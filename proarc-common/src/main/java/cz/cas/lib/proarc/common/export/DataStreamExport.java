@@ -16,174 +16,382 @@
  */
 package cz.cas.lib.proarc.common.export;
 
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
 import com.yourmediashelf.fedora.client.FedoraClient;
 import com.yourmediashelf.fedora.client.FedoraClientException;
-import com.yourmediashelf.fedora.client.response.FedoraResponse;
-import com.yourmediashelf.fedora.client.response.ListDatastreamsResponse;
-import com.yourmediashelf.fedora.generated.access.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import com.yourmediashelf.fedora.generated.foxml.StateType;
+import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.core.Response.Status;
 
 /**
  * Exports particular data streams of queried digital objects.
  * It can traverse hierarchy of digital objects.
  *
+ * <p>Objects are traversed in the calling thread and their datastreams
+ * are downloaded by a bounded pool of workers. Each datastream is written
+ * to a {@code .part} file which is renamed when complete. An interrupted
+ * export can be {@link #resume resumed}; complete files are skipped and
+ * partial files are continued with an HTTP range request. A part file that
+ * cannot be continued and does not match the datastream size is downloaded again.
+ *
  * @author Jan Pokorsky
  */
 public final class DataStreamExport {
 
     private static final Logger LOG = Logger.getLogger(DataStreamExport.class.getName());
+    public static final int DEFAULT_THREADS = 4;
+    static final String PART_SUFFIX = ".part";
+    /** The number of bytes transferred to the file at once. */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+    /** The number of queued downloads per worker. */
+    private static final int QUEUE_FACTOR = 4;
 
-    private RemoteStorage rstorage;
+    private final RemoteStorage rstorage;
+    private final int threads;
     /** already exported PIDs to prevent loops */
     private HashSet<String> exportedPids = new HashSet<String>();
     /** PIDs scheduled for export */
     private Queue<String> toExport = new LinkedList<String>();
-    private byte[] buffer = new byte[10*1024];
+    private final Statistics statistics = new Statistics();
 
     public DataStreamExport(RemoteStorage rstorage) {
+        this(rstorage, DEFAULT_THREADS);
+    }
+
+    /**
+     * @param rstorage storage
+     * @param threads the number of parallel downloads
+     */
+    public DataStreamExport(RemoteStorage rstorage, int threads) {
         this.rstorage = rstorage;
+        this.threads = Math.max(1, threads);
     }
 
     public File export(File output, boolean hierarchy, List<String> pids, List<String> dsIds) throws ExportException {
         if (!output.exists() || !output.isDirectory()) {
             throw new IllegalStateException(String.valueOf(output));
         }
+        checkParams(pids, dsIds);
+
+        File target = ExportUtils.createFolder(output, filename(pids.get(0), dsIds.get(0)));
+        exportTo(target, hierarchy, pids, dsIds);
+        return target;
+    }
+
+    /**
+     * Continues the interrupted export. Already exported datastreams are skipped.
+     * @param target the folder of the previous export
+     * @return the target
+     * @throws ExportException failure
+     */
+    public File resume(File target, boolean hierarchy, List<String> pids, List<String> dsIds) throws ExportException {
+        if (!target.exists() || !target.isDirectory()) {
+            throw new IllegalStateException(String.valueOf(target));
+        }
+        checkParams(pids, dsIds);
+        exportTo(target, hierarchy, pids, dsIds);
+        return target;
+    }
+
+    /**
+     * Gets the report of the last export.
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    private static void checkParams(List<String> pids, List<String> dsIds) {
         if (pids == null || pids.isEmpty() || dsIds == null || dsIds.isEmpty()) {
             throw new IllegalArgumentException();
         }
+    }
 
-        File target = ExportUtils.createFolder(output, filename(pids.get(0), dsIds.get(0)));
-        toExport.addAll(pids);
-        for (String pid = toExport.poll(); pid != null; pid = toExport.poll()) {
-            exportPid(target, hierarchy, pid, dsIds);
+    private void exportTo(File target, boolean hierarchy, List<String> pids, List<String> dsIds) throws ExportException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CompletionService<Long> downloads = new ExecutorCompletionService<Long>(pool);
+        int pending = 0;
+        try {
+            toExport.addAll(pids);
+            for (String pid = toExport.poll(); pid != null; pid = toExport.poll()) {
+                if (!exportedPids.add(pid)) {
+                    continue;
+                }
+                RemoteObject remote = rstorage.find(pid);
+                for (String dsId : listDatastreams(remote, hierarchy, dsIds)) {
+                    if (new File(target, filename(pid, dsId)).exists()) {
+                        statistics.skipped++;
+                        continue;
+                    }
+                    downloads.submit(new Download(target, remote, dsId));
+                    pending++;
+                    // do not let the traversal run far ahead of workers
+                    while (pending >= threads * QUEUE_FACTOR) {
+                        complete(downloads);
+                        pending--;
+                    }
+                }
+            }
+            for (; pending > 0; pending--) {
+                complete(downloads);
+            }
+        } finally {
+            pool.shutdownNow();
+            statistics.elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
         }
-        return target;
+        LOG.log(Level.INFO, "{0}: {1}", new Object[]{target, statistics});
     }
 
-    private void exportPid(File target, boolean hierarchy, String pid, List<String> dsIds) throws ExportException {
-        if (exportedPids.contains(pid)) {
-            return ;
+    private void complete(CompletionService<Long> downloads) throws ExportException {
+        try {
+            statistics.bytes += downloads.take().get();
+            statistics.files++;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ExportException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ExportException) {
+                throw (ExportException) cause;
+            }
+            throw new ExportException(cause.getMessage(), cause);
         }
-        exportedPids.add(pid);
+    }
+
+    /**
+     * Reads the object FOXML to find requested datastreams and members at once.
+     * FedoraClient.getDatastreamDissemination throws HTTP 404 in case of
+     * undefined streams.
+     */
+    private List<String> listDatastreams(RemoteObject remote, boolean hierarchy, List<String> dsIds)
+            throws ExportException {
 
-        RemoteObject remote = rstorage.find(pid);
-        
+        String pid = remote.getPid();
+        DigitalObject dobj;
         try {
-            dsIds = filterDataStreams(dsIds, getDataStreams(remote));
+            dobj = FedoraClient.getObjectXML(pid).execute(remote.getClient())
+                    .getEntity(DigitalObject.class);
         } catch (FedoraClientException ex) {
             throw new ExportException(pid, ex);
         }
+        Set<String> streams = new HashSet<String>();
+        for (DatastreamType datastream : dobj.getDatastream()) {
+            if (datastream.getSTATE() != StateType.D) {
+                streams.add(datastream.getID());
+            }
+        }
+        ArrayList<String> result = new ArrayList<String>(dsIds.size());
+        for (String dsId : dsIds) {
+            if (streams.contains(dsId)) {
+                result.add(dsId);
+            }
+        }
 
         if (hierarchy) {
             try {
-                RelationEditor relationEditor = new RelationEditor(remote);
+                RelationEditor relationEditor = new RelationEditor(new LocalStorage().create(dobj));
                 List<String> members = relationEditor.getMembers();
                 toExport.addAll(members);
             } catch (DigitalObjectException ex) {
                 throw new ExportException(ex);
             }
         }
+        return result;
+    }
 
-        for (String dsId : dsIds) {
-            try {
-                exportPid(target, remote, dsId);
-            } catch (FedoraClientException ex) {
-                throw new ExportException(filename(pid, dsId), ex);
-            } catch (IOException ex) {
-                throw new ExportException(filename(pid, dsId), ex);
+    /**
+     * Downloads the datastream contents to the part file and renames it
+     * when complete. The existing part file is continued.
+     * @return the number of downloaded bytes
+     */
+    static long download(File target, RemoteObject remote, String dsId) throws IOException {
+        String filename = filename(remote.getPid(), dsId);
+        File file = new File(target, filename);
+        File part = new File(target, filename + PART_SUFFIX);
+        long offset = part.length();
+        String path = String.format("objects/%s/datastreams/%s/content", remote.getPid(), dsId);
+        WebResource.Builder request = remote.getClient().resource().path(path).getRequestBuilder();
+        if (offset > 0) {
+            request.header("Range", "bytes=" + offset + '-');
+        }
+        ClientResponse response;
+        try {
+            response = request.get(ClientResponse.class);
+        } catch (ClientHandlerException ex) {
+            throw new IOException(filename, ex);
+        }
+        int status = response.getStatus();
+        if (status == Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode() && offset > 0) {
+            long size = getContentSize(response, remote, dsId);
+            response.close();
+            if (size != offset) {
+                LOG.log(Level.WARNING, "{0}: the part length {1} does not match the size {2}, restarting.",
+                        new Object[]{part, offset, size});
+                Files.delete(part.toPath());
+                return download(target, remote, dsId);
             }
+            // the part file is already complete
+            offset = 0;
+        } else if (status == Status.OK.getStatusCode() || status == Status.PARTIAL_CONTENT.getStatusCode()) {
+            offset = status == Status.OK.getStatusCode() ? 0 : offset;
+            offset = transfer(response.getEntityInputStream(), part, offset) - offset;
+        } else {
+            String msg = response.getEntity(String.class);
+            throw new IOException(filename + ", HTTP " + status + ": " + msg);
         }
-
+        Files.move(part.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        return offset;
     }
 
-    private void exportPid(File target, RemoteObject remote, String dsId) throws FedoraClientException, IOException {
-        InputStream input = getDataStreamDissemination(remote, dsId);
-        File f = new File(target, filename(remote.getPid(), dsId));
-        boolean done = false;
-        try {
-            FileOutputStream output = new FileOutputStream(f);
+    /**
+     * Gets the size of the datastream contents from the unsatisfied range response
+     * or from the datastream profile.
+     * @return the size or -1 if unknown
+     */
+    static long getContentSize(ClientResponse response, RemoteObject remote, String dsId) {
+        // Content-Range: bytes */size
+        String contentRange = response.getHeaders().getFirst("Content-Range");
+        if (contentRange != null) {
+            int slash = contentRange.lastIndexOf('/');
             try {
-                copy(input, output);
-                done = true;
-            } finally {
-                try {
-                    output.close();
-                } catch (IOException ex) {
-                    if (done) {
-                        throw ex;
-                    } else {
-                        LOG.log(Level.SEVERE, f.toString(), ex);
-                    }
-                }
+                return Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException ex) {
+                // try the profile
             }
-        } finally {
-            try {
-                input.close();
-            } catch (IOException ex) {
-                if (done) {
-                    throw ex;
-                } else {
-                    LOG.log(Level.SEVERE, f.toString(), ex);
-                }
+        }
+        try {
+            List<DatastreamProfile> profiles = remote.getStreamProfile(dsId);
+            BigInteger size = profiles.isEmpty() ? null : profiles.get(0).getDsSize();
+            if (size != null && size.signum() > 0) {
+                return size.longValue();
             }
+        } catch (DigitalObjectException ex) {
+            LOG.log(Level.WARNING, remote.getPid() + '/' + dsId, ex);
         }
+        return -1;
     }
 
-    private InputStream getDataStreamDissemination(RemoteObject remote, String dsId) throws FedoraClientException {
-        FedoraResponse response = FedoraClient.getDatastreamDissemination(remote.getPid(), dsId)
-                .execute(remote.getClient());
-        InputStream input = response.getEntityInputStream();
-        return input;
+    /**
+     * Writes the stream to the file at the given position without
+     * the intermediate heap buffer.
+     * @return the file length
+     */
+    static long transfer(InputStream input, File file, long position) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(input);
+                FileChannel channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(position);
+            for (long count; (count = channel.transferFrom(source, position, TRANSFER_SIZE)) > 0;) {
+                position += count;
+            }
+            channel.force(false);
+            return position;
+        }
     }
 
-    private List<DatastreamType> getDataStreams(RemoteObject remote) throws FedoraClientException {
-        ListDatastreamsResponse response = FedoraClient.listDatastreams(remote.getPid())
-                .execute(remote.getClient());
-        return response.getDatastreams();
+    static String filename(String pid, String dsId) {
+        return FoxmlUtils.pidAsUuid(pid) + '.' + dsId;
     }
 
-    /**
-     * FedoraClient.getDatastreamDissemination throws HTTP 404 in case of
-     * undefined streams.
-     */
-    private List<String> filterDataStreams(List<String> dsId, List<DatastreamType> streams) {
-        ArrayList<String> result = new ArrayList<String>(dsId.size());
-        for (DatastreamType stream : streams) {
-            if (dsId.contains(stream.getDsid())) {
-                result.add(stream.getDsid());
-                if (dsId.size() == result.size()) {
-                    break;
-                }
+    private static final class Download implements Callable<Long> {
+
+        private final File target;
+        private final RemoteObject remote;
+        private final String dsId;
+
+        Download(File target, RemoteObject remote, String dsId) {
+            this.target = target;
+            this.remote = remote;
+            this.dsId = dsId;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            try {
+                return download(target, remote, dsId);
+            } catch (IOException ex) {
+                throw new ExportException(filename(remote.getPid(), dsId), ex);
             }
         }
-        return result;
+
     }
 
-    private void copy(InputStream is, OutputStream os) throws IOException {
-        for (int length = 0; (length = is.read(buffer)) > 0; ) {
-            os.write(buffer, 0, length);
+    /**
+     * The throughput report of the export.
+     */
+    public static final class Statistics {
+
+        private int files;
+        private int skipped;
+        private long bytes;
+        private long elapsed;
+
+        /** Gets the number of downloaded datastreams. */
+        public int getFiles() {
+            return files;
+        }
+
+        /** Gets the number of datastreams exported by the previous run. */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /** Gets the number of downloaded bytes. */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** Gets the export time in milliseconds. */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /** Gets the download throughput in bytes per second. */
+        public long getThroughput() {
+            return elapsed == 0 ? bytes : bytes * 1000 / elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("files: %s, skipped: %s, bytes: %s, time: %s ms, %.2f MB/s",
+                    files, skipped, bytes, elapsed, getThroughput() / (1024d * 1024));
         }
-        os.close();
-    }
 
-    static String filename(String pid, String dsId) {
-        return FoxmlUtils.pidAsUuid(pid) + '.' + dsId;
     }
 
 }
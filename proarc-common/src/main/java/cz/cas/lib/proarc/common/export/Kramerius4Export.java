@@ -38,6 +38,8 @@ import cz.cas.lib.proarc.common.fedora.SearchView.Item;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.fedora.relation.RelationResource;
 import cz.cas.lib.proarc.common.fedora.relation.Relations;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
 import cz.cas.lib.proarc.common.mods.ModsStreamEditor;
 import cz.cas.lib.proarc.common.object.DigitalObjectCrawler;
 import cz.cas.lib.proarc.common.object.DigitalObjectElement;
@@ -143,20 +145,28 @@ public final class Kramerius4Export {
                 return ;
             }
             exportedPids.add(pid);
-            RemoteObject robject = rstorage.find(pid);
-            FedoraClient client = robject.getClient();
-            DigitalObject dobj = FedoraClient.export(pid).context("archive")
-                    .format("info:fedora/fedora-system:FOXML-1.1")
-                    .execute(client).getEntity(DigitalObject.class);
-            File foxml = ExportUtils.pidAsXmlFile(output, pid);
-            LocalObject local = lstorage.create(foxml, dobj);
-            RelationEditor editor = new RelationEditor(local);
-            if (hierarchy) {
-                List<String> children = editor.getMembers();
-                toExport.addAll(children);
+            Timer.Sample sample = Metrics.getInstance().timer("export.kramerius4.object").start();
+            try {
+                RemoteObject robject = rstorage.find(pid);
+                FedoraClient client = robject.getClient();
+                DigitalObject dobj = FedoraClient.export(pid).context("archive")
+                        .format("info:fedora/fedora-system:FOXML-1.1")
+                        .execute(client).getEntity(DigitalObject.class);
+                File foxml = ExportUtils.pidAsXmlFile(output, pid);
+                LocalObject local = lstorage.create(foxml, dobj);
+                RelationEditor editor = new RelationEditor(local);
+                if (hierarchy) {
+                    List<String> children = editor.getMembers();
+                    toExport.addAll(children);
+                }
+                exportDatastreams(local, editor);
+                local.flush();
+            } catch (Throwable ex) {
+                sample.failed();
+                throw ex;
+            } finally {
+                sample.stop();
             }
-            exportDatastreams(local, editor);
-            local.flush();
         } catch (DigitalObjectException ex) {
             throw new IllegalStateException(pid, ex);
         } catch (FedoraClientException ex) {
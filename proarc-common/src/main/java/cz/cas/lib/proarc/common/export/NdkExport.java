@@ -29,6 +29,8 @@ import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
@@ -141,7 +143,15 @@ public final class NdkExport {
                     dc.resetContext();
                     DigitalObject dobj = MetsUtils.readFoXML(pspPid, fo.getClient());
                     MetsElement mElm = MetsElement.getElement(dobj, null, dc, hierarchy);
-                    mElm.accept(new MetsElementVisitor());
+                    Timer.Sample sample = Metrics.getInstance().timer("export.ndk.package").start();
+                    try {
+                        mElm.accept(new MetsElementVisitor());
+                    } catch (Throwable ex) {
+                        sample.failed();
+                        throw ex;
+                    } finally {
+                        sample.stop();
+                    }
                     // XXX use relative path to users folder?
                 }
                 storeExportResult(dc, target.toURI().toASCIIString(), log);
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.FileBasedScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Builds a ZIP package. Entries are deflated concurrently as soon as they are
+ * added and the finished entries are merged to the package at the end.
+ * Already compressed images are stored without recompression.
+ * The MD5 checksum of the package is computed while the package is written
+ * and stored next to the package, see {@link #getChecksumFile}.
+ *
+ * <p>Usage:
+ * <pre>{@code
+ * ZipPackageWriter zip = new ZipPackageWriter(pkgFile);
+ * try {
+ *     zip.addFile("mets.xml", metsFile);
+ *     String md5 = zip.finish();
+ * } finally {
+ *     zip.close();
+ * }
+ * }</pre>
+ *
+ * @author Jan Pokorsky
+ */
+public final class ZipPackageWriter {
+
+    /** The extension of the file holding the package checksum. */
+    public static final String CHECKSUM_EXTENSION = ".md5";
+
+    private static final Logger LOG = Logger.getLogger(ZipPackageWriter.class.getName());
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+            "jp2", "j2k", "jpf", "jpx", "jpg", "jpeg", "png", "gif", "zip", "gz"));
+
+    private final File zipFile;
+    private final ExecutorService executor;
+    /** The folder of deflated entries waiting to be merged to the package. */
+    private final File scatterFolder;
+    private final ParallelScatterZipCreator zipCreator;
+    private final Set<String> entryNames = new HashSet<String>();
+    /** The package is being written, no more entries. */
+    private boolean merging;
+    /** The package is complete. */
+    private boolean finished;
+
+    /**
+     * Creates the writer using all available processors.
+     * @param zipFile the package file to create or overwrite
+     * @throws IOException failure
+     */
+    public ZipPackageWriter(File zipFile) throws IOException {
+        this(zipFile, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param zipFile the package file to create or overwrite
+     * @param threads number of threads deflating entries
+     * @throws IOException failure
+     */
+    public ZipPackageWriter(File zipFile, int threads) throws IOException {
+        if (zipFile == null) {
+            throw new NullPointerException("zipFile");
+        }
+        this.zipFile = zipFile;
+        this.scatterFolder = Files.createTempDirectory("proarc-zip").toFile();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        this.zipCreator = new ParallelScatterZipCreator(executor, new ScatterFileSupplier(scatterFolder));
+    }
+
+    public File getZipFile() {
+        return zipFile;
+    }
+
+    /**
+     * Adds the file content as a new entry.
+     * @param entryName the path inside the package
+     * @param file the content
+     * @throws IOException duplicate entry name
+     */
+    public void addFile(String entryName, final File file) throws IOException {
+        ZipArchiveEntry entry = createEntry(entryName, file.lastModified());
+        zipCreator.addArchiveEntry(entry, new InputStreamSupplier() {
+
+            @Override
+            public InputStream get() {
+                try {
+                    return new FileInputStream(file);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(file.toString(), ex);
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the content as a new entry. It does not need any temporary file.
+     * @param entryName the path inside the package
+     * @param content the content
+     * @throws IOException duplicate entry name
+     */
+    public void addBytes(String entryName, final byte[] content) throws IOException {
+        ZipArchiveEntry entry = createEntry(entryName, System.currentTimeMillis());
+        zipCreator.addArchiveEntry(entry, new InputStreamSupplier() {
+
+            @Override
+            public InputStream get() {
+                return new ByteArrayInputStream(content);
+            }
+        });
+    }
+
+    /**
+     * Adds all files of the folder and its sub-folders. Paths of entries
+     * are relative to the folder. Folder entries are not added. See issue #413.
+     * @param folder the folder to scan
+     * @throws IOException failure
+     */
+    public void addFolder(File folder) throws IOException {
+        addFolder(folder, "");
+    }
+
+    private void addFolder(File folder, String path) throws IOException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot read " + folder);
+        }
+        List<File> subfolders = new ArrayList<File>();
+        for (File file : files) {
+            if (file.isFile()) {
+                addFile(path + file.getName(), file);
+            } else if (file.isDirectory()) {
+                subfolders.add(file);
+            }
+        }
+        for (File subfolder : subfolders) {
+            addFolder(subfolder, path + subfolder.getName() + '/');
+        }
+    }
+
+    /**
+     * Writes the package and its checksum file.
+     * @return the MD5 checksum of the package in hex
+     * @throws IOException failure
+     */
+    public String finish() throws IOException {
+        if (merging) {
+            throw new IllegalStateException("Already finished: " + zipFile);
+        }
+        merging = true;
+        long start = System.currentTimeMillis();
+        MessageDigest md5 = createDigest();
+        OutputStream fileStream = new BufferedOutputStream(new FileOutputStream(zipFile), 64 * 1024);
+        ZipArchiveOutputStream zipStream = new ZipArchiveOutputStream(new DigestOutputStream(fileStream, md5));
+        try {
+            zipCreator.writeTo(zipStream);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(zipFile.toString(), ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(zipFile.toString(), ex.getCause());
+        } finally {
+            zipStream.close();
+            FileUtils.deleteQuietly(scatterFolder);
+        }
+        String checksum = new String(Hex.encodeHex(md5.digest()));
+        FileUtils.writeStringToFile(getChecksumFile(zipFile), checksum, StandardCharsets.US_ASCII);
+        finished = true;
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.fine(String.format("%s: %s entries, %s, merged in %s ms",
+                    zipFile, entryNames.size(), zipCreator.getStatisticsMessage(),
+                    System.currentTimeMillis() - start));
+        }
+        return checksum;
+    }
+
+    /**
+     * Releases resources. In case the package is not finished it removes
+     * the incomplete package.
+     */
+    public void close() {
+        executor.shutdownNow();
+        merging = true;
+        if (!finished) {
+            FileUtils.deleteQuietly(zipFile);
+            FileUtils.deleteQuietly(getChecksumFile(zipFile));
+        }
+        FileUtils.deleteQuietly(scatterFolder);
+    }
+
+    private ZipArchiveEntry createEntry(String entryName, long time) throws IOException {
+        if (merging) {
+            throw new IllegalStateException("Already finished: " + zipFile);
+        }
+        if (!entryNames.add(entryName)) {
+            throw new IOException(String.format("Duplicate entry %s in %s", entryName, zipFile));
+        }
+        ZipArchiveEntry entry = new ZipArchiveEntry(entryName);
+        entry.setTime(time);
+        entry.setMethod(isCompressed(entryName) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+        return entry;
+    }
+
+    /**
+     * Checks whether the entry content is already compressed and it should be
+     * stored without recompression.
+     */
+    static boolean isCompressed(String entryName) {
+        int dotIndex = entryName.lastIndexOf('.');
+        if (dotIndex < 0) {
+            return false;
+        }
+        String extension = entryName.substring(dotIndex + 1).toLowerCase(Locale.ENGLISH);
+        return COMPRESSED_EXTENSIONS.contains(extension);
+    }
+
+    /**
+     * Gets the file holding the checksum of the package.
+     * @param zipFile the package
+     * @return the file
+     */
+    public static File getChecksumFile(File zipFile) {
+        return new File(zipFile.getPath() + CHECKSUM_EXTENSION);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class ScatterFileSupplier implements ScatterGatherBackingStoreSupplier {
+
+        private final File folder;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        ScatterFileSupplier(File folder) {
+            this.folder = folder;
+        }
+
+        @Override
+        public ScatterGatherBackingStore get() throws IOException {
+            File scatterFile = new File(folder, "scatter" + counter.incrementAndGet());
+            return new FileBasedScatterGatherBackingStore(scatterFile);
+        }
+    }
+
+}
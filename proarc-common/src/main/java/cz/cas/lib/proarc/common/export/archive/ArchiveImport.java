@@ -83,7 +83,8 @@ public class ArchiveImport implements ImportHandler {
 
     public void consumeArchive(File metsFile, ImportOptions ctx) {
         File targetFolder = ctx.getTargetFolder();
-        PackageReader reader = new PackageReader(targetFolder, isession);
+        int threads = ctx.getConfig().getArchiveThreads();
+        PackageReader reader = new PackageReader(targetFolder, isession, threads);
         reader.read(metsFile);
     }
 
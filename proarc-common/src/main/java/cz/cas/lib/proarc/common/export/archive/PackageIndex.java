@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.mets.MdSecType;
+import cz.cas.lib.proarc.mets.Mets;
+import cz.cas.lib.proarc.mets.MetsConstants;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The index of the archive package METS read with StAX. It holds just
+ * the file section and the structural maps that are small in comparison
+ * with metadata sections. The metadata sections are skipped and they can
+ * be streamed one by one later with {@link #readMdSecs}. It keeps the memory
+ * footprint independent of the size of embedded metadata.
+ *
+ * @author Jan Pokorsky
+ */
+final class PackageIndex {
+
+    private static final QName METS = new QName(MetsConstants.NS_METS, "mets");
+    private static final QName METSHDR = new QName(MetsConstants.NS_METS, "metsHdr");
+    private static final QName DMDSEC = new QName(MetsConstants.NS_METS, "dmdSec");
+    private static final QName FILESEC = new QName(MetsConstants.NS_METS, "fileSec");
+    private static final QName FILEGRP = new QName(MetsConstants.NS_METS, "fileGrp");
+    private static final QName FILE = new QName(MetsConstants.NS_METS, "file");
+    private static final QName FLOCAT = new QName(MetsConstants.NS_METS, "FLocat");
+    private static final QName STRUCTMAP = new QName(MetsConstants.NS_METS, "structMap");
+    private static final QName DIV = new QName(MetsConstants.NS_METS, "div");
+    private static final QName FPTR = new QName(MetsConstants.NS_METS, "fptr");
+
+    private static JAXBContext metsContext;
+
+    private final File metsFile;
+    private String type;
+    private final Map<String, PackageFile> files = new HashMap<String, PackageFile>();
+    private final Map<String, PackageDiv> structMaps = new HashMap<String, PackageDiv>();
+
+    /**
+     * Reads the index of the METS file.
+     * @param metsFile the METS of the package
+     * @return the index
+     * @throws IOException failure
+     * @throws XMLStreamException invalid XML
+     */
+    public static PackageIndex read(File metsFile) throws IOException, XMLStreamException {
+        PackageIndex index = new PackageIndex(metsFile);
+        InputStream is = new BufferedInputStream(new FileInputStream(metsFile));
+        try {
+            XMLStreamReader reader = createReader(is);
+            try {
+                index.readIndex(reader);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            is.close();
+        }
+        return index;
+    }
+
+    private PackageIndex(File metsFile) {
+        this.metsFile = metsFile;
+    }
+
+    public File getMetsFile() {
+        return metsFile;
+    }
+
+    /**
+     * Gets {@code mets@TYPE}.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Finds the file of the file section.
+     * @param fileId {@code file@ID}
+     * @return the file or {@code null}
+     */
+    public PackageFile getFile(String fileId) {
+        return files.get(fileId);
+    }
+
+    /**
+     * Gets the root {@code div} of the structural map.
+     * @param type {@code structMap@TYPE}
+     * @return the div or {@code null}
+     */
+    public PackageDiv getStructMapDiv(String type) {
+        return structMaps.get(type);
+    }
+
+    /**
+     * Streams metadata sections of the package. Just a single section
+     * is held in memory at a time.
+     * @param handler the consumer of sections
+     */
+    public void readMdSecs(MdSecHandler handler)
+            throws IOException, XMLStreamException, JAXBException,
+            DigitalObjectException, InterruptedException {
+
+        InputStream is = new BufferedInputStream(new FileInputStream(metsFile));
+        try {
+            XMLStreamReader reader = createReader(is);
+            try {
+                Unmarshaller unmarshaller = getMetsContext().createUnmarshaller();
+                reader.nextTag();
+                reader.require(XMLStreamConstants.START_ELEMENT, METS.getNamespaceURI(), METS.getLocalPart());
+                reader.nextTag();
+                while (reader.isStartElement()) {
+                    QName name = reader.getName();
+                    if (DMDSEC.equals(name)) {
+                        // the unmarshaller moves the reader past the end element
+                        MdSecType mdSec = unmarshaller.unmarshal(reader, MdSecType.class).getValue();
+                        handler.handle(mdSec);
+                    } else if (METSHDR.equals(name)) {
+                        skipElement(reader);
+                        reader.next();
+                    } else {
+                        // dmdSec elements precede other sections
+                        break;
+                    }
+                    while (reader.hasNext() && !reader.isStartElement() && !reader.isEndElement()) {
+                        reader.next();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } finally {
+            is.close();
+        }
+    }
+
+    private void readIndex(XMLStreamReader reader) throws XMLStreamException {
+        reader.nextTag();
+        reader.require(XMLStreamConstants.START_ELEMENT, METS.getNamespaceURI(), METS.getLocalPart());
+        type = reader.getAttributeValue(null, "TYPE");
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            QName name = reader.getName();
+            if (FILESEC.equals(name)) {
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (FILEGRP.equals(reader.getName())) {
+                        readFileGrp(reader);
+                    } else {
+                        skipElement(reader);
+                    }
+                }
+            } else if (STRUCTMAP.equals(name)) {
+                readStructMap(reader);
+            } else {
+                // dmdSec, amdSec, ...
+                skipElement(reader);
+            }
+        }
+    }
+
+    private void readFileGrp(XMLStreamReader reader) throws XMLStreamException {
+        String dsId = reader.getAttributeValue(null, "ID");
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (FILE.equals(reader.getName())) {
+                String fileId = reader.getAttributeValue(null, "ID");
+                String mimetype = reader.getAttributeValue(null, "MIMETYPE");
+                String locType = null;
+                String href = null;
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (FLOCAT.equals(reader.getName()) && href == null) {
+                        locType = reader.getAttributeValue(null, "LOCTYPE");
+                        href = reader.getAttributeValue(MetsConstants.NS_XLINK, "href");
+                    }
+                    skipElement(reader);
+                }
+                files.put(fileId, new PackageFile(fileId, dsId, mimetype, locType, href));
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    private void readStructMap(XMLStreamReader reader) throws XMLStreamException {
+        String structMapType = reader.getAttributeValue(null, "TYPE");
+        PackageDiv root = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (DIV.equals(reader.getName()) && root == null) {
+                root = readDiv(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        if (root != null && structMapType != null && !structMaps.containsKey(structMapType)) {
+            structMaps.put(structMapType, root);
+        }
+    }
+
+    private PackageDiv readDiv(XMLStreamReader reader) throws XMLStreamException {
+        PackageDiv div = new PackageDiv(
+                reader.getAttributeValue(null, "ID"),
+                reader.getAttributeValue(null, "TYPE"),
+                reader.getAttributeValue(null, "LABEL"),
+                split(reader.getAttributeValue(null, "CONTENTIDS")),
+                split(reader.getAttributeValue(null, "DMDID")));
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            QName name = reader.getName();
+            if (DIV.equals(name)) {
+                div.children.add(readDiv(reader));
+            } else if (FPTR.equals(name)) {
+                div.fileIds.add(reader.getAttributeValue(null, "FILEID"));
+                skipElement(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return div;
+    }
+
+    /**
+     * Skips the current element including its descendants.
+     * The reader is left at the end element.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for (int depth = 1; depth > 0;) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static List<String> split(String idrefs) {
+        if (idrefs == null || idrefs.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(idrefs.trim().split("\\s+"));
+    }
+
+    private static XMLStreamReader createReader(InputStream is) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory.createXMLStreamReader(is);
+    }
+
+    private static synchronized JAXBContext getMetsContext() throws JAXBException {
+        if (metsContext == null) {
+            metsContext = JAXBContext.newInstance(Mets.class);
+        }
+        return metsContext;
+    }
+
+    /**
+     * Consumes metadata sections.
+     */
+    interface MdSecHandler {
+
+        void handle(MdSecType mdSec) throws DigitalObjectException, InterruptedException;
+
+    }
+
+    /**
+     * The {@code file} of the file section.
+     */
+    static final class PackageFile {
+
+        private final String id;
+        private final String dsId;
+        private final String mimetype;
+        private final String locType;
+        private final String href;
+
+        PackageFile(String id, String dsId, String mimetype, String locType, String href) {
+            this.id = id;
+            this.dsId = dsId;
+            this.mimetype = mimetype;
+            this.locType = locType;
+            this.href = href;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Gets the datastream ID as {@code fileGrp@ID}.
+         */
+        public String getDsId() {
+            return dsId;
+        }
+
+        public String getMimetype() {
+            return mimetype;
+        }
+
+        public String getLocType() {
+            return locType;
+        }
+
+        public String getHref() {
+            return href;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("FileType{ID: %s, MIME: %s, FLocat: [FLocat{href: %s, LOCTYPE: %s}]}",
+                    id, mimetype, href, locType);
+        }
+
+    }
+
+    /**
+     * The {@code div} of a structural map.
+     */
+    static final class PackageDiv {
+
+        private final String id;
+        private final String type;
+        private final String label;
+        private final List<String> contentIds;
+        private final List<String> dmdIds;
+        private final List<String> fileIds = new ArrayList<String>();
+        private final List<PackageDiv> children = new ArrayList<PackageDiv>();
+
+        PackageDiv(String id, String type, String label, List<String> contentIds, List<String> dmdIds) {
+            this.id = id;
+            this.type = type;
+            this.label = label;
+            this.contentIds = contentIds;
+            this.dmdIds = dmdIds;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public List<String> getContentIds() {
+            return contentIds;
+        }
+
+        public List<String> getDmdIds() {
+            return dmdIds;
+        }
+
+        public List<String> getFileIds() {
+            return fileIds;
+        }
+
+        public List<PackageDiv> getChildren() {
+            return children;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("div{%s, %s, %s}", id, type, label);
+        }
+
+    }
+
+}
@@ -27,6 +27,9 @@ import cz.cas.lib.proarc.common.dublincore.DcStreamEditor;
 import cz.cas.lib.proarc.common.dublincore.DcStreamEditor.DublinCoreRecord;
 import cz.cas.lib.proarc.common.dublincore.DcUtils;
 import cz.cas.lib.proarc.common.export.archive.PackageBuilder.MdType;
+import cz.cas.lib.proarc.common.export.archive.PackageIndex.MdSecHandler;
+import cz.cas.lib.proarc.common.export.archive.PackageIndex.PackageDiv;
+import cz.cas.lib.proarc.common.export.archive.PackageIndex.PackageFile;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectNotFoundException;
@@ -53,16 +56,8 @@ import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import cz.cas.lib.proarc.common.ocr.AltoDatastream;
 import cz.cas.lib.proarc.common.user.UserProfile;
 import cz.cas.lib.proarc.common.user.UserUtil;
-import cz.cas.lib.proarc.mets.DivType;
-import cz.cas.lib.proarc.mets.DivType.Fptr;
-import cz.cas.lib.proarc.mets.FileType;
-import cz.cas.lib.proarc.mets.FileType.FLocat;
 import cz.cas.lib.proarc.mets.MdSecType;
 import cz.cas.lib.proarc.mets.MdSecType.MdWrap;
-import cz.cas.lib.proarc.mets.Mets;
-import cz.cas.lib.proarc.mets.MetsType.FileSec;
-import cz.cas.lib.proarc.mets.MetsType.FileSec.FileGrp;
-import cz.cas.lib.proarc.mets.StructMapType;
 import cz.cas.lib.proarc.mods.ModsDefinition;
 import cz.cas.lib.proarc.oaidublincore.OaiDcType;
 import java.io.File;
@@ -73,8 +68,14 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.ws.rs.core.MediaType;
-import javax.xml.bind.JAXB;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 import org.w3c.dom.Node;
@@ -82,53 +83,110 @@ import org.w3c.dom.Node;
 /**
  * It reads the proarc archive package and generates digital objects for a batch import.
  *
+ * <p>The METS of the package is not loaded at once. The structure is read
+ * with {@link PackageIndex} and metadata sections are streamed one by one.
+ * Each object is written to its FOXML file as soon as it is prepared so that
+ * the memory does not grow with the size of the package. The objects can be
+ * written with a pool of threads, see {@link #PackageReader(File, ImportSession, int)}.
+ *
  * @author Jan Pokorsky
  */
 public class PackageReader {
 
+    private static final Logger LOG = Logger.getLogger(PackageReader.class.getName());
+
     private File metsFile;
     private final File targetFolder;
     private URI metsUri;
-    private Mets mets;
+    private PackageIndex index;
     private final ImportSession iSession;
+    private final int threads;
     private String pkgModelId;
     private boolean isParentObject;
     private final List<String> physicalPath = new ArrayList<String>();
+    /** The objects waiting for metadata sections. dmdSec@ID -> object */
+    private final Map<String, PendingObject> pendingMdSecs = new HashMap<String, PendingObject>();
+    /** The batch items to mark as loaded once the package is written. */
+    private final List<BatchItemObject> loadedItems = new ArrayList<BatchItemObject>();
+    private ObjectWriter writer;
 
     public PackageReader(File targetFolder, ImportSession session) {
+        this(targetFolder, session, 1);
+    }
+
+    /**
+     * @param targetFolder the folder to write objects
+     * @param session the import session
+     * @param threads the number of threads writing objects
+     */
+    public PackageReader(File targetFolder, ImportSession session, int threads) {
         this.targetFolder = targetFolder;
         this.iSession = session;
+        this.threads = Math.max(1, threads);
     }
 
     public void read(File metsFile) throws IllegalStateException {
         try {
             readImpl(metsFile);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(metsFile.getAbsolutePath(), ex);
         } catch (Exception ex) {
             throw new IllegalStateException(metsFile.getAbsolutePath(), ex);
         }
     }
 
-    private void readImpl(File metsFile) throws DigitalObjectException {
+    private void readImpl(File metsFile) throws Exception {
+        long start = System.currentTimeMillis();
         this.metsFile = metsFile;
         this.metsUri = metsFile.toURI();
-        this.mets = JAXB.unmarshal(metsFile, Mets.class);
+        this.index = PackageIndex.read(metsFile);
         this.isParentObject = true;
         this.physicalPath.clear();
-        pkgModelId = mets.getTYPE();
+        this.pendingMdSecs.clear();
+        this.loadedItems.clear();
+        pkgModelId = index.getType();
         if (pkgModelId == null) {
             throw new IllegalStateException("Unknown mets@TYPE:" + pkgModelId);
         }
-        StructMapType otherMap = getStructMap(mets, PackageBuilder.STRUCTMAP_OTHERS_TYPE);
-        processDevices(otherMap);
+        writer = new ObjectWriter(threads);
+        try {
+            PackageDiv otherDiv = index.getStructMapDiv(PackageBuilder.STRUCTMAP_OTHERS_TYPE);
+            processDevices(otherDiv);
 
-        StructMapType physicalMap = getStructMap(mets, PackageBuilder.STRUCTMAP_PHYSICAL_TYPE);
-        DivType div = physicalMap.getDiv();
-        processObject(1, div);
+            PackageDiv physicalDiv = index.getStructMapDiv(PackageBuilder.STRUCTMAP_PHYSICAL_TYPE);
+            if (physicalDiv == null) {
+                throw new IllegalStateException("METS: Missing structMap@TYPE=" + PackageBuilder.STRUCTMAP_PHYSICAL_TYPE);
+            }
+            processObject(1, physicalDiv);
+
+            index.readMdSecs(new MdSecHandler() {
+
+                @Override
+                public void handle(MdSecType mdSec) throws DigitalObjectException, InterruptedException {
+                    processMdSec(mdSec);
+                }
+            });
+            writer.finish();
+        } finally {
+            writer.close();
+        }
+        if (!pendingMdSecs.isEmpty()) {
+            Map.Entry<String, PendingObject> missing = pendingMdSecs.entrySet().iterator().next();
+            throw new IllegalStateException(
+                    "METS: Unexpected <dmdSec> " + missing.getKey() + ", div@id: " + missing.getValue().divId);
+        }
+        for (BatchItemObject importItem : loadedItems) {
+            importItem.setState(ObjectState.LOADED);
+            iSession.getImportManager().update(importItem);
+        }
+        LOG.log(Level.FINE, "{0}: {1} objects loaded in {2} ms, threads: {3}",
+                new Object[] {metsFile, loadedItems.size(), System.currentTimeMillis() - start, threads});
     }
 
-    private List<String> processChildObjects(List<DivType> divs) throws DigitalObjectException {
+    private List<String> processChildObjects(List<PackageDiv> divs) throws DigitalObjectException, InterruptedException {
         ArrayList<String> pids = new ArrayList<String>(100);
-        for (DivType div : divs) {
+        for (PackageDiv div : divs) {
             String pid = toPid(div);
             pids.add(pid);
         }
@@ -137,31 +195,28 @@ public class PackageReader {
             iSession.checkRemote(pids);
         }
         int childIndex = 1;
-        for (DivType div : divs) {
+        for (PackageDiv div : divs) {
             processObject(childIndex++, div);
         }
         return pids;
     }
 
-    private void processDevices(StructMapType structMap) {
-        DivType devicesDiv = null;
-        if (structMap != null) {
-            DivType div = structMap.getDiv();
-            if (div != null && PackageBuilder.DIV_DEVICE_LIST_ID.equals(div.getID())) {
-                devicesDiv = div;
-            }
+    private void processDevices(PackageDiv div) {
+        PackageDiv devicesDiv = null;
+        if (div != null && PackageBuilder.DIV_DEVICE_LIST_ID.equals(div.getId())) {
+            devicesDiv = div;
         }
         if (devicesDiv != null) {
             int index = 1;
-            for (DivType deviceDiv : devicesDiv.getDiv()) {
+            for (PackageDiv deviceDiv : devicesDiv.getChildren()) {
                 processDevice(index++, deviceDiv);
             }
         }
     }
 
-    private void processDevice(int divIndex, DivType deviceDiv) {
-        if (!DeviceRepository.METAMODEL_ID.equals(deviceDiv.getTYPE())) {
-            throw new IllegalStateException("Unexpected type of device: " + toString(deviceDiv));
+    private void processDevice(int divIndex, PackageDiv deviceDiv) {
+        if (!DeviceRepository.METAMODEL_ID.equals(deviceDiv.getType())) {
+            throw new IllegalStateException("Unexpected type of device: " + deviceDiv);
         }
         String pid = toPid(deviceDiv);
         try {
@@ -186,26 +241,26 @@ public class PackageReader {
                 lObj = iSession.getLocals().create(objFile, dObj);
                 if (isNewObject) {
                     lObj.setOwner(iSession.resolveUsername(null));
-                    lObj.setLabel(deviceDiv.getLabel3());
+                    lObj.setLabel(deviceDiv.getLabel());
                 } else {
                     lObj.setRemoteCopy(true);
                 }
                 importItem = iSession.addObject(lObj, physicalPath.isEmpty());
 
                 if (isNewObject) {
-                    createDatastreams(lObj, deviceDiv, Collections.<String>emptyList());
+                    writeNewObject(lObj, deviceDiv, Collections.<String>emptyList());
+                } else {
+                    writeObject(lObj);
                 }
-                lObj.flush();
-                importItem.setState(ObjectState.LOADED);
-                iSession.getImportManager().update(importItem);
+                loadedItems.add(importItem);
             }
         } catch (Exception ex) {
-            throw new IllegalStateException(toString(deviceDiv), ex);
+            throw new IllegalStateException(deviceDiv.toString(), ex);
         }
     }
 
-    private void processObject(int divIndex, DivType div) throws DigitalObjectException {
-        String modelId = div.getTYPE();
+    private void processObject(int divIndex, PackageDiv div) throws DigitalObjectException, InterruptedException {
+        String modelId = div.getType();
         boolean isPkgModel = pkgModelId.equals(modelId);
         String pid = toPid(div);
 
@@ -232,18 +287,18 @@ public class PackageReader {
             lObj = iSession.getLocals().create(objFile, dObj);
             if (isNewObject) {
                 lObj.setOwner(iSession.resolveUsername(null));
-                lObj.setLabel(div.getLabel3());
+                lObj.setLabel(div.getLabel());
             } else {
                 lObj.setRemoteCopy(true);
             }
             importItem = iSession.addObject(lObj, physicalPath.isEmpty());
         } else if (isPkgModel || !isParentObject) {
-            throw new IllegalStateException("The object was already imported! " + toString(div));
+            throw new IllegalStateException("The object was already imported! " + div);
         }
         try {
             if (isPkgModel) {
                 if (!isParentObject) {
-                    throw new IllegalStateException("An invalid model inside the package: " + toString(div));
+                    throw new IllegalStateException("An invalid model inside the package: " + div);
                 }
                 isParentObject = false;
             }
@@ -252,16 +307,14 @@ public class PackageReader {
                 iSession.checkObjectParent(physicalPath, pid);
             }
             physicalPath.add(pid);
-            List<String> childPids = processChildObjects(div.getDiv());
+            List<String> childPids = processChildObjects(div.getChildren());
             physicalPath.remove(pid);
             if (isNewObject) {
-                createDatastreams(lObj, div, childPids);
+                writeNewObject(lObj, div, childPids);
             } else {
-                mergeDatastreams(lObj, div, childPids);
+                mergeObject(lObj, div, childPids);
             }
-            lObj.flush();
-            importItem.setState(ObjectState.LOADED);
-            iSession.getImportManager().update(importItem);
+            loadedItems.add(importItem);
         } finally {
             if (isPkgModel) {
                 isParentObject = true;
@@ -269,17 +322,68 @@ public class PackageReader {
         }
     }
 
-    private void mergeDatastreams(LocalObject lObj, DivType objectDiv, List<String> childPids) throws DigitalObjectException {
-        List<Fptr> fPtrs = objectDiv.getFptr();
-        for (Fptr fPtr : fPtrs) {
-            Object fileid = fPtr.getFILEID();
-            if (fileid instanceof FileType) {
-                FileType fileType = (FileType) fileid;
-                mergeDatastream(lObj, fileType, childPids);
-            } else {
-                throw new IllegalStateException(
-                        "METS: Unexpected <fptr> " + fileid + ", div@id: " + objectDiv.getID());
+    /**
+     * Schedules writing of a new object. Its metadata sections are written later
+     * as they come from the METS stream.
+     */
+    private void writeNewObject(final LocalObject lObj, final PackageDiv div, final List<String> childPids
+    ) throws DigitalObjectException, InterruptedException {
+        PendingObject pending = new PendingObject(lObj.getPid(), lObj.getFoxml(), div.getId());
+        for (String dmdId : div.getDmdIds()) {
+            pendingMdSecs.put(dmdId, pending);
+        }
+        writer.submit(lObj.getPid(), new ObjectTask() {
+
+            @Override
+            public void write() throws DigitalObjectException {
+                createDatastreams(lObj, div, childPids);
+                lObj.flush();
             }
+        });
+    }
+
+    private void mergeObject(final LocalObject lObj, final PackageDiv div, final List<String> childPids
+    ) throws DigitalObjectException, InterruptedException {
+        writer.submit(lObj.getPid(), new ObjectTask() {
+
+            @Override
+            public void write() throws DigitalObjectException {
+                mergeDatastreams(lObj, div, childPids);
+                lObj.flush();
+            }
+        });
+    }
+
+    private void writeObject(final LocalObject lObj) throws DigitalObjectException, InterruptedException {
+        writer.submit(lObj.getPid(), new ObjectTask() {
+
+            @Override
+            public void write() throws DigitalObjectException {
+                lObj.flush();
+            }
+        });
+    }
+
+    private void processMdSec(final MdSecType dmdSec) throws DigitalObjectException, InterruptedException {
+        final PendingObject pending = pendingMdSecs.remove(dmdSec.getID());
+        if (pending == null) {
+            // metadata of existing objects are not merged
+            return ;
+        }
+        writer.submit(pending.pid, new ObjectTask() {
+
+            @Override
+            public void write() throws DigitalObjectException {
+                LocalObject lObj = iSession.getLocals().load(pending.pid, pending.foxml);
+                createDatastream(lObj, dmdSec);
+                lObj.flush();
+            }
+        });
+    }
+
+    private void mergeDatastreams(LocalObject lObj, PackageDiv objectDiv, List<String> childPids) throws DigitalObjectException {
+        for (String fileId : objectDiv.getFileIds()) {
+            mergeDatastream(lObj, toFileType(fileId, objectDiv), childPids);
         }
     }
 
@@ -292,7 +396,7 @@ public class PackageReader {
      *      that should be merged to the existing list of members in RELS-EXT
      * @throws DigitalObjectException
      */
-    private void mergeDatastream(LocalObject lObj, FileType fileType, List<String> childPids) throws DigitalObjectException {
+    private void mergeDatastream(LocalObject lObj, PackageFile fileType, List<String> childPids) throws DigitalObjectException {
         String dsId = toValidDsId(fileType);
         if (RelationEditor.DATASTREAM_ID.equals(dsId)) {
             File dsFile = toFile(fileType);
@@ -301,7 +405,7 @@ public class PackageReader {
             String archivedModelId = RdfRelation.toPid(rdf.getDescription().getModel());
             String existingModelId = editor.getModel();
             if (archivedModelId == null ? existingModelId != null : !archivedModelId.equals(existingModelId)) {
-                throw new IllegalStateException(String.format("Unexpected models %s != %s, ", existingModelId, archivedModelId, toString(fileType)));
+                throw new IllegalStateException(String.format("Unexpected models %s != %s, ", existingModelId, archivedModelId, fileType));
             }
             List<String> existingMembers = editor.getMembers();
             List<String> archivedMembers = RelationEditor.relationAsPid(rdf.getDescription().getMemberRelations());
@@ -313,26 +417,9 @@ public class PackageReader {
         }
     }
 
-    private void createDatastreams(LocalObject lObj, DivType objectDiv, List<String> childPids) throws DigitalObjectException {
-        List<Fptr> fPtrs = objectDiv.getFptr();
-        for (Fptr fPtr : fPtrs) {
-            Object fileid = fPtr.getFILEID();
-            if (fileid instanceof FileType) {
-                FileType fileType = (FileType) fileid;
-                createDatastream(lObj, fileType, childPids);
-            } else {
-                throw new IllegalStateException(
-                        "METS: Unexpected <fptr> " + fileid + ", div@id: " + objectDiv.getID());
-            }
-        }
-
-        for (Object dmdObject : objectDiv.getDMDID()) {
-            if (dmdObject instanceof MdSecType) {
-                createDatastream(lObj, (MdSecType) dmdObject);
-            } else {
-                throw new IllegalStateException(
-                        "METS: Unexpected <dmdSec> " + dmdObject + ", div@id: " + objectDiv.getID());
-            }
+    private void createDatastreams(LocalObject lObj, PackageDiv objectDiv, List<String> childPids) throws DigitalObjectException {
+        for (String fileId : objectDiv.getFileIds()) {
+            createDatastream(lObj, toFileType(fileId, objectDiv), childPids);
         }
     }
 
@@ -359,7 +446,7 @@ public class PackageReader {
         }
     }
 
-    private void createDatastream(LocalObject lObj, FileType fileType, List<String> childPids) throws DigitalObjectException {
+    private void createDatastream(LocalObject lObj, PackageFile fileType, List<String> childPids) throws DigitalObjectException {
         File dsFile = toFile(fileType);
         URI dsUri = dsFile.toURI();
         String dsId = toValidDsId(fileType);
@@ -407,7 +494,7 @@ public class PackageReader {
                 lObj.setOwner(iSession.resolveUsername(foxmlOwner));
             }
         } else {
-            MediaType mime = MediaType.valueOf(fileType.getMIMETYPE());
+            MediaType mime = MediaType.valueOf(fileType.getMimetype());
             BinaryEditor editor = BinaryEditor.dissemination(lObj, dsId, mime);
             if (editor == null) {
                 editor = new BinaryEditor(lObj, FoxmlUtils.managedProfile(dsId, mime, null));
@@ -461,26 +548,31 @@ public class PackageReader {
         return -1;
     }
 
-    private File toFile(FileType fileType) {
+    private File toFile(PackageFile fileType) {
         File dsFile = null;
-        List<FLocat> fLocats = fileType.getFLocat();
-        if (!fLocats.isEmpty()) {
-            FLocat fLocat = fLocats.get(0);
-            String locType = fLocat.getLOCTYPE(); // URL
-            String href = fLocat.getHref();
-            if ("URL".equals(locType) && href != null) {
-                URI dsUri = metsUri.resolve(href);
-                dsFile = new File(dsUri);
-                if (dsFile.canRead() && dsFile.isFile()) {
-                    return dsFile;
-                }
+        String locType = fileType.getLocType(); // URL
+        String href = fileType.getHref();
+        if ("URL".equals(locType) && href != null) {
+            URI dsUri = metsUri.resolve(href);
+            dsFile = new File(dsUri);
+            if (dsFile.canRead() && dsFile.isFile()) {
+                return dsFile;
             }
         }
-        throw new IllegalStateException("Invalid file: " + dsFile + ", " + toString(fileType));
+        throw new IllegalStateException("Invalid file: " + dsFile + ", " + fileType);
+    }
+
+    private PackageFile toFileType(String fileId, PackageDiv objectDiv) {
+        PackageFile fileType = fileId == null ? null : index.getFile(fileId);
+        if (fileType == null) {
+            throw new IllegalStateException(
+                    "METS: Unexpected <fptr> " + fileId + ", div@id: " + objectDiv.getId());
+        }
+        return fileType;
     }
 
-    private static String toPid(DivType div) {
-        List<String> contentIds = div.getCONTENTIDS();
+    private static String toPid(PackageDiv div) {
+        List<String> contentIds = div.getContentIds();
         if (contentIds.isEmpty()) {
             throw new IllegalStateException("Missing PID");
         } else {
@@ -488,37 +580,14 @@ public class PackageReader {
         }
     }
 
-    private String toValidDsId(FileType file) {
-        String dsId = toDsId(file);
+    private static String toValidDsId(PackageFile file) {
+        String dsId = file.getDsId();
         if (dsId == null || dsId.isEmpty()) {
-            throw new IllegalStateException("Invalid METS: " + toString(file));
+            throw new IllegalStateException("Invalid METS: " + file);
         }
         return dsId;
     }
 
-    private String toDsId(FileType file) {
-        FileSec fileSec = mets.getFileSec();
-        if (fileSec != null) {
-            for (FileGrp fileGrp : fileSec.getFileGrp()) {
-                for (FileType f : fileGrp.getFile()) {
-                    if (f == file) {
-                        return fileGrp.getID();
-                    }
-                }
-            }
-        }
-        return null;
-    }
-
-    private static StructMapType getStructMap(Mets mets, String type) {
-        for (StructMapType structMap : mets.getStructMap()) {
-            if (type.equals(structMap.getTYPE())) {
-                return structMap;
-            }
-        }
-        return new StructMapType();
-    }
-
     private static String getFoxmlFilename(int index, String pid, String model) {
         return PackageBuilder.getFilename(index,
                 PackageBuilder.getObjectId(model),
@@ -526,48 +595,143 @@ public class PackageReader {
                 "xml");
     }
 
-    private static String toString(DivType div) {
-        return div == null ? "null" : String.format("div{%s, %s, %s}", div.getID(), div.getTYPE(), div.getLabel3());
-    }
-
-    private static String toString(FLocat fLocat) {
-        return fLocat == null ? "null" : String.format("FLocat{href: %s, LOCTYPE: %s}",
-                fLocat.getHref(), fLocat.getLOCTYPE());
+    private static String toString(Item item) {
+        return item == null ? "null" : String.format("Item{%s, %s}", item.getPid(), item.getModel());
     }
 
-    private static String toString(List<FLocat> fLocats) {
+    private static String toItemString(List<Item> items) {
         StringBuilder sb = new StringBuilder();
         sb.append('[');
-        for (FLocat fLocat : fLocats) {
+        for (Item item : items) {
             if (sb.length() > 1) {
                 sb.append(", ");
             }
-            sb.append(toString(fLocat));
+            sb.append(toString(item));
         }
         sb.append(']');
         return sb.toString();
     }
 
-    private static String toString(FileType fileType) {
-        return fileType == null ? "null" : String.format("FileType{ID: %s, MIME: %s, FLocat: %s}",
-                fileType.getID(), fileType.getMIMETYPE(), toString(fileType.getFLocat()));
+    /**
+     * The object waiting for its metadata sections.
+     */
+    private static final class PendingObject {
+
+        private final String pid;
+        private final File foxml;
+        private final String divId;
+
+        PendingObject(String pid, File foxml, String divId) {
+            this.pid = pid;
+            this.foxml = foxml;
+            this.divId = divId;
+        }
+
     }
 
-    private static String toString(Item item) {
-        return item == null ? "null" : String.format("Item{%s, %s}", item.getPid(), item.getModel());
+    private interface ObjectTask {
+
+        void write() throws DigitalObjectException;
+
     }
 
-    private static String toItemString(List<Item> items) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        for (Item item : items) {
-            if (sb.length() > 1) {
-                sb.append(", ");
+    /**
+     * Writes objects with a pool of threads. Tasks of the same object
+     * are always run in the submission order by the same thread.
+     * The number of queued tasks is bounded so that the METS reader cannot
+     * get ahead of writers and fill the memory.
+     */
+    private static final class ObjectWriter {
+
+        private final ExecutorService[] lanes;
+        private final Semaphore queue;
+        private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+        ObjectWriter(int threads) {
+            if (threads > 1) {
+                lanes = new ExecutorService[threads];
+                for (int i = 0; i < threads; i++) {
+                    lanes[i] = Executors.newSingleThreadExecutor();
+                }
+                queue = new Semaphore(threads * 4);
+            } else {
+                lanes = null;
+                queue = null;
             }
-            sb.append(toString(item));
         }
-        sb.append(']');
-        return sb.toString();
+
+        public void submit(String pid, final ObjectTask task) throws DigitalObjectException, InterruptedException {
+            checkFailure();
+            if (lanes == null) {
+                task.write();
+                return ;
+            }
+            queue.acquire();
+            try {
+                lanes[(pid.hashCode() & Integer.MAX_VALUE) % lanes.length].execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        try {
+                            if (failure.get() == null) {
+                                ObjectWriter.this.run(task);
+                            }
+                        } finally {
+                            queue.release();
+                        }
+                    }
+                });
+            } catch (RuntimeException ex) {
+                queue.release();
+                throw ex;
+            }
+        }
+
+        /**
+         * Waits for all submitted tasks.
+         * @throws Exception the first failure of tasks
+         */
+        public void finish() throws DigitalObjectException, InterruptedException {
+            if (lanes != null) {
+                for (ExecutorService lane : lanes) {
+                    lane.shutdown();
+                }
+                for (ExecutorService lane : lanes) {
+                    while (!lane.awaitTermination(1, TimeUnit.MINUTES)) {
+                        // wait
+                    }
+                }
+            }
+            checkFailure();
+        }
+
+        public void close() {
+            if (lanes != null) {
+                for (ExecutorService lane : lanes) {
+                    lane.shutdownNow();
+                }
+            }
+        }
+
+        private void run(ObjectTask task) {
+            try {
+                task.write();
+            } catch (Exception ex) {
+                failure.compareAndSet(null, ex);
+            }
+        }
+
+        private void checkFailure() throws DigitalObjectException {
+            Exception ex = failure.get();
+            if (ex instanceof DigitalObjectException) {
+                throw (DigitalObjectException) ex;
+            } else if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            } else if (ex != null) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
     }
 
     static class ImportSession {
@@ -682,7 +846,7 @@ public class PackageReader {
             }
         }
 
-        public String resolveUsername(String externalName) {
+        public synchronized String resolveUsername(String externalName) {
             String cache = external2internalUserMap.get(externalName);
             if (cache == null) {
                 UserProfile up = externalName == null ? null : UserUtil.getDefaultManger().find(externalName);
@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.common.export.cejsh;
 
 import cz.cas.lib.proarc.common.export.ExportUtils;
+import cz.cas.lib.proarc.common.export.ZipPackageWriter;
 import cz.cas.lib.proarc.common.export.mets.ValidationErrorHandler;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
@@ -67,10 +68,6 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.model.ZipParameters;
-import net.lingala.zip4j.util.Zip4jConstants;
 import org.apache.commons.io.Charsets;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Document;
@@ -273,35 +270,14 @@ class CejshBuilder {
         return packageFolder;
     }
 
-    void writeZip(File pkgFile, File packageFolder) throws ZipException {
-        ZipFile zipFile = new ZipFile(pkgFile);
-        ZipParameters zipParameters = new ZipParameters();
-        zipParameters.setEncryptionMethod(Zip4jConstants.ENC_METHOD_STANDARD);
-        zipParameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-        zipParameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
-        zipParameters.setIncludeRootFolder(false);
-        zipParameters.setDefaultFolderPath(packageFolder.getAbsolutePath());
-        zipFile.addFiles(listZipFiles(packageFolder), zipParameters);
-    }
-
-    /**
-     * Lists all files that should be part of a zip. Folder entries are not part of the list.
-     * See issue #413.
-     * @param folder a folder to scan
-     * @return the list of files
-     */
-    private static ArrayList<File> listZipFiles(File folder) {
-        ArrayList<File> files = new ArrayList<File>();
-        ArrayList<File> subfiles = new ArrayList<File>();
-        for (File file : folder.listFiles()) {
-            if (file.isFile()) {
-                files.add(file);
-            } else if (file.isDirectory()) {
-                subfiles.addAll(listZipFiles(file));
-            }
+    void writeZip(File pkgFile, File packageFolder) throws IOException {
+        ZipPackageWriter zip = new ZipPackageWriter(pkgFile);
+        try {
+            zip.addFolder(packageFolder);
+            zip.finish();
+        } finally {
+            zip.close();
         }
-        files.addAll(subfiles);
-        return files;
     }
 
     File writeZip(File packageFolder, CejshStatusHandler status, DigitalObjectElement packageElm) {
@@ -310,7 +286,7 @@ class CejshBuilder {
         try {
             writeZip(pkgFile, packageFolder);
             return pkgFile;
-        } catch (ZipException ex) {
+        } catch (IOException ex) {
             status.error(packageElm, "Zipping error!", pkgFile.getPath(), ex);
             return null;
         }
@@ -20,13 +20,10 @@ package cz.cas.lib.proarc.common.export.desa.structure;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,11 +33,6 @@ import java.util.logging.Logger;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.model.ZipParameters;
-import net.lingala.zip4j.util.Zip4jConstants;
-
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -49,6 +41,7 @@ import com.yourmediashelf.fedora.client.FedoraClientException;
 import com.yourmediashelf.fedora.client.request.GetDatastreamDissemination;
 import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
 
+import cz.cas.lib.proarc.common.export.ZipPackageWriter;
 import cz.cas.lib.proarc.common.export.desa.Const;
 import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
 import cz.cas.lib.proarc.common.export.mets.MetsExportException;
@@ -84,31 +77,34 @@ public class DesaElementVisitor implements IDesaElementVisitor {
     private int tmpFolderCount = 0;
 
     /**
-     * Archives the list of files to a zip archive
+     * Opens a zip archive of the element
      *
      * @param zipFileName
-     * @param fileList
      * @param desaElement
      * @throws MetsExportException
      */
-    private void zip(String zipFileName, ArrayList<File> fileList, IDesaElement desaElement) throws MetsExportException {
+    private ZipPackageWriter openZip(String zipFileName, IDesaElement desaElement) throws MetsExportException {
         try {
-            File file = new File(zipFileName);
-            if (file.exists()) {
-                file.delete();
-                file = null;
-                LOG.log(Level.FINE, "File:" + zipFileName + " exists, so it was deleted");
-            }
-            ZipFile zipFile = new ZipFile(zipFileName);
-            ZipParameters zip4jZipParameters = new ZipParameters();
-            zip4jZipParameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-            zip4jZipParameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
-            zipFile.addFiles(fileList, zip4jZipParameters);
-            LOG.log(Level.FINE, "Zip archive created:" + zipFileName + " for " + desaElement.getElementType());
-        } catch (ZipException e) {
+            return new ZipPackageWriter(new File(zipFileName));
+        } catch (IOException e) {
             throw new MetsExportException(desaElement.getOriginalPid(), "Unable to create a zip file:" + zipFileName, false, e);
         }
+    }
 
+    /**
+     * Writes the zip archive and its checksum
+     *
+     * @param zip
+     * @param desaElement
+     * @throws MetsExportException
+     */
+    private void finishZip(ZipPackageWriter zip, IDesaElement desaElement) throws MetsExportException {
+        try {
+            zip.finish();
+            LOG.log(Level.FINE, "Zip archive created:" + zip.getZipFile() + " for " + desaElement.getElementType());
+        } catch (IOException e) {
+            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to create a zip file:" + zip.getZipFile(), false, e);
+        }
     }
 
     /**
@@ -125,7 +121,7 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             Document dcDoc = MetsUtils.getDocumentFromList(desaElement.getDescriptor());
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResourceAsStream("dc_oai.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResource("dc_oai.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException(desaElement.getOriginalPid(), "Error while validating DC document in BIBLIO_MODS for:" + desaElement.getOriginalPid() + "(" + desaElement.getElementType() + ")", false, ex);
             }
@@ -144,7 +140,7 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             Document nsessDoc = MetsUtils.getDocumentFromList(desaElement.getDescriptor());
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(nsessDoc, Spis.class.getResourceAsStream("nsesss2.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(nsessDoc, Spis.class.getResource("nsesss2.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException(desaElement.getOriginalPid(), "Error while validating NSESSS document in BIBLIO_MODS for:" + desaElement.getOriginalPid() + "(" + desaElement.getElementType() + ")", false, ex);
             }
@@ -273,7 +269,7 @@ public class DesaElementVisitor implements IDesaElementVisitor {
         }
         List<String> validationErrors;
         try {
-            validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResourceAsStream("mets.xsd"));
+            validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResource("mets.xsd"));
         } catch (Exception ex) {
             throw new MetsExportException("Error while validating Mets file: " + outputFile, false, ex);
         }
@@ -358,6 +354,9 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             suffix = "0001";
         }
         File tmpFolder = createTempFolder(desaElement);
+        desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement) + "_" + suffix));
+        String zipFileName = desaElement.getDesaContext().getOutputPath() + File.separator + desaElement.getZipName() + ".zip";
+        ZipPackageWriter zip = openZip(zipFileName, desaElement);
         try {
             File outputMets = new File(tmpFolder.getAbsolutePath() + File.separator + "mets.xml");
             Mets mets = prepareMets(desaElement);
@@ -365,7 +364,6 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             divType.setLabel(getLabel(desaElement));
             divType.setTYPE("record");
             divType.getDMDID().add(mets.getDmdSec().get(0));
-            ArrayList<File> fileList = new ArrayList<File>();
             StructMapType structMapType = mets.getStructMap().get(0);
             structMapType.setDiv(divType);
 
@@ -411,7 +409,6 @@ public class DesaElementVisitor implements IDesaElementVisitor {
                         desaElement.getDesaContext().getMetsExportException().addException(fileElement.getOriginalPid(), "RAW datastream is missing", false, null);
                         continue;
                     }
-                    FileOutputStream fos;
                     String outputFileName = MetsUtils.removeNonAlpabetChars(getFileName(fileElement));
                     /*
                      * Generates a filename if it's not provided from the
@@ -421,17 +418,11 @@ public class DesaElementVisitor implements IDesaElementVisitor {
                         outputFileName = "file_" + String.format("%04d", fileOrder) + "." + MetsUtils.getMimeToExtension().getProperty(mimeType);
                         LOG.log(Level.INFO, "importFile name was not specified for:" + fileElement.getOriginalPid() + " new name was generated:" + outputFileName);
                     }
-                    String fullOutputFileName = tmpFolder.getAbsolutePath() + File.separator + outputFileName;
-                    try {
-                        File outputFile = new File(fullOutputFileName);
-                        fos = new FileOutputStream(outputFile);
-                        fileList.add(outputFile);
-                    } catch (FileNotFoundException e) {
-                        throw new MetsExportException(fileElement.getOriginalPid(), "Unable to create a temp file:" + fullOutputFileName, false, e);
-                    }
+                    // the content goes straight to the zip, no temp file
                     FileMD5Info fileMd5Info;
                     try {
-                        fileMd5Info = MetsUtils.getDigestAndCopy(new ByteArrayInputStream(fileContent), fos);
+                        fileMd5Info = MetsUtils.getDigest(new ByteArrayInputStream(fileContent));
+                        zip.addBytes(outputFileName, fileContent);
                     } catch (NoSuchAlgorithmException e) {
                         throw new MetsExportException(fileElement.getOriginalPid(), "Unable to generate MD5 digest", false, e);
                     } catch (IOException e) {
@@ -454,11 +445,14 @@ public class DesaElementVisitor implements IDesaElementVisitor {
                 addFileGrpToMets(fileGrpMap, fileSec);
             }
             saveMets(mets, outputMets, desaElement);
-            fileList.add(outputMets);
-            desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement) + "_" + suffix));
-            String zipFileName = desaElement.getDesaContext().getOutputPath() + File.separator + desaElement.getZipName() + ".zip";
-            zip(zipFileName, fileList, desaElement);
+            try {
+                zip.addFile(outputMets.getName(), outputMets);
+            } catch (IOException e) {
+                throw new MetsExportException(desaElement.getOriginalPid(), "Unable to save file", false, e);
+            }
+            finishZip(zip, desaElement);
         } finally {
+            zip.close();
             MetsUtils.deleteFolder(tmpFolder);
         }
         LOG.fine("Document successfuly exported");
@@ -504,9 +498,15 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             saveMets(mets, outputMets, desaElement);
             desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement)) + "_FILE");
             String zipFileName = desaElement.getDesaContext().getOutputPath() + File.separator + desaElement.getZipName() + ".zip";
-            ArrayList<File> fileList = new ArrayList<File>();
-            fileList.add(outputMets);
-            zip(zipFileName, fileList, desaElement);
+            ZipPackageWriter zip = openZip(zipFileName, desaElement);
+            try {
+                zip.addFile(outputMets.getName(), outputMets);
+                finishZip(zip, desaElement);
+            } catch (IOException e) {
+                throw new MetsExportException(desaElement.getOriginalPid(), "Unable to save file", false, e);
+            } finally {
+                zip.close();
+            }
         } finally {
             MetsUtils.deleteFolder(tmpFolder);
         }
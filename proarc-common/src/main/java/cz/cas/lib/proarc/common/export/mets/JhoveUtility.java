@@ -44,6 +44,8 @@ import cz.cas.lib.proarc.common.export.mets.structure.IMetsElement;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.MixEditor;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
 import cz.cas.lib.proarc.mix.BasicDigitalObjectInformationType.Compression;
 import cz.cas.lib.proarc.mix.BasicDigitalObjectInformationType.ObjectIdentifier;
 import cz.cas.lib.proarc.mix.BasicImageInformationType;
@@ -346,7 +348,15 @@ public class JhoveUtility {
             OutputHandler aboutHandler = jhoveBase.getHandler(null);
             OutputHandler xmlHandler = jhoveBase.getHandler("XML");
             LOG.log(Level.FINE, "Calling JHOVE dispatch(...) on file " + sourceFile);
-            jhoveBase.dispatch(jhoveContext.getJhoveApp(), module, aboutHandler, xmlHandler, outputFile.getAbsolutePath(), new String[] { sourceFile.getAbsolutePath() });
+            Timer.Sample sample = Metrics.getInstance().timer("jhove").start();
+            try {
+                jhoveBase.dispatch(jhoveContext.getJhoveApp(), module, aboutHandler, xmlHandler, outputFile.getAbsolutePath(), new String[] { sourceFile.getAbsolutePath() });
+            } catch (Throwable ex) {
+                sample.failed();
+                throw ex;
+            } finally {
+                sample.stop();
+            }
             DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
             builderFactory.setNamespaceAware(true);
             DocumentBuilder builder = builderFactory.newDocumentBuilder();
@@ -25,9 +25,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
@@ -39,6 +41,7 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
 import javax.xml.XMLConstants;
+import javax.xml.bind.DataBindingException;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
@@ -50,6 +53,7 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
@@ -58,6 +62,7 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -79,6 +84,8 @@ import com.yourmediashelf.fedora.generated.foxml.XmlContentType;
 
 import cz.cas.lib.proarc.common.export.mets.structure.IMetsElement;
 import cz.cas.lib.proarc.common.export.mets.structure.MetsElement;
+import cz.cas.lib.proarc.common.fedora.BufferPool;
+import cz.cas.lib.proarc.common.fedora.FoxmlReader;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
@@ -102,6 +109,7 @@ public class MetsUtils {
 
     private static Logger LOG = Logger.getLogger(MetsUtils.class.getName());
     private static Properties mimeToExtension = new Properties();
+    private static final List<String> RELS_EXT_ONLY = Collections.singletonList("RELS-EXT");
 
     /**
      * Retuns an XMLGregorianCalendar representation of current date
@@ -153,9 +161,9 @@ public class MetsUtils {
 
                 DigitalObject object = null;
                 if (ctx.getFedoraClient() != null) {
-                    object = MetsUtils.readRelatedFoXML(fileName, ctx.getFedoraClient());
+                    object = MetsUtils.readRelsExt(fileName, ctx.getFedoraClient());
                 } else {
-                    object = MetsUtils.readRelatedFoXML(ctx.getPath(), fileName);
+                    object = MetsUtils.readRelsExt(ctx.getPath() + fileName.substring(fileName.lastIndexOf(":") + 1) + ".xml");
                 }
                 relsExt = FoxmlUtils.findDatastream(object, "RELS-EXT").getDatastreamVersion().get(0).getXmlContent().getAny();
                 String model = MetsUtils.getModel(relsExt);
@@ -178,9 +186,9 @@ public class MetsUtils {
         List<String> result = new ArrayList<String>();
         DigitalObject dObj;
         if (ctx.getFedoraClient() != null) {
-            dObj = readFoXML(pid, ctx.getFedoraClient());
+            dObj = readRelsExt(pid, ctx.getFedoraClient());
         } else {
-            dObj = readFoXML(ctx.getPath() + File.separator + pid + ".xml");
+            dObj = readRelsExt(ctx.getPath() + File.separator + pid + ".xml");
         }
         // List<Element> relsExt = FoxmlUtils.findDatastream(dObj,
         // "RELS-EXT").getDatastreamVersion().get(0).getXmlContent().getAny();
@@ -206,9 +214,9 @@ public class MetsUtils {
 
         while (parentId != null) {
             if (ctx.getFedoraClient() != null) {
-                parentdbObj = readFoXML(parentId, ctx.getFedoraClient());
+                parentdbObj = readRelsExt(parentId, ctx.getFedoraClient());
             } else {
-                parentdbObj = readFoXML(ctx.getPath() + File.separator + parentId + ".xml");
+                parentdbObj = readRelsExt(ctx.getPath() + File.separator + parentId + ".xml");
             }
             parentRels = FoxmlUtils.findDatastream(parentdbObj, "RELS-EXT").getDatastreamVersion().get(0).getXmlContent().getAny();
             parentModel = MetsUtils.getModel(parentRels);
@@ -231,9 +239,9 @@ public class MetsUtils {
                     if (parentId != null) {
                         DigitalObject parentdbObjSupp;
                         if (ctx.getFedoraClient() != null) {
-                            parentdbObjSupp = readFoXML(parentId, ctx.getFedoraClient());
+                            parentdbObjSupp = readRelsExt(parentId, ctx.getFedoraClient());
                         } else {
-                            parentdbObjSupp = readFoXML(ctx.getPath() + File.separator + parentId + ".xml");
+                            parentdbObjSupp = readRelsExt(ctx.getPath() + File.separator + parentId + ".xml");
                         }
                         List<Element> parentRelsSupp = FoxmlUtils.findDatastream(parentdbObjSupp, "RELS-EXT").getDatastreamVersion().get(0).getXmlContent().getAny();
                         String parentTypeSupp = Const.typeMap.get(MetsUtils.getModel(parentRelsSupp));
@@ -547,11 +555,7 @@ public class MetsUtils {
      * @throws IOException
      */
     public static void copyStream(InputStream is, OutputStream os) throws IOException {
-        byte[] buffer = new byte[1024];
-        int len;
-        while ((len = is.read(buffer)) != -1) {
-            os.write(buffer, 0, len);
-        }
+        BufferPool.copy(is, os);
         is.close();
     }
 
@@ -721,28 +725,48 @@ public class MetsUtils {
      * @param document
      * @param xsd
      * @return
+     * @deprecated the schema is compiled on each call; use {@link #validateAgainstXSD(Document, URL)}
      */
+    @Deprecated
     public static List<String> validateAgainstXSD(Document document, InputStream xsd) throws Exception {
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         factory.setResourceResolver(MetsLSResolver.getInstance());
         Schema schema = factory.newSchema(new StreamSource(xsd));
+        ValidationErrorHandler errorHandler = new ValidationErrorHandler();
+        Validator validator = schema.newValidator();
+        validator.setErrorHandler(errorHandler);
+        validator.validate(getValidationSource(document));
+        return errorHandler.getValidationErrors();
+    }
+
+    /**
+     *
+     * Validates given document against an XSD schema. The schema is compiled
+     * once and cached, see {@link SchemaRegistry}.
+     *
+     * @param document
+     * @param xsd the schema resource, e.g. {@code Mets.class.getResource("mets.xsd")}
+     * @return the list of validation errors
+     */
+    public static List<String> validateAgainstXSD(Document document, URL xsd) throws Exception {
+        return SchemaRegistry.getInstance().validate(xsd, getValidationSource(document));
+    }
+
+    /**
+     * Gets the source to validate. A namespace aware DOM is validated in place.
+     * Other documents have to be serialized first as the validator requires
+     * namespace aware nodes.
+     */
+    private static Source getValidationSource(Document document) throws TransformerException {
+        Element root = document.getDocumentElement();
+        if (root != null && root.getLocalName() != null) {
+            return new DOMSource(document);
+        }
         TransformerFactory tFactory = TransformerFactory.newInstance();
         Transformer transformer = tFactory.newTransformer();
-        DOMSource domSource = new DOMSource(document);
-        StreamResult sResult = new StreamResult();
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        sResult.setOutputStream(bos);
-        transformer.transform(domSource, sResult);
-        InputStream is = new ByteArrayInputStream(bos.toByteArray());
-        DocumentBuilderFactory dbfactory = DocumentBuilderFactory.newInstance();
-        dbfactory.setValidating(false);
-        dbfactory.setNamespaceAware(true);
-        dbfactory.setSchema(schema);
-        DocumentBuilder documentBuilder = dbfactory.newDocumentBuilder();
-        ValidationErrorHandler errorHandler = new ValidationErrorHandler();
-        documentBuilder.setErrorHandler(errorHandler);
-        documentBuilder.parse(is);
-        return errorHandler.getValidationErrors();
+        transformer.transform(new DOMSource(document), new StreamResult(bos));
+        return new StreamSource(new ByteArrayInputStream(bos.toByteArray()));
     }
 
     /**
@@ -752,22 +776,33 @@ public class MetsUtils {
      * @param file
      * @param xsd
      * @return
+     * @deprecated the schema is compiled on each call; use {@link #validateAgainstXSD(File, URL)}
      */
+    @Deprecated
     public static List<String> validateAgainstXSD(File file, InputStream xsd) throws Exception {
         SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
         factory.setResourceResolver(MetsLSResolver.getInstance());
         Schema schema = factory.newSchema(new StreamSource(xsd));
-        DocumentBuilderFactory dbfactory = DocumentBuilderFactory.newInstance();
-        dbfactory.setValidating(false);
-        dbfactory.setNamespaceAware(true);
-        dbfactory.setSchema(schema);
-        DocumentBuilder documentBuilder = dbfactory.newDocumentBuilder();
         ValidationErrorHandler errorHandler = new ValidationErrorHandler();
-        documentBuilder.setErrorHandler(errorHandler);
-        documentBuilder.parse(file);
+        Validator validator = schema.newValidator();
+        validator.setErrorHandler(errorHandler);
+        validator.validate(new StreamSource(file));
         return errorHandler.getValidationErrors();
     }
 
+    /**
+     *
+     * Validates given XML file against an XSD schema. The file is streamed
+     * to the cached schema without building a DOM.
+     *
+     * @param file
+     * @param xsd the schema resource, e.g. {@code Mets.class.getResource("mets.xsd")}
+     * @return the list of validation errors
+     */
+    public static List<String> validateAgainstXSD(File file, URL xsd) throws Exception {
+        return SchemaRegistry.getInstance().validate(xsd, new StreamSource(file));
+    }
+
     /**
      *
      * Indicates if the "has..." is used for defining children
@@ -909,7 +944,7 @@ public class MetsUtils {
             // SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
             // factory.setResourceResolver(MetsLSResolver.getInstance());
             // Schema schema = factory.newSchema(new
-            // StreamSource(Info.class.getResourceAsStream("info.xsd")));
+            // StreamSource(Info.class.getResource("info.xsd")));
             // marshaller.setSchema(schema);
                 marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
                 marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
@@ -920,7 +955,7 @@ public class MetsUtils {
 
         List<String> validationErrors;
         try {
-            validationErrors = MetsUtils.validateAgainstXSD(infoFile, Info.class.getResourceAsStream("info.xsd"));
+            validationErrors = MetsUtils.validateAgainstXSD(infoFile, Info.class.getResource("info.xsd"));
         } catch (Exception e) {
             throw new MetsExportException("Error while validating info.xml", false, e);
         }
@@ -949,6 +984,45 @@ public class MetsUtils {
         return ID.substring(ID.indexOf("/") + 1);
     }
 
+    /**
+     * Reads just RELS-EXT of the digital object to traverse the hierarchy.
+     * It skips other datastreams like inline OCR.
+     *
+     * @param path
+     * @return the partial object
+     */
+    public static DigitalObject readRelsExt(String path) throws MetsExportException {
+        try {
+            return FoxmlReader.read(new File(path), RELS_EXT_ONLY);
+        } catch (DataBindingException e) {
+            throw new MetsExportException("Unable to read FoXML document " + path, false, e);
+        }
+    }
+
+    /**
+     * Reads just RELS-EXT of the digital object from Fedora.
+     *
+     * @param uuid
+     * @param client
+     * @return the partial object
+     */
+    public static DigitalObject readRelsExt(String uuid, FedoraClient client) throws MetsExportException {
+        if (uuid.startsWith("info:fedora/")) {
+            uuid = uuid.substring(uuid.indexOf("/") + 1);
+        }
+        try {
+            FedoraResponse response = FedoraClient.getObjectXML(uuid).execute(client);
+            InputStream input = response.getEntityInputStream();
+            try {
+                return FoxmlReader.read(input, RELS_EXT_ONLY);
+            } finally {
+                input.close();
+            }
+        } catch (Exception e) {
+            throw new MetsExportException("Unable to get " + uuid + " from Fedora", false, e);
+        }
+    }
+
     /**
      *
      * Reads referenced object from Fedora
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
+import org.xml.sax.SAXException;
+
+/**
+ * The thread safe registry of compiled XML schemas. Each schema is compiled
+ * once with {@link MetsLSResolver} and shared. Validators are not thread safe
+ * so that they are pooled per schema and reused.
+ *
+ * @author Jan Pokorsky
+ */
+public final class SchemaRegistry {
+
+    /** The number of idle validators kept per schema. */
+    static final int MAX_IDLE_VALIDATORS = 16;
+
+    private static final SchemaRegistry INSTANCE = new SchemaRegistry();
+
+    private final ConcurrentMap<String, SchemaEntry> schemas = new ConcurrentHashMap<String, SchemaEntry>();
+
+    public static SchemaRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the compiled schema.
+     * @param xsd the schema location, usually a class path resource
+     * @return the schema
+     * @throws SAXException invalid schema
+     */
+    public Schema getSchema(URL xsd) throws SAXException {
+        return getEntry(xsd).schema;
+    }
+
+    /**
+     * Validates the source against the schema.
+     * @param xsd the schema location
+     * @param source a DOM, JAXB or stream source
+     * @return the list of validation errors; empty for the valid source
+     * @throws SAXException invalid schema or a fatal error of the source
+     * @throws IOException failed to read the source
+     */
+    public List<String> validate(URL xsd, Source source) throws SAXException, IOException {
+        SchemaEntry entry = getEntry(xsd);
+        ValidationErrorHandler errorHandler = new ValidationErrorHandler();
+        Validator validator = entry.borrow();
+        try {
+            validator.setErrorHandler(errorHandler);
+            validator.validate(source);
+        } finally {
+            validator.setErrorHandler(null);
+            entry.release(validator);
+        }
+        return errorHandler.getValidationErrors();
+    }
+
+    private SchemaEntry getEntry(URL xsd) throws SAXException {
+        if (xsd == null) {
+            throw new NullPointerException("xsd");
+        }
+        String key = xsd.toExternalForm();
+        SchemaEntry entry = schemas.get(key);
+        if (entry == null) {
+            // compile outside of the map to not block other schemas; the loser is dropped
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            factory.setResourceResolver(MetsLSResolver.getInstance());
+            SchemaEntry newEntry = new SchemaEntry(factory.newSchema(xsd));
+            entry = schemas.putIfAbsent(key, newEntry);
+            entry = entry != null ? entry : newEntry;
+        }
+        return entry;
+    }
+
+    private static final class SchemaEntry {
+
+        private final Schema schema;
+        private final Queue<Validator> idle = new ConcurrentLinkedQueue<Validator>();
+        private final AtomicInteger idleSize = new AtomicInteger();
+
+        SchemaEntry(Schema schema) {
+            this.schema = schema;
+        }
+
+        Validator borrow() {
+            Validator validator = idle.poll();
+            if (validator == null) {
+                return schema.newValidator();
+            }
+            idleSize.decrementAndGet();
+            return validator;
+        }
+
+        void release(Validator validator) {
+            if (idleSize.incrementAndGet() <= MAX_IDLE_VALIDATORS) {
+                validator.reset();
+                idle.offer(validator);
+            } else {
+                idleSize.decrementAndGet();
+            }
+        }
+    }
+
+}
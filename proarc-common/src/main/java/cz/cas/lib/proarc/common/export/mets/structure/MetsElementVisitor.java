@@ -287,7 +287,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             }
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResourceAsStream("mets.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResource("mets.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException("Error while validation document:" + outputFile, false, ex);
             }
@@ -1190,7 +1190,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             fileNames.put("TECHMDGRP", byteArray);
             mimeTypes.put("TECHMDGRP", "text/xml");
             Document document = MetsUtils.getDocumentFromBytes(byteArray);
-            MetsUtils.validateAgainstXSD(document, Mets.class.getResourceAsStream("mets.xsd"));
+            MetsUtils.validateAgainstXSD(document, Mets.class.getResource("mets.xsd"));
         } catch (Exception ex) {
             throw new MetsExportException(metsElement.getOriginalPid(), "Error while saving AMDSec file", false, ex);
         }
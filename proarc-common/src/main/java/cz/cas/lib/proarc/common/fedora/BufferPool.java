@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.metrics.Counter;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The shared pool of transfer buffers to copy datastream contents.
+ * Buffers are reused by all threads so that copying large contents
+ * does not allocate a buffer per call.
+ *
+ * <p>Contents are passed through stream APIs of the Fedora client,
+ * JAXB and files; these require heap arrays.
+ *
+ * @author Jan Pokorsky
+ */
+public final class BufferPool {
+
+    /** The size of a transfer buffer in bytes. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_POOLED = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final BlockingQueue<byte[]> POOL = new ArrayBlockingQueue<byte[]>(MAX_POOLED);
+    private static final Counter HITS = Metrics.getInstance().counter("fedora.buffer.pool.hit");
+    private static final Counter MISSES = Metrics.getInstance().counter("fedora.buffer.pool.miss");
+
+    private BufferPool() {
+    }
+
+    /**
+     * Gets a buffer of {@link #BUFFER_SIZE} bytes.
+     * It should be returned with {@link #release}.
+     */
+    public static byte[] acquire() {
+        byte[] buffer = POOL.poll();
+        if (buffer == null) {
+            MISSES.inc();
+            return new byte[BUFFER_SIZE];
+        }
+        HITS.inc();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. Surplus buffers are left to the GC.
+     */
+    public static void release(byte[] buffer) {
+        if (buffer != null && buffer.length == BUFFER_SIZE) {
+            POOL.offer(buffer);
+        }
+    }
+
+    /**
+     * Copies the stream with a pooled buffer. Streams are not closed.
+     * @return the number of copied bytes
+     * @throws IOException failure
+     */
+    public static long copy(InputStream is, OutputStream os) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            long count = 0;
+            for (int length; (length = is.read(buffer)) != -1; ) {
+                os.write(buffer, 0, length);
+                count += length;
+            }
+            return count;
+        } finally {
+            release(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.metrics.Counter;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds datastream contents to be read later, e.g. contents written
+ * to a remote editor before its flush. Contents up to the threshold stay
+ * in the heap, larger contents are spilled to a temporary file so that
+ * big RAW or JP2 streams do not occupy the heap.
+ *
+ * <p>The buffer should be {@link #dispose disposed}. A spill file
+ * of a buffer left to the GC is deleted with the next spill.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ContentBuffer extends OutputStream {
+
+    /** The default size of contents kept in the heap. */
+    public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+    private static final ReferenceQueue<ContentBuffer> GARBAGE = new ReferenceQueue<ContentBuffer>();
+    private static final Set<SpillReference> SPILLS = Collections.newSetFromMap(
+            new ConcurrentHashMap<SpillReference, Boolean>());
+    private static final Counter SPILL_COUNT = Metrics.getInstance().counter("fedora.buffer.spill.count");
+    private static final Counter SPILL_BYTES = Metrics.getInstance().counter("fedora.buffer.spill.bytes");
+
+    private final int threshold;
+    private byte[] memory = new byte[2048];
+    private long size;
+    private SpillReference spill;
+    private OutputStream spillStream;
+    private boolean closed;
+    private boolean disposed;
+
+    public ContentBuffer() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold the number of bytes kept in the heap
+     */
+    public ContentBuffer(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Reads the stream to a new buffer.
+     * @param is contents; it is not closed
+     * @return the closed buffer
+     * @throws IOException failure
+     */
+    public static ContentBuffer from(InputStream is) throws IOException {
+        ContentBuffer buffer = new ContentBuffer();
+        try {
+            BufferPool.copy(is, buffer);
+            buffer.close();
+            return buffer;
+        } catch (IOException ex) {
+            buffer.dispose();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Closed buffer");
+        }
+        if (spill == null && size + len > threshold) {
+            spill();
+        }
+        if (spill != null) {
+            spillStream.write(b, off, len);
+        } else {
+            int count = (int) size;
+            if (count + len > memory.length) {
+                memory = Arrays.copyOf(memory, Math.min(threshold, Math.max(memory.length * 2, count + len)));
+            }
+            System.arraycopy(b, off, memory, count, len);
+        }
+        size += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return ;
+        }
+        closed = true;
+        if (spillStream != null) {
+            spillStream.close();
+            SPILL_BYTES.add(size);
+        }
+    }
+
+    /**
+     * Gets the number of buffered bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Checks whether contents are spilled to a file.
+     */
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * Reads buffered contents. It can be called repeatedly.
+     * @return the stream to close
+     * @throws IOException failure
+     */
+    public InputStream asInputStream() throws IOException {
+        checkClosed();
+        if (spill != null) {
+            return new FileInputStream(spill.file);
+        }
+        return new ByteArrayInputStream(memory, 0, (int) size);
+    }
+
+    /**
+     * Gets buffered contents as an array.
+     */
+    public byte[] toByteArray() throws IOException {
+        checkClosed();
+        if (spill != null) {
+            return Files.readAllBytes(spill.file.toPath());
+        }
+        return Arrays.copyOf(memory, (int) size);
+    }
+
+    /**
+     * Releases contents. The buffer cannot be read anymore.
+     */
+    public void dispose() {
+        closed = true;
+        disposed = true;
+        memory = null;
+        if (spill != null) {
+            FoxmlUtils.closeQuietly(spillStream, spill.file.toString());
+            SPILLS.remove(spill);
+            spill.file.delete();
+            spill.clear();
+        }
+    }
+
+    private void checkClosed() {
+        if (!closed || disposed) {
+            throw new IllegalStateException("The buffer is not closed or it is disposed.");
+        }
+    }
+
+    private void spill() throws IOException {
+        expunge();
+        File file = File.createTempFile("proarc-", ".buf");
+        spillStream = new FileOutputStream(file);
+        spill = new SpillReference(this, file);
+        SPILLS.add(spill);
+        spillStream.write(memory, 0, (int) size);
+        memory = null;
+        SPILL_COUNT.inc();
+    }
+
+    /**
+     * Deletes spill files of buffers collected without {@link #dispose}.
+     */
+    private static void expunge() {
+        for (Reference<? extends ContentBuffer> ref; (ref = GARBAGE.poll()) != null;) {
+            SpillReference spill = (SpillReference) ref;
+            SPILLS.remove(spill);
+            spill.file.delete();
+        }
+    }
+
+    private static final class SpillReference extends PhantomReference<ContentBuffer> {
+
+        private final File file;
+
+        SpillReference(ContentBuffer buffer, File file) {
+            super(buffer, GARBAGE);
+            this.file = file;
+        }
+
+    }
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import cz.cas.lib.proarc.common.metrics.Counter;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects statistics of HTTP requests sent to Fedora. Requests are grouped
+ * by the HTTP method and the type of the endpoint (object, datastream, content, risearch, ...).
+ * Each group is published in the {@link Metrics} registry as the timer
+ * {@code fedora.request.<method>.<type>} measuring the time to receive
+ * the response headers and counters of transferred bytes
+ * {@code fedora.request.<method>.<type>.received} and {@code .sent}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class FedoraClientMetrics {
+
+    private static final String PREFIX = "fedora.request";
+
+    private final Metrics registry;
+    private final ConcurrentMap<String, EndpointStats> endpoints = new ConcurrentHashMap<String, EndpointStats>();
+
+    public FedoraClientMetrics() {
+        this(Metrics.getInstance());
+    }
+
+    public FedoraClientMetrics(Metrics registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Creates a filter collecting statistics of requests. Filters are chained
+     * per resource so that each resource needs its own instance.
+     * @return the filter
+     */
+    public ClientFilter createFilter() {
+        return new ClientFilter() {
+
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                EndpointStats stats = getStats(cr.getMethod(), getEndpointType(cr.getURI().getPath()));
+                stats.bytesOut.add(getRequestLength(cr));
+                Timer.Sample sample = stats.timer.start();
+                try {
+                    ClientResponse response = getNext().handle(cr);
+                    if (response.getStatus() >= 400) {
+                        sample.failed();
+                    }
+                    InputStream entity = response.getEntityInputStream();
+                    if (entity != null) {
+                        response.setEntityInputStream(new CountingInputStream(entity, stats.bytesIn));
+                    }
+                    return response;
+                } catch (RuntimeException ex) {
+                    sample.failed();
+                    throw ex;
+                } finally {
+                    sample.stop();
+                }
+            }
+        };
+    }
+
+    /**
+     * Gets statistics of endpoints requested by this client sorted by the key.
+     * @return the map of {@code "METHOD type"} to statistics
+     */
+    public Map<String, EndpointStats> getEndpoints() {
+        return new TreeMap<String, EndpointStats>(endpoints);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, EndpointStats> entry : getEndpoints().entrySet()) {
+            sb.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private EndpointStats getStats(String method, String type) {
+        String key = method + ' ' + type;
+        EndpointStats stats = endpoints.get(key);
+        if (stats == null) {
+            String name = PREFIX + '.' + method.toLowerCase(Locale.ENGLISH) + '.' + type;
+            stats = new EndpointStats(registry.timer(name),
+                    registry.counter(name + ".received"), registry.counter(name + ".sent"));
+            EndpointStats old = endpoints.putIfAbsent(key, stats);
+            stats = old != null ? old : stats;
+        }
+        return stats;
+    }
+
+    /**
+     * Classifies the request path of the Fedora REST API.
+     */
+    static String getEndpointType(String path) {
+        if (path == null) {
+            return "other";
+        }
+        if (path.endsWith("/risearch")) {
+            return "risearch";
+        }
+        int objectsIdx = path.indexOf("/objects");
+        if (objectsIdx < 0) {
+            return "other";
+        }
+        String objectPath = path.substring(objectsIdx + "/objects".length());
+        if (objectPath.isEmpty() || "/".equals(objectPath) || "/nextPID".equals(objectPath)) {
+            return "objects";
+        }
+        int dsIdx = objectPath.indexOf("/datastreams");
+        if (dsIdx >= 0) {
+            return objectPath.endsWith("/content") ? "content" : "datastream";
+        }
+        if (objectPath.endsWith("/objectXML") || objectPath.endsWith("/export")) {
+            return "objectXML";
+        }
+        if (objectPath.contains("/relationships")) {
+            return "relationships";
+        }
+        return "object";
+    }
+
+    private static long getRequestLength(ClientRequest cr) {
+        Object contentLength = cr.getHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.toString());
+            } catch (NumberFormatException ex) {
+                return 0;
+            }
+        }
+        Object entity = cr.getEntity();
+        if (entity instanceof File) {
+            return ((File) entity).length();
+        } else if (entity instanceof byte[]) {
+            return ((byte[]) entity).length;
+        } else if (entity instanceof String) {
+            return ((String) entity).length();
+        }
+        return 0;
+    }
+
+    /**
+     * Metrics of a single endpoint type.
+     */
+    public static final class EndpointStats {
+
+        private final Timer timer;
+        private final Counter bytesIn;
+        private final Counter bytesOut;
+
+        EndpointStats(Timer timer, Counter bytesIn, Counter bytesOut) {
+            this.timer = timer;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+        }
+
+        /**
+         * Gets latencies and failures of requests.
+         */
+        public Timer getTimer() {
+            return timer;
+        }
+
+        /**
+         * Gets the number of bytes read from responses.
+         */
+        public long getBytesIn() {
+            return bytesIn.getCount();
+        }
+
+        /**
+         * Gets the number of bytes sent with requests if known.
+         */
+        public long getBytesOut() {
+            return bytesOut.getCount();
+        }
+
+        @Override
+        public String toString() {
+            return timer + ", in: " + getBytesIn() + " B, out: " + getBytesOut() + " B";
+        }
+
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private final Counter counter;
+
+        CountingInputStream(InputStream in, Counter counter) {
+            super(in);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counter.inc();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int length = super.read(b, off, len);
+            if (length > 0) {
+                counter.add(length);
+            }
+            return length;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long length = super.skip(n);
+            if (length > 0) {
+                counter.add(length);
+            }
+            return length;
+        }
+
+    }
+
+}
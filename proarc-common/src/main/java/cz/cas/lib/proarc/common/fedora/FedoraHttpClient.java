@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import com.sun.jersey.client.apache4.config.ApacheHttpClient4Config;
+import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.client.FedoraCredentials;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import org.apache.commons.configuration.Configuration;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.TrustStrategy;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+
+/**
+ * The Fedora client with the configurable HTTP transport. It applies
+ * timeouts, asks for compressed responses and collects request statistics.
+ * All requests of {@link FedoraClient} and its {@link FedoraClient#resource() resources}
+ * pass through it.
+ *
+ * <p>Requests are sent with the Apache HTTP client. Its pool of persistent
+ * connections belongs to the client and limits the number of concurrent
+ * connections to Fedora. Responses have to be read or closed to release
+ * their connections.
+ *
+ * <p>Like {@link FedoraClient}, the client trusts any certificate of a https
+ * Fedora by default, e.g. a self-signed one. Compressed responses are requested
+ * for XML, i.e. the API responses, search and RI queries and contents of
+ * {@link Options#getGzipDatastreams() XML datastreams}; images and other
+ * binary contents are not worth it.
+ *
+ * @author Jan Pokorsky
+ */
+public final class FedoraHttpClient extends FedoraClient {
+
+    private final Options options;
+    private final FedoraClientMetrics metrics;
+    private final ApacheHttpClient4 httpClient;
+
+    public FedoraHttpClient(FedoraCredentials credentials, Options options) {
+        super(credentials);
+        this.options = options;
+        this.metrics = options.isMetrics() ? new FedoraClientMetrics() : null;
+        ThreadSafeClientConnManager connectionManager = new ThreadSafeClientConnManager(
+                createSchemeRegistry(options));
+        connectionManager.setMaxTotal(options.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(options.getMaxConnections());
+
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setConnectionTimeout(params, options.getConnectTimeout());
+        HttpConnectionParams.setSoTimeout(params, options.getReadTimeout());
+        // a request waiting for a free connection fails instead of blocking forever
+        ConnManagerParams.setTimeout(params, options.getConnectTimeout());
+
+        ClientConfig config = new DefaultApacheHttpClient4Config();
+        config.getProperties().put(ApacheHttpClient4Config.PROPERTY_CONNECTION_MANAGER, connectionManager);
+        config.getProperties().put(ApacheHttpClient4Config.PROPERTY_HTTP_PARAMS, params);
+        this.httpClient = ApacheHttpClient4.create(config);
+        httpClient.setFollowRedirects(true);
+        httpClient.addFilter(new HTTPBasicAuthFilter(credentials.getUsername(), credentials.getPassword()));
+    }
+
+    @Override
+    public WebResource resource(String url) {
+        WebResource resource = httpClient.resource(url);
+        // streams request entities instead of buffering them in the heap
+        resource.setProperty(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE, 0);
+        // the last added filter is the first to process the request;
+        // metrics are next to the connection to count transferred bytes
+        if (metrics != null) {
+            resource.addFilter(metrics.createFilter());
+        }
+        if (options.isGzip()) {
+            resource.addFilter(new GzipFilter(options.getGzipDatastreams()));
+        }
+        return resource;
+    }
+
+    private static SchemeRegistry createSchemeRegistry(Options options) {
+        SchemeRegistry registry = SchemeRegistryFactory.createDefault();
+        if (options.isTrustAllCertificates()) {
+            try {
+                SSLSocketFactory sslFactory = new SSLSocketFactory(new TrustStrategy() {
+
+                    @Override
+                    public boolean isTrusted(X509Certificate[] chain, String authType) {
+                        return true;
+                    }
+                }, SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER);
+                registry.register(new Scheme("https", 443, sslFactory));
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Gets statistics of requests.
+     * @return the metrics or {@code null} if disabled
+     */
+    public FedoraClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    public Options getOptions() {
+        return options;
+    }
+
+    /**
+     * Options of the HTTP transport.
+     */
+    public static final class Options {
+
+        static final String PROPERTY_CONNECT_TIMEOUT = "fedora.client.connectTimeout";
+        static final String PROPERTY_READ_TIMEOUT = "fedora.client.readTimeout";
+        static final String PROPERTY_MAX_CONNECTIONS = "fedora.client.maxConnections";
+        static final String PROPERTY_GZIP = "fedora.client.gzip";
+        static final String PROPERTY_GZIP_DATASTREAMS = "fedora.client.gzip.datastreams";
+        static final String PROPERTY_METRICS = "fedora.client.metrics";
+        static final String PROPERTY_TRUST_ALL_CERTIFICATES = "fedora.client.trustAllCertificates";
+
+        private int connectTimeout = 30000;
+        private int readTimeout;
+        private int maxConnections = 20;
+        private boolean gzip = true;
+        private Set<String> gzipDatastreams = new LinkedHashSet<String>(Arrays.asList(
+                "DC", "RELS-EXT", "BIBLIO_MODS", "TEXT_OCR", "ALTO", "RAW_MIX", "NDK_ARCHIVAL_MIX"));
+        private boolean metrics = true;
+        private boolean trustAllCertificates = true;
+
+        public static Options from(Configuration config) {
+            Options options = new Options();
+            options.setConnectTimeout(config.getInt(PROPERTY_CONNECT_TIMEOUT, options.getConnectTimeout()));
+            options.setReadTimeout(config.getInt(PROPERTY_READ_TIMEOUT, options.getReadTimeout()));
+            options.setMaxConnections(config.getInt(PROPERTY_MAX_CONNECTIONS, options.getMaxConnections()));
+            options.setGzip(config.getBoolean(PROPERTY_GZIP, options.isGzip()));
+            if (config.containsKey(PROPERTY_GZIP_DATASTREAMS)) {
+                options.setGzipDatastreams(Arrays.asList(config.getStringArray(PROPERTY_GZIP_DATASTREAMS)));
+            }
+            options.setMetrics(config.getBoolean(PROPERTY_METRICS, options.isMetrics()));
+            options.setTrustAllCertificates(config.getBoolean(
+                    PROPERTY_TRUST_ALL_CERTIFICATES, options.isTrustAllCertificates()));
+            return options;
+        }
+
+        /**
+         * Gets the connect timeout in milliseconds. 0 stands for no timeout.
+         */
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = Math.max(0, connectTimeout);
+        }
+
+        /**
+         * Gets the read timeout in milliseconds. 0 stands for no timeout.
+         */
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = Math.max(0, readTimeout);
+        }
+
+        /**
+         * Gets the maximum number of concurrent connections to Fedora.
+         */
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = Math.max(1, maxConnections);
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+
+        public void setGzip(boolean gzip) {
+            this.gzip = gzip;
+        }
+
+        /**
+         * Gets IDs of datastreams with XML or text contents to request compressed.
+         */
+        public Set<String> getGzipDatastreams() {
+            return Collections.unmodifiableSet(gzipDatastreams);
+        }
+
+        public void setGzipDatastreams(Collection<String> gzipDatastreams) {
+            this.gzipDatastreams = new LinkedHashSet<String>();
+            for (String dsId : gzipDatastreams) {
+                if (dsId != null && !dsId.trim().isEmpty()) {
+                    this.gzipDatastreams.add(dsId.trim());
+                }
+            }
+        }
+
+        /**
+         * Whether to trust any certificate and host name of a https Fedora.
+         * Otherwise the JVM trust store applies.
+         */
+        public boolean isTrustAllCertificates() {
+            return trustAllCertificates;
+        }
+
+        public void setTrustAllCertificates(boolean trustAllCertificates) {
+            this.trustAllCertificates = trustAllCertificates;
+        }
+
+        public boolean isMetrics() {
+            return metrics;
+        }
+
+        public void setMetrics(boolean metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public String toString() {
+            return "Options{" + "connectTimeout=" + connectTimeout + ", readTimeout=" + readTimeout
+                    + ", maxConnections=" + maxConnections + ", gzip=" + gzip
+                    + ", gzipDatastreams=" + gzipDatastreams + ", metrics=" + metrics
+                    + ", trustAllCertificates=" + trustAllCertificates + '}';
+        }
+
+    }
+
+    /**
+     * Asks for gzip compressed responses. A decoded response has no
+     * {@code Content-Length} as it would not match the decoded entity; callers
+     * passing the response to their clients must not reuse the encoded length.
+     * Range requests are not compressed as the ranges apply to the encoded entity.
+     */
+    static final class GzipFilter extends ClientFilter {
+
+        private static final String GZIP = "gzip";
+        private static final String RANGE = "Range";
+        private static final Pattern CONTENT_PATH = Pattern.compile(".*/datastreams/([^/]+)/content$");
+
+        private final Set<String> datastreams;
+
+        GzipFilter(Set<String> datastreams) {
+            this.datastreams = datastreams;
+        }
+
+        /**
+         * Checks whether the response of the path is worth compressing.
+         * Contents of datastreams other than listed ones and results
+         * of disseminators are binary as a rule.
+         */
+        static boolean isCompressible(String path, Set<String> datastreams) {
+            if (path == null) {
+                return false;
+            }
+            if (path.contains("/methods/")) {
+                return false;
+            }
+            Matcher matcher = CONTENT_PATH.matcher(path);
+            if (matcher.matches()) {
+                return datastreams.contains(matcher.group(1));
+            }
+            return true;
+        }
+
+        @Override
+        public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+            MultivaluedMap<String, Object> requestHeaders = cr.getHeaders();
+            if (!requestHeaders.containsKey(HttpHeaders.ACCEPT_ENCODING)
+                    && !requestHeaders.containsKey(RANGE)
+                    && isCompressible(cr.getURI().getPath(), datastreams)) {
+                requestHeaders.add(HttpHeaders.ACCEPT_ENCODING, GZIP);
+            }
+            ClientResponse response = getNext().handle(cr);
+            MultivaluedMap<String, String> responseHeaders = response.getHeaders();
+            if (response.hasEntity() && GZIP.equalsIgnoreCase(responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING))) {
+                responseHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+                responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+                try {
+                    response.setEntityInputStream(new GZIPInputStream(response.getEntityInputStream()));
+                } catch (IOException ex) {
+                    throw new ClientHandlerException(ex);
+                }
+            }
+            return response;
+        }
+
+    }
+
+}
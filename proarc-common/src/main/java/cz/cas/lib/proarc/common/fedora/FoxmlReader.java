@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import com.yourmediashelf.fedora.generated.foxml.ObjectPropertiesType;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import javax.xml.bind.DataBindingException;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads object properties and selected datastreams of FOXML without
+ * unmarshalling the whole digital object. Other datastreams like inline
+ * ALTO or binary contents are skipped by the streaming parser.
+ *
+ * <p>The result contains just the newest version of each read datastream.
+ * It is suitable for reading only; write the object loaded with
+ * {@link FoxmlUtils#unmarshal(javax.xml.transform.Source, Class) FoxmlUtils}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class FoxmlReader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private FoxmlReader() {
+    }
+
+    /**
+     * Reads the FOXML file.
+     * @param foxml file
+     * @param dsIds IDs of datastreams to read
+     * @return the partial digital object
+     * @throws DataBindingException failure
+     */
+    public static DigitalObject read(File foxml, Collection<String> dsIds) {
+        try (InputStream input = new BufferedInputStream(new FileInputStream(foxml), 64 * 1024)) {
+            return read(input, dsIds);
+        } catch (IOException ex) {
+            throw new DataBindingException(foxml.toString(), ex);
+        }
+    }
+
+    /**
+     * Reads the FOXML stream. The stream is not closed.
+     * @param foxml stream
+     * @param dsIds IDs of datastreams to read
+     * @return the partial digital object
+     * @throws DataBindingException failure
+     */
+    public static DigitalObject read(InputStream foxml, Collection<String> dsIds) {
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(foxml);
+            try {
+                return read(reader, dsIds);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException ex) {
+            throw new DataBindingException(ex);
+        } catch (JAXBException ex) {
+            throw new DataBindingException(ex);
+        }
+    }
+
+    private static DigitalObject read(XMLStreamReader reader, Collection<String> dsIds)
+            throws XMLStreamException, JAXBException {
+
+        reader.nextTag();
+        if (!"digitalObject".equals(reader.getLocalName())
+                || !FoxmlUtils.FOXML_NAMESPACE.equals(reader.getNamespaceURI())) {
+            throw new XMLStreamException("Not FOXML: " + reader.getName(), reader.getLocation());
+        }
+        DigitalObject dobj = new DigitalObject();
+        dobj.setPID(reader.getAttributeValue(null, "PID"));
+        dobj.setVERSION(reader.getAttributeValue(null, "VERSION"));
+        dobj.setFEDORAURI(reader.getAttributeValue(null, "FEDORA_URI"));
+        Unmarshaller unmarshaller = FoxmlUtils.defaultUnmarshaller();
+        reader.next();
+        // each branch leaves the reader after the end of the processed element
+        while (nextTag(reader) == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            if ("objectProperties".equals(name)) {
+                dobj.setObjectProperties(unmarshaller.unmarshal(reader, ObjectPropertiesType.class).getValue());
+            } else if ("datastream".equals(name) && dsIds.contains(reader.getAttributeValue(null, "ID"))) {
+                DatastreamType datastream = unmarshaller.unmarshal(reader, DatastreamType.class).getValue();
+                List<DatastreamVersionType> versions = datastream.getDatastreamVersion();
+                if (versions.size() > 1) {
+                    DatastreamVersionType newest = versions.get(versions.size() - 1);
+                    versions.clear();
+                    versions.add(newest);
+                }
+                dobj.getDatastream().add(datastream);
+            } else {
+                skipElement(reader);
+            }
+        }
+        return dobj;
+    }
+
+    /**
+     * Moves to the nearest start or end tag unless the reader is already there.
+     */
+    private static int nextTag(XMLStreamReader reader) throws XMLStreamException {
+        int event = reader.getEventType();
+        while (event != XMLStreamConstants.START_ELEMENT
+                && event != XMLStreamConstants.END_ELEMENT
+                && event != XMLStreamConstants.END_DOCUMENT) {
+            event = reader.next();
+        }
+        return event;
+    }
+
+    /**
+     * Skips the current element including its subtree.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for (int depth = 1; depth > 0;) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+        reader.next();
+    }
+
+}
@@ -262,7 +262,7 @@ public final class FoxmlUtils {
 //        profile.setDsChecksum();
         profile.setDsControlGroup(datastream.getCONTROLGROUP());
         profile.setDsState(datastream.getSTATE().value());
-//        profile.setDsVersionID();
+        profile.setDsVersionID(version.getID());
 //        profile.setPid(datastream.);
         return profile;
     }
@@ -410,10 +410,7 @@ public final class FoxmlUtils {
     }
 
     public static void copy(InputStream is, OutputStream os) throws IOException {
-        byte[] buffer = new byte[2048];
-        for (int length; (length = is.read(buffer)) != -1; ) {
-            os.write(buffer, 0, length);
-        }
+        BufferPool.copy(is, os);
     }
 
     private static DatastreamProfile createProfileTemplate(String dsId, String formatUri, String label, MediaType mimetype, ControlGroup control) {
@@ -67,6 +67,22 @@ public final class LocalStorage {
         return result;
     }
 
+    /**
+     * Loads the object properties and the given datastreams for reading.
+     * It is much cheaper than {@link #load(String, File) load} for objects
+     * with large inline datastreams. The object cannot be flushed.
+     * @param pid PID
+     * @param foxml file
+     * @param dsIds IDs of datastreams to read
+     * @return the object
+     */
+    public LocalObject loadPartial(String pid, File foxml, String... dsIds) {
+        DigitalObject dobj = FoxmlReader.read(foxml, Arrays.asList(dsIds));
+        LocalObject result = new LocalObject(pid, foxml, dobj);
+        result.partial = true;
+        return result;
+    }
+
     public LocalObject create() {
         return create((String) null, null);
     }
@@ -102,6 +118,8 @@ public final class LocalStorage {
         private DigitalObject dobj;
         /** {@code null} for in memory object. */
         private File foxml;
+        /** Contains just some datastreams. */
+        private boolean partial;
 
         LocalObject(String pid, File foxml, DigitalObject dobj) {
             super(pid);
@@ -150,6 +168,9 @@ public final class LocalStorage {
 
         @Override
         public void flush() throws DigitalObjectException {
+            if (partial) {
+                throw new DigitalObjectException(getPid(), "Partially loaded object is read only: " + foxml);
+            }
             super.flush();
             if (foxml != null) {
                 FoxmlUtils.marshal(new StreamResult(foxml), dobj, true);
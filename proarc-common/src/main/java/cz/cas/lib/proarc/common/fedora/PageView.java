@@ -20,11 +20,14 @@ import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
 import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
+import cz.cas.lib.proarc.common.imports.ThumbnailPack;
+import cz.cas.lib.proarc.common.mods.ModsStreamEditor;
 import cz.cas.lib.proarc.common.object.DescriptionMetadata;
 import cz.cas.lib.proarc.common.object.DigitalObjectHandler;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.object.MetadataHandler;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -45,6 +48,7 @@ public final class PageView {
 
     public List<Item> list(int batchId, Collection<BatchItemObject> imports, Locale locale) throws DigitalObjectException {
         ArrayList<Item> result = new ArrayList<Item>(imports.size());
+        ThumbnailPack.Index thumbnails = null;
         for (BatchItemObject imp : imports) {
             ObjectState objectState = imp.getState();
             if (objectState == ObjectState.LOADING || objectState == ObjectState.LOADING_FAILED) {
@@ -54,15 +58,30 @@ public final class PageView {
                         null, null, null, null, -1, null, null));
                 continue;
             }
-            result.add(createItem(imp, locale));
+            Item item = createItem(imp, locale);
+            if (thumbnails == null) {
+                thumbnails = readThumbnails(imp);
+            }
+            item.setThumbnail(thumbnails.get(imp.getPid()));
+            result.add(item);
         }
         return result;
     }
 
+    private static ThumbnailPack.Index readThumbnails(BatchItemObject imp) throws DigitalObjectException {
+        try {
+            return new ThumbnailPack(imp.getFile().getParentFile()).getIndex();
+        } catch (IOException ex) {
+            throw new DigitalObjectException(imp.getPid(), imp.getBatchId(), null, null, ex);
+        }
+    }
+
     private Item createItem(BatchItemObject imp, Locale locale) throws DigitalObjectException {
         Integer batchId = imp.getBatchId();
         File foxml = imp.getFile();
-        LocalObject local = storage.load(imp.getPid(), foxml);
+        // the view needs neither OCR nor technical metadata
+        LocalObject local = storage.loadPartial(imp.getPid(), foxml,
+                RelationEditor.DATASTREAM_ID, ModsStreamEditor.DATASTREAM_ID);
         DigitalObjectHandler doHandler = DigitalObjectManager.getDefault().createHandler(local);
         MetadataHandler<?> metadataHandler = doHandler.metadata();
 
@@ -124,6 +143,12 @@ public final class PageView {
         /** Rewrites metadata with page. */
         void setPage(PageViewItem page, String message) throws DigitalObjectException;
 
+        /**
+         * Updates index, number and type of the page and keeps the rest of metadata.
+         * A {@code null} property leaves the value unchanged, an empty string removes it.
+         */
+        void updatePage(PageViewItem page, String message) throws DigitalObjectException;
+
     }
 
     public static class PageViewItem {
@@ -179,6 +204,10 @@ public final class PageView {
         private long timestamp;
         private String user;
         private String label;
+        private Integer thumbnailSprite;
+        private Integer thumbnailTop;
+        private Integer thumbnailWidth;
+        private Integer thumbnailHeight;
 
         public Item(Integer batchId, String filename, String pid, String model,
                 String pageIndex, String pageNumber, String pageType,
@@ -242,6 +271,36 @@ public final class PageView {
             return label;
         }
 
+        /**
+         * Gets the number of the sprite with the thumbnail.
+         * @return the sprite number or {@code null} if the thumbnail is not packed
+         * @see ThumbnailPack
+         */
+        public Integer getThumbnailSprite() {
+            return thumbnailSprite;
+        }
+
+        public Integer getThumbnailTop() {
+            return thumbnailTop;
+        }
+
+        public Integer getThumbnailWidth() {
+            return thumbnailWidth;
+        }
+
+        public Integer getThumbnailHeight() {
+            return thumbnailHeight;
+        }
+
+        void setThumbnail(ThumbnailPack.Entry thumbnail) {
+            if (thumbnail != null) {
+                thumbnailSprite = thumbnail.getSprite();
+                thumbnailTop = thumbnail.getTop();
+                thumbnailWidth = thumbnail.getWidth();
+                thumbnailHeight = thumbnail.getHeight();
+            }
+        }
+
     }
 
 }
@@ -20,12 +20,28 @@ import com.yourmediashelf.fedora.client.FedoraClientException;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Deletes object or hierarchy of objects from the remote storage. It also updates
@@ -37,11 +53,28 @@ import java.util.Set;
  * The second option should be preferred to keep the history or in case of
  * e.g. OAI usage.</p>
  *
+ * <p>Objects are deleted level by level starting with the deepest members
+ * by a bounded pool of workers. A parent is deleted after all its members
+ * so that the interrupted deletion can be resumed just by running it again.
+ * Objects missing in the repository are skipped.</p>
+ *
+ * <p>With a {@link #setJournal journal} the remaining levels are written
+ * after each level so that the interrupted deletion can be
+ * {@link #resume resumed} without resolving the hierarchy again.
+ * The {@link #getProgress progress} of levels can be read meanwhile.</p>
+ *
  * @author Jan Pokorsky
  */
 public final class PurgeFedoraObject {
 
+    private static final Logger LOG = Logger.getLogger(PurgeFedoraObject.class.getName());
+    /** The default number of parallel deletions, see {@code fedora.purge.threads}. */
+    public static final int DEFAULT_THREADS = 4;
+    private static final String JOURNAL_DELETE = "delete";
+    private static final String JOURNAL_PURGE = "purge";
+
     private final RemoteStorage storage;
+    private final int threads;
     /**
      * set of PIDs to purge
      */
@@ -50,12 +83,30 @@ public final class PurgeFedoraObject {
      * set of PIDs to update
      */
     private final Set<String> toUpdate;
+    /**
+     * parent PIDs of deleted members
+     */
+    private final Map<String, Set<String>> parents;
     private String logMessage;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private File journal;
+    private volatile List<LevelProgress> progress = Collections.emptyList();
 
     public PurgeFedoraObject(RemoteStorage storage) {
+        this(storage, DEFAULT_THREADS);
+    }
+
+    /**
+     * @param storage storage
+     * @param threads the number of parallel deletions
+     */
+    public PurgeFedoraObject(RemoteStorage storage, int threads) {
         this.storage = storage;
+        this.threads = Math.max(1, threads);
         this.toPurge = new LinkedHashSet<String>();
         this.toUpdate = new HashSet<String>();
+        this.parents = new HashMap<String, Set<String>>();
     }
 
     public void delete(String pid, boolean hierarchy, String message) throws PurgeException {
@@ -73,11 +124,68 @@ public final class PurgeFedoraObject {
     public void purge(List<String> pids, boolean hierarchy, String message) throws PurgeException {
         process(pids, hierarchy, false, message);
     }
-    
-    private void process(List<String> pids, boolean hierarchy, boolean setDeleted, String message) throws PurgeException {
+
+    /**
+     * Continues the interrupted deletion with levels remaining in the journal.
+     * Relations of referencing objects were already updated.
+     * @param journal the journal of the interrupted deletion; it is deleted
+     *      when all levels are processed
+     * @throws PurgeException failure
+     */
+    public void resume(File journal) throws PurgeException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new PurgeException(journal.toString(), ex);
+        }
+        if (lines.size() < 2 || !(JOURNAL_DELETE.equals(lines.get(0)) || JOURNAL_PURGE.equals(lines.get(0)))) {
+            throw new PurgeException("Invalid journal: " + journal, null);
+        }
+        reset(lines.get(1));
+        List<List<String>> remaining = new ArrayList<List<String>>();
+        for (String line : lines.subList(2, lines.size())) {
+            List<String> level = new ArrayList<String>();
+            for (String pid : line.split(" ")) {
+                if (!pid.isEmpty()) {
+                    level.add(pid);
+                }
+            }
+            toPurge.addAll(level);
+            remaining.add(level);
+        }
+        setJournal(journal);
+        process(remaining, JOURNAL_DELETE.equals(lines.get(0)));
+    }
+
+    /**
+     * Sets the file to write remaining levels of the running deletion.
+     * @param journal the file or {@code null}
+     */
+    public void setJournal(File journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Gets the progress of levels in the order of deletion, i.e. the deepest
+     * members first. It is empty until the hierarchy is resolved.
+     */
+    public List<LevelProgress> getProgress() {
+        return progress;
+    }
+
+    private void reset(String message) {
         toPurge.clear();
         toUpdate.clear();
+        parents.clear();
+        processed.set(0);
+        skipped.set(0);
+        progress = Collections.emptyList();
         this.logMessage = message;
+    }
+
+    private void process(List<String> pids, boolean hierarchy, boolean setDeleted, String message) throws PurgeException {
+        reset(message);
         for (String pid : pids) {
             process(pid, hierarchy);
         }
@@ -86,11 +194,136 @@ public final class PurgeFedoraObject {
         } catch (DigitalObjectException ex) {
             throw new PurgeException(ex);
         }
-        if (setDeleted) {
-            setDeleted(toPurge);
-        } else {
-            purge(toPurge);
+        List<List<String>> levels = levels(toPurge, parents);
+        Collections.reverse(levels);
+        process(levels, setDeleted);
+    }
+
+    /**
+     * Deletes levels in the given order.
+     */
+    private void process(List<List<String>> levels, boolean setDeleted) throws PurgeException {
+        List<LevelProgress> levelProgress = new ArrayList<LevelProgress>(levels.size());
+        for (List<String> level : levels) {
+            levelProgress.add(new LevelProgress(level.size()));
+        }
+        progress = Collections.unmodifiableList(levelProgress);
+        writeJournal(levels, setDeleted);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int i = 0; i < levels.size(); i++) {
+                process(pool, levels.get(i), levelProgress.get(i), setDeleted);
+                writeJournal(levels.subList(i + 1, levels.size()), setDeleted);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (journal != null) {
+            journal.delete();
+        }
+        LOG.log(Level.FINE, "total: {0}, processed: {1}, skipped: {2}",
+                new Object[]{toPurge.size(), processed, skipped});
+    }
+
+    /**
+     * Writes the deletion mode, the log message and the remaining levels.
+     */
+    private void writeJournal(List<List<String>> remaining, boolean setDeleted) throws PurgeException {
+        if (journal == null) {
+            return ;
+        }
+        File tmp = new File(journal.getPath() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(setDeleted ? JOURNAL_DELETE : JOURNAL_PURGE);
+                writer.write('\n');
+                writer.write(logMessage == null ? "" : logMessage.replaceAll("[\r\n]+", " "));
+                writer.write('\n');
+                for (List<String> level : remaining) {
+                    writer.write(String.join(" ", level));
+                    writer.write('\n');
+                }
+            }
+            Files.move(tmp.toPath(), journal.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            tmp.delete();
+            throw new PurgeException(journal.toString(), ex);
+        }
+    }
+
+    /**
+     * Deletes objects of a single level in parallel.
+     */
+    private void process(ExecutorService pool, List<String> level, LevelProgress levelProgress,
+            boolean setDeleted) throws PurgeException {
+
+        List<Future<?>> tasks = new ArrayList<Future<?>>(level.size());
+        for (String pid : level) {
+            tasks.add(pool.submit(() -> {
+                if (setDeleted) {
+                    setDeleted(pid);
+                } else {
+                    purge(pid);
+                }
+                processed.incrementAndGet();
+                levelProgress.done.incrementAndGet();
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new PurgeException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof PurgeException) {
+                throw (PurgeException) cause;
+            }
+            throw new PurgeException(cause);
+        }
+    }
+
+    /**
+     * Splits PIDs to levels of the hierarchy.
+     * @param pids PIDs to split
+     * @param parents parents of PIDs; PIDs without parent are roots
+     * @return the list of levels starting with roots; a member is always
+     *      placed deeper than all its parents
+     */
+    static List<List<String>> levels(Collection<String> pids, Map<String, Set<String>> parents) {
+        Map<String, Integer> depths = new HashMap<String, Integer>();
+        List<List<String>> levels = new ArrayList<List<String>>();
+        for (String pid : pids) {
+            int depth = depth(pid, parents, depths, new HashSet<String>());
+            while (levels.size() <= depth) {
+                levels.add(new ArrayList<String>());
+            }
+            levels.get(depth).add(pid);
+        }
+        return levels;
+    }
+
+    private static int depth(String pid, Map<String, Set<String>> parents,
+            Map<String, Integer> depths, Set<String> path) {
+
+        Integer depth = depths.get(pid);
+        if (depth == null) {
+            depth = 0;
+            Set<String> pidParents = parents.get(pid);
+            // a cycle is cut at the repeated PID
+            if (pidParents != null && path.add(pid)) {
+                for (String parent : pidParents) {
+                    depth = Math.max(depth, depth(parent, parents, depths, path) + 1);
+                }
+                path.remove(pid);
+            }
+            depths.put(pid, depth);
         }
+        return depth;
     }
 
     private void process(String pid, boolean hierarchy) throws PurgeException {
@@ -100,7 +333,16 @@ public final class PurgeFedoraObject {
         if (hierarchy) {
             List<Item> items = getHierarchy(pid);
             for (Item item : items) {
-                toPurge.add(item.getPid());
+                String member = item.getPid();
+                toPurge.add(member);
+                if (item.getParentPid() != null && !pid.equals(member)) {
+                    Set<String> memberParents = parents.get(member);
+                    if (memberParents == null) {
+                        memberParents = new HashSet<String>();
+                        parents.put(member, memberParents);
+                    }
+                    memberParents.add(item.getParentPid());
+                }
             }
         }
         
@@ -171,32 +413,46 @@ public final class PurgeFedoraObject {
         try {
             RemoteObject remote = storage.find(pid);
             remote.purge(logMessage);
+        } catch (DigitalObjectNotFoundException ex) {
+            skipped.incrementAndGet();
         } catch (DigitalObjectException ex) {
             throw new PurgeException(pid, ex);
         }
     }
 
-    private void purge(Set<String> pids) throws PurgeException {
-        for (String pid : pids) {
-            purge(pid);
-        }
-    }
-
-    private void setDeleted(Set<String> pids) throws PurgeException {
-        for (String pid : pids) {
-            setDeleted(pid);
-        }
-    }
-
     private void setDeleted(String pid) throws PurgeException {
         try {
             RemoteObject remote = storage.find(pid);
             remote.delete(logMessage);
+        } catch (DigitalObjectNotFoundException ex) {
+            skipped.incrementAndGet();
         } catch (DigitalObjectException ex) {
             throw new PurgeException(pid, ex);
         }
     }
 
+    /**
+     * The progress of a single level of the hierarchy.
+     */
+    public static final class LevelProgress {
+
+        private final int total;
+        private final AtomicInteger done = new AtomicInteger();
+
+        LevelProgress(int total) {
+            this.total = total;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getDone() {
+            return done.get();
+        }
+
+    }
+
     public static class PurgeException extends Exception {
 
         public PurgeException(Throwable cause) {
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject.LevelProgress;
+import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject.PurgeException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs deletions of objects in the background one by one. Each job gets
+ * an ID to query its {@link Job#getProgress progress}. Remaining levels of
+ * a running job are kept in the journal file of the job so that jobs
+ * interrupted by a shutdown or a failure are {@link #resumeAll resumed}
+ * on the next start.
+ *
+ * @author Jan Pokorsky
+ */
+public final class PurgeJobManager {
+
+    private static final Logger LOG = Logger.getLogger(PurgeJobManager.class.getName());
+    static final String JOURNAL_SUFFIX = ".purge";
+    /** The number of finished jobs kept to query. */
+    private static final int FINISHED_JOBS = 100;
+    private static PurgeJobManager INSTANCE;
+
+    private final File folder;
+    private final int threads;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<String, Job> jobs = new LinkedHashMap<String, Job>() {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Job> eldest) {
+            return size() > FINISHED_JOBS && eldest.getValue().isFinished();
+        }
+    };
+
+    public static PurgeJobManager getInstance() {
+        if (INSTANCE == null) {
+            throw new IllegalStateException("PurgeJobManager not initialized!");
+        }
+        return INSTANCE;
+    }
+
+    public static void setInstance(PurgeJobManager manager) {
+        INSTANCE = manager;
+    }
+
+    /**
+     * @param folder the folder of journals
+     * @param threads the number of parallel deletions of a job
+     * @throws IOException the folder is not accessible
+     */
+    public PurgeJobManager(File folder, int threads) throws IOException {
+        this.folder = folder;
+        this.threads = threads;
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+        if (!folder.isDirectory() || !folder.canWrite()) {
+            throw new IOException("Not a writable folder " + folder);
+        }
+    }
+
+    /**
+     * Schedules the deletion.
+     * @param storage storage
+     * @param pids PIDs to delete
+     * @param hierarchy whether to delete members
+     * @param purge {@code true} to purge objects, {@code false} to mark them as deleted
+     * @param message the log message
+     * @return the scheduled job
+     */
+    public Job submit(RemoteStorage storage, List<String> pids, boolean hierarchy, boolean purge, String message) {
+        final List<String> jobPids = new ArrayList<String>(pids);
+        return submit(storage, UUID.randomUUID().toString(), new Task() {
+
+            @Override
+            public void run(PurgeFedoraObject service) throws PurgeException {
+                if (purge) {
+                    service.purge(jobPids, hierarchy, message);
+                } else {
+                    service.delete(jobPids, hierarchy, message);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules jobs interrupted by the previous run.
+     * @param storage storage
+     * @return resumed jobs
+     */
+    public List<Job> resumeAll(RemoteStorage storage) {
+        File[] journals = folder.listFiles();
+        if (journals == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(journals);
+        List<Job> resumed = new ArrayList<Job>();
+        for (final File journal : journals) {
+            String name = journal.getName();
+            if (name.endsWith(JOURNAL_SUFFIX)) {
+                String id = name.substring(0, name.length() - JOURNAL_SUFFIX.length());
+                LOG.log(Level.INFO, "Resuming the deletion {0}", id);
+                resumed.add(submit(storage, id, new Task() {
+
+                    @Override
+                    public void run(PurgeFedoraObject service) throws PurgeException {
+                        service.resume(journal);
+                    }
+                }));
+            } else if (name.endsWith(".tmp")) {
+                journal.delete();
+            }
+        }
+        return resumed;
+    }
+
+    /**
+     * Gets the job.
+     * @param id job ID
+     * @return the job or {@code null}
+     */
+    public Job getJob(String id) {
+        synchronized (jobs) {
+            return jobs.get(id);
+        }
+    }
+
+    /**
+     * Stops running jobs. Their journals are kept to resume them.
+     */
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private Job submit(RemoteStorage storage, String id, final Task task) {
+        PurgeFedoraObject service = new PurgeFedoraObject(storage, threads);
+        service.setJournal(new File(folder, id + JOURNAL_SUFFIX));
+        final Job job = new Job(id, service);
+        synchronized (jobs) {
+            jobs.put(id, job);
+        }
+        executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                job.state = State.RUNNING;
+                try {
+                    task.run(job.service);
+                    job.state = State.DONE;
+                } catch (PurgeException | RuntimeException ex) {
+                    LOG.log(Level.SEVERE, job.id, ex);
+                    job.error = String.valueOf(ex.getMessage());
+                    job.state = State.FAILED;
+                }
+            }
+        });
+        return job;
+    }
+
+    private interface Task {
+
+        void run(PurgeFedoraObject service) throws PurgeException;
+    }
+
+    public enum State {
+        WAITING, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * The scheduled deletion.
+     */
+    public static final class Job {
+
+        private final String id;
+        private final PurgeFedoraObject service;
+        private volatile State state = State.WAITING;
+        private volatile String error;
+
+        Job(String id, PurgeFedoraObject service) {
+            this.id = id;
+            this.service = service;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * Gets the message of the failure.
+         * @return the message or {@code null}
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * Gets the progress of levels in the order of deletion.
+         * It is empty until the hierarchy is resolved.
+         */
+        public List<LevelProgress> getProgress() {
+            return service.getProgress();
+        }
+
+        boolean isFinished() {
+            return state == State.DONE || state == State.FAILED;
+        }
+
+    }
+
+}
@@ -92,12 +92,22 @@ public final class RemoteStorage {
 
     public static RemoteStorage getInstance(AppConfiguration conf) throws IOException {
         if (INSTANCE == null) {
-            INSTANCE = new RemoteStorage(new FedoraClient(new FedoraCredentials(
-                    conf.getFedoraUrl(), conf.getFedoraUsername(), conf.getFedoraPassword())));
+            FedoraHttpClient.Options options = conf.getFedoraClientOptions();
+            LOG.log(Level.FINE, "Fedora client: {0}", options);
+            INSTANCE = new RemoteStorage(new FedoraHttpClient(new FedoraCredentials(
+                    conf.getFedoraUrl(), conf.getFedoraUsername(), conf.getFedoraPassword()), options));
         }
         return INSTANCE;
     }
 
+    /**
+     * Gets statistics of HTTP requests sent to Fedora.
+     * @return the metrics or {@code null} if not available
+     */
+    public FedoraClientMetrics getMetrics() {
+        return client instanceof FedoraHttpClient ? ((FedoraHttpClient) client).getMetrics() : null;
+    }
+
     public RemoteObject find(String pid) {
         return new RemoteObject(pid, client);
     }
@@ -507,15 +517,20 @@ public final class RemoteStorage {
 
         @Override
         public void write(InputStream data, long timestamp, String message) throws DigitalObjectException {
-            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            ContentBuffer buf;
             try {
-                FoxmlUtils.copy(data, buf);
+                buf = ContentBuffer.from(data);
             } catch (IOException ex) {
                 throw new DigitalObjectException(object.getPid(), toLogString(), ex);
             } finally {
                 FoxmlUtils.closeQuietly(data, toLogString());
             }
-            write(new DatastreamContent(buf.toByteArray()), timestamp, message);
+            try {
+                write(new DatastreamContent(buf), timestamp, message);
+            } catch (DigitalObjectException ex) {
+                buf.dispose();
+                throw ex;
+            }
         }
 
         @Override
@@ -531,6 +546,9 @@ public final class RemoteStorage {
                         DateUtility.getXSDDateTime(new Date(timestamp)));
                 throw new DigitalObjectConcurrentModificationException(object.getPid(), msg);
             }
+            if (this.data != null) {
+                this.data.dispose();
+            }
             this.data = data;
             this.logMessage = message;
             object.register(this);
@@ -600,9 +618,7 @@ public final class RemoteStorage {
                         .execute(object.getClient());
                 InputStream is = response.getEntity(InputStream.class);
                 try {
-                   ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                   FoxmlUtils.copy(is, buffer);
-                   this.data = new DatastreamContent(buffer.toByteArray());
+                   this.data = new DatastreamContent(ContentBuffer.from(is));
                 } catch (IOException ex) {
                     throw new DigitalObjectException(object.getPid(), ex);
                 } finally {
@@ -636,6 +652,11 @@ public final class RemoteStorage {
                 profile = response.getDatastreamProfile();
                 profile = normalizeProfile(profile);
                 lastModified = response.getLastModifiedDate().getTime();
+                if (data != null && data.isSpilled()) {
+                    // do not hold the spill file; read it again on demand
+                    data.dispose();
+                    data = null;
+                }
             } catch (IOException ex) {
                 throw new DigitalObjectException(object.getPid(), toLogString(), ex);
             } catch (FedoraClientException ex) {
@@ -716,19 +737,26 @@ public final class RemoteStorage {
         private static final class DatastreamContent {
 
             private byte[] bytes;
+            private ContentBuffer buffer;
             private URI reference;
 
             public DatastreamContent(byte[] bytes) {
                 this.bytes = bytes;
             }
 
+            public DatastreamContent(ContentBuffer buffer) {
+                this.buffer = buffer;
+            }
+
             public DatastreamContent(URI reference) {
                 this.reference = reference;
             }
 
-            public Source asSource() {
+            public Source asSource() throws IOException {
                 if (bytes != null) {
                     return new StreamSource(new ByteArrayInputStream(bytes));
+                } else if (buffer != null) {
+                    return new StreamSource(buffer.asInputStream());
                 } else if (reference != null) {
                     return new StreamSource(reference.toASCIIString());
                 } else {
@@ -739,6 +767,8 @@ public final class RemoteStorage {
             public InputStream asInputStream() throws IOException {
                 if (bytes != null) {
                     return new ByteArrayInputStream(bytes);
+                } else if (buffer != null) {
+                    return buffer.asInputStream();
                 } else if (reference != null) {
                     return reference.toURL().openStream();
                 } else {
@@ -746,6 +776,16 @@ public final class RemoteStorage {
                 }
             }
 
+            public boolean isSpilled() {
+                return buffer != null && buffer.isSpilled();
+            }
+
+            public void dispose() {
+                if (buffer != null) {
+                    buffer.dispose();
+                }
+            }
+
         }
 
         private static final class EditorStreamResult extends StreamResult implements EditorResult {
@@ -26,6 +26,8 @@ import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.fedora.relation.RelationResource;
 import cz.cas.lib.proarc.common.json.JsonUtils;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
 import cz.cas.lib.proarc.common.object.HasDataHandler;
 import cz.cas.lib.proarc.common.object.model.MetaModel;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
@@ -291,7 +293,7 @@ public final class SearchView {
 
         LOG.fine(query);
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return execute("pids", search);
     }
 
     /**
@@ -326,19 +328,20 @@ public final class SearchView {
     public List<Item> findChildren(String pid) throws FedoraClientException, IOException {
         String query = QUERY_FIND_MEMBERS.replace("${parent}", RelationResource.fromPid(pid).getResource());
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return execute("children", search);
     }
 
     /**
      * Traverses a graph of PID's members.
      *
      * @param pid PID to traverse
-     * @return list of all PID's members
+     * @return list of all PID's members with their parent PIDs; a shared member
+     *      is listed for each parent
      */
     public List<Item> findChildrenHierarchy(String pid) throws FedoraClientException, IOException {
         String query = QUERY_FIND_MEMBER_HIERARCHY.replace("${ROOT}", RelationResource.fromPid(pid).getResource());
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return execute("childrenHierarchy", search);
     }
 
     public List<Item> findLastCreated(int offset, String model, String user) throws FedoraClientException, IOException {
@@ -374,13 +377,13 @@ public final class SearchView {
             limit = Math.min(limit, maxLimit);
             search.limit(limit);
         }
-        return consumeSearch(search.execute(fedora));
+        return execute("last", search);
     }
 
     public List<Item> findReferrers(String pid) throws IOException, FedoraClientException {
         String query = QUERY_FIND_REFERRERS.replace("${PID}", pid);
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return execute("referrers", search);
     }
 
     /**
@@ -394,7 +397,7 @@ public final class SearchView {
         String query = QUERY_FIND_BY_MODEL.replace("${metaModelPid}", modelId);
         RiSearch search = buildSearch(query);
         search.limit(1000);
-        return consumeSearch(search.execute(fedora));
+        return execute("model", search);
     }
 
     /**
@@ -409,10 +412,25 @@ public final class SearchView {
         RiSearch search = buildSearch(query);
         search.limit(1);
         search.stream(true);
-        List<Item> result = consumeSearch(search.execute(fedora));
+        List<Item> result = execute("deviceReferrers", search);
         return !result.isEmpty();
     }
 
+    /**
+     * Runs the query and records its duration as {@code fedora.search.<name>}.
+     */
+    private List<Item> execute(String name, RiSearch search) throws FedoraClientException, IOException {
+        Timer.Sample sample = Metrics.getInstance().timer("fedora.search." + name).start();
+        try {
+            return consumeSearch(search.execute(fedora));
+        } catch (Throwable ex) {
+            sample.failed();
+            throw ex;
+        } finally {
+            sample.stop();
+        }
+    }
+
     private List<Item> consumeSearch(RiSearchResponse response) throws IOException {
         String json = response.getEntity(String.class);
         Result result = readResponse(json);
@@ -443,6 +461,7 @@ public final class SearchView {
         item.pid = replaceUriWithPid(item.pid);
         item.model = replaceUriWithPid(item.model);
         item.state = replaceUriWithPid(item.state);
+        item.parent = replaceUriWithPid(item.parent);
         return item;
     }
     void resolveObjectLabel(Item item) {
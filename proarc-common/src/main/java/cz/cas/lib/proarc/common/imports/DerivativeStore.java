@@ -0,0 +1,554 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * The size bounded disk store of images and metadata derived from imported scans.
+ * Entries are keyed with the hash of the scan contents and with processing
+ * parameters of the import profile so that a re-import of an unchanged scan
+ * can link existing derivatives instead of generating them again.
+ *
+ * <p>Each entry is a folder published at once with all its derivatives.
+ * Stored files are hard linked to batch folders; a linked file must be
+ * replaced, never rewritten in place.
+ * The least recently used entries are evicted when the store exceeds its size.
+ *
+ * <p>Content hashes of scans are remembered in the index file of the store
+ * so that a re-import after a restart does not read the scans again.
+ *
+ * @author Jan Pokorsky
+ */
+public final class DerivativeStore {
+
+    private static final Logger LOG = Logger.getLogger(DerivativeStore.class.getName());
+    /** Change to invalidate entries of older imports. */
+    private static final String VERSION = "1";
+    private static final String TMP_SUFFIX = ".tmp";
+    /** The number of remembered content hashes. */
+    private static final int HASH_MEMO_SIZE = 100000;
+    /** The file of remembered content hashes; a line per hash. */
+    static final String HASH_INDEX_FILENAME = "hashes.idx";
+    private static DerivativeStore INSTANCE;
+
+    private final File folder;
+    private final File hashIndex;
+    private final long maxSize;
+    /** Entry names with their sizes in the access order. */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(256, 0.75f, true);
+    private long size;
+    /** Content hashes of already read files keyed with their path, size and modification time. */
+    private final Map<String, String> hashMemo = new LinkedHashMap<String, String>(256, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > HASH_MEMO_SIZE;
+        }
+    };
+
+    /**
+     * Gets the shared store.
+     * @return the store or {@code null} if it is disabled
+     */
+    public static DerivativeStore getInstance() {
+        return INSTANCE;
+    }
+
+    public static void setInstance(DerivativeStore store) {
+        INSTANCE = store;
+    }
+
+    /**
+     * Creates the store.
+     * @param options options
+     * @return the store or {@code null} if it is disabled
+     * @throws IOException the store folder is not accessible
+     */
+    public static DerivativeStore create(Options options) throws IOException {
+        if (options.getMaxSize() <= 0) {
+            return null;
+        }
+        return new DerivativeStore(options.getFolder(), options.getMaxSize());
+    }
+
+    DerivativeStore(File folder, long maxSize) throws IOException {
+        this.folder = folder;
+        this.hashIndex = new File(folder, HASH_INDEX_FILENAME);
+        this.maxSize = maxSize;
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+        if (!folder.isDirectory() || !folder.canWrite()) {
+            throw new IOException("Not a writable folder " + folder);
+        }
+        load();
+    }
+
+    /**
+     * Finds derivatives of the scan.
+     * @param source the scan
+     * @param params processing parameters of derivatives
+     * @return the entry; it is empty if the scan has not been processed yet
+     * @throws IOException failure
+     */
+    public Entry find(File source, String params) throws IOException {
+        String key = hash(contentHash(source) + '/' + params + '/' + VERSION);
+        File entryFolder = new File(folder, key);
+        boolean found;
+        synchronized (index) {
+            found = index.get(key) != null;
+        }
+        if (found && !entryFolder.isDirectory()) {
+            remove(key);
+            found = false;
+        }
+        if (found) {
+            // keeps the access order for the next run
+            entryFolder.setLastModified(System.currentTimeMillis());
+        }
+        return new Entry(key, found ? entryFolder : null);
+    }
+
+    /**
+     * Publishes derivatives added to the entry. It does nothing
+     * if the entry was found or if another import has published it meanwhile.
+     * @param entry the entry
+     * @throws IOException failure
+     */
+    public void put(Entry entry) throws IOException {
+        if (entry.isFound() || entry.staging == null) {
+            return ;
+        }
+        Path staging = entry.staging.toPath();
+        Path target = new File(folder, entry.key).toPath();
+        try {
+            long length = 0;
+            for (File file : entry.staging.listFiles()) {
+                length += file.length();
+            }
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            add(entry.key, length);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException ex) {
+            // published by a concurrent import
+        } finally {
+            if (Files.exists(staging)) {
+                delete(entry.staging);
+            }
+        }
+    }
+
+    /**
+     * Discards derivatives added to the entry, e.g. when the import failed.
+     */
+    public void discard(Entry entry) {
+        if (entry.staging != null) {
+            delete(entry.staging);
+        }
+    }
+
+    /**
+     * Gets the total size of stored derivatives in bytes.
+     */
+    public long getSize() {
+        synchronized (index) {
+            return size;
+        }
+    }
+
+    /**
+     * Makes the file available at the target path. It is hard linked
+     * or copied if links are not supported.
+     * @param source the existing file
+     * @param target the path to replace
+     * @throws IOException failure
+     */
+    static void link(File source, File target) throws IOException {
+        Path targetPath = target.toPath();
+        // never write through a link to the stored file
+        Files.deleteIfExists(targetPath);
+        try {
+            Files.createLink(targetPath, source.toPath());
+        } catch (IOException | UnsupportedOperationException ex) {
+            LOG.log(Level.FINE, target.toString(), ex);
+            Files.copy(source.toPath(), targetPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Gets the hash of the file contents. The file is read only once
+     * as long as its size and modification time remain the same,
+     * also across restarts.
+     */
+    String contentHash(File file) throws IOException {
+        File canonical = file.getCanonicalFile();
+        String fingerprint = canonical.getPath() + '/' + canonical.length() + '/' + canonical.lastModified();
+        synchronized (hashMemo) {
+            String hash = hashMemo.get(fingerprint);
+            if (hash != null) {
+                return hash;
+            }
+        }
+        MessageDigest md = createDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream is = Files.newInputStream(canonical.toPath())) {
+            for (int length; (length = is.read(buffer)) > 0;) {
+                md.update(buffer, 0, length);
+            }
+        }
+        String hash = toHex(md.digest());
+        synchronized (hashMemo) {
+            hashMemo.put(fingerprint, hash);
+            appendHash(fingerprint, hash);
+        }
+        return hash;
+    }
+
+    /**
+     * Appends the hash to the index file. The memo works without it.
+     */
+    private void appendHash(String fingerprint, String hash) {
+        String line = fingerprint + '\t' + hash + '\n';
+        try {
+            Files.write(hashIndex.toPath(), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, hashIndex.toString(), ex);
+        }
+    }
+
+    /**
+     * Reads content hashes remembered by the previous run. The index file
+     * is rewritten if it holds more lines than the memo,
+     * e.g. hashes of rewritten scans.
+     */
+    private void loadHashes() {
+        if (!hashIndex.exists()) {
+            return ;
+        }
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(hashIndex.toPath(), StandardCharsets.UTF_8)) {
+            for (String line; (line = reader.readLine()) != null;) {
+                lines++;
+                int separator = line.lastIndexOf('\t');
+                // skips the incomplete line of an interrupted write
+                if (separator > 0 && line.length() - separator - 1 == 40) {
+                    hashMemo.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, hashIndex.toString(), ex);
+            return ;
+        }
+        if (lines > hashMemo.size()) {
+            writeHashes();
+        }
+    }
+
+    private void writeHashes() {
+        File tmp = new File(folder, HASH_INDEX_FILENAME + TMP_SUFFIX);
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> entry : hashMemo.entrySet()) {
+                    writer.write(entry.getKey());
+                    writer.write('\t');
+                    writer.write(entry.getValue());
+                    writer.write('\n');
+                }
+            }
+            Files.move(tmp.toPath(), hashIndex.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, hashIndex.toString(), ex);
+            tmp.delete();
+        }
+    }
+
+    private static String hash(String s) {
+        return toHex(createDigest().digest(s.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private void add(String key, long length) {
+        List<String> evicted = new ArrayList<String>();
+        synchronized (index) {
+            Long old = index.put(key, length);
+            size += length - (old == null ? 0 : old);
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (eldest.getKey().equals(key)) {
+                    continue;
+                }
+                size -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String evict : evicted) {
+            delete(new File(folder, evict));
+        }
+    }
+
+    private void remove(String key) {
+        synchronized (index) {
+            Long length = index.remove(key);
+            if (length != null) {
+                size -= length;
+            }
+        }
+    }
+
+    private static void delete(File entryFolder) {
+        File[] files = entryFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        entryFolder.delete();
+    }
+
+    /**
+     * Reads entries and content hashes left by the previous run.
+     * The modification time stands in for the access order of entries.
+     */
+    private void load() {
+        File[] entries = folder.listFiles();
+        if (entries == null) {
+            return ;
+        }
+        Arrays.sort(entries, new Comparator<File>() {
+
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+        for (File entry : entries) {
+            if (!entry.isDirectory()) {
+                continue;
+            }
+            if (entry.getName().endsWith(TMP_SUFFIX)) {
+                delete(entry);
+                continue;
+            }
+            long length = 0;
+            for (File file : entry.listFiles()) {
+                length += file.length();
+            }
+            add(entry.getName(), length);
+        }
+        loadHashes();
+        LOG.log(Level.FINE, "{0}: {1} entries, {2} bytes, {3} hashes",
+                new Object[]{folder, index.size(), size, hashMemo.size()});
+    }
+
+    /**
+     * Derivatives of a single scan.
+     */
+    public final class Entry {
+
+        private final String key;
+        /** The published folder or {@code null}. */
+        private final File entryFolder;
+        /** Collects derivatives of a new entry. */
+        private File staging;
+
+        Entry(String key, File entryFolder) {
+            this.key = key;
+            this.entryFolder = entryFolder;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Checks whether the scan has been processed with the same parameters before.
+         */
+        public boolean isFound() {
+            return entryFolder != null;
+        }
+
+        /**
+         * Gets the stored derivative.
+         * @param name the derivative name
+         * @return the file or {@code null}
+         */
+        public File get(String name) {
+            if (entryFolder == null) {
+                return null;
+            }
+            File file = new File(entryFolder, name);
+            return file.exists() ? file : null;
+        }
+
+        /**
+         * Checks whether all derivatives are stored.
+         * @param names derivative names
+         */
+        public boolean contains(String... names) {
+            for (String name : names) {
+                if (get(name) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Links the stored derivative to the target file.
+         * @param name the derivative name
+         * @param target the file to replace
+         * @return {@code false} if there is no such derivative
+         * @throws IOException failure
+         */
+        public boolean copyTo(String name, File target) throws IOException {
+            File file = get(name);
+            if (file == null) {
+                return false;
+            }
+            link(file, target);
+            return true;
+        }
+
+        /**
+         * Adds the new derivative to be published with {@link DerivativeStore#put}.
+         * @param name the derivative name
+         * @param derivative the generated file
+         * @throws IOException failure
+         */
+        public void add(String name, File derivative) throws IOException {
+            if (isFound()) {
+                return ;
+            }
+            link(derivative, new File(getStaging(), name));
+        }
+
+        /**
+         * Adds the new derivative to be published with {@link DerivativeStore#put}.
+         * @param name the derivative name
+         * @param contents the generated contents
+         * @throws IOException failure
+         */
+        public void add(String name, byte[] contents) throws IOException {
+            if (isFound()) {
+                return ;
+            }
+            Files.write(new File(getStaging(), name).toPath(), contents);
+        }
+
+        private File getStaging() throws IOException {
+            if (staging == null) {
+                File tmp = new File(folder, key + '.' + UUID.randomUUID() + TMP_SUFFIX);
+                staging = Files.createDirectory(tmp.toPath()).toFile();
+            }
+            return staging;
+        }
+
+    }
+
+    public static final class Options {
+
+        static final String PROPERTY_FOLDER = "import.derivatives.folder";
+        static final String PROPERTY_MAX_SIZE = "import.derivatives.maxSize";
+
+        private File folder;
+        /** In bytes. */
+        private long maxSize = 4096L * 1024 * 1024;
+
+        /**
+         * Reads options.
+         * @param config configuration
+         * @param defaultFolder the folder used when not configured
+         * @return options
+         */
+        public static Options from(Configuration config, File defaultFolder) {
+            Options options = new Options();
+            String folder = config.getString(PROPERTY_FOLDER);
+            options.setFolder(folder == null || folder.isEmpty() ? defaultFolder : new File(folder));
+            options.setMaxSize(config.getLong(PROPERTY_MAX_SIZE, options.getMaxSize() / (1024 * 1024)) * 1024 * 1024);
+            return options;
+        }
+
+        public File getFolder() {
+            return folder;
+        }
+
+        public void setFolder(File folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * Gets the store size in bytes. 0 disables the store.
+         */
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = Math.max(0, maxSize);
+        }
+
+        @Override
+        public String toString() {
+            return "Options{" + "folder=" + folder + ", maxSize=" + maxSize + '}';
+        }
+
+    }
+
+}
@@ -29,6 +29,8 @@ import cz.cas.lib.proarc.common.fedora.SearchView;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -68,7 +70,7 @@ public final class FedoraImport {
         batch.setState(Batch.State.INGESTING);
         batch = ibm.update(batch);
         String parentPid = batch.getParentPid();
-        long startTime = System.currentTimeMillis();
+        Timer.Sample sample = Metrics.getInstance().timer("import.ingest").start();
         ArrayList<String> ingestedPids = new ArrayList<String>();
         try {
             boolean itemFailed = importItems(batch, importer, ingestedPids, repair);
@@ -80,8 +82,11 @@ public final class FedoraImport {
             batch.setLog(ImportBatchManager.toString(t));
         } finally {
             batch = ibm.update(batch);
+            if (batch.getState() == Batch.State.INGESTING_FAILED) {
+                sample.failed();
+            }
             LOG.log(Level.FINE, "Total ingest time {0} ms. Ingested items: {1}.\n{2}",
-                    new Object[]{System.currentTimeMillis() - startTime, ingestedPids.size(), batch});
+                    new Object[]{sample.stop(), ingestedPids.size(), batch});
         }
         return batch;
     }
@@ -141,10 +146,11 @@ public final class FedoraImport {
      *      was skipped
      */
     public BatchItemObject importItem(BatchItemObject item, String importer, boolean repair) {
+        if (item.getState() == ObjectState.EXCLUDED) {
+            return null;
+        }
+        Timer.Sample sample = Metrics.getInstance().timer("import.ingest.item").start();
         try {
-            if (item.getState() == ObjectState.EXCLUDED) {
-                return null;
-            }
             if (repair) {
                 item = repairItemImpl(item, importer);
             } else {
@@ -154,6 +160,9 @@ public final class FedoraImport {
             LOG.log(Level.SEVERE, String.valueOf(item), t);
             item.setState(ObjectState.INGESTING_FAILED);
             item.setLog(ImportBatchManager.toString(t));
+            sample.failed();
+        } finally {
+            sample.stop();
         }
         if (item != null) {
             ibm.update(item);
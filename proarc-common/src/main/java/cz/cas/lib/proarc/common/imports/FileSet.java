@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.common.imports;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -72,6 +73,8 @@ public final class FileSet {
 
         private final File file;
         private String mimetype;
+        private InputUtils.ContentType contentType;
+        private boolean contentTypeRead;
 
         public FileEntry(File file) {
             this.file = file;
@@ -88,6 +91,21 @@ public final class FileSet {
             this.mimetype = mimetype;
         }
 
+        /**
+         * Gets the format recognized by the file contents. Unlike
+         * {@link #getMimetype} it reads the file header; just once
+         * for all callers of the entry.
+         * @return the format or {@code null} if it is not known
+         * @throws IOException file access failure
+         */
+        public InputUtils.ContentType getContentType() throws IOException {
+            if (!contentTypeRead) {
+                contentType = InputUtils.getContentType(file);
+                contentTypeRead = true;
+            }
+            return contentType;
+        }
+
         public File getFile() {
             return file;
         }
@@ -17,27 +17,39 @@
 package cz.cas.lib.proarc.common.imports;
 
 import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchItem;
 import cz.cas.lib.proarc.common.dao.BatchItem.FileState;
 import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
 import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import cz.cas.lib.proarc.common.imports.ImportProcess.ImportOptions;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
 import static cz.cas.lib.proarc.common.imports.ImportProcess.getConsumers;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Imports files grouped to {@link FileSet file sets}.
  *
+ * <p>The import is {@link #isResumable() resumable}. Each loaded object
+ * of the batch marks its file set as complete, so that the resumed import
+ * skips it and loads just the remaining file sets.
+ *
  * @author Jan Pokorsky
  */
 public class FileSetImport implements ImportHandler {
 
     private static final Logger LOG = Logger.getLogger(FileSetImport.class.getName());
+    /** The number of file items inserted in a single transaction. */
+    private static final int FILE_ITEM_BATCH_SIZE = 500;
 
     @Override
     public boolean isImportable(File folder) {
@@ -47,11 +59,10 @@ public class FileSetImport implements ImportHandler {
                 continue;
             }
             File file = new File(folder, fileName);
-            if (file.isFile() && file.canRead()) {
-                List<FileSet> fileSets = ImportFileScanner.getFileSets(Arrays.asList(file));
-                if (canImport(fileSets.get(0))) {
-                    return true;
-                }
+            // the name check is cheaper than file attributes on network file systems
+            List<FileSet> fileSets = ImportFileScanner.getFileSets(Arrays.asList(file));
+            if (canImport(fileSets.get(0)) && file.isFile() && file.canRead()) {
+                return true;
             }
         }
         return false;
@@ -86,40 +97,77 @@ public class FileSetImport implements ImportHandler {
         }
     }
 
+    @Override
+    public boolean isResumable() {
+        return true;
+    }
+
     private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx) throws InterruptedException {
         ImportBatchManager batchManager = ImportBatchManager.getInstance();
         long start = System.currentTimeMillis();
+        Map<String, BatchItemObject> loaded = findLoadedFileSets(batchManager, batch);
+        List<BatchItem> fileItems = new ArrayList<BatchItem>();
         for (FileSet fileSet : fileSets) {
             if (Thread.interrupted()) {
                 throw new InterruptedException();
             }
-            BatchItemObject item = consumeFileSet(fileSet, ctx);
+            BatchItemObject item = loaded.remove(TiffImporter.getFoxmlName(fileSet.getName()));
+            if (item == null) {
+                item = consumeFileSet(fileSet, ctx);
+            } else {
+                // loaded before the interruption
+                ctx.setConsumedFileCounter(ctx.getConsumedFileCounter() + 1);
+            }
             String pid = item == null ? null : item.getPid();
             FileState state = item == null ? FileState.SKIPPED : FileState.OK;
-            batchManager.addFileItem(batch.getId(), pid, state, fileSet.getFiles());
+            fileItems.addAll(batchManager.createFileItems(batch.getId(), pid, state, fileSet.getFiles()));
             if (item != null) {
                 if (ObjectState.LOADING_FAILED == item.getState()) {
+                    batchManager.addFileItems(batch.getId(), fileItems);
                     batch.setState(Batch.State.LOADING_FAILED);
                     batch.setLog(item.getFile() + "\n" + item.getLog());
                     return ;
                 }
             }
+            if (fileItems.size() >= FILE_ITEM_BATCH_SIZE) {
+                batchManager.addFileItems(batch.getId(), fileItems);
+                fileItems.clear();
+            }
         }
+        batchManager.addFileItems(batch.getId(), fileItems);
         LOG.log(Level.FINE, "Total time: {0} ms", System.currentTimeMillis() - start);
     }
 
+    /**
+     * Finds objects loaded before the import was interrupted.
+     * @return the map of FOXML file names and loaded objects
+     */
+    private static Map<String, BatchItemObject> findLoadedFileSets(ImportBatchManager batchManager, Batch batch) {
+        Map<String, BatchItemObject> loaded = new HashMap<String, BatchItemObject>();
+        for (BatchItemObject item : batchManager.findBatchObjects(batch.getId(), null, ObjectState.LOADED)) {
+            loaded.put(item.getFile().getName(), item);
+        }
+        if (!loaded.isEmpty()) {
+            LOG.log(Level.INFO, "Resuming {0}, loaded objects: {1}", new Object[]{batch, loaded.size()});
+        }
+        return loaded;
+    }
+
     private BatchItemObject consumeFileSet(FileSet fileSet, ImportOptions ctx) {
-        long start = System.currentTimeMillis();
+        Timer.Sample sample = Metrics.getInstance().timer("import.fileset").start();
         List<TiffImporter> consumers = getConsumers();
         for (TiffImporter consumer : consumers) {
             BatchItemObject item = consumer.consume(fileSet, ctx);
             if (item != null) {
-                LOG.log(Level.FINE, "time: {0} ms, {1}", new Object[] {System.currentTimeMillis() - start, fileSet});
+                if (ObjectState.LOADING_FAILED == item.getState()) {
+                    sample.failed();
+                }
+                LOG.log(Level.FINE, "time: {0} ms, {1}", new Object[] {sample.stop(), fileSet});
                 ctx.setConsumedFileCounter(ctx.getConsumedFileCounter() + 1);
                 return item;
             }
         }
-
+        Metrics.getInstance().counter("import.fileset.skipped").inc();
         return null;
     }
 
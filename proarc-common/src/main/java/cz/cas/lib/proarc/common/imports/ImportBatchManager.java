@@ -43,8 +43,10 @@ import java.io.StringWriter;
 import java.net.URI;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -147,7 +149,11 @@ public class ImportBatchManager {
             //      the root object! Timestamp order should be sufficient here.
             return items;
         }
-        LocalObject root = getRootObject(batch);
+        File rootFile = getRootFile(batch);
+        LocalStorage storage = new LocalStorage();
+        LocalObject root = rootFile.exists()
+                ? storage.loadPartial(ROOT_ITEM_PID, rootFile, RelationEditor.DATASTREAM_ID)
+                : storage.create(ROOT_ITEM_PID, rootFile);
         RelationEditor relationEditor = new RelationEditor(root);
         List<String> members;
         try {
@@ -359,14 +365,8 @@ public class ImportBatchManager {
     }
 
     public LocalObject getRootObject(Batch batch) {
-        File folder = resolveBatchFile(batch.getFolder());
         LocalStorage storage = new LocalStorage();
-        File targetBatchFolder = ImportProcess.getTargetFolder(folder);
-        if (!targetBatchFolder.exists()) {
-            throw new IllegalStateException(
-                    String.format("Cannot resolve folder path: %s for %s!", targetBatchFolder, batch));
-        }
-        File root = new File(targetBatchFolder, ROOT_ITEM_FILENAME);
+        File root = getRootFile(batch);
         LocalObject loRoot;
         if (root.exists()) {
             loRoot = storage.load(ROOT_ITEM_PID, root);
@@ -376,38 +376,68 @@ public class ImportBatchManager {
         return loRoot;
     }
 
+    private File getRootFile(Batch batch) {
+        File folder = resolveBatchFile(batch.getFolder());
+        File targetBatchFolder = ImportProcess.getTargetFolder(folder);
+        if (!targetBatchFolder.exists()) {
+            throw new IllegalStateException(
+                    String.format("Cannot resolve folder path: %s for %s!", targetBatchFolder, batch));
+        }
+        return new File(targetBatchFolder, ROOT_ITEM_FILENAME);
+    }
+
+    /**
+     * Gets thumbnails of the batch items packed by the import.
+     */
+    public ThumbnailPack getThumbnailPack(Batch batch) {
+        File folder = resolveBatchFile(batch.getFolder());
+        return new ThumbnailPack(ImportProcess.getTargetFolder(folder));
+    }
+
     public void addFileItem(int batchId, String pid, FileState state, List<FileEntry> files) {
+        addFileItems(batchId, createFileItems(batchId, pid, state, files));
+    }
+
+    /**
+     * Creates file items of the file set to be added later with {@link #addFileItems}.
+     */
+    public List<BatchItem> createFileItems(int batchId, String pid, FileState state, List<FileEntry> files) {
+        ArrayList<BatchItem> items = new ArrayList<BatchItem>(files.size());
+        for (FileEntry file : files) {
+            BatchItem bitem = new BatchItem();
+            bitem.setBatchId(batchId);
+            bitem.setFile(file.getFile().getName());
+            bitem.setPid(pid);
+            bitem.setState(state.name());
+            bitem.setType(BatchItem.Type.FILE);
+            items.add(bitem);
+        }
+        return items;
+    }
+
+    /**
+     * Inserts file items of many file sets in a single transaction.
+     */
+    public void addFileItems(int batchId, List<BatchItem> items) {
+        if (items.isEmpty()) {
+            return ;
+        }
         BatchItemDao bitemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
-        String filename = null;
         try {
-            for (FileEntry file : files) {
-                filename = file.getFile().getName();
-                addFileItem(batchId, pid, state.name(), filename, bitemDao);
-            }
+            bitemDao.insert(items);
             tx.commit();
         } catch (Throwable ex) {
             tx.rollback();
             throw new IllegalStateException(
-                    String.format("batch: %s, pid: %s, state: %s, file: %s", batchId, pid, state, filename),
+                    String.format("batch: %s, items: %s, first: %s", batchId, items.size(), items.get(0)),
                     ex);
         } finally {
             tx.close();
         }
     }
 
-    private BatchItem addFileItem(int batchId, String pid, String state, String file, BatchItemDao bitemDao) {
-        BatchItem bitem = bitemDao.create();
-        bitem.setBatchId(batchId);
-        bitem.setFile(file);
-        bitem.setPid(pid);
-        bitem.setState(state);
-        bitem.setType(BatchItem.Type.FILE);
-        bitemDao.update(bitem);
-        return bitem;
-    }
-
     public void update(AbstractBatchItem item) {
         update(item.getItem());
     }
@@ -442,21 +472,12 @@ public class ImportBatchManager {
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
         try {
-            List<BatchItem> items;
-            if (pids.isEmpty()) {
-                items = bitemDao.find(batch.getId(), null, null, null, BatchItem.Type.OBJECT.name());
-                items = filterBatchItems(items, pids);
-            } else {
-                items = bitemDao.find(batch.getId(), pids.iterator().next(), null, null, BatchItem.Type.OBJECT.name());
-            }
-            if (items.isEmpty()) {
+            // one UPDATE for all items and one write of the root RELS-EXT
+            int count = bitemDao.updateState(batch.getId(), pids,
+                    BatchItem.Type.OBJECT.name(), ObjectState.EXCLUDED.name());
+            if (count == 0) {
                 return false;
             }
-            List<BatchItemObject> objs = toBatchObjects(items);
-            for (BatchItemObject obj : objs) {
-                obj.setState(ObjectState.EXCLUDED);
-                bitemDao.update(obj.getItem());
-            }
             removeChildRelation(batch, null, pids);
             tx.commit();
             return true;
@@ -468,21 +489,6 @@ public class ImportBatchManager {
         }
     }
 
-    private List<BatchItem> filterBatchItems(List<BatchItem> items, Collection<String> pids) {
-        if (items.isEmpty()) {
-            return items;
-        } else if (pids == null || pids.isEmpty()) {
-            return Collections.emptyList();
-        }
-        ArrayList<BatchItem> result = new ArrayList<BatchItem>(pids.size());
-        for (BatchItem item : items) {
-            if (pids.contains(item.getPid())) {
-                result.add(item);
-            }
-        }
-        return result;
-    }
-
     boolean addChildRelation(Batch batch, String parentPid, String childPid) throws DigitalObjectException {
         if (batch == null) {
             throw new NullPointerException("batch");
@@ -526,6 +532,56 @@ public class ImportBatchManager {
         return changed;
     }
 
+    /**
+     * Prepares the interrupted batch to continue. Loaded objects are kept.
+     * Objects being loaded at the time of the interruption are removed
+     * from the batch together with all file items that the import creates again.
+     *
+     * @param batch batch to resume
+     */
+    public void resumeBatch(Batch batch) {
+        if (batch == null) {
+            throw new NullPointerException("batch");
+        }
+        List<String> unfinished = new ArrayList<String>();
+        for (ObjectState state : EnumSet.of(ObjectState.LOADING, ObjectState.LOADING_FAILED)) {
+            for (BatchItemObject item : findBatchObjects(batch.getId(), null, state)) {
+                unfinished.add(item.getPid());
+            }
+        }
+        batch.setState(State.LOADING);
+        batch.setLog(null);
+        BatchDao dao = daos.createBatch();
+        BatchItemDao itemDao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        dao.setTransaction(tx);
+        itemDao.setTransaction(tx);
+        try {
+            dao.update(batch);
+            itemDao.removeItems(batch.getId(), BatchItem.Type.FILE.name(), null);
+            itemDao.removeItems(batch.getId(), BatchItem.Type.OBJECT.name(),
+                    Arrays.asList(ObjectState.LOADING.name(), ObjectState.LOADING_FAILED.name()));
+            tx.commit();
+        } catch (Throwable t) {
+            tx.rollback();
+            throw new IllegalStateException(String.format("batch: %s", batch), t);
+        } finally {
+            tx.close();
+        }
+        // files cannot be rolled back; edit them after the commit
+        if (!unfinished.isEmpty()) {
+            try {
+                removeChildRelation(batch, null, unfinished);
+                ThumbnailPack thumbnails = getThumbnailPack(batch);
+                for (String pid : unfinished) {
+                    thumbnails.remove(pid);
+                }
+            } catch (DigitalObjectException | IOException ex) {
+                throw new IllegalStateException(String.format("batch: %s, pid: %s", batch, unfinished), ex);
+            }
+        }
+    }
+
     /**
      * Clears all batch items and RELS-EXTs
      *
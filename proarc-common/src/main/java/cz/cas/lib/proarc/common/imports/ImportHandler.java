@@ -51,4 +51,14 @@ public interface ImportHandler {
      */
     void start(ImportOptions importConfig) throws Exception;
 
+    /**
+     * Can the handler continue the interrupted import? The resumed import
+     * keeps loaded objects and the handler should load just the remaining
+     * contents. Otherwise the import starts from scratch.
+     * @return yes or no
+     */
+    default boolean isResumable() {
+        return false;
+    }
+
 }
@@ -38,7 +38,8 @@ import java.util.logging.Logger;
  * {@link #prepare(java.io.File, java.lang.String, cz.cas.lib.proarc.common.user.UserProfile, cz.cas.lib.proarc.common.imports.ImportBatchManager, java.lang.String, java.lang.String, boolean) checks}
  * preconditions of the import,
  * {@link #start() runs} the import and if necessary {@link #resume resumes}
- * already prepared import.
+ * already prepared import. The resumed import of a {@link ImportHandler#isResumable()
+ * resumable} handler continues with objects loaded before the interruption.
  * <p>The process delegates to {@link ImportHandler} that is bound to the profile.
  *
  * @author Jan Pokorsky
@@ -75,26 +76,44 @@ public final class ImportProcess implements Runnable {
     }
 
     /**
-     * Resumes a scheduled import process.
+     * Resumes a scheduled import process. The import starts from scratch.
      * @see #prepare
      * @see ImportDispatcher
      */
     public static ImportProcess resume(Batch batch, ImportBatchManager ibm, ImportProfile profile) {
+        return resume(batch, ibm, profile, false);
+    }
+
+    /**
+     * Resumes a scheduled import process.
+     * @param continueLoading whether to keep objects loaded before the interruption
+     *          in case of the {@link ImportHandler#isResumable() resumable} import
+     */
+    static ImportProcess resume(Batch batch, ImportBatchManager ibm, ImportProfile profile,
+            boolean continueLoading) {
+
         UserManager users = UserUtil.getDefaultManger();
         UserProfile user = users.find(batch.getUserId());
         File importFolder = ibm.resolveBatchFile(batch.getFolder());
         ImportOptions options = ImportOptions.fromBatch(
                 batch, importFolder, user, profile);
-        // if necessary reset old computed batch items
         ImportProcess process = new ImportProcess(options, ibm);
-        process.removeCaches(options.getImportFolder());
-        process.removeBatchItems(batch);
+        if (continueLoading && options.getImporter().isResumable()
+                && getTargetFolder(importFolder).exists()) {
+            // continue with already loaded objects
+            ibm.resumeBatch(batch);
+        } else {
+            // if necessary reset old computed batch items
+            process.removeCaches(options.getImportFolder());
+            process.removeBatchItems(batch);
+        }
         return process;
     }
 
     /**
      * Read and submits scheduled processes from last session.
-     * This should be run when application starts.
+     * This should be run when application starts. Interrupted imports
+     * continue with already loaded objects if possible.
      */
     public static void resumeAll(ImportBatchManager ibm, ImportDispatcher dispatcher,
             AppConfiguration config) {
@@ -105,7 +124,7 @@ public final class ImportProcess implements Runnable {
             try {
                 ConfigurationProfile profile = resolveProfile(batch, profiles);
                 ImportProfile importCfg = config.getImportConfiguration(profile);
-                ImportProcess resume = ImportProcess.resume(batch, ibm, importCfg);
+                ImportProcess resume = ImportProcess.resume(batch, ibm, importCfg, true);
                 dispatcher.addImport(resume);
             } catch (Exception ex) {
                 logBatchFailure(ibm, batch, ex);
@@ -205,7 +224,11 @@ public final class ImportProcess implements Runnable {
             } catch (Throwable ex) {
                 return logBatchFailure(batch, ex);
             }
-            File targetFolder = createTargetFolder(importFolder);
+            File targetFolder = getTargetFolder(importFolder);
+            if (!targetFolder.exists()) {
+                // otherwise kept by the resumed import
+                targetFolder = createTargetFolder(importFolder);
+            }
             importConfig.setTargetFolder(targetFolder);
             importConfig.getImporter().start(importConfig);
             if (batch.getState() == Batch.State.LOADING) {
@@ -37,6 +37,7 @@ public final class ImportProfile {
     /** The configuration key to register import configuration profiles. */
     public static final String PROFILES = "import.profiles";
 
+    public static final String ARCHIVE_THREADS = "import.archive.threads";
     public static final String ALTO_SUFFIX = "import.alto.file.suffix";
     public static final String MODEL_ID = "import.page.modelId";
     public static final String NDK_ARCHIVAL_PROCESSOR = "import.ndk_archival.processor";
@@ -79,6 +80,14 @@ public final class ImportProfile {
         }
     }
 
+    /**
+     * Gets the number of threads writing objects of an archive package.
+     */
+    public int getArchiveThreads() {
+        Integer val = getPositiveInteger(ARCHIVE_THREADS);
+        return val == null ? 1 : val;
+    }
+
     public String getModelId() {
         String val = config.getString(MODEL_ID, NdkPlugin.MODEL_PAGE);
         return val;
@@ -19,14 +19,20 @@ package cz.cas.lib.proarc.common.imports;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.DatatypeConverter;
-import org.apache.commons.io.IOUtils;
 
 /**
  * Helper class to check imported data.
  *
+ * <p>Files are recognized by magic numbers. The header is read at once
+ * to a per thread direct buffer so that checks do not allocate
+ * and a file is opened just once to recognize all supported formats,
+ * see {@link #getContentType}.
+ *
  * @author Jan Pokorsky
  */
 public class InputUtils {
@@ -45,8 +51,42 @@ public class InputUtils {
     public static final byte[] TIFF_LE_MAGIC_NUMBER =
             DatatypeConverter.parseHexBinary("49492A00");
 
+    /** The number of header bytes covering all known magic numbers. */
+    static final int HEADER_SIZE = JP2000_MAGIC_NUMBER.length;
+
     private static final Logger LOG = Logger.getLogger(InputUtils.class.getName());
 
+    private static final ThreadLocal<ByteBuffer> HEADER_BUFFER = new ThreadLocal<ByteBuffer>() {
+
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(HEADER_SIZE);
+        }
+    };
+
+    /**
+     * Formats recognized by their magic numbers.
+     */
+    public enum ContentType {
+
+        JP2000("image/jp2", JP2000_MAGIC_NUMBER),
+        JPEG("image/jpeg", JPEG_MAGIC_NUMBER),
+        PDF("application/pdf", PDF_MAGIC_NUMBER),
+        TIFF("image/tiff", TIFF_LE_MAGIC_NUMBER, TIFF_BE_MAGIC_NUMBER);
+
+        private final String mimetype;
+        private final byte[][] magics;
+
+        private ContentType(String mimetype, byte[]... magics) {
+            this.mimetype = mimetype;
+            this.magics = magics;
+        }
+
+        public String getMimetype() {
+            return mimetype;
+        }
+
+    }
     
     public static boolean isJp2000(File f) throws IOException {
         return hasMagicNumber(f, JP2000_MAGIC_NUMBER);
@@ -64,6 +104,24 @@ public class InputUtils {
         return hasMagicNumber(f, TIFF_LE_MAGIC_NUMBER, TIFF_BE_MAGIC_NUMBER);
     }
 
+    /**
+     * Recognizes the file format with a single read of the file header.
+     * @param f file to check
+     * @return the format or {@code null} if it is not known
+     * @throws IOException file access failure
+     */
+    public static ContentType getContentType(File f) throws IOException {
+        ByteBuffer header = readHeader(f);
+        for (ContentType type : ContentType.values()) {
+            for (byte[] magic : type.magics) {
+                if (startWith(header, magic)) {
+                    return type;
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Checks a file for magic numbers.
      * @param f file to check
@@ -73,44 +131,51 @@ public class InputUtils {
      */
     public static boolean hasMagicNumber(File f, byte[]... magics) throws IOException {
         int maxlength = 0;
-        int minlength = 0;
         for (byte[] magic : magics) {
             maxlength = Math.max(maxlength, magic.length);
-            minlength = Math.min(minlength, magic.length);
         }
-        FileInputStream fis = new FileInputStream(f);
-        try {
-            byte[] buf = new byte[maxlength];
-            int length = fis.read(buf);
-            if (length < minlength) {
-                return false;
+        ByteBuffer header = maxlength > HEADER_SIZE
+                ? readHeader(f, ByteBuffer.allocate(maxlength)) : readHeader(f);
+        for (byte[] magic : magics) {
+            if (startWith(header, magic)) {
+                return true;
             }
-            for (byte[] magic : magics) {
-                if (startWith(buf, length, magic)) {
-                    return true;
-                }
+        }
+        if (LOG.isLoggable(Level.FINE)) {
+            byte[] src = new byte[header.remaining()];
+            header.get(src);
+            LOG.log(Level.FINE, "\nfile: {0}\nsrc: {1}", new Object[]{
+                f, DatatypeConverter.printHexBinary(src)});
+        }
+        return false;
+    }
+
+    /**
+     * Reads the file header to the buffer of the calling thread.
+     * @return the buffer ready to read; it is valid till the next call
+     */
+    private static ByteBuffer readHeader(File f) throws IOException {
+        return readHeader(f, HEADER_BUFFER.get());
+    }
+
+    private static ByteBuffer readHeader(File f, ByteBuffer header) throws IOException {
+        header.clear();
+        // FileInputStream throws FileNotFoundException for missing files
+        try (FileChannel channel = new FileInputStream(f).getChannel()) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // a short read of a slow file system
             }
-            return false;
-        } finally {
-            IOUtils.closeQuietly(fis);
         }
+        header.flip();
+        return header;
     }
 
-    private static boolean startWith(byte[] src, int srcLength, byte[] subarray) {
-        if (subarray.length > srcLength ) {
+    private static boolean startWith(ByteBuffer src, byte[] subarray) {
+        if (subarray.length > src.remaining()) {
             return false;
         }
-        StringBuilder s1 = new StringBuilder();
-        StringBuilder s2 = new StringBuilder();
         for (int i = 0; i < subarray.length; i++) {
-            s1.append(src[i]);
-            s2.append(subarray[i]);
-            if (src[i] != subarray[i]) {
-                if (LOG.isLoggable(Level.FINE)) {
-                    LOG.log(Level.FINE, "\nsrc: {0}\nsub: {1}", new Object[]{
-                        DatatypeConverter.printHexBinary(src),
-                        DatatypeConverter.printHexBinary(subarray)});
-                }
+            if (src.get(src.position() + i) != subarray[i]) {
                 return false;
             }
         }
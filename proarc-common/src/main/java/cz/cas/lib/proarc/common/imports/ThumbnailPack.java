@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Thumbnails of a batch import packed in a single file. The import appends
+ * each thumbnail so that the batch editor can fetch thumbnails of many items
+ * as one sprite image instead of loading the FOXML of each item.
+ *
+ * <p>The pack consists of {@value #PACK_FILENAME} with concatenated images
+ * and of {@value #INDEX_FILENAME} with a line per thumbnail. The index is
+ * append only; a later line of the same PID overrides the former one and
+ * a line without the position removes the thumbnail from the pack.
+ * Sprites group {@link #SPRITE_SIZE} consecutive thumbnails in the vertical
+ * strip.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ThumbnailPack {
+
+    static final String PACK_FILENAME = "thumbnails.pack";
+    static final String INDEX_FILENAME = "thumbnails.idx";
+    static final String SPRITE_FILENAME = "thumbnails.%s.jpg";
+    /** The number of thumbnails per sprite. */
+    public static final int SPRITE_SIZE = 50;
+    private static final float SPRITE_QUALITY = 0.9f;
+    /** Serializes writers of all packs as appends are tiny. */
+    private static final Object WRITE_LOCK = new Object();
+
+    private final File folder;
+
+    /**
+     * @param folder the target folder of the batch import
+     */
+    public ThumbnailPack(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Appends the thumbnail of the digital object.
+     * @param pid PID
+     * @param thumbnail JPEG file
+     * @throws IOException failure
+     */
+    public void add(String pid, File thumbnail) throws IOException {
+        int[] size = readSize(thumbnail);
+        synchronized (WRITE_LOCK) {
+            File pack = new File(folder, PACK_FILENAME);
+            long offset = pack.length();
+            try (FileOutputStream out = new FileOutputStream(pack, true)) {
+                long length = Files.copy(thumbnail.toPath(), out);
+                out.getFD().sync();
+                appendIndex(pid + '\t' + offset + '\t' + length + '\t' + size[0] + '\t' + size[1]);
+            }
+        }
+    }
+
+    /**
+     * Removes the thumbnail of the digital object, e.g. when the object
+     * gets a new thumbnail.
+     * @param pid PID
+     * @throws IOException failure
+     */
+    public void remove(String pid) throws IOException {
+        if (!new File(folder, INDEX_FILENAME).exists()) {
+            return ;
+        }
+        synchronized (WRITE_LOCK) {
+            appendIndex(pid);
+        }
+    }
+
+    private void appendIndex(String line) throws IOException {
+        try (Writer w = new OutputStreamWriter(
+                new FileOutputStream(new File(folder, INDEX_FILENAME), true), StandardCharsets.UTF_8)) {
+            w.write(line);
+            w.write('\n');
+        }
+    }
+
+    /**
+     * Reads the current index of the pack.
+     * @return the index; empty if there is no pack
+     * @throws IOException failure
+     */
+    public Index getIndex() throws IOException {
+        Index index = new Index();
+        File indexFile = new File(folder, INDEX_FILENAME);
+        if (!indexFile.exists()) {
+            return index;
+        }
+        index.created = Files.readAttributes(indexFile.toPath(), BasicFileAttributes.class)
+                .creationTime().toMillis();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), StandardCharsets.UTF_8))) {
+            int top = 0;
+            for (String line; (line = reader.readLine()) != null;) {
+                String[] columns = line.split("\t");
+                if (columns.length == 1 && !columns[0].isEmpty()) {
+                    index.current.remove(columns[0]);
+                } else if (columns.length == 5) {
+                    int position = index.entries.size();
+                    if (position % SPRITE_SIZE == 0) {
+                        top = 0;
+                    }
+                    Entry entry = new Entry(columns[0], position, Long.parseLong(columns[1]),
+                            Integer.parseInt(columns[2]), Integer.parseInt(columns[3]),
+                            Integer.parseInt(columns[4]), top);
+                    top += entry.height;
+                    index.entries.add(entry);
+                    index.current.put(entry.pid, entry);
+                }
+                // otherwise a line of an interrupted write
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Gets the sprite of thumbnails. Sprites of complete groups are written
+     * to the batch folder for further requests.
+     * @param index the current index
+     * @param sprite the sprite number
+     * @return the JPEG file or {@code null} if the sprite is not complete yet
+     * @throws IOException failure
+     */
+    public File getSpriteFile(Index index, int sprite) throws IOException {
+        List<Entry> entries = index.getSprite(sprite);
+        if (entries.size() < SPRITE_SIZE) {
+            return null;
+        }
+        File spriteFile = new File(folder, String.format(SPRITE_FILENAME, sprite));
+        if (!spriteFile.exists()) {
+            File tmp = File.createTempFile(spriteFile.getName(), ".tmp", folder);
+            try {
+                Files.write(tmp.toPath(), createSprite(entries));
+                Files.move(tmp.toPath(), spriteFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+        }
+        return spriteFile;
+    }
+
+    /**
+     * Builds the sprite of the incomplete group.
+     * @return JPEG contents
+     * @throws FileNotFoundException unknown sprite
+     * @throws IOException failure
+     */
+    public byte[] getSprite(Index index, int sprite) throws IOException {
+        List<Entry> entries = index.getSprite(sprite);
+        if (entries.isEmpty()) {
+            throw new FileNotFoundException(String.format(SPRITE_FILENAME, sprite));
+        }
+        return createSprite(entries);
+    }
+
+    private byte[] createSprite(List<Entry> entries) throws IOException {
+        int width = 0;
+        int height = 0;
+        for (Entry entry : entries) {
+            width = Math.max(width, entry.width);
+            height += entry.height;
+        }
+        BufferedImage sprite = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = sprite.createGraphics();
+        try (RandomAccessFile pack = new RandomAccessFile(new File(folder, PACK_FILENAME), "r")) {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            for (Entry entry : entries) {
+                byte[] contents = new byte[entry.length];
+                pack.seek(entry.offset);
+                pack.readFully(contents);
+                BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(contents));
+                if (thumbnail != null) {
+                    g.drawImage(thumbnail, 0, entry.top, null);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return encode(sprite);
+    }
+
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(SPRITE_QUALITY);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * Reads image dimensions from the header without decoding the image.
+     */
+    private static int[] readSize(File image) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(image)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image: " + image);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                return new int[] {reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The snapshot of the pack index.
+     */
+    public static final class Index {
+
+        /** All packed thumbnails in the order of their positions. */
+        private final List<Entry> entries = new ArrayList<Entry>();
+        /** Valid thumbnails. */
+        private final Map<String, Entry> current = new HashMap<String, Entry>();
+        /** Distinguishes packs of a reset batch. */
+        private long created;
+
+        /**
+         * Gets the valid thumbnail of the digital object.
+         * @return the entry or {@code null}
+         */
+        public Entry get(String pid) {
+            return current.get(pid);
+        }
+
+        /**
+         * Gets the tag that changes with contents of the sprite.
+         * @return the tag or {@code null} for unknown sprite
+         */
+        public String getSpriteTag(int sprite) {
+            int count = getSprite(sprite).size();
+            return count == 0 ? null : Long.toHexString(created) + '-' + sprite + '-' + count;
+        }
+
+        List<Entry> getSprite(int sprite) {
+            int from = sprite * SPRITE_SIZE;
+            if (sprite < 0 || from >= entries.size()) {
+                return Collections.emptyList();
+            }
+            return entries.subList(from, Math.min(from + SPRITE_SIZE, entries.size()));
+        }
+
+    }
+
+    /**
+     * The thumbnail in the pack.
+     */
+    public static final class Entry {
+
+        private final String pid;
+        private final int position;
+        private final long offset;
+        private final int length;
+        private final int width;
+        private final int height;
+        private final int top;
+
+        Entry(String pid, int position, long offset, int length, int width, int height, int top) {
+            this.pid = pid;
+            this.position = position;
+            this.offset = offset;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+            this.top = top;
+        }
+
+        public String getPid() {
+            return pid;
+        }
+
+        /** Gets the number of the sprite containing the thumbnail. */
+        public int getSprite() {
+            return position / SPRITE_SIZE;
+        }
+
+        /** Gets the vertical offset of the thumbnail in the sprite. */
+        public int getTop() {
+            return top;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+    }
+
+}
@@ -33,12 +33,16 @@ import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.imports.FileSet.FileEntry;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import cz.cas.lib.proarc.common.imports.ImportProcess.ImportOptions;
+import cz.cas.lib.proarc.common.metrics.Metrics;
 import cz.cas.lib.proarc.common.object.DigitalObjectHandler;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
+import cz.cas.lib.proarc.common.object.ImageTiles;
 import cz.cas.lib.proarc.common.object.MetadataHandler;
 import cz.cas.lib.proarc.common.ocr.AltoDatastream;
 import cz.cas.lib.proarc.common.process.ExternalProcess;
 import cz.cas.lib.proarc.common.process.KakaduCompress;
+import cz.cas.lib.proarc.mix.MixType;
+import cz.cas.lib.proarc.mix.MixUtils;
 import cz.incad.imgsupport.ImageMimeType;
 import cz.incad.imgsupport.ImageSupport;
 import cz.incad.imgsupport.ImageSupport.ScalingMethod;
@@ -47,11 +51,17 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.stream.FileImageOutputStream;
 import javax.ws.rs.core.MediaType;
+import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.configuration.Configuration;
 
 /**
@@ -94,24 +104,31 @@ public final class TiffImporter {
         // creates FOXML and metadata
         LocalObject localObj = createObject(originalFilename, ctx);
         BatchItemObject batchLocalObject = ibm.addLocalObject(ctx.getBatch(), localObj);
+        DerivativeStore.Entry derivatives = null;
         try {
-            if (!InputUtils.isTiff(f)) {
+            if (tiffEntry.getContentType() != InputUtils.ContentType.TIFF) {
                 throw new IllegalStateException("Not a TIFF content: " + f);
             }
+            derivatives = findDerivatives(f, config);
             DigitalObjectHandler dobjHandler = DigitalObjectManager.getDefault().createHandler(localObj);
             createRelsExt(dobjHandler, f, ctx);
             createMetadata(dobjHandler, ctx);
-            createImages(ctx.getTargetFolder(), f, originalFilename, localObj, config);
-            importArchivalCopy(fileSet, f, localObj, ctx);
-            importUserCopy(fileSet, f, localObj, ctx);
+            BufferedImage image = createImages(ctx.getTargetFolder(), f, originalFilename, localObj, config, derivatives);
+            importArchivalCopy(fileSet, f, localObj, ctx, derivatives);
+            importUserCopy(fileSet, f, localObj, ctx, derivatives);
+            createTiles(localObj, image);
             importOcr(fileSet, localObj, ctx);
-            createTechnicalMetadata(localObj, ctx);
+            createTechnicalMetadata(fileSet, localObj, ctx, derivatives);
             // writes FOXML
             dobjHandler.commit();
+            storeDerivatives(derivatives);
             ibm.addChildRelation(ctx.getBatch(), null, localObj.getPid());
             batchLocalObject.setState(ObjectState.LOADED);
         } catch (Throwable ex) {
             LOG.log(Level.SEVERE, f.toString(), ex);
+            if (derivatives != null) {
+                DerivativeStore.getInstance().discard(derivatives);
+            }
             batchLocalObject.setState(ObjectState.LOADING_FAILED);
             batchLocalObject.setLog(ImportBatchManager.toString(ex));
         }
@@ -120,15 +137,101 @@ public final class TiffImporter {
         return batchLocalObject;
     }
 
+    /**
+     * Finds derivatives of the scan processed by a former import.
+     * The store is optional.
+     * @return the entry or {@code null}
+     */
+    private static DerivativeStore.Entry findDerivatives(File tiff, ImportProfile config) {
+        DerivativeStore store = DerivativeStore.getInstance();
+        if (store == null) {
+            return null;
+        }
+        try {
+            DerivativeStore.Entry derivatives = store.find(tiff, getDerivativeParams(config));
+            Metrics.getInstance().counter(derivatives.isFound()
+                    ? "import.tiff.derivatives.hit" : "import.tiff.derivatives.miss").inc();
+            return derivatives;
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, tiff.toString(), ex);
+            return null;
+        }
+    }
+
+    private static void storeDerivatives(DerivativeStore.Entry derivatives) {
+        if (derivatives != null) {
+            try {
+                DerivativeStore.getInstance().put(derivatives);
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, derivatives.getKey(), ex);
+            }
+        }
+    }
+
+    /**
+     * Gets parameters of the profile that affect generated derivatives.
+     * A change of any of them must not reuse derivatives of former imports.
+     */
+    static String getDerivativeParams(ImportProfile config) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(BinaryEditor.PREVIEW_ID).append('=').append(config.getPreviewMaxWidth())
+                .append('x').append(config.getPreviewMaxHeight())
+                .append('/').append(config.getPreviewScaling());
+        sb.append(';').append(BinaryEditor.THUMB_ID).append('=').append(config.getThumbnailMaxWidth())
+                .append('x').append(config.getThumbnailMaxHeight())
+                .append('/').append(config.getThumbnailScaling());
+        appendProcessorParams(sb, BinaryEditor.NDK_ARCHIVAL_ID, config.getNdkArchivalProcessor());
+        appendProcessorParams(sb, BinaryEditor.NDK_USER_ID, config.getNdkUserProcessor());
+        return sb.toString();
+    }
+
+    private static void appendProcessorParams(StringBuilder sb, String dsId, Configuration processorConfig) {
+        sb.append(';').append(dsId).append('=');
+        if (processorConfig == null) {
+            return ;
+        }
+        TreeSet<String> keys = new TreeSet<String>();
+        for (Iterator<String> it = processorConfig.getKeys(); it.hasNext();) {
+            keys.add(it.next());
+        }
+        for (String key : keys) {
+            sb.append(key).append(':').append(processorConfig.getList(key)).append(',');
+        }
+    }
+
+    /**
+     * Links the stored derivative to the batch folder.
+     * @return {@code false} if there is no stored derivative
+     */
+    private static boolean reuseDerivative(DerivativeStore.Entry derivatives, String name, File target)
+            throws IOException {
+        return derivatives != null && derivatives.copyTo(name, target);
+    }
+
+    private static void keepDerivative(DerivativeStore.Entry derivatives, String name, File derivative)
+            throws IOException {
+        if (derivatives != null) {
+            derivatives.add(name, derivative);
+        }
+    }
+
     private LocalObject createObject(String originalFilename, ImportOptions ctx) {
         File tempBatchFolder = ctx.getTargetFolder();
         LocalStorage storage = new LocalStorage();
-        File foxml = new File(tempBatchFolder, originalFilename + ".foxml");
+        File foxml = new File(tempBatchFolder, getFoxmlName(originalFilename));
         LocalObject localObj = storage.create(foxml);
         localObj.setOwner(ctx.getUsername());
         return localObj;
     }
 
+    /**
+     * Gets the name of the FOXML file of the imported file set.
+     * @param fileSetName see {@link FileSet#getName}
+     */
+    static String getFoxmlName(String fileSetName) {
+        return fileSetName + ".foxml";
+    }
+
     private void createMetadata(DigitalObjectHandler objHandler, ImportOptions ctx) throws DigitalObjectException {
         MetadataHandler<Object> mHandler = objHandler.metadata();
         if (mHandler instanceof PageViewHandler) {
@@ -209,17 +312,18 @@ public final class TiffImporter {
         return null;
     }
 
-    private void importArchivalCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options) throws DigitalObjectException, IOException {
+    private void importArchivalCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options,
+            DerivativeStore.Entry derivatives) throws DigitalObjectException, IOException {
         ImportProfile config = options.getConfig();
         FileEntry entry = findSibling(fileSet, config.getNdkArchivalFileSuffix());
         String dsId = BinaryEditor.NDK_ARCHIVAL_ID;
         if (entry == null) {
-            entry = processJp2Copy(fileSet, tiff, options.getTargetFolder(), dsId, config.getNdkArchivalProcessor());
+            entry = processJp2Copy(fileSet, tiff, options.getTargetFolder(), dsId, config.getNdkArchivalProcessor(), derivatives);
         }
         if (entry != null) {
             File entryFile = entry.getFile();
             // do not use entry.getMimeType. JDK 1.6 does not recognize JPEG2000
-            if (!InputUtils.isJp2000(entryFile)) {
+            if (entry.getContentType() != InputUtils.ContentType.JP2000) {
                 throw new IllegalStateException("Not a JP2000 content: " + entryFile);
             }
             BinaryEditor binaryEditor = BinaryEditor.dissemination(fo, dsId, BinaryEditor.IMAGE_JP2);
@@ -230,17 +334,18 @@ public final class TiffImporter {
         }
     }
 
-    private void importUserCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options) throws DigitalObjectException, IOException {
+    private void importUserCopy(FileSet fileSet, File tiff, FedoraObject fo, ImportOptions options,
+            DerivativeStore.Entry derivatives) throws DigitalObjectException, IOException {
         ImportProfile config = options.getConfig();
         FileEntry entry = findSibling(fileSet, config.getNdkUserFileSuffix());
         String dsId = BinaryEditor.NDK_USER_ID;
         if (entry == null) {
-            entry = processJp2Copy(fileSet, tiff, options.getTargetFolder(), dsId, config.getNdkUserProcessor());
+            entry = processJp2Copy(fileSet, tiff, options.getTargetFolder(), dsId, config.getNdkUserProcessor(), derivatives);
         }
         if (entry != null) {
             File entryFile = entry.getFile();
             // do not use entry.getMimeType. JDK 1.6 does not recognize JPEG2000
-            if (!InputUtils.isJp2000(entryFile)) {
+            if (entry.getContentType() != InputUtils.ContentType.JP2000) {
                 throw new IllegalStateException("Not a JP2000 content: " + entryFile);
             }
             BinaryEditor binaryEditor = BinaryEditor.dissemination(fo, dsId, BinaryEditor.IMAGE_JP2);
@@ -251,11 +356,17 @@ public final class TiffImporter {
         }
     }
 
-    private FileEntry processJp2Copy(FileSet fileSet, File tiff, File tempBatchFolder, String dsId, Configuration processorConfig) throws IOException {
+    private FileEntry processJp2Copy(FileSet fileSet, File tiff, File tempBatchFolder, String dsId,
+            Configuration processorConfig, DerivativeStore.Entry derivatives) throws IOException {
         if (processorConfig != null && !processorConfig.isEmpty()) {
             File acFile = new File(tempBatchFolder, fileSet.getName() + '.' + dsId + ".jp2");
+            if (reuseDerivative(derivatives, dsId, acFile)) {
+                return new FileEntry(acFile);
+            }
             String processorType = processorConfig.getString("type");
             ExternalProcess process = null;
+            // a former import may have linked a stored derivative
+            Files.deleteIfExists(acFile.toPath());
             if (KakaduCompress.ID.equals(processorType)) {
                 process = new KakaduCompress(processorConfig, tiff, acFile);
             }
@@ -264,24 +375,83 @@ public final class TiffImporter {
                 if (!process.isOk()) {
                     throw new IOException(acFile.toString() + "\n" + process.getFullOutput());
                 }
+                keepDerivative(derivatives, dsId, acFile);
             }
             return  new FileEntry(acFile);
         }
         return null;
     }
 
-    private void createImages(File tempBatchFolder, File original,
-            String originalFilename, LocalObject foxml, ImportProfile config)
+    /**
+     * Generates the lowest levels of the tile pyramid while the image is decoded.
+     * It is optional; missing tiles are generated on demand.
+     * @param image {@code null} or the decoded scan
+     */
+    private void createTiles(LocalObject localObj, BufferedImage image) {
+        if (image == null) {
+            // reused derivatives; the scan was not decoded
+            return ;
+        }
+        try {
+            new ImageTiles(localObj).pregenerate(image);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, localObj.getPid(), ex);
+        }
+    }
+
+    /**
+     * Creates FULL, PREVIEW and THUMBNAIL datastreams. Stored derivatives
+     * of the unchanged scan are reused without decoding the scan.
+     * @return the decoded scan or {@code null} if derivatives were reused
+     */
+    private BufferedImage createImages(File tempBatchFolder, File original,
+            String originalFilename, LocalObject foxml, ImportProfile config,
+            DerivativeStore.Entry derivatives)
             throws IOException, DigitalObjectException, AppConfigurationException {
         
         BinaryEditor.dissemination(foxml, BinaryEditor.RAW_ID, BinaryEditor.IMAGE_TIFF)
                 .write(original, 0, null);
 
+        ImageMimeType imageType = ImageMimeType.JPEG;
+        MediaType mediaType = MediaType.valueOf(imageType.getMimeType());
+        String extension = imageType.getDefaultFileExtension();
+        File full = new File(tempBatchFolder, String.format("%s.full.%s", originalFilename, extension));
+        File preview = new File(tempBatchFolder, String.format("%s.preview.%s", originalFilename, extension));
+        File thumb = new File(tempBatchFolder, String.format("%s.thumb.%s", originalFilename, extension));
+        BufferedImage tiff = null;
+        // a derivative can be evicted by a concurrent import after the contains check
+        boolean reused = derivatives != null && derivatives.contains(
+                        BinaryEditor.FULL_ID, BinaryEditor.PREVIEW_ID, BinaryEditor.THUMB_ID)
+                && reuseDerivative(derivatives, BinaryEditor.FULL_ID, full)
+                && reuseDerivative(derivatives, BinaryEditor.PREVIEW_ID, preview)
+                && reuseDerivative(derivatives, BinaryEditor.THUMB_ID, thumb);
+        if (reused) {
+            LOG.fine(String.format("file: %s, reused derivatives: %s", originalFilename, derivatives.getKey()));
+        } else {
+            // never write images through links to stored derivatives
+            Files.deleteIfExists(full.toPath());
+            Files.deleteIfExists(preview.toPath());
+            Files.deleteIfExists(thumb.toPath());
+            tiff = generateImages(tempBatchFolder, original, originalFilename, config);
+            keepDerivative(derivatives, BinaryEditor.FULL_ID, full);
+            keepDerivative(derivatives, BinaryEditor.PREVIEW_ID, preview);
+            keepDerivative(derivatives, BinaryEditor.THUMB_ID, thumb);
+        }
+        BinaryEditor.dissemination(foxml, BinaryEditor.FULL_ID, mediaType).write(full, 0, null);
+        BinaryEditor.dissemination(foxml, BinaryEditor.PREVIEW_ID, mediaType).write(preview, 0, null);
+        BinaryEditor.dissemination(foxml, BinaryEditor.THUMB_ID, mediaType).write(thumb, 0, null);
+        packThumbnail(tempBatchFolder, foxml, thumb);
+        return tiff;
+    }
+
+    private BufferedImage generateImages(File tempBatchFolder, File original,
+            String originalFilename, ImportProfile config)
+            throws IOException, AppConfigurationException {
+
         long start = System.nanoTime();
         BufferedImage tiff = ImageSupport.readImage(original.toURI().toURL(), ImageMimeType.TIFF);
         long endRead = System.nanoTime() - start;
         ImageMimeType imageType = ImageMimeType.JPEG;
-        MediaType mediaType = MediaType.valueOf(imageType.getMimeType());
 
         start = System.nanoTime();
         String targetName = String.format("%s.full.%s", originalFilename, imageType.getDefaultFileExtension());
@@ -290,7 +460,6 @@ public final class TiffImporter {
             throw new IllegalStateException("Not a JPEG content: " + f);
         }
         long endFull = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.FULL_ID, mediaType).write(f, 0, null);
 
         start = System.nanoTime();
         Integer previewMaxHeight = config.getPreviewMaxHeight();
@@ -304,15 +473,31 @@ public final class TiffImporter {
             throw new IllegalStateException("Not a JPEG content: " + f);
         }
         long endPreview = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.PREVIEW_ID, mediaType).write(f, 0, null);
 
         start = System.nanoTime();
-        f = createThumbnail(tempBatchFolder, originalFilename, original, tiff, config);
+        createThumbnail(tempBatchFolder, originalFilename, original, tiff, config);
         long endThumb = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.THUMB_ID, mediaType).write(f, 0, null);
 
+        Metrics metrics = Metrics.getInstance();
+        metrics.timer("import.tiff.read").record(endRead, TimeUnit.NANOSECONDS);
+        metrics.timer("import.tiff.full").record(endFull, TimeUnit.NANOSECONDS);
+        metrics.timer("import.tiff.preview").record(endPreview, TimeUnit.NANOSECONDS);
+        metrics.timer("import.tiff.thumb").record(endThumb, TimeUnit.NANOSECONDS);
         LOG.fine(String.format("file: %s, read: %s, full: %s, preview: %s, thumb: %s",
                 originalFilename, endRead / 1000000, endFull / 1000000, endPreview / 1000000, endThumb / 1000000));
+        return tiff;
+    }
+
+    /**
+     * Adds the thumbnail to the batch pack read by the batch editor.
+     * The thumbnail datastream stays the primary copy.
+     */
+    private static void packThumbnail(File tempBatchFolder, LocalObject foxml, File thumbnail) {
+        try {
+            new ThumbnailPack(tempBatchFolder).add(foxml.getPid(), thumbnail);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, foxml.getPid(), ex);
+        }
     }
 
     private File createThumbnail(File tempBatchFolder, String originalFilename, File original, BufferedImage tiff, ImportProfile config)
@@ -351,6 +536,8 @@ public final class TiffImporter {
 
     private static File writeImage(BufferedImage image, File folder, String filename, ImageMimeType imageType) throws IOException {
         File imgFile = new File(folder, filename);
+        // a former import may have linked a stored derivative
+        Files.deleteIfExists(imgFile.toPath());
         FileImageOutputStream fos = new FileImageOutputStream(imgFile);
         try {
             ImageSupport.writeImageToStream(image, imageType.getDefaultFileExtension(), fos, 1.0f);
@@ -386,19 +573,38 @@ public final class TiffImporter {
         return scaled;
     }
 
-    private void createTechnicalMetadata(LocalObject localObj, ImportOptions ctx)
-            throws DigitalObjectException {
+    private void createTechnicalMetadata(FileSet fileSet, LocalObject localObj, ImportOptions ctx,
+            DerivativeStore.Entry derivatives) throws DigitalObjectException, IOException {
 
         JhoveContext jhoveCtx = ctx.getJhoveContext();
         File file = BinaryEditor.dissemination(localObj, BinaryEditor.RAW_ID, BinaryEditor.IMAGE_TIFF).read();
-        MixEditor mixEditor = MixEditor.raw(localObj);
-        mixEditor.write(file, jhoveCtx, mixEditor.getLastModified(), null);
+        writeMix(MixEditor.raw(localObj), MixEditor.RAW_ID, file, jhoveCtx, derivatives);
 
         // NDK version
         file = BinaryEditor.dissemination(localObj, BinaryEditor.NDK_ARCHIVAL_ID, BinaryEditor.IMAGE_JP2).read();
         if (file != null) {
-            mixEditor = MixEditor.ndkArchival(localObj);
-            mixEditor.write(file, jhoveCtx, mixEditor.getLastModified(), null);
+            // the supplied archival copy is not part of stored derivatives
+            boolean supplied = findSibling(fileSet, ctx.getConfig().getNdkArchivalFileSuffix()) != null;
+            writeMix(MixEditor.ndkArchival(localObj), MixEditor.NDK_ARCHIVAL_ID, file, jhoveCtx,
+                    supplied ? null : derivatives);
+        }
+    }
+
+    /**
+     * Writes the stored MIX or generates a new one with jHove.
+     */
+    private static void writeMix(MixEditor mixEditor, String name, File content, JhoveContext jhoveCtx,
+            DerivativeStore.Entry derivatives) throws DigitalObjectException, IOException {
+
+        File stored = derivatives == null ? null : derivatives.get(name);
+        if (stored != null) {
+            MixType mix = MixUtils.unmarshal(new StreamSource(stored), MixType.class);
+            mixEditor.write(mix, mixEditor.getLastModified(), null);
+            return ;
+        }
+        mixEditor.write(content, jhoveCtx, mixEditor.getLastModified(), null);
+        if (derivatives != null) {
+            derivatives.add(name, MixUtils.toXml(mixEditor.read(), false).getBytes(StandardCharsets.UTF_8));
         }
     }
 }
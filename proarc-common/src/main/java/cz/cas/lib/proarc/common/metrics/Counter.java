@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts events like processed items or failures.
+ *
+ * @author Jan Pokorsky
+ */
+public final class Counter {
+
+    private final AtomicLong count = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void inc() {
+        count.incrementAndGet();
+    }
+
+    public void add(long n) {
+        count.addAndGet(n);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count: " + getCount();
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of values like sizes or durations.
+ * Values are counted in buckets given by their upper bounds.
+ *
+ * @author Jan Pokorsky
+ */
+public final class Histogram {
+
+    private final long[] bounds;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLongArray buckets;
+
+    /**
+     * @param bounds ascending upper bounds of buckets; the last bucket
+     *      for greater values is added if missing
+     */
+    Histogram(long... bounds) {
+        if (bounds.length == 0 || bounds[bounds.length - 1] != Long.MAX_VALUE) {
+            bounds = Arrays.copyOf(bounds, bounds.length + 1);
+            bounds[bounds.length - 1] = Long.MAX_VALUE;
+        }
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i - 1] >= bounds[i]) {
+                throw new IllegalArgumentException("Not ascending bounds: " + Arrays.toString(bounds));
+            }
+        }
+        this.bounds = bounds;
+        this.buckets = new AtomicLongArray(bounds.length);
+    }
+
+    public void record(long value) {
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        for (long m = max.get(); value > m; m = max.get()) {
+            if (max.compareAndSet(m, value)) {
+                break;
+            }
+        }
+        for (int i = 0; i < bounds.length; i++) {
+            if (value <= bounds[i]) {
+                buckets.incrementAndGet(i);
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the sum of recorded values.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Gets upper bounds of buckets. The last one is {@link Long#MAX_VALUE}.
+     */
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * Gets counts of values of particular buckets, see {@link #getBounds()}.
+     */
+    public long[] getBuckets() {
+        long[] result = new long[buckets.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        long c = getCount();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("count: %s, avg: %s, max: %s, histogram:", c, c == 0 ? 0 : getSum() / c, getMax()));
+        long[] values = getBuckets();
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                sb.append(' ').append(bounds[i] == Long.MAX_VALUE ? "inf" : "<=" + bounds[i]).append(": ").append(values[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of application metrics. Metrics are named with dot separated
+ * words like {@code import.tiff.read} and are created on the first use.
+ * They are exposed with {@link #writeText} in the Prometheus text format
+ * and with {@link MetricsJmx}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class Metrics {
+
+    /** The content type of {@link #writeText}. */
+    public static final String TEXT_CONTENT_TYPE = "text/plain; version=0.0.4";
+    static final String TEXT_PREFIX = "proarc_";
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<String, Object>();
+
+    public static Metrics getInstance() {
+        return INSTANCE;
+    }
+
+    Metrics() {
+    }
+
+    /**
+     * Gets or creates the counter.
+     */
+    public Counter counter(String name) {
+        Counter metric = get(name, Counter.class);
+        return metric != null ? metric : add(name, new Counter());
+    }
+
+    /**
+     * Gets or creates the timer.
+     */
+    public Timer timer(String name) {
+        Timer metric = get(name, Timer.class);
+        return metric != null ? metric : add(name, new Timer());
+    }
+
+    /**
+     * Gets or creates the histogram.
+     * @param bounds upper bounds of buckets used to create the histogram
+     */
+    public Histogram histogram(String name, long... bounds) {
+        Histogram metric = get(name, Histogram.class);
+        return metric != null ? metric : add(name, new Histogram(bounds));
+    }
+
+    /**
+     * Gets all metrics sorted by names.
+     */
+    public Map<String, Object> getMetrics() {
+        return new TreeMap<String, Object>(metrics);
+    }
+
+    /**
+     * Gets the current values of all metrics as a flat map, e.g. {@code import.fileset.count}.
+     */
+    public Map<String, Long> getValues() {
+        TreeMap<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Object> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                values.put(name, ((Counter) metric).getCount());
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+                values.put(name + ".count", timer.getCount());
+                values.put(name + ".failures", timer.getFailures());
+                values.put(name + ".totalTime", timer.getTotalTime());
+                values.put(name + ".maxTime", timer.getMaxTime());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                values.put(name + ".count", histogram.getCount());
+                values.put(name + ".sum", histogram.getSum());
+                values.put(name + ".max", histogram.getMax());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format.
+     * Timers are written as histograms in milliseconds.
+     */
+    public void writeText(Writer out) throws IOException {
+        for (Map.Entry<String, Object> entry : getMetrics().entrySet()) {
+            String name = TEXT_PREFIX + toTextName(entry.getKey());
+            Object metric = entry.getValue();
+            if (metric instanceof Counter) {
+                writeType(out, name + "_total", "counter");
+                writeSample(out, name + "_total", ((Counter) metric).getCount());
+            } else if (metric instanceof Timer) {
+                Timer timer = (Timer) metric;
+                Histogram histogram = timer.getHistogram();
+                writeType(out, name + "_milliseconds", "histogram");
+                writeHistogram(out, name + "_milliseconds", histogram.getBounds(),
+                        histogram.getBuckets(), histogram.getSum(), histogram.getCount());
+                writeType(out, name + "_failures_total", "counter");
+                writeSample(out, name + "_failures_total", timer.getFailures());
+            } else if (metric instanceof Histogram) {
+                Histogram histogram = (Histogram) metric;
+                writeType(out, name, "histogram");
+                writeHistogram(out, name, histogram.getBounds(),
+                        histogram.getBuckets(), histogram.getSum(), histogram.getCount());
+            }
+        }
+    }
+
+    private static void writeType(Writer out, String name, String type) throws IOException {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeHistogram(Writer out, String name,
+            long[] bounds, long[] buckets, long sum, long count) throws IOException {
+
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += buckets[i];
+            String le = bounds[i] == Long.MAX_VALUE ? "+Inf" : String.valueOf(bounds[i]);
+            out.append(name).append("_bucket{le=\"").append(le).append("\"} ")
+                    .append(String.valueOf(cumulative)).append('\n');
+        }
+        writeSample(out, name + "_sum", sum);
+        writeSample(out, name + "_count", count);
+    }
+
+    private static void writeSample(Writer out, String name, long value) throws IOException {
+        out.append(name).append(' ').append(String.valueOf(value)).append('\n');
+    }
+
+    /**
+     * Converts the metric name to the name allowed by the text format.
+     */
+    static String toTextName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            sb.append(valid ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private <T> T get(String name, Class<T> type) {
+        Object metric = metrics.get(name);
+        if (metric == null || type.isInstance(metric)) {
+            return type.cast(metric);
+        }
+        throw new IllegalArgumentException(String.format("%s is %s", name, metric.getClass().getSimpleName()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T add(String name, T metric) {
+        Object old = metrics.putIfAbsent(name, metric);
+        if (old == null) {
+            return metric;
+        } else if (old.getClass() == metric.getClass()) {
+            return (T) old;
+        }
+        throw new IllegalArgumentException(String.format("%s is %s", name, old.getClass().getSimpleName()));
+    }
+
+}
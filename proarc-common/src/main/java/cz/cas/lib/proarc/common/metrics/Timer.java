@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures durations of an operation in milliseconds and counts its failures.
+ * <pre>{@code
+ * Timer.Sample sample = timer.start();
+ * try {
+ *     doWork();
+ * } catch (Throwable ex) {
+ *     sample.failed();
+ *     throw ex;
+ * } finally {
+ *     sample.stop();
+ * }
+ * }</pre>
+ *
+ * @author Jan Pokorsky
+ */
+public final class Timer {
+
+    /** Upper bounds of duration histogram buckets in milliseconds. */
+    static final long[] BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000,
+            30000, 60000, 300000, Long.MAX_VALUE};
+
+    private final Histogram histogram = new Histogram(BUCKETS);
+    private final AtomicLong failures = new AtomicLong();
+
+    Timer() {
+    }
+
+    /**
+     * Starts measuring of a single operation.
+     */
+    public Sample start() {
+        return new Sample(this);
+    }
+
+    /**
+     * Records the duration measured elsewhere.
+     */
+    public void record(long duration, TimeUnit unit) {
+        histogram.record(unit.toMillis(duration));
+    }
+
+    /**
+     * Records the duration of the failed operation.
+     */
+    public void recordFailure(long duration, TimeUnit unit) {
+        record(duration, unit);
+        failures.incrementAndGet();
+    }
+
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Gets the sum of durations in milliseconds.
+     */
+    public long getTotalTime() {
+        return histogram.getSum();
+    }
+
+    public long getMaxTime() {
+        return histogram.getMax();
+    }
+
+    /**
+     * Gets the distribution of durations in milliseconds.
+     */
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return "failures: " + getFailures() + ", " + histogram;
+    }
+
+    /**
+     * The running measurement. It is recorded just once.
+     */
+    public static final class Sample implements AutoCloseable {
+
+        private final Timer timer;
+        private final long start = System.nanoTime();
+        private boolean failed;
+        private boolean stopped;
+
+        Sample(Timer timer) {
+            this.timer = timer;
+        }
+
+        /**
+         * Marks the operation as failed.
+         */
+        public void failed() {
+            failed = true;
+        }
+
+        /**
+         * Records the duration.
+         * @return the duration in milliseconds
+         */
+        public long stop() {
+            long duration = System.nanoTime() - start;
+            if (!stopped) {
+                stopped = true;
+                if (failed) {
+                    timer.recordFailure(duration, TimeUnit.NANOSECONDS);
+                } else {
+                    timer.record(duration, TimeUnit.NANOSECONDS);
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMillis(duration);
+        }
+
+        @Override
+        public void close() {
+            stop();
+        }
+
+    }
+
+}
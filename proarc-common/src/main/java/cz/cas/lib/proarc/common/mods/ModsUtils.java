@@ -16,7 +16,7 @@
  */
 package cz.cas.lib.proarc.common.mods;
 
-import cz.cas.lib.proarc.common.export.mets.MetsLSResolver;
+import cz.cas.lib.proarc.common.export.mets.SchemaRegistry;
 import cz.cas.lib.proarc.common.xml.Transformers;
 import cz.cas.lib.proarc.common.xml.Transformers.Format;
 import cz.cas.lib.proarc.mods.ModsCollectionDefinition;
@@ -36,7 +36,6 @@ import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.XMLConstants;
 import javax.xml.bind.DataBindingException;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
@@ -50,7 +49,6 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 import org.xml.sax.SAXException;
 
 /**
@@ -68,7 +66,6 @@ public final class ModsUtils {
     private static JAXBContext defaultJaxbContext;
     private static ThreadLocal<Marshaller> defaultMarshaller = new ThreadLocal<Marshaller>();
     private static ThreadLocal<Unmarshaller> defaultUnmarshaller = new ThreadLocal<Unmarshaller>();
-    private static Schema MODS_SCHEMA;
     private static final String MODS_SCHEMA_PATH = "mods-3-5.xsd";
 
     /**
@@ -233,12 +230,7 @@ public final class ModsUtils {
     }
 
     public static Schema getSchema() throws SAXException {
-        if (MODS_SCHEMA == null) {
-            SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-            schemaFactory.setResourceResolver(MetsLSResolver.getInstance());
-            MODS_SCHEMA = schemaFactory.newSchema(ModsDefinition.class.getResource(MODS_SCHEMA_PATH));
-        }
-        return MODS_SCHEMA;
+        return SchemaRegistry.getInstance().getSchema(ModsDefinition.class.getResource(MODS_SCHEMA_PATH));
     }
 
 }
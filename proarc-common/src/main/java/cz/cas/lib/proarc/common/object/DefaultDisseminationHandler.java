@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.common.object;
 
 import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
 import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
@@ -27,14 +28,20 @@ import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.imports.ThumbnailPack;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
@@ -52,6 +59,8 @@ import javax.ws.rs.core.Response.Status;
 public class DefaultDisseminationHandler implements DisseminationHandler {
 
     private static final Logger LOG = Logger.getLogger(DefaultDisseminationHandler.class.getName());
+    /** Locks of cache keys being downloaded. */
+    private static final ConcurrentHashMap<String, Object> DOWNLOADS = new ConcurrentHashMap<String, Object>();
 
     private final String dsId;
     private final DigitalObjectHandler handler;
@@ -73,6 +82,11 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
 
     @Override
     public Response getDissemination(Request httpRequest) throws DigitalObjectException, DigitalObjectNotFoundException {
+        return getDissemination(httpRequest, null);
+    }
+
+    @Override
+    public Response getDissemination(Request httpRequest, HttpHeaders httpHeaders) throws DigitalObjectException, DigitalObjectNotFoundException {
         String pid = fobject.getPid();
         if (dsId == null) {
             return Response.ok(fobject.asText(), MediaType.TEXT_XML_TYPE)
@@ -97,36 +111,194 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
                 return evaluatePreconditions.build();
             }
 
-            return Response.ok(entity, loader.getProfile().getDsMIME())
-                    .header("Content-Disposition", "inline; filename=\"" + entity.getName() + '"')
-                    .lastModified(lastModification)
-//                    .cacheControl(null)
-//                    .expires(new Date(2100, 1, 1))
-                    .build();
+            if (httpRequest == null) {
+                return Response.ok(entity, loader.getProfile().getDsMIME())
+                        .header("Content-Disposition", "inline; filename=\"" + entity.getName() + '"')
+                        .lastModified(lastModification)
+                        .build();
+            }
+            try {
+                return FileRangeOutput.response(entity, loader.getProfile().getDsMIME(), httpHeaders, null, lastModification)
+                        .header("Content-Disposition", "inline; filename=\"" + entity.getName() + '"')
+                        .build();
+            } catch (IOException ex) {
+                throw new DigitalObjectException(pid, null, dsId, null, ex);
+            }
         } else if (fobject instanceof RemoteObject) {
             RemoteObject remote = (RemoteObject) fobject;
-            return getResponse(remote, dsId);
+            return getResponse(remote, dsId, httpRequest, httpHeaders);
         }
         throw new IllegalStateException("unsupported: " + fobject.getClass());
     }
 
     public static Response getResponse(RemoteObject remote, String dsId) throws DigitalObjectException {
-        // This should limit fedora calls to 1.
+        return getResponse(remote, dsId, null, null);
+    }
+
+    /**
+     * Gets contents of the remote datastream. Without the HTTP request it
+     * streams contents from Fedora. Otherwise it checks the datastream profile
+     * to evaluate conditional requests and to serve contents from
+     * the {@link DisseminationCache}. Uncached contents are proxied with the
+     * Range header so that large files may be downloaded in parts.
+     *
+     * @param remote digital object
+     * @param dsId datastream ID
+     * @param httpRequest {@code null} or request to manage cached contents.
+     * @param httpHeaders {@code null} or request headers
+     * @return the response
+     * @throws DigitalObjectException failure
+     */
+    public static Response getResponse(RemoteObject remote, String dsId, Request httpRequest,
+            HttpHeaders httpHeaders) throws DigitalObjectException {
+
+        if (httpRequest == null) {
+            return proxy(remote, dsId, null).build();
+        }
+        String pid = remote.getPid();
+        List<DatastreamProfile> profiles = remote.getStreamProfile(dsId);
+        if (profiles.isEmpty()) {
+            throw new DigitalObjectNotFoundException(pid, null, dsId, "no content", null);
+        }
+        DatastreamProfile profile = profiles.get(0);
+        String key = DisseminationCache.key(pid, dsId, getVersion(profile));
+        EntityTag etag = new EntityTag(key);
+        Date lastModified = profile.getDsCreateDate() == null
+                ? null : profile.getDsCreateDate().toGregorianCalendar().getTime();
+        ResponseBuilder preconditions = lastModified == null
+                ? httpRequest.evaluatePreconditions(etag)
+                : httpRequest.evaluatePreconditions(lastModified, etag);
+        if (preconditions != null) {
+            return preconditions.tag(etag).build();
+        }
+
+        DisseminationCache cache = DisseminationCache.getInstance();
+        if (cache != null && cache.accepts(dsId)) {
+            FileChannel cached = openCachedContents(remote, profile, cache);
+            String label = profile.getDsLabel();
+            String filename = label == null || label.isEmpty() ? pid + '-' + dsId : label;
+            try {
+                return FileRangeOutput.response(cached, profile.getDsMIME(), httpHeaders, etag, lastModified)
+                        .header("Content-Disposition", "inline; filename=\"" + filename + '"')
+                        .build();
+            } catch (IOException ex) {
+                FoxmlUtils.closeQuietly(cached, pid);
+                throw new DigitalObjectException(pid, null, dsId, null, ex);
+            }
+        }
+        ResponseBuilder rb = proxy(remote, dsId, httpHeaders).tag(etag);
+        if (lastModified != null) {
+            rb.lastModified(lastModified);
+        }
+        return rb.build();
+    }
+
+    /**
+     * Gets the version of datastream contents.
+     */
+    static String getVersion(DatastreamProfile profile) {
+        return profile.getDsVersionID() + '/' + profile.getDsCreateDate();
+    }
+
+    /**
+     * Opens contents of the remote datastream in the cache. Missing contents
+     * are downloaded first; concurrent callers of the same contents wait
+     * for a single download. The open channel keeps contents readable even if
+     * they are evicted meanwhile.
+     * @param remote digital object
+     * @param profile datastream profile
+     * @param cache cache
+     * @return the channel to close
+     * @throws DigitalObjectException failure
+     */
+    static FileChannel openCachedContents(RemoteObject remote, DatastreamProfile profile, DisseminationCache cache)
+            throws DigitalObjectException {
+
+        String dsId = profile.getDsID();
+        String key = DisseminationCache.key(remote.getPid(), dsId, getVersion(profile));
+        FileChannel cached = cache.open(key);
+        if (cached != null) {
+            return cached;
+        }
+        Object lock = new Object();
+        Object download = DOWNLOADS.putIfAbsent(key, lock);
+        if (download != null) {
+            lock = download;
+        }
+        synchronized (lock) {
+            try {
+                cached = cache.open(key);
+                if (cached == null) {
+                    cached = cache.putAndOpen(key, getContents(remote, dsId));
+                }
+                return cached;
+            } catch (IOException ex) {
+                throw new DigitalObjectException(remote.getPid(), null, dsId, null, ex);
+            } finally {
+                DOWNLOADS.remove(key, lock);
+            }
+        }
+    }
+
+    /**
+     * Gets contents of the remote datastream.
+     */
+    static InputStream getContents(RemoteObject remote, String dsId) throws DigitalObjectException {
+        return requestContents(remote, dsId, null).getEntity(InputStream.class);
+    }
+
+    private static ResponseBuilder proxy(RemoteObject remote, String dsId, HttpHeaders httpHeaders) throws DigitalObjectException {
         // XXX It works around FedoraClient.FedoraClient.getDatastreamDissemination that hides HTTP headers of the response.
         // Unfortunattely fedora does not return modification date as HTTP header
-        // In case of large images it could be faster to ask datastream for modification date first.
         String pid = remote.getPid();
-        String path = String.format("objects/%s/datastreams/%s/content", pid, dsId);
-        ClientResponse response = remote.getClient().resource().path(path).get(ClientResponse.class);
-        if (Status.fromStatusCode(response.getStatus()) != Status.OK) {
-            throw new DigitalObjectNotFoundException(pid, null, dsId, response.getEntity(String.class), null);
-        }
+        ClientResponse response = requestContents(remote, dsId, httpHeaders);
         MultivaluedMap<String, String> headers = response.getHeaders();
+        if (response.getStatus() == Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+            response.close();
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(FileRangeOutput.HEADER_CONTENT_RANGE, headers.getFirst(FileRangeOutput.HEADER_CONTENT_RANGE));
+        }
         String filename = headers.getFirst("Content-Disposition");
         filename = filename != null ? filename : "inline; filename=" + pid + '-' + dsId;
-        return Response.ok(response.getEntity(InputStream.class), headers.getFirst("Content-Type"))
-                .header("Content-Disposition", filename)
-                .build();
+        ResponseBuilder rb = Response.status(response.getStatus())
+                .entity(response.getEntity(InputStream.class))
+                .type(headers.getFirst("Content-Type"))
+                .header("Content-Disposition", filename);
+        for (String header : new String[] {HttpHeaders.CONTENT_LENGTH,
+                FileRangeOutput.HEADER_CONTENT_RANGE, FileRangeOutput.HEADER_ACCEPT_RANGES}) {
+            String value = headers.getFirst(header);
+            if (value != null) {
+                rb.header(header, value);
+            }
+        }
+        return rb;
+    }
+
+    /**
+     * Requests datastream contents. Range headers are passed to Fedora.
+     */
+    private static ClientResponse requestContents(RemoteObject remote, String dsId, HttpHeaders httpHeaders)
+            throws DigitalObjectException {
+
+        String pid = remote.getPid();
+        String path = String.format("objects/%s/datastreams/%s/content", pid, dsId);
+        WebResource.Builder request = remote.getClient().resource().path(path).getRequestBuilder();
+        if (httpHeaders != null) {
+            for (String header : new String[] {FileRangeOutput.HEADER_RANGE, FileRangeOutput.HEADER_IF_RANGE}) {
+                String value = httpHeaders.getHeaderString(header);
+                if (value != null) {
+                    request.header(header, value);
+                }
+            }
+        }
+        ClientResponse response = request.get(ClientResponse.class);
+        int status = response.getStatus();
+        if (status != Status.OK.getStatusCode()
+                && status != Status.PARTIAL_CONTENT.getStatusCode()
+                && status != Status.REQUESTED_RANGE_NOT_SATISFIABLE.getStatusCode()) {
+            throw new DigitalObjectNotFoundException(pid, null, dsId, response.getEntity(String.class), null);
+        }
+        return response;
     }
 
     // XXX add impl of other data streams (PREVIEW, THUMB)
@@ -212,6 +384,7 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
         }
         editor.setProfile(newProfile);
         editor.write(newLocation, editor.getLastModified(), message);
+        removePackedThumbnail(dsId);
     }
 
     private URI toIconUri(MediaType origMime, String dsId) throws DigitalObjectException {
@@ -232,6 +405,23 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
         profile.setDsLabel(filename);
         editor.setProfile(profile);
         editor.write(contents, editor.getLastModified(), message);
+        removePackedThumbnail(dsId);
+    }
+
+    /**
+     * Drops the replaced thumbnail of the batch item from the batch thumbnail pack.
+     */
+    private void removePackedThumbnail(String dsId) throws DigitalObjectException {
+        if (BinaryEditor.THUMB_ID.equals(dsId) && fobject instanceof LocalObject) {
+            File foxml = ((LocalObject) fobject).getFoxml();
+            if (foxml != null) {
+                try {
+                    new ThumbnailPack(foxml.getParentFile()).remove(fobject.getPid());
+                } catch (IOException ex) {
+                    throw new DigitalObjectException(fobject.getPid(), null, dsId, null, ex);
+                }
+            }
+        }
     }
 
     static DatastreamProfile findProfile(String dsId, List<DatastreamProfile> profiles) {
@@ -16,6 +16,7 @@
  */
 package cz.cas.lib.proarc.common.object;
 
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.dao.Batch;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
@@ -42,11 +43,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -59,6 +66,8 @@ public class DigitalObjectManager {
 
     private static DigitalObjectManager INSTANCE;
     private static final Logger LOG = Logger.getLogger(DigitalObjectManager.class.getName());
+    /** The number of issues of a series created at once. */
+    static final int SERIES_THREADS = 4;
 
     public static DigitalObjectManager getDefault() {
         return INSTANCE;
@@ -188,6 +197,7 @@ public class DigitalObjectManager {
         private Set<DayOfWeek> seriesDaysIncluded;
 
         private Integer seriesPartNumberFrom;
+        private final Map<String, DigitalObjectException> failures = new LinkedHashMap<>();
 
         public CreateHandler(String modelId, String pid, String parentPid, UserProfile user, String xml, String message) {
             Objects.requireNonNull(modelId, "modelId");
@@ -317,23 +327,158 @@ public class DigitalObjectManager {
             }
         }
 
+        /**
+         * Gets issues of the last series that could not be created.
+         * @return the map of failures keyed with the issue date or part number
+         */
+        public Map<String, DigitalObjectException> getFailures() {
+            return failures;
+        }
+
+        /**
+         * Creates the series of issues. Issues are prepared and ingested
+         * by a bounded pool of workers and the parent is updated just once
+         * with all created members. Failed issues are reported by {@link #getFailures()}.
+         * In case the parent cannot be updated the ingested issues are purged.
+         */
         private List<Item> createBatch() throws DigitalObjectException {
-            ArrayList<Item> items = new ArrayList<>();
+            List<Map<String, Object>> series = new ArrayList<>();
             while (hasNext()) {
                 // adjust series params
                 next();
-                items.add(createDigitalObject());
+                series.add(new HashMap<>(params));
+            }
+            failures.clear();
+            if (series.isEmpty()) {
+                return new ArrayList<>();
+            }
+            DigitalObjectHandler parentHandler = getParentHandler();
+            String parentFoxml = null;
+            if (parentHandler != null) {
+                // the last modification of members is checked on update
+                parentHandler.relations().getMembers();
+                // workers read their own copy of the parent
+                parentFoxml = parentHandler.getFedoraObject().asText();
+            }
+            getUserGroup();
+            RemoteStorage remotes = getRemotes();
+
+            ArrayList<Item> items = new ArrayList<>(series.size());
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(SERIES_THREADS, series.size()));
+            try {
+                List<Future<LocalObject>> tasks = new ArrayList<>(series.size());
+                for (Map<String, Object> issueParams : series) {
+                    String parentSnapshot = parentFoxml;
+                    tasks.add(pool.submit(() -> {
+                        LocalObject localObject = prepare(null, issueParams, createSnapshot(parentSnapshot));
+                        remotes.ingest(localObject, user.getUserName(), message);
+                        return localObject;
+                    }));
+                }
+                for (int i = 0; i < tasks.size(); i++) {
+                    try {
+                        items.add(toItem(tasks.get(i).get()));
+                    } catch (ExecutionException ex) {
+                        Throwable cause = ex.getCause();
+                        String issue = issueLabel(series.get(i));
+                        DigitalObjectException failure = cause instanceof DigitalObjectException
+                                ? (DigitalObjectException) cause
+                                : new DigitalObjectException(null, issue, cause);
+                        failures.put(issue, failure);
+                        LOG.log(Level.SEVERE, issue, cause);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new DigitalObjectException(parentPid, "Interrupted", ex);
+            } finally {
+                pool.shutdownNow();
+            }
+
+            if (parentHandler != null && !items.isEmpty()) {
+                try {
+                    RelationEditor parentRelsExt = parentHandler.relations();
+                    List<String> members = parentRelsExt.getMembers();
+                    for (Item item : items) {
+                        members.add(item.getPid());
+                    }
+                    parentRelsExt.setMembers(members);
+                    parentRelsExt.write(parentRelsExt.getLastModified(), message);
+                    parentHandler.commit();
+                } catch (DigitalObjectException ex) {
+                    purge(items, ex);
+                    throw ex;
+                }
+            }
+            if (items.isEmpty() && !failures.isEmpty()) {
+                throw failures.values().iterator().next();
             }
             return items;
         }
 
+        /**
+         * Creates the read-only handler of the parent copy.
+         */
+        private DigitalObjectHandler createSnapshot(String parentFoxml) {
+            if (parentFoxml == null) {
+                return null;
+            }
+            DigitalObject dobj = FoxmlUtils.unmarshal(parentFoxml, DigitalObject.class);
+            return DigitalObjectManager.getDefault().createHandler(new LocalStorage().create(dobj));
+        }
+
+        /**
+         * Purges issues that cannot be linked to the parent.
+         * Issues that cannot be purged are logged as unlinked.
+         */
+        private void purge(List<Item> items, DigitalObjectException cause) {
+            for (Item item : items) {
+                try {
+                    getRemotes().find(item.getPid()).purge(message);
+                } catch (DigitalObjectException ex) {
+                    cause.addSuppressed(ex);
+                    LOG.log(Level.SEVERE, "Unlinked issue " + item.getPid() + " of " + parentPid, ex);
+                }
+            }
+        }
+
+        private String issueLabel(Map<String, Object> issueParams) {
+            Object label = issueParams.get(DigitalObjectHandler.PARAM_ISSUE_DATE);
+            if (label == null) {
+                label = issueParams.get(DigitalObjectHandler.PARAM_PART_NUMBER);
+            }
+            return String.valueOf(label);
+        }
+
         public Item createDigitalObject() throws DigitalObjectException, DigitalObjectExistException {
             DigitalObjectHandler parentHandler = getParentHandler();
+            LocalObject localObject = prepare(pid, params, parentHandler);
+
+            if (parentHandler != null) {
+                RelationEditor parentRelsExt = parentHandler.relations();
+                List<String> members = parentRelsExt.getMembers();
+                members.add(localObject.getPid());
+                parentRelsExt.setMembers(members);
+                parentRelsExt.write(parentRelsExt.getLastModified(), message);
+            }
+
+            getRemotes().ingest(localObject, user.getUserName(), message);
+            if (parentHandler != null) {
+                parentHandler.commit();
+            }
+            return toItem(localObject);
+        }
+
+        /**
+         * Builds the local FOXML of the new object. The parent is not modified.
+         */
+        private LocalObject prepare(String pid, Map<String, Object> params,
+                DigitalObjectHandler parent) throws DigitalObjectException {
 
             LocalObject localObject = new LocalStorage().create(pid);
             localObject.setOwner(user.getUserName());
             DigitalObjectHandler doHandler = DigitalObjectManager.getDefault().createHandler(localObject);
-            doHandler.setParameterParent(parentHandler);
+            doHandler.setParameterParent(parent);
             doHandler.setParameterUser(user);
             params.entrySet().forEach((entry) -> {
                 doHandler.setParameter(entry.getKey(), entry.getValue());
@@ -350,21 +495,11 @@ public class DigitalObjectManager {
             DescriptionMetadata<String> descMetadata = new DescriptionMetadata<>();
             descMetadata.setData(xml);
             doHandler.metadata().setMetadataAsXml(descMetadata, message);
-
-            if (parentHandler != null) {
-                RelationEditor parentRelsExt = parentHandler.relations();
-                List<String> members = parentRelsExt.getMembers();
-                members.add(localObject.getPid());
-                parentRelsExt.setMembers(members);
-                parentRelsExt.write(parentRelsExt.getLastModified(), message);
-            }
             doHandler.commit();
+            return localObject;
+        }
 
-            getRemotes().ingest(localObject, user.getUserName(), message);
-            if (parentHandler != null) {
-                parentHandler.commit();
-            }
-
+        private Item toItem(LocalObject localObject) {
             Item item = new Item(localObject.getPid());
             item.setLabel(localObject.getLabel());
             item.setModel(modelId);
@@ -0,0 +1,409 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.fedora.BinaryEditor;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * The size bounded disk cache of datastream contents like thumbnails and previews.
+ * Entries are keyed with PID, datastream ID and datastream version so that
+ * a modified datastream never hits a stale entry. The least recently used
+ * entries are evicted when the cache exceeds its size.
+ *
+ * <p>Contents served to clients should be {@link #open opened} rather than
+ * {@link #get got} as an evicted file stays readable through its open channel.
+ *
+ * <p>Image masters read by {@link ImageTiles} are kept in a separate
+ * {@link #getMasterInstance store} so that they do not evict small derivatives.
+ *
+ * @author Jan Pokorsky
+ */
+public final class DisseminationCache {
+
+    private static final Logger LOG = Logger.getLogger(DisseminationCache.class.getName());
+    private static final String FILE_SUFFIX = ".bin";
+    private static final String MASTERS_FOLDER = "masters";
+    private static DisseminationCache INSTANCE;
+    private static DisseminationCache MASTERS;
+
+    private final File folder;
+    private final long maxSize;
+    private final Set<String> datastreams;
+    /** Cached file names with their sizes in the access order. */
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(256, 0.75f, true);
+    private long size;
+
+    /**
+     * Gets the shared cache.
+     * @return the cache or {@code null} if it is disabled
+     */
+    public static DisseminationCache getInstance() {
+        return INSTANCE;
+    }
+
+    public static void setInstance(DisseminationCache cache) {
+        INSTANCE = cache;
+    }
+
+    /**
+     * Gets the shared store of image masters.
+     * @return the store or {@code null} if it is disabled
+     */
+    public static DisseminationCache getMasterInstance() {
+        return MASTERS;
+    }
+
+    public static void setMasterInstance(DisseminationCache cache) {
+        MASTERS = cache;
+    }
+
+    /**
+     * Creates the cache.
+     * @param options options
+     * @return the cache or {@code null} if it is disabled
+     * @throws IOException the cache folder is not accessible
+     */
+    public static DisseminationCache create(Options options) throws IOException {
+        if (options.getMaxSize() <= 0 || options.getDatastreams().isEmpty()) {
+            return null;
+        }
+        return new DisseminationCache(options.getFolder(), options.getMaxSize(), options.getDatastreams());
+    }
+
+    /**
+     * Creates the store of image masters in the subfolder of the cache.
+     * @param options options
+     * @return the store or {@code null} if it is disabled
+     * @throws IOException the store folder is not accessible
+     */
+    public static DisseminationCache createMasters(Options options) throws IOException {
+        if (options.getMastersMaxSize() <= 0) {
+            return null;
+        }
+        return new DisseminationCache(new File(options.getFolder(), MASTERS_FOLDER),
+                options.getMastersMaxSize(), new LinkedHashSet<String>(ImageTiles.SOURCES));
+    }
+
+    DisseminationCache(File folder, long maxSize, Set<String> datastreams) throws IOException {
+        this.folder = folder;
+        this.maxSize = maxSize;
+        this.datastreams = datastreams;
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+        if (!folder.isDirectory() || !folder.canWrite()) {
+            throw new IOException("Not a writable folder " + folder);
+        }
+        load();
+    }
+
+    /**
+     * Checks whether contents of the datastream are cached.
+     */
+    public boolean accepts(String dsId) {
+        return datastreams.contains(dsId);
+    }
+
+    /**
+     * Gets the cached contents.
+     * @param key see {@link #key}
+     * @return the file or {@code null}
+     */
+    public File get(String key) {
+        String name = key + FILE_SUFFIX;
+        synchronized (index) {
+            if (index.get(name) == null) {
+                return null;
+            }
+        }
+        File file = new File(folder, name);
+        if (!file.exists()) {
+            remove(name);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Opens the cached contents. The file is opened under the cache lock
+     * so that it cannot be evicted between the lookup and the open.
+     * @param key see {@link #key}
+     * @return the channel to close or {@code null}
+     */
+    public FileChannel open(String key) {
+        String name = key + FILE_SUFFIX;
+        synchronized (index) {
+            if (index.get(name) == null) {
+                return null;
+            }
+            try {
+                return new FileInputStream(new File(folder, name)).getChannel();
+            } catch (FileNotFoundException ex) {
+                remove(name);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Stores contents. The stream is written to a temporary file first
+     * so that readers never see partial contents.
+     * @param key see {@link #key}
+     * @param contents contents to store; it is closed
+     * @return the cached file
+     * @throws IOException failure
+     */
+    public File put(String key, InputStream contents) throws IOException {
+        File file = store(key, contents);
+        add(file.getName(), file.length());
+        return file;
+    }
+
+    /**
+     * Stores contents and opens them. The file is opened before it becomes
+     * a candidate for eviction.
+     * @param key see {@link #key}
+     * @param contents contents to store; it is closed
+     * @return the channel to close
+     * @throws IOException failure
+     */
+    public FileChannel putAndOpen(String key, InputStream contents) throws IOException {
+        File file = store(key, contents);
+        FileChannel channel = new FileInputStream(file).getChannel();
+        add(file.getName(), channel.size());
+        return channel;
+    }
+
+    private File store(String key, InputStream contents) throws IOException {
+        String name = key + FILE_SUFFIX;
+        File file = new File(folder, name);
+        Path tmp = Files.createTempFile(folder.toPath(), key, ".tmp");
+        try {
+            try {
+                Files.copy(contents, tmp, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                contents.close();
+            }
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return file;
+    }
+
+    /**
+     * Builds the cache key.
+     * @param pid PID
+     * @param dsId datastream ID
+     * @param version datastream version, e.g. version ID with its creation date
+     * @return the key
+     */
+    public static String key(String pid, String dsId, String version) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest((pid + '/' + dsId + '/' + version).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Gets the total size of cached contents in bytes.
+     */
+    public long getSize() {
+        synchronized (index) {
+            return size;
+        }
+    }
+
+    private void add(String name, long length) {
+        List<String> evicted = new ArrayList<String>();
+        synchronized (index) {
+            Long old = index.put(name, length);
+            size += length - (old == null ? 0 : old);
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (size > maxSize && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                if (eldest.getKey().equals(name)) {
+                    continue;
+                }
+                size -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String evict : evicted) {
+            new File(folder, evict).delete();
+        }
+    }
+
+    private void remove(String name) {
+        synchronized (index) {
+            Long length = index.remove(name);
+            if (length != null) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Reads entries left by the previous run. The modification time
+     * stands in for the access order.
+     */
+    private void load() {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return ;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File o1, File o2) {
+                return Long.compare(o1.lastModified(), o2.lastModified());
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(FILE_SUFFIX)) {
+                add(name, file.length());
+            } else if (name.endsWith(".tmp")) {
+                file.delete();
+            }
+        }
+        LOG.log(Level.FINE, "{0}: {1} entries, {2} bytes", new Object[]{folder, index.size(), size});
+    }
+
+    public static final class Options {
+
+        static final String PROPERTY_FOLDER = "dissemination.cache.folder";
+        static final String PROPERTY_MAX_SIZE = "dissemination.cache.maxSize";
+        static final String PROPERTY_DATASTREAMS = "dissemination.cache.datastreams";
+        static final String PROPERTY_MASTERS_MAX_SIZE = "dissemination.cache.masters.maxSize";
+
+        private File folder;
+        /** In bytes. */
+        private long maxSize = 1024L * 1024 * 1024;
+        /** In bytes. */
+        private long mastersMaxSize = 2048L * 1024 * 1024;
+        private Set<String> datastreams = new LinkedHashSet<String>(Arrays.asList(
+                BinaryEditor.THUMB_ID, BinaryEditor.PREVIEW_ID, BinaryEditor.FULL_ID));
+
+        /**
+         * Reads options.
+         * @param config configuration
+         * @param defaultFolder the folder used when not configured
+         * @return options
+         */
+        public static Options from(Configuration config, File defaultFolder) {
+            Options options = new Options();
+            String folder = config.getString(PROPERTY_FOLDER);
+            options.setFolder(folder == null || folder.isEmpty() ? defaultFolder : new File(folder));
+            options.setMaxSize(config.getLong(PROPERTY_MAX_SIZE, options.getMaxSize() / (1024 * 1024)) * 1024 * 1024);
+            options.setMastersMaxSize(config.getLong(PROPERTY_MASTERS_MAX_SIZE,
+                    options.getMastersMaxSize() / (1024 * 1024)) * 1024 * 1024);
+            if (config.containsKey(PROPERTY_DATASTREAMS)) {
+                Set<String> dsIds = new LinkedHashSet<String>();
+                for (String dsId : config.getStringArray(PROPERTY_DATASTREAMS)) {
+                    if (!dsId.trim().isEmpty()) {
+                        dsIds.add(dsId.trim());
+                    }
+                }
+                options.setDatastreams(dsIds);
+            }
+            return options;
+        }
+
+        public File getFolder() {
+            return folder;
+        }
+
+        public void setFolder(File folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * Gets the cache size in bytes. 0 disables the cache.
+         */
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = Math.max(0, maxSize);
+        }
+
+        /**
+         * Gets the size of the image master store in bytes. 0 disables the store.
+         */
+        public long getMastersMaxSize() {
+            return mastersMaxSize;
+        }
+
+        public void setMastersMaxSize(long mastersMaxSize) {
+            this.mastersMaxSize = Math.max(0, mastersMaxSize);
+        }
+
+        /**
+         * Gets IDs of cached datastreams.
+         */
+        public Set<String> getDatastreams() {
+            return datastreams;
+        }
+
+        public void setDatastreams(Set<String> datastreams) {
+            this.datastreams = Collections.unmodifiableSet(datastreams);
+        }
+
+        @Override
+        public String toString() {
+            return "Options{" + "folder=" + folder + ", maxSize=" + maxSize
+                    + ", datastreams=" + datastreams + ", mastersMaxSize=" + mastersMaxSize + '}';
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.common.object;
 
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
@@ -33,6 +34,18 @@ public interface DisseminationHandler {
      */
     Response getDissemination(Request httpRequest) throws DigitalObjectException;
 
+    /**
+     * Gets contents as it is persisted. Handlers supporting partial contents
+     * read the {@code Range} header.
+     * @param httpRequest {@code null} or request to manage cached contents.
+     * @param httpHeaders {@code null} or request headers
+     * @return contents
+     * @throws DigitalObjectException failure
+     */
+    default Response getDissemination(Request httpRequest, HttpHeaders httpHeaders) throws DigitalObjectException {
+        return getDissemination(httpRequest);
+    }
+
     /**
      * Updates contents.
      * @param input contents
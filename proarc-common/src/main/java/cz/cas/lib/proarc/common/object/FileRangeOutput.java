@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes a file or its single byte range to the HTTP response.
+ * The file is copied with {@link FileChannel#transferTo} so that it is not
+ * buffered in the heap. The channel is opened when the response is built
+ * and it is closed once written; a file deleted meanwhile is still readable.
+ *
+ * @author Jan Pokorsky
+ */
+final class FileRangeOutput implements StreamingOutput {
+
+    static final String HEADER_ACCEPT_RANGES = "Accept-Ranges";
+    static final String HEADER_CONTENT_RANGE = "Content-Range";
+    static final String HEADER_IF_RANGE = "If-Range";
+    static final String HEADER_RANGE = "Range";
+    /** The parsed range that cannot be satisfied. */
+    static final long[] UNSATISFIABLE = new long[0];
+
+    private final FileChannel channel;
+    private final long offset;
+    private final long length;
+
+    FileRangeOutput(FileChannel channel, long offset, long length) {
+        this.channel = channel;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        try (FileChannel channel = this.channel) {
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = offset;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    throw new EOFException("position: " + position + ", remaining: " + remaining);
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * Builds the response with the whole file or with the requested range.
+     * @param file contents
+     * @param mime MIME type
+     * @param httpHeaders {@code null} or request headers
+     * @param etag {@code null} or the entity tag of the contents
+     * @param lastModified {@code null} or the modification date of the contents
+     * @return the response builder
+     * @throws IOException the file cannot be opened
+     */
+    static ResponseBuilder response(File file, String mime, HttpHeaders httpHeaders,
+            EntityTag etag, Date lastModified) throws IOException {
+
+        return response(new FileInputStream(file).getChannel(), mime, httpHeaders, etag, lastModified);
+    }
+
+    /**
+     * Builds the response with the whole contents or with the requested range.
+     * @param channel opened contents; it is closed with the written response
+     * @param mime MIME type
+     * @param httpHeaders {@code null} or request headers
+     * @param etag {@code null} or the entity tag of the contents
+     * @param lastModified {@code null} or the modification date of the contents
+     * @return the response builder
+     * @throws IOException failure
+     */
+    static ResponseBuilder response(FileChannel channel, String mime, HttpHeaders httpHeaders,
+            EntityTag etag, Date lastModified) throws IOException {
+
+        long size = channel.size();
+        String range = httpHeaders == null ? null : httpHeaders.getHeaderString(HEADER_RANGE);
+        if (range != null && httpHeaders != null
+                && !isIfRangeMatching(httpHeaders.getHeaderString(HEADER_IF_RANGE), etag, lastModified)) {
+            range = null;
+        }
+        long[] bytes = parseRange(range, size);
+        ResponseBuilder rb;
+        if (bytes == null) {
+            rb = Response.ok(new FileRangeOutput(channel, 0, size), mime)
+                    .header(HttpHeaders.CONTENT_LENGTH, size);
+        } else if (bytes == UNSATISFIABLE) {
+            channel.close();
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HEADER_CONTENT_RANGE, "bytes */" + size);
+        } else {
+            long length = bytes[1] - bytes[0] + 1;
+            rb = Response.status(Status.PARTIAL_CONTENT)
+                    .entity(new FileRangeOutput(channel, bytes[0], length))
+                    .type(mime)
+                    .header(HttpHeaders.CONTENT_LENGTH, length)
+                    .header(HEADER_CONTENT_RANGE, "bytes " + bytes[0] + '-' + bytes[1] + '/' + size);
+        }
+        rb.header(HEADER_ACCEPT_RANGES, "bytes");
+        if (etag != null) {
+            rb.tag(etag);
+        }
+        if (lastModified != null) {
+            rb.lastModified(lastModified);
+        }
+        return rb;
+    }
+
+    /**
+     * Parses the value of the Range header.
+     * Multiple ranges are not supported and the whole contents should be sent.
+     * @param range {@code null} or the header value, e.g. {@code bytes=0-499}
+     * @param size the contents size
+     * @return {@code null} to send the whole contents, {@link #UNSATISFIABLE}
+     *      or the first and the last byte position
+     */
+    static long[] parseRange(String range, long size) {
+        if (range == null) {
+            return null;
+        }
+        range = range.trim();
+        if (!range.regionMatches(true, 0, "bytes=", 0, 6) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+                if (start >= size) {
+                    return UNSATISFIABLE;
+                }
+                if (end < start) {
+                    return null;
+                }
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks the If-Range condition. The range applies only to unchanged contents.
+     */
+    static boolean isIfRangeMatching(String ifRange, EntityTag etag, Date lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // a weak tag never matches
+            return etag != null && !etag.isWeak() && ifRange.equals('"' + etag.getValue() + '"');
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        SimpleDateFormat httpDate = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        httpDate.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return ifRange.equals(httpDate.format(lastModified));
+    }
+
+}
@@ -0,0 +1,630 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
+import cz.cas.lib.proarc.common.fedora.BinaryEditor;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectNotFoundException;
+import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import javax.imageio.stream.ImageOutputStream;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+/**
+ * Cuts JPEG tiles from the image master of a digital object. Regions and sizes
+ * follow the IIIF Image API syntax. The master is the first of RAW, NDK_ARCHIVAL
+ * and FULL that an installed ImageIO reader can decode; only the requested
+ * region is decoded and it is subsampled while reading.
+ *
+ * <p>Tiles are kept in the {@link DisseminationCache}. The lowest pyramid levels
+ * can be generated at import from the already decoded image so that the first
+ * view does not touch the master at all. Masters of remote objects are downloaded
+ * once to the {@link DisseminationCache#getMasterInstance master store} and read
+ * through an open channel so that an eviction cannot break a running read.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ImageTiles {
+
+    private static final Logger LOG = Logger.getLogger(ImageTiles.class.getName());
+    /** The tile width and height in pixels. */
+    public static final int TILE_SIZE = 512;
+    /**
+     * The maximum width and height of a requested image in pixels. It bounds
+     * the heap used to decode and scale a single request, see IIIF {@code maxWidth}.
+     */
+    public static final int MAX_SIZE = 4 * TILE_SIZE;
+    /** Pyramid levels fitting this size are generated at import. */
+    static final int PREGENERATED_MAX_SIZE = 2 * TILE_SIZE;
+    private static final float JPEG_QUALITY = 0.85f;
+    /** Datastream IDs of image masters in the order of preference. */
+    static final List<String> SOURCES = Collections.unmodifiableList(Arrays.asList(
+        BinaryEditor.RAW_ID, BinaryEditor.NDK_ARCHIVAL_ID, BinaryEditor.FULL_ID));
+    private static final String INFO = "info";
+
+    private final FedoraObject fobject;
+    private final DisseminationCache cache;
+    private final DisseminationCache masters;
+    private DatastreamProfile source;
+
+    public ImageTiles(FedoraObject fobject) {
+        this(fobject, DisseminationCache.getInstance(), DisseminationCache.getMasterInstance());
+    }
+
+    ImageTiles(FedoraObject fobject, DisseminationCache cache, DisseminationCache masters) {
+        this.fobject = fobject;
+        this.cache = cache;
+        this.masters = masters;
+    }
+
+    /**
+     * Gets dimensions of the image.
+     * @return the image info
+     * @throws DigitalObjectException failure
+     */
+    public Info getInfo() throws DigitalObjectException {
+        String key = key(INFO);
+        if (cache != null) {
+            File cached = cache.get(key);
+            if (cached != null) {
+                try {
+                    Info info = Info.valueOf(new String(Files.readAllBytes(cached.toPath()), StandardCharsets.UTF_8));
+                    if (info != null) {
+                        return info;
+                    }
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, cached.toString(), ex);
+                }
+            }
+        }
+        Info info;
+        try (Master master = openMaster()) {
+            ImageReader reader = createReader(master.channel);
+            try {
+                info = new Info(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                dispose(reader);
+            }
+        } catch (IOException ex) {
+            throw new DigitalObjectException(fobject.getPid(), null, source.getDsID(), null, ex);
+        }
+        putInfo(key, info);
+        return info;
+    }
+
+    /**
+     * Gets the JPEG tile.
+     * @param region {@code full} or {@code x,y,w,h} in pixels of the master
+     * @param size {@code full}, {@code max}, {@code w,}, {@code ,h}, {@code w,h} or {@code !w,h}
+     * @param httpRequest {@code null} or request to evaluate preconditions
+     * @return the response
+     * @throws IllegalArgumentException invalid region or size, or the size exceeds {@link #MAX_SIZE}
+     * @throws DigitalObjectException failure
+     */
+    public Response getTile(String region, String size, Request httpRequest) throws DigitalObjectException {
+        Info info = getInfo();
+        Rectangle rect = parseRegion(region, info);
+        int[] dim = parseSize(size, rect);
+        String key = key(tileId(rect, dim));
+        EntityTag etag = new EntityTag(key);
+        ResponseBuilder preconditions = httpRequest == null ? null : httpRequest.evaluatePreconditions(etag);
+        if (preconditions != null) {
+            return preconditions.build();
+        }
+        Object entity = null;
+        if (cache != null) {
+            FileChannel cached = cache.open(key);
+            entity = cached == null ? null : Channels.newInputStream(cached);
+        }
+        if (entity == null) {
+            byte[] jpeg;
+            try (Master master = openMaster()) {
+                jpeg = encode(readRegion(master.channel, rect, dim[0], dim[1]));
+            } catch (IOException ex) {
+                throw new DigitalObjectException(fobject.getPid(), null, source.getDsID(), null, ex);
+            }
+            entity = jpeg;
+            if (cache != null) {
+                try {
+                    cache.put(key, new ByteArrayInputStream(jpeg));
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, fobject.getPid(), ex);
+                }
+            }
+        }
+        return Response.ok(entity, BinaryEditor.IMAGE_JPEG.toString()).tag(etag).build();
+    }
+
+    /**
+     * Generates tiles of pyramid levels that fit {@link #PREGENERATED_MAX_SIZE}.
+     * It should be called when the image master is already written.
+     * @param image the decoded master
+     * @throws DigitalObjectException failure
+     */
+    public void pregenerate(BufferedImage image) throws DigitalObjectException {
+        if (cache == null) {
+            return ;
+        }
+        long start = System.nanoTime();
+        Info info = new Info(image.getWidth(), image.getHeight());
+        putInfo(key(INFO), info);
+        List<Integer> scaleFactors = info.getScaleFactors();
+        int firstIdx = scaleFactors.size() - 1;
+        while (firstIdx > 0 && levelSize(info, scaleFactors.get(firstIdx - 1)) <= PREGENERATED_MAX_SIZE) {
+            --firstIdx;
+        }
+        int firstScale = scaleFactors.get(firstIdx);
+        // scale in one step to the double of the first level and then halve it
+        BufferedImage level = resize(image,
+                Math.min(info.getWidth(), ceilDiv(info.getWidth() * 2, firstScale)),
+                Math.min(info.getHeight(), ceilDiv(info.getHeight() * 2, firstScale)));
+        for (int idx = firstIdx; idx < scaleFactors.size(); idx++) {
+            int scale = scaleFactors.get(idx);
+            level = resize(level, ceilDiv(info.getWidth(), scale), ceilDiv(info.getHeight(), scale));
+            for (int y = 0; y < info.getHeight(); y += TILE_SIZE * scale) {
+                for (int x = 0; x < info.getWidth(); x += TILE_SIZE * scale) {
+                    Rectangle rect = new Rectangle(x, y,
+                            Math.min(TILE_SIZE * scale, info.getWidth() - x),
+                            Math.min(TILE_SIZE * scale, info.getHeight() - y));
+                    int[] dim = parseSize(ceilDiv(rect.width, scale) + ",", rect);
+                    int lx = x / scale;
+                    int ly = y / scale;
+                    BufferedImage tile = level.getSubimage(lx, ly,
+                            Math.min(dim[0], level.getWidth() - lx), Math.min(dim[1], level.getHeight() - ly));
+                    try {
+                        cache.put(key(tileId(rect, dim)), new ByteArrayInputStream(encode(resize(tile, dim[0], dim[1]))));
+                    } catch (IOException ex) {
+                        throw new DigitalObjectException(fobject.getPid(), ex);
+                    }
+                }
+            }
+        }
+        LOG.log(Level.FINE, "{0}: tiles of {1} levels in {2} ms", new Object[]{
+            fobject.getPid(), scaleFactors.size() - firstIdx, (System.nanoTime() - start) / 1000000});
+    }
+
+    private void putInfo(String key, Info info) {
+        if (cache != null) {
+            try {
+                cache.put(key, new ByteArrayInputStream(info.toString().getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, fobject.getPid(), ex);
+            }
+        }
+    }
+
+    /**
+     * Builds the cache key with the version of the master, see
+     * {@link DefaultDisseminationHandler#getVersion}. Local objects use
+     * the version ID and the CREATED date of their FOXML.
+     */
+    private String key(String id) throws DigitalObjectException {
+        DatastreamProfile profile = getSource();
+        String version = DefaultDisseminationHandler.getVersion(profile);
+        return DisseminationCache.key(fobject.getPid(), "TILES:" + profile.getDsID(), version + '/' + id);
+    }
+
+    private DatastreamProfile getSource() throws DigitalObjectException {
+        if (source == null) {
+            List<DatastreamProfile> profiles = fobject.getStreamProfile(null);
+            for (String dsId : SOURCES) {
+                DatastreamProfile profile = DefaultDisseminationHandler.findProfile(dsId, profiles);
+                if (profile != null && profile.getDsMIME() != null
+                        && ImageIO.getImageReadersByMIMEType(profile.getDsMIME()).hasNext()) {
+                    source = profile;
+                    break;
+                }
+            }
+            if (source == null) {
+                throw new DigitalObjectNotFoundException(fobject.getPid(), null, null, "No readable image.", null);
+            }
+            if (source.getDsCreateDate() == null) {
+                // listed without the version, e.g. Fedora 3.5
+                List<DatastreamProfile> versioned = fobject.getStreamProfile(source.getDsID());
+                if (!versioned.isEmpty()) {
+                    source = versioned.get(0);
+                }
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Opens the master. Remote masters are downloaded to the master store
+     * or to a temporary file if the store is disabled.
+     */
+    private Master openMaster() throws DigitalObjectException {
+        DatastreamProfile profile = getSource();
+        String dsId = profile.getDsID();
+        if (fobject instanceof LocalObject) {
+            File file = BinaryEditor.dissemination((LocalObject) fobject, dsId).read();
+            if (file == null) {
+                throw new DigitalObjectNotFoundException(fobject.getPid(), null, dsId, "no content", null);
+            }
+            try {
+                return new Master(new FileInputStream(file).getChannel(), null);
+            } catch (IOException ex) {
+                throw new DigitalObjectException(fobject.getPid(), null, dsId, null, ex);
+            }
+        } else if (fobject instanceof RemoteObject) {
+            RemoteObject remote = (RemoteObject) fobject;
+            if (masters != null) {
+                return new Master(DefaultDisseminationHandler.openCachedContents(remote, profile, masters), null);
+            }
+            File tmp = null;
+            try {
+                tmp = File.createTempFile("proarc_tile", null);
+                try (InputStream contents = DefaultDisseminationHandler.getContents(remote, dsId)) {
+                    Files.copy(contents, tmp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                return new Master(new FileInputStream(tmp).getChannel(), tmp);
+            } catch (IOException ex) {
+                if (tmp != null) {
+                    tmp.delete();
+                }
+                throw new DigitalObjectException(fobject.getPid(), null, dsId, null, ex);
+            }
+        }
+        throw new IllegalStateException("unsupported: " + fobject.getClass());
+    }
+
+    /**
+     * Parses the IIIF region.
+     */
+    static Rectangle parseRegion(String region, Info info) {
+        Rectangle image = new Rectangle(0, 0, info.getWidth(), info.getHeight());
+        if (region == null || "full".equals(region)) {
+            return image;
+        }
+        String[] xywh = region.split(",");
+        if (xywh.length != 4) {
+            throw new IllegalArgumentException("Invalid region: " + region);
+        }
+        try {
+            Rectangle rect = new Rectangle(Integer.parseInt(xywh[0]), Integer.parseInt(xywh[1]),
+                    Integer.parseInt(xywh[2]), Integer.parseInt(xywh[3]));
+            rect = rect.intersection(image);
+            if (rect.isEmpty()) {
+                throw new IllegalArgumentException("Region out of image: " + region);
+            }
+            return rect;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid region: " + region, ex);
+        }
+    }
+
+    /**
+     * Parses the IIIF size. Upscaling is not supported. The {@code max} size
+     * fits the region to {@link #MAX_SIZE}, other sizes must not exceed it.
+     * @return width and height
+     */
+    static int[] parseSize(String size, Rectangle region) {
+        if ("max".equals(size)) {
+            return parseSize("!" + MAX_SIZE + "," + MAX_SIZE, region);
+        }
+        if (size == null || "full".equals(size)) {
+            checkMaxSize(size, region.width, region.height);
+            return new int[] {region.width, region.height};
+        }
+        boolean fit = size.startsWith("!");
+        String[] wh = (fit ? size.substring(1) : size).split(",", -1);
+        if (wh.length != 2) {
+            throw new IllegalArgumentException("Invalid size: " + size);
+        }
+        try {
+            int width = wh[0].isEmpty() ? -1 : Integer.parseInt(wh[0]);
+            int height = wh[1].isEmpty() ? -1 : Integer.parseInt(wh[1]);
+            if (width < 0 && height < 0 || fit && (width < 0 || height < 0)) {
+                throw new IllegalArgumentException("Invalid size: " + size);
+            }
+            if (fit) {
+                double scale = Math.min((double) width / region.width, (double) height / region.height);
+                width = (int) Math.round(region.width * scale);
+                height = (int) Math.round(region.height * scale);
+            } else if (width < 0) {
+                width = (int) Math.round((double) region.width * height / region.height);
+            } else if (height < 0) {
+                height = (int) Math.round((double) region.height * width / region.width);
+            }
+            if (fit && (width > region.width || height > region.height)) {
+                // no upscaling
+                width = region.width;
+                height = region.height;
+            }
+            if (width <= 0 || height <= 0 || width > region.width || height > region.height) {
+                throw new IllegalArgumentException("Unsupported size: " + size);
+            }
+            checkMaxSize(size, width, height);
+            return new int[] {width, height};
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid size: " + size, ex);
+        }
+    }
+
+    private static void checkMaxSize(String size, int width, int height) {
+        if (width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "Size %s (%sx%s) exceeds the maximum %s pixels.", size, width, height, MAX_SIZE));
+        }
+    }
+
+    private static String tileId(Rectangle rect, int[] dim) {
+        return rect.x + "," + rect.y + "," + rect.width + "," + rect.height + '/' + dim[0] + ',' + dim[1];
+    }
+
+    private static int levelSize(Info info, int scale) {
+        return Math.max(ceilDiv(info.getWidth(), scale), ceilDiv(info.getHeight(), scale));
+    }
+
+    static int ceilDiv(int x, int y) {
+        return (x + y - 1) / y;
+    }
+
+    private static ImageReader createReader(FileChannel channel) throws IOException {
+        ImageInputStream iis = new ChannelImageInputStream(channel);
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+        if (!readers.hasNext()) {
+            iis.close();
+            throw new IOException("No image reader.");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(iis, true, true);
+        return reader;
+    }
+
+    private static void dispose(ImageReader reader) throws IOException {
+        Object input = reader.getInput();
+        reader.dispose();
+        if (input instanceof ImageInputStream) {
+            ((ImageInputStream) input).close();
+        }
+    }
+
+    /**
+     * Decodes just the region and subsamples it to the size close to the target.
+     */
+    static BufferedImage readRegion(File file, Rectangle region, int width, int height) throws IOException {
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            return readRegion(channel, region, width, height);
+        }
+    }
+
+    private static BufferedImage readRegion(FileChannel channel, Rectangle region, int width, int height) throws IOException {
+        ImageReader reader = createReader(channel);
+        try {
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(region);
+            int subsampling = Math.max(1, Math.min(region.width / width, region.height / height));
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            return resize(reader.read(0, param), width, height);
+        } finally {
+            dispose(reader);
+        }
+    }
+
+    /**
+     * Resizes the image to RGB that the JPEG writer accepts.
+     */
+    static BufferedImage resize(BufferedImage image, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height
+                && image.getType() == BufferedImage.TYPE_INT_RGB) {
+            return image;
+        }
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    static byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * The open master. The temporary file of a remote master is deleted on close.
+     */
+    private static final class Master implements Closeable {
+
+        private final FileChannel channel;
+        private final File tmp;
+
+        Master(FileChannel channel, File tmp) {
+            this.channel = channel;
+            this.tmp = tmp;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, null, ex);
+            }
+            if (tmp != null) {
+                tmp.delete();
+            }
+        }
+
+    }
+
+    /**
+     * Reads the image with positional reads of the channel. The channel
+     * is not closed with the stream.
+     */
+    static final class ChannelImageInputStream extends ImageInputStreamImpl {
+
+        private final FileChannel channel;
+        private final ByteBuffer single = ByteBuffer.allocate(1);
+
+        ChannelImageInputStream(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkClosed();
+            bitOffset = 0;
+            single.clear();
+            if (channel.read(single, streamPos) <= 0) {
+                return -1;
+            }
+            ++streamPos;
+            return single.get(0) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            if (off < 0 || len < 0 || off + len > b.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            bitOffset = 0;
+            if (len == 0) {
+                return 0;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, len), streamPos);
+            if (read <= 0) {
+                return -1;
+            }
+            streamPos += read;
+            return read;
+        }
+
+        @Override
+        public long length() {
+            try {
+                return channel.size();
+            } catch (IOException ex) {
+                return -1L;
+            }
+        }
+
+    }
+
+    /**
+     * Dimensions of the image and its pyramid levels.
+     */
+    public static final class Info {
+
+        private final int width;
+        private final int height;
+
+        public Info(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getTileSize() {
+            return TILE_SIZE;
+        }
+
+        /**
+         * Gets scale factors of pyramid levels, the last level fits a single tile.
+         */
+        public List<Integer> getScaleFactors() {
+            List<Integer> factors = new ArrayList<Integer>();
+            int scale = 1;
+            factors.add(scale);
+            while (ceilDiv(width, scale) > TILE_SIZE || ceilDiv(height, scale) > TILE_SIZE) {
+                scale *= 2;
+                factors.add(scale);
+            }
+            return factors;
+        }
+
+        static Info valueOf(String s) {
+            String[] wh = s.trim().split("x");
+            if (wh.length != 2) {
+                return null;
+            }
+            try {
+                return new Info(Integer.parseInt(wh[0]), Integer.parseInt(wh[1]));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+
+    }
+
+}
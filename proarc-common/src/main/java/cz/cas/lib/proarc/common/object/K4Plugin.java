@@ -32,6 +32,7 @@ import cz.cas.lib.proarc.common.mods.ModsUtils;
 import cz.cas.lib.proarc.common.mods.custom.Mapping;
 import cz.cas.lib.proarc.common.mods.custom.ModsConstants;
 import cz.cas.lib.proarc.common.mods.custom.ModsCutomEditorType;
+import cz.cas.lib.proarc.common.mods.custom.PageMapper;
 import cz.cas.lib.proarc.common.mods.ndk.NdkMapper.Context;
 import cz.cas.lib.proarc.common.mods.ndk.NdkPageMapper;
 import cz.cas.lib.proarc.common.mods.ndk.NdkPageMapper.Page;
@@ -291,6 +292,20 @@ public class K4Plugin implements DigitalObjectPlugin, HasMetadataHandler<ModsDef
             }
         }
 
+        @Override
+        public void updatePage(PageViewItem page, String message) throws DigitalObjectException {
+            String modelId = handler.relations().getModel();
+            if (modelId.equals(NdkPlugin.MODEL_PAGE)) {
+                long timestamp = editor.getLastModified();
+                ModsDefinition mods = editor.read();
+                new PageMapper().updatePage(mods,
+                        page.getPageIndex(), page.getPageNumber(), page.getPageType());
+                write(modelId, mods, timestamp, message);
+            } else {
+                throw new DigitalObjectException(fobject.getPid(), "Unexpected model for K4 page: " + modelId);
+            }
+        }
+
         private void write(String modelId, ModsDefinition mods, long timestamp, String message) throws DigitalObjectException {
             editor.write(mods, timestamp, message);
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectConcurrentModificationException;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectValidationException;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Adds, removes and moves members of digital objects in bulk.
+ * The RELS-EXT of each parent is read and written once regardless of the number
+ * of members. In case of a concurrent modification of the parent the change
+ * is applied again to its fresh members.
+ *
+ * <p>A move writes the target parent first. If the source cannot be written,
+ * members remain shared by both parents rather than orphaned.
+ *
+ * @author Jan Pokorsky
+ */
+public final class MemberUpdater {
+
+    private static final Logger LOG = Logger.getLogger(MemberUpdater.class.getName());
+    /** The number of attempts to write a concurrently modified parent. */
+    static final int ATTEMPTS = 3;
+
+    private final DigitalObjectManager dom;
+    private final Batch batch;
+    private final String message;
+
+    /**
+     * @param dom the object manager
+     * @param batch the batch import holding the parents or {@code null} for the repository
+     * @param message the audit message
+     */
+    public MemberUpdater(DigitalObjectManager dom, Batch batch, String message) {
+        this.dom = dom;
+        this.batch = batch;
+        this.message = message;
+    }
+
+    /**
+     * Appends members to the parent.
+     * @param parentPid PID of the parent
+     * @param pids PIDs of new members
+     * @throws DigitalObjectValidationException the parent already contains some member
+     * @throws DigitalObjectException failure
+     */
+    public void add(final String parentPid, final List<String> pids) throws DigitalObjectException {
+        update(parentPid, new Change() {
+
+            @Override
+            public List<String> apply(List<String> members) throws DigitalObjectException {
+                return addMembers(parentPid, members, pids);
+            }
+        });
+    }
+
+    /**
+     * Removes members from the parent.
+     * @param parentPid PID of the parent
+     * @param pids PIDs of members to remove
+     * @throws DigitalObjectValidationException the parent does not contain some member
+     * @throws DigitalObjectException failure
+     */
+    public void remove(final String parentPid, final Collection<String> pids) throws DigitalObjectException {
+        update(parentPid, new Change() {
+
+            @Override
+            public List<String> apply(List<String> members) throws DigitalObjectException {
+                return removeMembers(parentPid, members, pids);
+            }
+        });
+    }
+
+    /**
+     * Moves members from the source parent to the target parent.
+     * Both parents are validated before any write.
+     * @param srcPid PID of the source parent
+     * @param dstPid PID of the target parent
+     * @param pids PIDs of members to move
+     * @throws DigitalObjectValidationException the source does not contain
+     *      some member or the target already contains it
+     * @throws DigitalObjectException failure
+     */
+    public void move(String srcPid, String dstPid, List<String> pids) throws DigitalObjectException {
+        removeMembers(srcPid, relations(srcPid).getMembers(), pids);
+        add(dstPid, pids);
+        remove(srcPid, pids);
+    }
+
+    private void update(String pid, Change change) throws DigitalObjectException {
+        for (int attempt = 1;; attempt++) {
+            DigitalObjectHandler handler = dom.createHandler(dom.find2(pid, batch));
+            RelationEditor editor = handler.relations();
+            long timestamp = editor.getLastModified();
+            List<String> members = change.apply(editor.getMembers());
+            if (members == null) {
+                return ;
+            }
+            try {
+                editor.setMembers(members);
+                editor.write(timestamp, message);
+                handler.commit();
+                return ;
+            } catch (DigitalObjectConcurrentModificationException ex) {
+                if (attempt >= ATTEMPTS) {
+                    throw ex;
+                }
+                LOG.log(Level.FINE, "Retrying the concurrently modified " + pid, ex);
+            }
+        }
+    }
+
+    private RelationEditor relations(String pid) throws DigitalObjectException {
+        return dom.createHandler(dom.find2(pid, batch)).relations();
+    }
+
+    /**
+     * Appends members.
+     * @return the new list of members or {@code null} if there is nothing to add
+     * @throws DigitalObjectValidationException some PID is already a member
+     */
+    static List<String> addMembers(String parentPid, List<String> members, Collection<String> pids)
+            throws DigitalObjectValidationException {
+
+        if (pids.isEmpty()) {
+            return null;
+        }
+        Set<String> current = new HashSet<String>(members);
+        List<String> result = new ArrayList<String>(members.size() + pids.size());
+        result.addAll(members);
+        for (String pid : pids) {
+            if (!current.add(pid)) {
+                throw new DigitalObjectValidationException(parentPid, null, RelationEditor.DATASTREAM_ID,
+                        parentPid + " already contains: " + pid, null);
+            }
+            result.add(pid);
+        }
+        return result;
+    }
+
+    /**
+     * Removes members.
+     * @return the new list of members or {@code null} if there is nothing to remove
+     * @throws DigitalObjectValidationException some PID is not a member
+     */
+    static List<String> removeMembers(String parentPid, List<String> members, Collection<String> pids)
+            throws DigitalObjectValidationException {
+
+        Set<String> toRemove = new HashSet<String>(pids);
+        Set<String> missing = new LinkedHashSet<String>(toRemove);
+        missing.removeAll(members);
+        if (!missing.isEmpty()) {
+            throw new DigitalObjectValidationException(parentPid, null, RelationEditor.DATASTREAM_ID,
+                    String.format("Parent: %s does not contain members: %s", parentPid, missing), null);
+        }
+        List<String> result = new ArrayList<String>(members.size());
+        for (String member : members) {
+            if (!toRemove.contains(member)) {
+                result.add(member);
+            }
+        }
+        return result.size() == members.size() ? null : result;
+    }
+
+    private interface Change {
+
+        /**
+         * Applies the change to current members.
+         * @return new members or {@code null} to skip the write
+         */
+        List<String> apply(List<String> members) throws DigitalObjectException;
+    }
+
+}
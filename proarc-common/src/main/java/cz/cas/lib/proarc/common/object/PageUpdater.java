@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.PageView.PageViewHandler;
+import cz.cas.lib.proarc.common.fedora.PageView.PageViewItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Updates page metadata of many digital objects in a single call.
+ * Pages are processed in parallel and each object is loaded and written once.
+ * It stops on the first failure; pages updated before the failure stay updated.
+ *
+ * @author Jan Pokorsky
+ */
+public final class PageUpdater {
+
+    private static final Logger LOG = Logger.getLogger(PageUpdater.class.getName());
+    /** The default number of concurrently updated pages. */
+    public static final int DEFAULT_THREADS = 4;
+
+    private final DigitalObjectManager dom;
+    private final int threads;
+
+    public PageUpdater(DigitalObjectManager dom) {
+        this(dom, DEFAULT_THREADS);
+    }
+
+    public PageUpdater(DigitalObjectManager dom, int threads) {
+        this.dom = dom;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Updates pages.
+     * @param pages PIDs and page updates, see {@link PageViewHandler#updatePage}
+     * @param batch the batch import holding the pages or {@code null} for the repository
+     * @param message the audit message
+     * @throws DigitalObjectException the first failure
+     */
+    public void update(Map<String, PageViewItem> pages, final Batch batch, final String message)
+            throws DigitalObjectException {
+
+        if (pages.isEmpty()) {
+            return ;
+        }
+        long start = System.currentTimeMillis();
+        int poolSize = Math.min(threads, pages.size());
+        if (poolSize == 1) {
+            for (Map.Entry<String, PageViewItem> entry : pages.entrySet()) {
+                update(entry.getKey(), entry.getValue(), batch, message);
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+            try {
+                update(executor, pages, batch, message);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        LOG.log(Level.FINE, "{0} pages updated in {1} ms",
+                new Object[]{pages.size(), System.currentTimeMillis() - start});
+    }
+
+    private void update(ExecutorService executor, Map<String, PageViewItem> pages,
+            final Batch batch, final String message) throws DigitalObjectException {
+
+        final AtomicBoolean failed = new AtomicBoolean();
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(pages.size());
+        for (Map.Entry<String, PageViewItem> entry : pages.entrySet()) {
+            final String pid = entry.getKey();
+            final PageViewItem page = entry.getValue();
+            futures.add(executor.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    if (failed.get()) {
+                        return null;
+                    }
+                    try {
+                        update(pid, page, batch, message);
+                    } catch (Exception ex) {
+                        failed.set(true);
+                        throw ex;
+                    }
+                    return null;
+                }
+            }));
+        }
+        DigitalObjectException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new DigitalObjectException(null, "Page update interrupted!", ex);
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    Throwable cause = ex.getCause();
+                    failure = cause instanceof DigitalObjectException
+                            ? (DigitalObjectException) cause
+                            : new DigitalObjectException(null, cause.getMessage(), cause);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void update(String pid, PageViewItem page, Batch batch, String message) throws DigitalObjectException {
+        FedoraObject fo = dom.find2(pid, batch);
+        DigitalObjectHandler handler = dom.createHandler(fo);
+        MetadataHandler<?> metadata = handler.metadata();
+        if (!(metadata instanceof PageViewHandler)) {
+            throw new DigitalObjectException(pid, "Not a page: " + handler.relations().getModel());
+        }
+        ((PageViewHandler) metadata).updatePage(page, message);
+        handler.commit();
+    }
+
+}
@@ -408,6 +408,36 @@ public class NdkMetadataHandler implements MetadataHandler<ModsDefinition>, Page
         }
     }
 
+    @Override
+    public void updatePage(PageViewItem page, String message) throws DigitalObjectException {
+        String modelId = handler.relations().getModel();
+        if (modelId.equals(NdkPlugin.MODEL_PAGE)) {
+            updatePage(new NdkPageMapper(), modelId, page, message);
+        } else {
+            throw new DigitalObjectException(fobject.getPid(), "Unexpected model for NDK page: " + modelId);
+        }
+    }
+
+    protected final void updatePage(NdkPageMapper mapper, String modelId, PageViewItem update, String message)
+            throws DigitalObjectException {
+
+        DescriptionMetadata<ModsDefinition> metadata = new DescriptionMetadata<ModsDefinition>();
+        metadata.setTimestamp(editor.getLastModified());
+        metadata.setIgnoreValidation(true);
+        Context context = new Context(handler);
+        Page page = mapper.toJsonObject(editor.read(), context);
+        if (update.getPageIndex() != null) {
+            page.setIndex(update.getPageIndex().isEmpty() ? null : update.getPageIndex());
+        }
+        if (update.getPageNumber() != null) {
+            page.setNumber(update.getPageNumber().isEmpty() ? null : update.getPageNumber());
+        }
+        if (update.getPageType() != null) {
+            page.setType(update.getPageType().isEmpty() ? null : update.getPageType());
+        }
+        write(modelId, mapper.toMods(page, context), metadata, message);
+    }
+
     private void checkBeforeWrite(ModsDefinition mods, ModsDefinition oldMods, boolean ignoreValidations) throws DigitalObjectException {
         if (ignoreValidations) {
             checkIdentifiers(mods, oldMods, null);
@@ -191,6 +191,15 @@ public class OldPrintPlugin implements DigitalObjectPlugin, HasMetadataHandler<M
                 }
             }
 
+            @Override
+            public void updatePage(PageViewItem page, String message) throws DigitalObjectException {
+                String modelId = handler.relations().getModel();
+                if (modelId.equals(MODEL_PAGE)) {
+                    updatePage(new OldPrintPageMapper(), modelId, page, message);
+                } else {
+                    throw new DigitalObjectException(fobject.getPid(), "Unexpected model for oldprint page: " + modelId);
+                }
+            }
 
         };
     }
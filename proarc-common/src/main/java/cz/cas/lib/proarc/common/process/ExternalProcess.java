@@ -16,6 +16,9 @@
  */
 package cz.cas.lib.proarc.common.process;
 
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -122,15 +125,29 @@ public class ExternalProcess implements Runnable {
             debug.append(arg).append(" ");
         }
         LOG.fine("run: " + debug);
+        Timer.Sample sample = Metrics.getInstance().timer("process." + getMetricName(cmdLine.get(0))).start();
         asyncProcess = new AsyncProcess(cmdLine, env);
         asyncProcess.start();
         long timeout = getTimeout();
         asyncProcess.join(timeout);
         asyncProcess.kill();
+        if (!isOk()) {
+            sample.failed();
+        }
+        sample.stop();
         LOG.fine(getFullOutput());
         return asyncProcess.getExitCode();
     }
 
+    /**
+     * Gets the name of the executable without path and extension.
+     */
+    static String getMetricName(String exec) {
+        String name = new File(exec).getName();
+        int extIdx = name.lastIndexOf('.');
+        return extIdx > 0 ? name.substring(0, extIdx) : name;
+    }
+
     public String getOut() {
         return asyncProcess == null ? null: asyncProcess.getOut();
     }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.sql;
+
+import cz.cas.lib.proarc.common.metrics.Counter;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import javax.sql.DataSource;
+
+/**
+ * Counts database round trips issued by the current thread. It allows to measure
+ * round trips of a single request, e.g. permission lookups of a REST call.
+ *
+ * <p>Each executed statement of a {@link #wrap wrapped} data source is one round trip,
+ * no matter whether it is issued by Empire-db or plain JDBC. A batch counts once.
+ *
+ * @author Jan Pokorsky
+ */
+public final class DbRoundTrips {
+
+    private static final ThreadLocal<int[]> THREAD_COUNTER = new ThreadLocal<int[]>() {
+
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+    private static final Counter TOTAL = Metrics.getInstance().counter("db.roundtrips");
+
+    /**
+     * Wraps the data source to count statements executed by its connections.
+     */
+    public static DataSource wrap(DataSource source) {
+        return proxy(DataSource.class, source);
+    }
+
+    /**
+     * Records a round trip of the current thread.
+     */
+    static void count() {
+        THREAD_COUNTER.get()[0]++;
+        TOTAL.inc();
+    }
+
+    /**
+     * Gets the number of round trips of the current thread since the last reset.
+     */
+    public static int get() {
+        return THREAD_COUNTER.get()[0];
+    }
+
+    /**
+     * Resets the counter of the current thread.
+     * @return the number of round trips since the last reset
+     */
+    public static int reset() {
+        int[] counter = THREAD_COUNTER.get();
+        int count = counter[0];
+        counter[0] = 0;
+        return count;
+    }
+
+    /**
+     * Gets the number of round trips of all threads. It is published
+     * as the {@code db.roundtrips} counter of {@link Metrics}.
+     */
+    public static long getTotal() {
+        return TOTAL.getCount();
+    }
+
+    private static <T> T proxy(Class<T> type, T delegate) {
+        return type.cast(Proxy.newProxyInstance(DbRoundTrips.class.getClassLoader(),
+                new Class<?>[] {type}, new CountingHandler(delegate)));
+    }
+
+    private DbRoundTrips() {
+    }
+
+    /**
+     * Wraps connections and statements returned by the delegate
+     * and counts executions of statements.
+     */
+    private static final class CountingHandler implements InvocationHandler {
+
+        private final Object delegate;
+
+        CountingHandler(Object delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if ("equals".equals(method.getName()) && method.getParameterTypes().length == 1) {
+                return proxy == args[0];
+            } else if (delegate instanceof Statement && method.getName().startsWith("execute")) {
+                count();
+            }
+            Object result;
+            try {
+                result = method.invoke(delegate, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+            Class<?> returnType = method.getReturnType();
+            if (result == null || !returnType.isInterface()) {
+                return result;
+            } else if (returnType == Connection.class) {
+                return proxy(Connection.class, (Connection) result);
+            } else if (returnType == Statement.class) {
+                return proxy(Statement.class, (Statement) result);
+            } else if (returnType == PreparedStatement.class) {
+                return proxy(PreparedStatement.class, (PreparedStatement) result);
+            } else if (returnType == CallableStatement.class) {
+                return proxy(CallableStatement.class, (CallableStatement) result);
+            }
+            return result;
+        }
+
+    }
+
+}
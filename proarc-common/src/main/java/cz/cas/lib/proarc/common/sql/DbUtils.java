@@ -39,7 +39,7 @@ public final class DbUtils {
         if (source == null) {
             throw new IllegalStateException("Cannot find 'jdbc/proarc' resource!");
         }
-        return source;
+        return DbRoundTrips.wrap(source);
     }
 
     public static void close(Connection c) {
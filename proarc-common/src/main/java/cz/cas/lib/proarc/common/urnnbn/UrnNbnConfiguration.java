@@ -42,8 +42,11 @@ public class UrnNbnConfiguration {
 
     public ResolverClient getClient(ResolverConfiguration conf) {
         if (conf != null) {
-            return new ResolverClient(conf.getUrl(), conf.getRegistrar(),
+            ResolverClient client = new ResolverClient(conf.getUrl(), conf.getRegistrar(),
                     conf.getArchiver(), conf.getUser(), conf.getPasswd());
+            client.setMaxConnections(conf.getMaxConnections());
+            client.setRetries(conf.getRetries());
+            return client;
         }
         return null;
     }
@@ -108,8 +111,11 @@ public class UrnNbnConfiguration {
     public static class ResolverConfiguration {
 
         static final String PROPERTY_ARCHIVER = "archiver";
+        static final String PROPERTY_MAX_CONNECTIONS = "maxConnections";
         static final String PROPERTY_PASSWD = "passwd";
         static final String PROPERTY_REGISTRAR = "registrar";
+        static final String PROPERTY_RETRIES = "retries";
+        static final String PROPERTY_THREADS = "threads";
         static final String PROPERTY_TITLE = "title";
         static final String PROPERTY_USER = "user";
         static final String PROPERTY_URL = "url";
@@ -150,6 +156,26 @@ public class UrnNbnConfiguration {
             return config.getString(PROPERTY_USER);
         }
 
+        /**
+         * Gets the number of threads preparing registrations.
+         */
+        public int getThreads() {
+            int threads = config.getInt(PROPERTY_THREADS,
+                    Math.min(4, Runtime.getRuntime().availableProcessors()));
+            return Math.max(1, threads);
+        }
+
+        /**
+         * Gets the limit of concurrent requests sent to the resolver.
+         */
+        public int getMaxConnections() {
+            return Math.max(1, config.getInt(PROPERTY_MAX_CONNECTIONS, ResolverClient.DEFAULT_MAX_CONNECTIONS));
+        }
+
+        public int getRetries() {
+            return config.getInt(PROPERTY_RETRIES, ResolverClient.DEFAULT_RETRIES);
+        }
+
     }
 
 }
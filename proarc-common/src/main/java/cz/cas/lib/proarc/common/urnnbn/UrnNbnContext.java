@@ -18,6 +18,9 @@ package cz.cas.lib.proarc.common.urnnbn;
 
 import cz.cas.lib.proarc.common.export.mets.JhoveContext;
 import cz.cas.lib.proarc.urnnbn.ResolverClient;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  *
@@ -28,6 +31,9 @@ public class UrnNbnContext {
     private UrnNbnStatusHandler status;
     private ResolverClient client;
     private JhoveContext jhoveContext;
+    /** PIDs of objects being registered; it can be shared by contexts of concurrent registrations. */
+    private Set<String> registrations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private Dispatcher dispatcher;
 
     public ResolverClient getClient() {
         return client;
@@ -53,4 +59,49 @@ public class UrnNbnContext {
         this.jhoveContext = jhoveContext;
     }
 
+    /**
+     * Claims the object for registration. It prevents registering the same
+     * object twice when several requested PIDs resolve to the same object.
+     * @param pid PID of the object to register
+     * @return {@code true} if the object was not claimed yet
+     */
+    public boolean claimRegistration(String pid) {
+        return registrations.add(pid);
+    }
+
+    /**
+     * Shares the claimed registrations with other contexts.
+     */
+    public void setRegistrations(Set<String> registrations) {
+        this.registrations = registrations;
+    }
+
+    public Set<String> getRegistrations() {
+        return registrations;
+    }
+
+    /**
+     * Gets the dispatcher of descendants found by the visitor.
+     * @return the dispatcher or {@code null} to register descendants in place
+     */
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    public void setDispatcher(Dispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Registers objects found in the hierarchy concurrently.
+     */
+    public interface Dispatcher {
+
+        /**
+         * Schedules the registration of the object.
+         * @param pid PID of the object to register
+         */
+        void dispatch(String pid);
+    }
+
 }
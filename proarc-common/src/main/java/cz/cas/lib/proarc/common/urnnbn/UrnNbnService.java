@@ -20,33 +20,64 @@ import cz.cas.lib.proarc.common.export.mets.JhoveContext;
 import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
 import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
-import cz.cas.lib.proarc.common.fedora.SearchView;
 import cz.cas.lib.proarc.common.object.DigitalObjectCrawler;
 import cz.cas.lib.proarc.common.object.DigitalObjectElement;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.urnnbn.UrnNbnStatusHandler.Status;
+import cz.cas.lib.proarc.common.urnnbn.UrnNbnVisitor.UrnNbnNotWrittenException;
 import cz.cas.lib.proarc.urnnbn.ResolverClient;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * The service to register digital objects to the URN:NBN resolver.
  *
+ * <p>Requested objects are processed concurrently. Objects to register
+ * that the visitor finds in the hierarchy of a requested object, e.g. issues
+ * of a periodical, are dispatched to the workers as well.
+ * Each worker prepares the registration (MODS, MIX lookup, validation)
+ * with its own JHOVE context and submits it
+ * with the shared {@link ResolverClient} that limits concurrent requests
+ * to the resolver. A failure of one object does not stop the others.
+ *
  * @author Jan Pokorsky
  */
 public final class UrnNbnService {
 
+    private static final Logger LOG = Logger.getLogger(UrnNbnService.class.getName());
+
     private final DigitalObjectManager dom;
-    private final SearchView search;
+    private final RemoteStorage storage;
     private final ResolverClient client;
+    private final int threads;
 
     public UrnNbnService(ResolverClient client) {
+        this(client, 1);
+    }
+
+    /**
+     * @param client the resolver client
+     * @param threads number of objects to process concurrently
+     */
+    public UrnNbnService(ResolverClient client, int threads) {
         dom = DigitalObjectManager.getDefault();
-        search = RemoteStorage.getInstance().getSearch();
+        storage = RemoteStorage.getInstance();
         this.client = client;
+        this.threads = Math.max(1, threads);
     }
 
     public UrnNbnStatusHandler register(String pid, boolean hierarchy) {
@@ -54,37 +85,117 @@ public final class UrnNbnService {
     }
 
     public UrnNbnStatusHandler register(Collection<String> pids, boolean hierarchy) {
-        LinkedHashSet<String> queue = new LinkedHashSet<String>(pids);
-        UrnNbnStatusHandler statusHandler = new UrnNbnStatusHandler();
-        DigitalObjectCrawler crawler = new DigitalObjectCrawler(dom, search, null);
-        UrnNbnVisitor reg = new UrnNbnVisitor(crawler);
-        UrnNbnContext ctx = new UrnNbnContext();
-        ctx.setStatus(statusHandler);
-        ctx.setClient(client);
-        if (initJhove(ctx) == null) {
-            return statusHandler;
-        }
+        long start = System.currentTimeMillis();
+        final UrnNbnStatusHandler statusHandler = new UrnNbnStatusHandler();
+        final Set<String> queue = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final Set<String> registrations = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicBoolean stop = new AtomicBoolean();
+        // each worker needs its own JHOVE instance as it is not thread safe
+        final LinkedBlockingQueue<UrnNbnContext> contexts = new LinkedBlockingQueue<UrnNbnContext>();
+        final List<UrnNbnContext> allContexts = Collections.synchronizedList(new ArrayList<UrnNbnContext>());
+        final Queue<Future<?>> tasks = new ConcurrentLinkedQueue<Future<?>>();
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final UrnNbnContext.Dispatcher dispatcher = new UrnNbnContext.Dispatcher() {
+
+            @Override
+            public void dispatch(final String pid) {
+                if (stop.get() || !queue.add(pid)) {
+                    return ;
+                }
+                final UrnNbnContext.Dispatcher self = this;
+                tasks.add(pool.submit(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (stop.get()) {
+                            return ;
+                        }
+                        queue.remove(pid);
+                        UrnNbnContext ctx = contexts.poll();
+                        if (ctx == null) {
+                            ctx = createContext(statusHandler, registrations, self);
+                            if (ctx == null) {
+                                stop.set(true);
+                                return ;
+                            }
+                            allContexts.add(ctx);
+                        }
+                        try {
+                            register(pid, ctx);
+                        } catch (UrnNbnNotWrittenException ex) {
+                            // the registered URN:NBN was not written, stop further registrations!
+                            stop.set(true);
+                            throw ex;
+                        } finally {
+                            contexts.add(ctx);
+                        }
+                    }
+                }));
+            }
+        };
         try {
             for (String pid : pids) {
-                queue.remove(pid);
+                dispatcher.dispatch(pid);
+            }
+            // tasks dispatch descendants before they complete
+            for (Future<?> task; (task = tasks.poll()) != null;) {
                 try {
-                    DigitalObjectElement elm = crawler.getEntry(pid);
-                    elm.accept(reg, ctx);
-                } catch (Exception ex) {
-                    Logger.getLogger(UrnNbnService.class.getName()).log(Level.SEVERE, null, ex);
-                    statusHandler.error(pid, ex);
-                    break;
+                    task.get();
+                } catch (ExecutionException ex) {
+                    LOG.log(Level.SEVERE, null, ex.getCause());
                 }
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOG.log(Level.SEVERE, null, ex);
         } finally {
-            ctx.getJhoveContext().destroy();
+            pool.shutdownNow();
+            destroy(allContexts);
         }
         for (String pid : queue) {
             statusHandler.warning(pid, Status.NOT_PROCESSED, "Not processed! \n" + pid);
         }
+        long time = System.currentTimeMillis() - start;
+        int processed = registrations.size();
+        LOG.log(Level.INFO, String.format(
+                "URN:NBN registration: %s registered from %s requested objects (%s objects of hierarchies)"
+                        + " in %s ms, %.2f objects/s, threads: %s",
+                statusHandler.getRegisteredCount(), pids.size(), processed, time,
+                time == 0 ? 0d : processed * 1000d / time, allContexts.size()));
         return statusHandler;
     }
 
+    private void register(String pid, UrnNbnContext ctx) {
+        DigitalObjectCrawler crawler = new DigitalObjectCrawler(dom, storage.getSearch(), null);
+        UrnNbnVisitor reg = new UrnNbnVisitor(crawler);
+        try {
+            DigitalObjectElement elm = crawler.getEntry(pid);
+            elm.accept(reg, ctx);
+        } catch (UrnNbnNotWrittenException ex) {
+            ctx.getStatus().error(pid, ex);
+            throw ex;
+        } catch (Exception ex) {
+            LOG.log(Level.SEVERE, pid, ex);
+            ctx.getStatus().error(pid, ex);
+        }
+    }
+
+    private UrnNbnContext createContext(UrnNbnStatusHandler statusHandler, Set<String> registrations,
+            UrnNbnContext.Dispatcher dispatcher) {
+        UrnNbnContext ctx = new UrnNbnContext();
+        ctx.setStatus(statusHandler);
+        ctx.setClient(client);
+        ctx.setRegistrations(registrations);
+        ctx.setDispatcher(dispatcher);
+        return initJhove(ctx) == null ? null : ctx;
+    }
+
+    private static void destroy(Collection<UrnNbnContext> contexts) {
+        for (UrnNbnContext ctx : contexts) {
+            ctx.getJhoveContext().destroy();
+        }
+    }
+
     private JhoveContext initJhove(UrnNbnContext ctx) {
         try {
             ctx.setJhoveContext(JhoveUtility.createContext());
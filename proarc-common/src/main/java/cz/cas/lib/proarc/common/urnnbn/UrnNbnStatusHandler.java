@@ -29,6 +29,7 @@ import java.util.Map;
 
 /**
  * It handles warnings, errors and registered URN:NBNs.
+ * The handler is thread safe.
  *
  * @author Jan Pokorsky
  */
@@ -91,18 +92,18 @@ public class UrnNbnStatusHandler {
         log(LogType.WARNING, pid, status, msg);
     }
 
-    public void ok(DigitalObjectElement elm, String urnNbn) {
+    public synchronized void ok(DigitalObjectElement elm, String urnNbn) {
         getEntry(elm.getPid()).setPid(elm.getItem()).ok(urnNbn);
     }
 
-    public void log(LogType logType, DigitalObjectElement elm, Status status, String msg) {
+    public synchronized void log(LogType logType, DigitalObjectElement elm, Status status, String msg) {
         getEntry(elm.getPid())
                 .setPid(elm.getItem())
                 .getLogs(logType)
                     .add(new StatusEntry(status, msg));
     }
 
-    public void log(LogType logType, String pid, Status status, String msg) {
+    public synchronized void log(LogType logType, String pid, Status status, String msg) {
         PidResult entry = getEntry(pid);
         if (entry.getPid() == null) {
             entry.setPid(new Item(pid));
@@ -110,10 +111,23 @@ public class UrnNbnStatusHandler {
         entry.getLogs(logType).add(new StatusEntry(status, msg));
     }
 
-    public Map<String, PidResult> getPids() {
+    public synchronized Map<String, PidResult> getPids() {
         return pids;
     }
 
+    /**
+     * Gets the number of registered URN:NBNs.
+     */
+    public synchronized int getRegisteredCount() {
+        int count = 0;
+        for (PidResult result : pids.values()) {
+            if (result.getUrnNbn() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private PidResult getEntry(String pid) {
         PidResult pe = pids.get(pid);
         if (pe == null) {
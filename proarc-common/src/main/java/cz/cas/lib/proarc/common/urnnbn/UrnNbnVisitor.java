@@ -119,6 +119,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The issue under " + registeringObject.toLog());
             return null;
         }
+        if (dispatch(elm, p)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processNdkPeriodicalIssue(elm, p);
@@ -144,6 +147,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
             DigitalObjectElement parent = getCrawler().getParent(elm.getPid());
             String parentModelId = parent.getModelId();
             if (parent == DigitalObjectElement.NULL || NdkPlugin.MODEL_PERIODICALVOLUME.equals(parentModelId)) {
+                if (dispatch(elm, p)) {
+                    return null;
+                }
                 try {
                     registeringObject = elm;
                     return processNdkPeriodicalIssue(elm, p);
@@ -167,6 +173,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The volume under " + registeringObject.toLog());
             return null;
         }
+        if (dispatch(elm, p)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processNdkMonographVolumeOrSupplement(elm, p);
@@ -191,6 +200,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
         try {
             DigitalObjectElement parent = getCrawler().getParent(elm.getPid());
             if (parent == DigitalObjectElement.NULL || NdkPlugin.MODEL_MONOGRAPHTITLE.equals(parent.getModelId())) {
+                if (dispatch(elm, p)) {
+                    return null;
+                }
                 try {
                     registeringObject = elm;
                     return processNdkMonographVolumeOrSupplement(elm, p);
@@ -214,6 +226,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The cartographic under " + registeringObject.toLog());
             return null;
         }
+        if (dispatch(elm, p)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processOtherEntity(elm, "cartographic", p);
@@ -232,6 +247,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The sheet music under " + registeringObject.toLog());
             return null;
         }
+        if (dispatch(elm, p)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processOtherEntity(elm, "sheetmusic", p);
@@ -286,6 +304,19 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
         return traversePath.size() == 1;
     }
 
+    /**
+     * Hands the object found under the entry point over to the dispatcher
+     * so that objects of the hierarchy are prepared concurrently.
+     * @return {@code true} if the object is dispatched
+     */
+    private boolean dispatch(DigitalObjectElement elm, UrnNbnContext p) {
+        if (isEntryPoint() || p.getDispatcher() == null) {
+            return false;
+        }
+        p.getDispatcher().dispatch(elm.getPid());
+        return true;
+    }
+
     private Void visitEnclosingElement2Register(DigitalObjectElement elm, UrnNbnContext p) throws VisitorException {
         // prevent cycles
         if (!isEntryPoint()) {
@@ -318,6 +349,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
             throws DigitalObjectException, VisitorException {
 
         final String pid = elm.getPid();
+        if (!p.claimRegistration(pid)) {
+            return null;
+        }
         final DigitalObjectHandler issueHandler = elm.getHandler();
         final MetadataHandler<ModsDefinition> issueModsHandler = issueHandler.<ModsDefinition>metadata();
         final DescriptionMetadata<ModsDefinition> issueDescription = issueModsHandler.getMetadata();
@@ -380,6 +414,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
             throws DigitalObjectException, VisitorException {
 
         final String pid = elm.getPid();
+        if (!p.claimRegistration(pid)) {
+            return null;
+        }
         final DigitalObjectHandler volumeHandler = elm.getHandler();
         final MetadataHandler<ModsDefinition> volumeModsHandler = volumeHandler.<ModsDefinition>metadata();
         final DescriptionMetadata<ModsDefinition> volumeDescription = volumeModsHandler.getMetadata();
@@ -432,6 +469,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
     private Void processOtherEntity(DigitalObjectElement elm, String entityType, UrnNbnContext p)
             throws DigitalObjectException, VisitorException {
 
+        if (!p.claimRegistration(elm.getPid())) {
+            return null;
+        }
         final DigitalObjectHandler volumeHandler = elm.getHandler();
         final MetadataHandler<ModsDefinition> volumeModsHandler = volumeHandler.<ModsDefinition>metadata();
         final DescriptionMetadata<ModsDefinition> volumeDescription = volumeModsHandler.getMetadata();
@@ -527,7 +567,7 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
             p.getStatus().ok(elm, urnnbn);
         } catch (Exception ex) {
             // fatal error, stop further registrations!
-            throw new IllegalStateException(elm.getPid() + ": Cannot write URN:NBN " + urnnbn, ex);
+            throw new UrnNbnNotWrittenException(elm.getPid() + ": Cannot write URN:NBN " + urnnbn, ex);
         }
     }
 
@@ -609,6 +649,17 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
         }
     }
 
+    /**
+     * The URN:NBN was registered but it could not be written to the object.
+     * Further registrations should stop.
+     */
+    static class UrnNbnNotWrittenException extends IllegalStateException {
+
+        public UrnNbnNotWrittenException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
     /**
      * Throw the exception to stop processing other children when MIX is found.
      */
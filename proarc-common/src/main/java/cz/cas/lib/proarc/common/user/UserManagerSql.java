@@ -28,8 +28,11 @@ import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
 import org.apache.commons.io.FileUtils;
@@ -37,6 +40,11 @@ import org.apache.commons.io.FileUtils;
 /**
  * Manages user stuff in RDBMS and the Fedora storage.
  *
+ * <p>Permissions, groups and group membership of users are cached as they
+ * are checked several times per each request. The cache is invalidated by any change
+ * of permissions, group membership or groups made with this manager.
+ * Changes made directly in the database require a restart.
+ *
  * @author Jan Pokorsky
  */
 final class UserManagerSql implements UserManager {
@@ -48,6 +56,16 @@ final class UserManagerSql implements UserManager {
     private final PermissionSqlStorage permissionStorage;
     private final RemoteStorage remoteStorage;
     private final DaoFactory daos;
+    /** The cache of user permissions. userId -> permissions */
+    private final Map<Integer, Set<Permission>> permissionCache = new ConcurrentHashMap<Integer, Set<Permission>>();
+    /** The cache of groups. groupId -> group */
+    private final Map<Integer, Group> groupCache = new ConcurrentHashMap<Integer, Group>();
+    /** The cache of group membership. userId -> groups */
+    private final Map<Integer, List<Group>> userGroupCache = new ConcurrentHashMap<Integer, List<Group>>();
+    /** Guards cache updates against concurrent invalidations. */
+    private final Object cacheLock = new Object();
+    /** Incremented with each invalidation to discard stale query results. */
+    private long cacheGeneration;
 
     public UserManagerSql(DataSource source, File defaultHome, RemoteStorage remoteStorage, DaoFactory daos) {
         this.source = source;
@@ -173,6 +191,7 @@ final class UserManagerSql implements UserManager {
             userHome = null;
             tx.commit();
             ftx.commit();
+            invalidateUser(profile.getId());
             return filter(profile);
         } catch (Throwable ex) {
             ftx.rollback();
@@ -227,6 +246,7 @@ final class UserManagerSql implements UserManager {
             }
             tx.commit();
             ftx.commit();
+            invalidateGroup(group.getId());
             return group;
         } catch (Throwable ex) {
             ftx.rollback();
@@ -252,14 +272,27 @@ final class UserManagerSql implements UserManager {
 
     @Override
     public Group findGroup(int groupId) {
+        Group group = groupCache.get(groupId);
+        if (group != null) {
+            return copy(group);
+        }
+        long generation = getCacheGeneration();
         Transaction tx = daos.createTransaction();
         GroupDao groupDao = daos.createUserGroup();
         groupDao.setTransaction(tx);
         try {
-            return groupDao.find(groupId);
+            group = groupDao.find(groupId);
         } finally {
             tx.close();
         }
+        if (group != null) {
+            synchronized (cacheLock) {
+                if (generation == cacheGeneration) {
+                    groupCache.put(groupId, copy(group));
+                }
+            }
+        }
+        return group;
     }
 
     @Override
@@ -293,6 +326,7 @@ final class UserManagerSql implements UserManager {
                 c.commit();
                 ftx.commit();
                 rollback = false;
+                invalidateUser(user.getId());
             } finally {
                 ftx.close();
                 DbUtils.close(c, rollback);
@@ -304,32 +338,54 @@ final class UserManagerSql implements UserManager {
 
     @Override
     public List<Group> findUserGroups(int userId) {
+        List<Group> groups = userGroupCache.get(userId);
+        if (groups != null) {
+            return copy(groups);
+        }
+        long generation = getCacheGeneration();
         try {
             Connection c = getConnection();
             try {
                 c.setAutoCommit(true);
-                return groupStorage.findUserGroups(c, userId);
+                groups = groupStorage.findUserGroups(c, userId);
             } finally {
                 DbUtils.close(c);
             }
         } catch (SQLException ex) {
             throw new IllegalStateException(ex);
         }
+        synchronized (cacheLock) {
+            if (generation == cacheGeneration) {
+                userGroupCache.put(userId, copy(groups));
+            }
+        }
+        return groups;
     }
 
     @Override
     public Set<Permission> findUserPermissions(int userId) {
+        Set<Permission> permissions = permissionCache.get(userId);
+        if (permissions != null) {
+            return new HashSet<Permission>(permissions);
+        }
+        long generation = getCacheGeneration();
         try {
             Connection c = getConnection();
             try {
                 c.setAutoCommit(true);
-                return permissionStorage.find(c, userId);
+                permissions = permissionStorage.find(c, userId);
             } finally {
                 DbUtils.close(c);
             }
         } catch (SQLException ex) {
             throw new IllegalStateException(ex);
         }
+        synchronized (cacheLock) {
+            if (generation == cacheGeneration) {
+                permissionCache.put(userId, new HashSet<Permission>(permissions));
+            }
+        }
+        return permissions;
     }
 
     @Override
@@ -345,6 +401,8 @@ final class UserManagerSql implements UserManager {
                 permissionStorage.set(c, groupId, permissions);
                 c.commit();
                 rollback = false;
+                // any user may be a member of the group
+                invalidatePermissions();
             } finally {
                 DbUtils.close(c, rollback);
             }
@@ -363,6 +421,7 @@ final class UserManagerSql implements UserManager {
                 permissionStorage.remove(c, groupId);
                 c.commit();
                 rollback = false;
+                invalidatePermissions();
             } finally {
                 DbUtils.close(c, rollback);
             }
@@ -371,6 +430,61 @@ final class UserManagerSql implements UserManager {
         }
     }
 
+    private long getCacheGeneration() {
+        synchronized (cacheLock) {
+            return cacheGeneration;
+        }
+    }
+
+    private void invalidateUser(Integer userId) {
+        synchronized (cacheLock) {
+            cacheGeneration++;
+            if (userId != null) {
+                permissionCache.remove(userId);
+                userGroupCache.remove(userId);
+            }
+        }
+    }
+
+    private void invalidateGroup(Integer groupId) {
+        synchronized (cacheLock) {
+            cacheGeneration++;
+            if (groupId != null) {
+                groupCache.remove(groupId);
+            }
+            // permissions may be declared with the group; membership lists hold group copies
+            permissionCache.clear();
+            userGroupCache.clear();
+        }
+    }
+
+    private void invalidatePermissions() {
+        synchronized (cacheLock) {
+            cacheGeneration++;
+            permissionCache.clear();
+        }
+    }
+
+    private static Group copy(Group group) {
+        Group copy = new Group();
+        copy.setId(group.getId());
+        copy.setName(group.getName());
+        copy.setTitle(group.getTitle());
+        copy.setRemoteName(group.getRemoteName());
+        copy.setRemoteType(group.getRemoteType());
+        copy.setCreated(group.getCreated());
+        copy.setTimestamp(group.getTimestamp());
+        return copy;
+    }
+
+    private static List<Group> copy(List<Group> groups) {
+        List<Group> copy = new ArrayList<Group>(groups.size());
+        for (Group group : groups) {
+            copy.add(copy(group));
+        }
+        return copy;
+    }
+
     private static Group createUserGroup(UserProfile user) {
         return Group.create(user.getUserName(), null);
     }
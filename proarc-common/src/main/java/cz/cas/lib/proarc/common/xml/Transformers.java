@@ -24,8 +24,11 @@ import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.xml.transform.ErrorListener;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
@@ -33,13 +36,28 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.TransformerFactoryConfigurationError;
 import javax.xml.transform.URIResolver;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 /**
  * Transforms MARCXML and MODS documents to various {@link Format formats}.
  *
+ * <p>Stylesheets are compiled once. Transformers created from compiled
+ * templates are pooled per format and reused; a transformer that failed
+ * is discarded. The chained transformations use pooled transformers as well.
+ * Each intermediate output is built as a DOM tree in memory and passed
+ * to the next format; it is not serialized and parsed again, but the chain
+ * is not streamed either.
+ * The system property {@value #PROPERTY_FACTORY} may name
+ * a {@link TransformerFactory} implementation to compile stylesheets,
+ * e.g. a compiling XSLTC or Saxon factory. The default JAXP factory
+ * is used in case of a failure. Stylesheets are tested with Xalan;
+ * e.g. XSLTC of the JDK yields different labels and HTML.
+ *
  * @author Jan Pokorsky
  * @see <a href='http://www.loc.gov/standards/marcxml/'>MARC 21 XML Schema</a>
  * @see <a href='http://www.loc.gov/standards/mods/mods-conversions.html'>MODS Conversions</a>
@@ -48,7 +66,19 @@ public final class Transformers {
 
     private static final Map<Format, String> FORMAT2XSL;
     private static final Map<Format, Templates> FORMAT2TEMPLATES;
+    /** Idle transformers of formats. */
+    private static final Map<Format, BlockingQueue<Transformer>> FORMAT2POOL;
+    /** Idle identity transformers. */
+    private static final BlockingQueue<Transformer> IDENTITY_POOL;
     private static final Logger LOG = Logger.getLogger(Transformers.class.getName());
+    /** The system property naming the factory class to compile stylesheets. */
+    public static final String PROPERTY_FACTORY = "proarc.xslt.factory";
+    /** The number of idle transformers kept per format. */
+    private static final int POOL_SIZE = 16;
+    /** The factory of identity transformers. */
+    private static final TransformerFactory FACTORY;
+    /** Fails the transformation on fatal errors so that a broken transformer is not pooled. */
+    private static final ErrorListener ERROR_LISTENER = new FailingErrorListener();
 
 //    private static final String DC_RDF_XSL_PATH = "http://www.loc.gov/standards/marcxml/xslt/MARC21slim2RDFDC.xsl";
     private static final String MODS_3_XSL_PATH = "http://www.loc.gov/standards/mods/v3/MARC21slim2MODS3-4.xsl";
@@ -60,6 +90,9 @@ public final class Transformers {
     private static final String ALEPHXSERVERFIX_XSL_PATH = "/xml/alephOaiMarcFix.xsl";
 
     static {
+        FACTORY = TransformerFactory.newInstance();
+        FORMAT2POOL = new EnumMap<Format, BlockingQueue<Transformer>>(Format.class);
+        IDENTITY_POOL = new ArrayBlockingQueue<Transformer>(POOL_SIZE);
         FORMAT2TEMPLATES = new EnumMap<Format, Templates>(Format.class);
         FORMAT2XSL = new EnumMap<Format, String>(Format.class);
 //        FORMAT2XSL.put(Format.MarcxmlAsDcRdf, DC_RDF_XSL_PATH);
@@ -89,24 +122,55 @@ public final class Transformers {
     public byte[] transformAsBytes(Source input, Format format, Map<String, Object> params) throws TransformerException {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
         Result output = new StreamResult(buffer);
-        Transformer t = createTransformer(format);
-        for (Map.Entry<String, Object> param : params.entrySet()) {
-            t.setParameter(param.getKey(), param.getValue());
-        }
-        t.transform(input, output);
+        transform(input, output, params, format);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Chains transformations. The output of each format except the last one
+     * is built as a DOM tree that is the input of the next format.
+     * @param input the input of the first format
+     * @param params parameters passed to all formats
+     * @param formats formats to apply in the given order
+     * @return the output of the last format
+     */
+    public byte[] transformAsBytes(Source input, Map<String, Object> params, Format... formats) throws TransformerException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        transform(input, new StreamResult(buffer), params, formats);
         return buffer.toByteArray();
     }
 
+    /**
+     * @see #transformAsBytes(javax.xml.transform.Source, java.util.Map, cz.cas.lib.proarc.common.xml.Transformers.Format...)
+     */
+    public void transform(Source input, Result output, Map<String, Object> params, Format... formats) throws TransformerException {
+        if (formats.length == 0) {
+            throw new IllegalArgumentException("formats");
+        }
+        Source source = input;
+        for (int i = 0; i < formats.length; i++) {
+            boolean last = i == formats.length - 1;
+            Result result = last ? output : new DOMResult();
+            Transformer t = borrowTransformer(formats[i]);
+            for (Map.Entry<String, Object> param : params.entrySet()) {
+                t.setParameter(param.getKey(), param.getValue());
+            }
+            t.transform(source, result);
+            releaseTransformer(FORMAT2POOL.get(formats[i]), t);
+            if (!last) {
+                source = new DOMSource(((DOMResult) result).getNode(), input.getSystemId());
+            }
+        }
+    }
+
     public Source toSource(byte[] buffer) {
         return new StreamSource(new ByteArrayInputStream(buffer));
     }
 
     public Source dump(Source source, StringBuilder dump) {
         try {
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Transformer t = factory.newTransformer();
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            t.transform(source, new StreamResult(buffer));
+            copy(source, new StreamResult(buffer));
             dump.append(buffer.toString("UTF-8"));
             return new StreamSource(new ByteArrayInputStream(buffer.toByteArray()));
         } catch (TransformerException ex) {
@@ -118,10 +182,8 @@ public final class Transformers {
 
     public Source dump2Temp(Source source, String filename) {
         try {
-            TransformerFactory factory = TransformerFactory.newInstance();
-            Transformer t = factory.newTransformer();
             ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            t.transform(source, new StreamResult(buffer));
+            copy(source, new StreamResult(buffer));
 
 //            t.transform(new StreamSource(new ByteArrayInputStream(buffer.toByteArray())),
 //                    new StreamResult(new File("/tmp/aleph/" + filename)));
@@ -137,8 +199,26 @@ public final class Transformers {
         return resolver.resolve(path, path);
     }
 
+    private void copy(Source source, Result result) throws TransformerException {
+        Transformer t = borrowIdentity();
+        t.transform(source, result);
+        releaseTransformer(IDENTITY_POOL, t);
+    }
+
     private static Templates createTemplates(Format recordFormat) throws TransformerException {
-        TransformerFactory factory = TransformerFactory.newInstance();
+        String factoryClass = System.getProperty(PROPERTY_FACTORY);
+        if (factoryClass != null && !factoryClass.isEmpty()) {
+            try {
+                return createTemplates(recordFormat,
+                        TransformerFactory.newInstance(factoryClass, Transformers.class.getClassLoader()));
+            } catch (TransformerException | TransformerFactoryConfigurationError ex) {
+                LOG.log(Level.WARNING, factoryClass + ", " + recordFormat, ex);
+            }
+        }
+        return createTemplates(recordFormat, TransformerFactory.newInstance());
+    }
+
+    private static Templates createTemplates(Format recordFormat, TransformerFactory factory) throws TransformerException {
 //        factory.setAttribute("debug", true);
         SimpleResolver resolver = new SimpleResolver();
         factory.setURIResolver(resolver);
@@ -146,12 +226,51 @@ public final class Transformers {
         return templates;
     }
 
-    private static Transformer createTransformer(Format recordFormat) throws TransformerConfigurationException {
+    private static Templates getTemplates(Format recordFormat) throws TransformerConfigurationException {
         Templates templates = FORMAT2TEMPLATES.get(recordFormat);
         if (templates == null) {
             throw new TransformerConfigurationException("Cannot transform " + recordFormat);
         }
-        return templates.newTransformer();
+        return templates;
+    }
+
+    private static Transformer borrowTransformer(Format recordFormat) throws TransformerConfigurationException {
+        Templates templates = getTemplates(recordFormat);
+        Transformer t = FORMAT2POOL.get(recordFormat).poll();
+        if (t == null) {
+            t = templates.newTransformer();
+            t.setErrorListener(ERROR_LISTENER);
+        }
+        return t;
+    }
+
+    private static Transformer borrowIdentity() throws TransformerConfigurationException {
+        Transformer t = IDENTITY_POOL.poll();
+        if (t == null) {
+            synchronized (FACTORY) {
+                t = FACTORY.newTransformer();
+            }
+            t.setErrorListener(ERROR_LISTENER);
+        }
+        return t;
+    }
+
+    /**
+     * Returns the transformer to its pool after the successful transformation.
+     * A transformer that threw an exception is not returned as its state is undefined.
+     * Parameters are cleared; the URI resolver is kept as {@link Transformer#reset()}
+     * would drop it.
+     */
+    private static void releaseTransformer(BlockingQueue<Transformer> pool, Transformer t) {
+        t.clearParameters();
+        pool.offer(t);
+    }
+
+    /**
+     * Gets the number of idle transformers of the format.
+     */
+    static int getIdleCount(Format format) {
+        return FORMAT2POOL.get(format).size();
     }
 
     private static void initTemplates() {
@@ -159,12 +278,36 @@ public final class Transformers {
             try {
                 Templates templates = createTemplates(entry.getKey());
                 FORMAT2TEMPLATES.put(entry.getKey(), templates);
+                FORMAT2POOL.put(entry.getKey(), new ArrayBlockingQueue<Transformer>(POOL_SIZE));
             } catch (TransformerException ex) {
                 LOG.log(Level.SEVERE, entry.getValue(), ex);
             }
         }
     }
 
+    /**
+     * The default listener of the JDK transformer just prints fatal errors
+     * and the transformation seems to be successful.
+     */
+    private static final class FailingErrorListener implements ErrorListener {
+
+        @Override
+        public void warning(TransformerException exception) {
+            LOG.log(Level.FINE, exception.getMessageAndLocation());
+        }
+
+        @Override
+        public void error(TransformerException exception) {
+            LOG.log(Level.WARNING, exception.getMessageAndLocation());
+        }
+
+        @Override
+        public void fatalError(TransformerException exception) throws TransformerException {
+            throw exception;
+        }
+
+    }
+
     /**
      * This allows to run Transformers offline.
      */
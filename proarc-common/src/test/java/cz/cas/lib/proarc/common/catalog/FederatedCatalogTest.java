@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class FederatedCatalogTest {
+
+    private static String mods(String isbn, String recordId) {
+        return "<mods xmlns='http://www.loc.gov/mods/v3'>"
+                + (isbn == null ? "" : "<identifier type='isbn'>" + isbn + "</identifier>")
+                + (recordId == null ? "" : "<recordInfo><recordIdentifier source='CZ-PrNK'>"
+                        + recordId + "</recordIdentifier></recordInfo>")
+                + "</mods>";
+    }
+
+    private static MetadataItem item(int id, String isbn, String recordId) {
+        return new MetadataItem(id, mods(isbn, recordId), "preview" + id, "title" + id);
+    }
+
+    @Test
+    public void testGetKeys() {
+        Set<String> keys = FederatedCatalog.getKeys(mods("80-01 234", "nkc001"));
+        assertEquals(new HashSet<String>(Arrays.asList("isbn:8001234", "001:CZ-PrNK:nkc001")), keys);
+        assertTrue(FederatedCatalog.getKeys("<invalid").isEmpty());
+        assertTrue(FederatedCatalog.getKeys(null).isEmpty());
+    }
+
+    @Test
+    public void testMerge() {
+        Set<String> keys = new HashSet<String>();
+        List<MetadataItem> result = new ArrayList<MetadataItem>();
+        FederatedCatalog.merge("catalog1",
+                Arrays.asList(item(1, "80-01234", null), item(2, null, null)), keys, result);
+        assertEquals(2, result.size());
+        FederatedCatalog.merge("catalog2",
+                Arrays.asList(item(1, "8001234", "nkc001"), item(2, "80-999", null)), keys, result);
+        assertEquals(3, result.size());
+        MetadataItem last = result.get(2);
+        assertEquals(3, last.getId());
+        assertEquals("catalog2", last.getCatalog());
+        assertEquals("title2", last.getTitle());
+    }
+
+    @Test
+    public void testFindWithTimeout() throws Exception {
+        FederatedCatalog catalog = new FederatedCatalog()
+                .add("fast", (field, value, locale) -> Arrays.asList(item(1, "80-1", null)), 5000)
+                .add("slow", (field, value, locale) -> {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                    return Collections.singletonList(item(1, "80-2", null));
+                }, 200)
+                .add("failing", (field, value, locale) -> {
+                    throw new IOException("failure");
+                }, 5000);
+        long start = System.currentTimeMillis();
+        List<MetadataItem> result = catalog.find("isbn", "testFindWithTimeout", null);
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(1, result.size());
+        assertEquals("fast", result.get(0).getCatalog());
+        assertEquals(new HashSet<String>(Arrays.asList("slow", "failing")), catalog.getFailures().keySet());
+    }
+
+    @Test
+    public void testStartAndPoll() throws Exception {
+        FederatedCatalog catalog = new FederatedCatalog()
+                .add("fast", (field, value, locale) -> Arrays.asList(item(1, "80-1", null)), 5000)
+                .add("slow", (field, value, locale) -> {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ex) {
+                        throw new IOException(ex);
+                    }
+                    return Collections.singletonList(item(1, "80-2", null));
+                }, 5000);
+        long start = System.currentTimeMillis();
+        FederatedCatalog.Query query = catalog.start("isbn", "testStartAndPoll", null);
+        assertSame(query, FederatedCatalog.getQuery(query.getId()));
+        assertNull(FederatedCatalog.getQuery("unknown"));
+
+        // the fast catalog does not wait for the slow one
+        FederatedCatalog.Results results = query.poll(0, 5000);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertEquals(1, results.getItems().size());
+        assertEquals("fast", results.getItems().get(0).getCatalog());
+        assertEquals(Arrays.asList("slow"), results.getPending());
+        assertFalse(results.isDone());
+
+        results = query.poll(1, 5000);
+        assertEquals(1, results.getItems().size());
+        assertEquals(2, results.getItems().get(0).getId());
+        assertEquals("slow", results.getItems().get(0).getCatalog());
+        assertTrue(results.isDone());
+        assertTrue(results.getFailures().isEmpty());
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ResultCacheTest {
+
+    @Test
+    public void testExpire() {
+        ResultCache<String> cache = new ResultCache<String>(10);
+        cache.put("key", "value", 1000, 0);
+        assertEquals("value", cache.get("key", 999));
+        assertNull(cache.get("key", 1000));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        ResultCache<String> cache = new ResultCache<String>(2);
+        cache.put("key1", "value1", 1000, 0);
+        cache.put("key2", "value2", 1000, 0);
+        assertEquals("value1", cache.get("key1", 0));
+        cache.put("key3", "value3", 1000, 0);
+        assertEquals(2, cache.size());
+        assertEquals("value1", cache.get("key1", 0));
+        assertNull(cache.get("key2", 0));
+        assertEquals("value3", cache.get("key3", 0));
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SessionPoolTest {
+
+    private final AtomicInteger created = new AtomicInteger();
+    private final List<String> closed = new ArrayList<String>();
+
+    private SessionPool<String> createPool(int maxIdle, long keepAlive) {
+        return createPool(10, maxIdle, keepAlive);
+    }
+
+    private SessionPool<String> createPool(int maxActive, int maxIdle, long keepAlive) {
+        return new SessionPool<String>(
+                () -> "session" + created.incrementAndGet(),
+                session -> closed.add(session),
+                maxActive, maxIdle, keepAlive);
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        SessionPool<String> pool = createPool(2, 60000);
+        String session = pool.borrow();
+        pool.release(session, true);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(session, pool.borrow());
+        assertEquals(1, created.get());
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    public void testReleaseInvalid() throws Exception {
+        SessionPool<String> pool = createPool(2, 60000);
+        String session = pool.borrow();
+        pool.release(session, false);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, closed.size());
+        assertNotEquals(session, pool.borrow());
+    }
+
+    @Test
+    public void testMaxIdle() throws Exception {
+        SessionPool<String> pool = createPool(1, 60000);
+        String session1 = pool.borrow();
+        String session2 = pool.borrow();
+        pool.release(session1, true);
+        pool.release(session2, true);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1, closed.size());
+        assertEquals(session2, closed.get(0));
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        SessionPool<String> pool = createPool(2, 1000);
+        String session = pool.borrow();
+        pool.release(session, true);
+        pool.evict(System.currentTimeMillis() + 500);
+        assertEquals(1, pool.getIdleCount());
+        pool.evict(System.currentTimeMillis() + 2000);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1, closed.size());
+        assertEquals(session, closed.get(0));
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        SessionPool<String> pool = createPool(2, 60000);
+        String session1 = pool.borrow();
+        String session2 = pool.borrow();
+        pool.release(session1, true);
+        pool.release(session2, true);
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(2, closed.size());
+    }
+
+    @Test
+    public void testMaxActive() throws Exception {
+        SessionPool<String> pool = createPool(1, 1, 60000);
+        String session = pool.borrow();
+        assertEquals(1, pool.getActiveCount());
+        CountDownLatch borrowed = new CountDownLatch(1);
+        Thread borrower = new Thread(() -> {
+            try {
+                pool.release(pool.borrow(), true);
+                borrowed.countDown();
+            } catch (InterruptedException ex) {
+                // test failure
+            }
+        });
+        borrower.start();
+        assertFalse(borrowed.await(200, TimeUnit.MILLISECONDS));
+        pool.release(session, true);
+        assertTrue(borrowed.await(5, TimeUnit.SECONDS));
+        borrower.join();
+        assertEquals(0, pool.getActiveCount());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testClose() throws Exception {
+        SessionPool<String> pool = createPool(2, 60000);
+        String session1 = pool.borrow();
+        String session2 = pool.borrow();
+        pool.release(session1, true);
+        pool.close();
+        assertEquals(1, closed.size());
+        pool.release(session2, true);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(2, closed.size());
+    }
+
+}
@@ -79,6 +79,27 @@ public class Z3950CatalogTest {
         assertEquals(Charset.forName(recordCharset), result.getRecordCharset());
     }
 
+    @Test
+    public void testGetSessionKey() {
+        CatalogConfiguration c1 = new CatalogConfiguration("z3950", "", new BaseConfiguration() {{
+            addProperty(CatalogConfiguration.PROPERTY_URL, "tcp://localhost:9991");
+            addProperty(CatalogConfiguration.PROPERTY_TYPE, Z3950Catalog.TYPE);
+            addProperty(Z3950Catalog.PROPERTY_BASE, "testbase");
+        }});
+        CatalogConfiguration c2 = new CatalogConfiguration("z3950b", "", new BaseConfiguration() {{
+            addProperty(CatalogConfiguration.PROPERTY_URL, "tcp://localhost:9991");
+            addProperty(CatalogConfiguration.PROPERTY_TYPE, Z3950Catalog.TYPE);
+            addProperty(Z3950Catalog.PROPERTY_BASE, "testbase");
+            addProperty(Z3950Catalog.PROPERTY_POOL_SIZE, "5");
+        }});
+        String key1 = Z3950Catalog.get(c1).getSessionKey();
+        assertEquals(key1, Z3950Catalog.get(c1).getSessionKey());
+        // the same server with other pool settings must not share the pool
+        String key2 = Z3950Catalog.get(c2).getSessionKey();
+        assertNotEquals(key1, key2);
+        assertTrue(key2, key2.contains("maxSessions=5"));
+    }
+
     @Test
     public void testFind() throws Exception {
         String host = System.getProperty("Z3950CatalogTest.host");
@@ -20,6 +20,8 @@ import cz.cas.lib.proarc.common.dao.BatchItem;
 import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
 import cz.cas.lib.proarc.common.dao.BatchItem.Type;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.dbunit.Assertion;
 import org.dbunit.database.IDatabaseConnection;
@@ -215,4 +217,81 @@ public class EmpireBatchItemDaoTest {
         List<BatchItem> items = dao.find(2, null, null, null, null);
         assertTrue(items.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRemoveItemsOfState() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "batch_with_items.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        tx.commit();
+
+        int count = dao.removeItems(2, Type.OBJECT.name(),
+                Arrays.asList(ObjectState.LOADING.name(), ObjectState.LOADING_FAILED.name()));
+        assertEquals(1, count);
+        count = dao.removeItems(2, Type.FILE.name(), null);
+        assertEquals(6, count);
+        tx.commit();
+        List<BatchItem> items = dao.find(2, null, null, null, null);
+        assertEquals(3, items.size());
+        items = dao.find(2, null, null, ObjectState.LOADED.name(), Type.OBJECT.name());
+        assertEquals(2, items.size());
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "batch.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        support.initSequences(tx, 1,
+                schema.tableBatchItem.id.getSequenceName()
+                );
+        tx.commit();
+
+        int batchId = 1;
+        List<BatchItem> items = new ArrayList<BatchItem>();
+        for (int i = 0; i < EmpireBatchItemDao.JDBC_BATCH_SIZE + 2; i++) {
+            BatchItem item = dao.create();
+            item.setBatchId(batchId);
+            item.setFile("file" + i + ".tiff");
+            item.setPid("pid:item:" + i);
+            item.setState(BatchItem.FileState.OK.name());
+            item.setType(Type.FILE);
+            items.add(item);
+        }
+        dao.insert(items);
+        tx.commit();
+
+        List<BatchItem> result = dao.find(batchId, null, null, null, Type.FILE.name());
+        assertEquals(items.size(), result.size());
+        result = dao.find(batchId, "pid:item:1", null, null, Type.FILE.name());
+        assertEquals(1, result.size());
+        assertEquals("file1.tiff", result.get(0).getFile());
+        assertNotNull(result.get(0).getId());
+        assertNotNull(result.get(0).getTimestamp());
+    }
+
+    @Test
+    public void testUpdateState() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "batch_with_items.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        tx.commit();
+
+        int count = dao.updateState(2, Arrays.asList("pid:item:2", "pid:item:3", "pid:item:unknown"),
+                Type.OBJECT.name(), ObjectState.EXCLUDED.name());
+        tx.commit();
+        assertEquals(2, count);
+
+        List<BatchItem> items = dao.find(2, null, null, ObjectState.EXCLUDED.name(), Type.OBJECT.name());
+        assertEquals(3, items.size());
+        // files are untouched
+        items = dao.find(2, "pid:item:2", null, BatchItem.FileState.OK.name(), Type.FILE.name());
+        assertEquals(2, items.size());
+    }
+}
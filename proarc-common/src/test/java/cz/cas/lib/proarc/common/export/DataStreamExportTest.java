@@ -20,6 +20,7 @@ import cz.cas.lib.proarc.common.CustomTemporaryFolder;
 import cz.cas.lib.proarc.common.fedora.FedoraTestSupport;
 import cz.cas.lib.proarc.common.fedora.StringEditor;
 import java.io.File;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 import org.junit.After;
@@ -80,4 +81,56 @@ public class DataStreamExportTest {
         assertTrue(preview.exists());
     }
 
+    @Test
+    public void testResume() throws Exception {
+        FedoraTestSupport fedora = new FedoraTestSupport();
+        fedora.cleanUp();
+        fedora.ingest(DataStreamExportTest.class.getResource("Kramerius4ExportTestPage.xml"));
+
+        File target = temp.getRoot();
+        List<String> pids = Arrays.asList("uuid:f74f3cf3-f3be-4cac-95da-8e50331414a2");
+        List<String> dsIds = Arrays.asList(StringEditor.OCR_ID, "PREVIEW");
+        // OCR exported by the previous run
+        File ocr = new File(target, DataStreamExport.filename(pids.get(0), dsIds.get(0)));
+        assertTrue(ocr.createNewFile());
+        // PREVIEW partially downloaded
+        File preview = new File(target, DataStreamExport.filename(pids.get(0), dsIds.get(1)));
+        File complete = new DataStreamExport(fedora.getRemoteStorage())
+                .export(temp.newFolder(), false, pids, dsIds.subList(1, 2));
+        byte[] expected = Files.readAllBytes(new File(complete, preview.getName()).toPath());
+        Files.write(new File(target, preview.getName() + DataStreamExport.PART_SUFFIX).toPath(),
+                Arrays.copyOf(expected, expected.length / 2));
+
+        DataStreamExport instance = new DataStreamExport(fedora.getRemoteStorage(), 2);
+        assertEquals(target, instance.resume(target, true, pids, dsIds));
+        assertEquals(0, ocr.length());
+        assertArrayEquals(expected, Files.readAllBytes(preview.toPath()));
+        assertFalse(new File(target, preview.getName() + DataStreamExport.PART_SUFFIX).exists());
+        assertEquals(1, instance.getStatistics().getSkipped());
+        assertEquals(1, instance.getStatistics().getFiles());
+    }
+
+    @Test
+    public void testResumeInvalidPart() throws Exception {
+        FedoraTestSupport fedora = new FedoraTestSupport();
+        fedora.cleanUp();
+        fedora.ingest(DataStreamExportTest.class.getResource("Kramerius4ExportTestPage.xml"));
+
+        File target = temp.getRoot();
+        List<String> pids = Arrays.asList("uuid:f74f3cf3-f3be-4cac-95da-8e50331414a2");
+        List<String> dsIds = Arrays.asList("PREVIEW");
+        File preview = new File(target, DataStreamExport.filename(pids.get(0), dsIds.get(0)));
+        File complete = new DataStreamExport(fedora.getRemoteStorage())
+                .export(temp.newFolder(), false, pids, dsIds);
+        byte[] expected = Files.readAllBytes(new File(complete, preview.getName()).toPath());
+        // the part file longer than contents cannot be continued
+        Files.write(new File(target, preview.getName() + DataStreamExport.PART_SUFFIX).toPath(),
+                Arrays.copyOf(expected, expected.length + 10));
+
+        DataStreamExport instance = new DataStreamExport(fedora.getRemoteStorage());
+        instance.resume(target, false, pids, dsIds);
+        assertArrayEquals(expected, Files.readAllBytes(preview.toPath()));
+        assertEquals(expected.length, instance.getStatistics().getBytes());
+    }
+
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ZipPackageWriterTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder(true);
+
+    @Test
+    public void testWritePackage() throws Exception {
+        File folder = temp.newFolder("pkg");
+        File subfolder = new File(folder, "sub");
+        subfolder.mkdir();
+        FileUtils.writeStringToFile(new File(folder, "mets.xml"), "<mets/>", StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(subfolder, "page.txt"), "text", StandardCharsets.UTF_8);
+        File zipFile = new File(temp.getRoot(), "pkg.zip");
+
+        ZipPackageWriter zip = new ZipPackageWriter(zipFile, 2);
+        String checksum;
+        try {
+            zip.addFolder(folder);
+            zip.addBytes("image.jp2", new byte[] {1, 2, 3});
+            checksum = zip.finish();
+        } finally {
+            zip.close();
+        }
+
+        assertEquals(DigestUtils.md5Hex(FileUtils.readFileToByteArray(zipFile)), checksum);
+        File checksumFile = ZipPackageWriter.getChecksumFile(zipFile);
+        assertEquals(checksum, FileUtils.readFileToString(checksumFile, StandardCharsets.US_ASCII));
+
+        Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+        Map<String, String> contents = new HashMap<String, String>();
+        InputStream is = new FileInputStream(zipFile);
+        try {
+            ZipInputStream zis = new ZipInputStream(is);
+            for (ZipEntry entry; (entry = zis.getNextEntry()) != null;) {
+                entries.put(entry.getName(), entry);
+                contents.put(entry.getName(), IOUtils.toString(zis, StandardCharsets.UTF_8));
+            }
+        } finally {
+            is.close();
+        }
+        assertEquals(entries.toString(), 3, entries.size());
+        assertEquals("<mets/>", contents.get("mets.xml"));
+        assertEquals("text", contents.get("sub/page.txt"));
+        assertEquals(ZipEntry.DEFLATED, entries.get("mets.xml").getMethod());
+        assertEquals(ZipEntry.STORED, entries.get("image.jp2").getMethod());
+    }
+
+    @Test
+    public void testDuplicateEntry() throws Exception {
+        File zipFile = new File(temp.getRoot(), "pkg.zip");
+        ZipPackageWriter zip = new ZipPackageWriter(zipFile, 1);
+        try {
+            zip.addBytes("mets.xml", new byte[0]);
+            zip.addBytes("mets.xml", new byte[0]);
+            fail();
+        } catch (IOException ex) {
+            // expected
+        } finally {
+            zip.close();
+        }
+        assertFalse(zipFile.exists());
+    }
+
+    @Test
+    public void testIsCompressed() {
+        assertTrue(ZipPackageWriter.isCompressed("page.JP2"));
+        assertTrue(ZipPackageWriter.isCompressed("sub/page.jpeg"));
+        assertFalse(ZipPackageWriter.isCompressed("mets.xml"));
+        assertFalse(ZipPackageWriter.isCompressed("README"));
+    }
+
+}
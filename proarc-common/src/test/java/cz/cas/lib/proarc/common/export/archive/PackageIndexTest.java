@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.archive;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.export.archive.PackageIndex.MdSecHandler;
+import cz.cas.lib.proarc.common.export.archive.PackageIndex.PackageDiv;
+import cz.cas.lib.proarc.common.export.archive.PackageIndex.PackageFile;
+import cz.cas.lib.proarc.mets.DivType;
+import cz.cas.lib.proarc.mets.DivType.Fptr;
+import cz.cas.lib.proarc.mets.FileType;
+import cz.cas.lib.proarc.mets.FileType.FLocat;
+import cz.cas.lib.proarc.mets.MdSecType;
+import cz.cas.lib.proarc.mets.MdSecType.MdWrap;
+import cz.cas.lib.proarc.mets.MdSecType.MdWrap.XmlData;
+import cz.cas.lib.proarc.mets.Mets;
+import cz.cas.lib.proarc.mets.MetsType.FileSec;
+import cz.cas.lib.proarc.mets.MetsType.FileSec.FileGrp;
+import cz.cas.lib.proarc.mets.MetsType.MetsHdr;
+import cz.cas.lib.proarc.mets.StructMapType;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.bind.JAXB;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class PackageIndexTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder(true);
+
+    @Test
+    public void testRead() throws Exception {
+        File metsFile = createMets();
+
+        PackageIndex index = PackageIndex.read(metsFile);
+        assertEquals("model:periodicalvolume", index.getType());
+
+        PackageDiv root = index.getStructMapDiv(PackageBuilder.STRUCTMAP_PHYSICAL_TYPE);
+        assertNotNull(root);
+        assertEquals("div_volume_0001", root.getId());
+        assertEquals("model:periodicalvolume", root.getType());
+        assertEquals("Volume 1", root.getLabel());
+        assertEquals(Arrays.asList("uuid:volume"), root.getContentIds());
+        assertEquals(Arrays.asList("DMD_MODS_volume", "DMD_DC_volume"), root.getDmdIds());
+        assertEquals(Arrays.asList("RELS-EXT_volume"), root.getFileIds());
+        assertEquals(1, root.getChildren().size());
+
+        PackageDiv page = root.getChildren().get(0);
+        assertEquals(Arrays.asList("uuid:page"), page.getContentIds());
+        assertEquals(Arrays.asList("RELS-EXT_page", "FOXML_page"), page.getFileIds());
+        assertTrue(page.getChildren().isEmpty());
+
+        PackageFile file = index.getFile("FOXML_page");
+        assertNotNull(file);
+        assertEquals("FOXML", file.getDsId());
+        assertEquals("text/xml", file.getMimetype());
+        assertEquals("URL", file.getLocType());
+        assertEquals("./FOXML/page.xml", file.getHref());
+        assertNull(index.getFile("missing"));
+
+        PackageDiv devices = index.getStructMapDiv(PackageBuilder.STRUCTMAP_OTHERS_TYPE);
+        assertEquals(PackageBuilder.DIV_DEVICE_LIST_ID, devices.getId());
+    }
+
+    @Test
+    public void testReadMdSecs() throws Exception {
+        File metsFile = createMets();
+        PackageIndex index = PackageIndex.read(metsFile);
+        final List<MdSecType> mdSecs = new ArrayList<MdSecType>();
+        index.readMdSecs(new MdSecHandler() {
+
+            @Override
+            public void handle(MdSecType mdSec) {
+                mdSecs.add(mdSec);
+            }
+        });
+        assertEquals(2, mdSecs.size());
+        assertEquals("DMD_MODS_volume", mdSecs.get(0).getID());
+        assertEquals("MODS", mdSecs.get(0).getMdWrap().getMDTYPE());
+        Element mods = (Element) mdSecs.get(0).getMdWrap().getXmlData().getAny().get(0);
+        assertEquals("mods", mods.getLocalName());
+        assertEquals("DMD_DC_volume", mdSecs.get(1).getID());
+    }
+
+    private File createMets() throws Exception {
+        Mets mets = new Mets();
+        mets.setTYPE("model:periodicalvolume");
+        mets.setMetsHdr(new MetsHdr());
+
+        MdSecType modsSec = createMdSec("DMD_MODS_volume", "MODS", "http://www.loc.gov/mods/v3", "mods");
+        MdSecType dcSec = createMdSec("DMD_DC_volume", "DC", "http://www.openarchives.org/OAI/2.0/oai_dc/", "dc");
+        mets.getDmdSec().add(modsSec);
+        mets.getDmdSec().add(dcSec);
+
+        mets.setFileSec(new FileSec());
+        FileType volumeRels = createFile(mets, "RELS-EXT", "RELS-EXT_volume", "./RELS-EXT/volume.xml");
+        FileType pageRels = createFile(mets, "RELS-EXT", "RELS-EXT_page", "./RELS-EXT/page.xml");
+        FileType pageFoxml = createFile(mets, "FOXML", "FOXML_page", "./FOXML/page.xml");
+
+        DivType volume = createDiv("div_volume_0001", "model:periodicalvolume", "Volume 1", "uuid:volume");
+        volume.getDMDID().add(modsSec);
+        volume.getDMDID().add(dcSec);
+        volume.getFptr().add(createFptr(volume, volumeRels));
+        DivType page = createDiv("div_page_0001", "model:page", "1", "uuid:page");
+        page.getFptr().add(createFptr(page, pageRels));
+        page.getFptr().add(createFptr(page, pageFoxml));
+        volume.getDiv().add(page);
+
+        DivType devices = new DivType();
+        devices.setID(PackageBuilder.DIV_DEVICE_LIST_ID);
+        StructMapType others = new StructMapType();
+        others.setTYPE(PackageBuilder.STRUCTMAP_OTHERS_TYPE);
+        others.setDiv(devices);
+        mets.getStructMap().add(others);
+
+        StructMapType physical = new StructMapType();
+        physical.setTYPE(PackageBuilder.STRUCTMAP_PHYSICAL_TYPE);
+        physical.setDiv(volume);
+        mets.getStructMap().add(physical);
+
+        File metsFile = new File(temp.getRoot(), PackageBuilder.METS_FILENAME);
+        JAXB.marshal(mets, metsFile);
+        return metsFile;
+    }
+
+    private static MdSecType createMdSec(String id, String mdType, String ns, String name) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().newDocument();
+        Element elm = doc.createElementNS(ns, name);
+        elm.setTextContent(id);
+        doc.appendChild(elm);
+        MdSecType mdSec = new MdSecType();
+        mdSec.setID(id);
+        MdWrap mdWrap = new MdWrap();
+        mdWrap.setMDTYPE(mdType);
+        XmlData xmlData = new XmlData();
+        xmlData.getAny().add(elm);
+        mdWrap.setXmlData(xmlData);
+        mdSec.setMdWrap(mdWrap);
+        return mdSec;
+    }
+
+    private static FileType createFile(Mets mets, String grpId, String id, String href) {
+        FileGrp fileGrp = null;
+        for (FileGrp grp : mets.getFileSec().getFileGrp()) {
+            if (grpId.equals(grp.getID())) {
+                fileGrp = grp;
+            }
+        }
+        if (fileGrp == null) {
+            fileGrp = new FileGrp();
+            fileGrp.setID(grpId);
+            mets.getFileSec().getFileGrp().add(fileGrp);
+        }
+        FileType file = new FileType();
+        file.setID(id);
+        file.setMIMETYPE("text/xml");
+        FLocat fLocat = new FLocat();
+        fLocat.setLOCTYPE("URL");
+        fLocat.setHref(href);
+        file.getFLocat().add(fLocat);
+        fileGrp.getFile().add(file);
+        return file;
+    }
+
+    private static DivType createDiv(String id, String type, String label, String pid) {
+        DivType div = new DivType();
+        div.setID(id);
+        div.setTYPE(type);
+        div.setLabel3(label);
+        div.getCONTENTIDS().add(pid);
+        return div;
+    }
+
+    private static Fptr createFptr(DivType div, FileType file) {
+        Fptr fptr = new Fptr();
+        fptr.setFILEID(file);
+        return fptr;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import cz.cas.lib.proarc.oaidublincore.OaiDcType;
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SchemaRegistryTest {
+
+    private static final String VALID_DC = "<oai_dc:dc xmlns:oai_dc='http://www.openarchives.org/OAI/2.0/oai_dc/'"
+            + " xmlns:dc='http://purl.org/dc/elements/1.1/'><dc:title>title</dc:title></oai_dc:dc>";
+    private static final String INVALID_DC = "<oai_dc:dc xmlns:oai_dc='http://www.openarchives.org/OAI/2.0/oai_dc/'"
+            + " xmlns:dc='http://purl.org/dc/elements/1.1/'><dc:unknown>title</dc:unknown></oai_dc:dc>";
+
+    @Test
+    public void testGetSchema() throws Exception {
+        URL xsd = OaiDcType.class.getResource("dc_oai.xsd");
+        SchemaRegistry registry = SchemaRegistry.getInstance();
+        assertSame(registry.getSchema(xsd), registry.getSchema(xsd));
+    }
+
+    @Test
+    public void testValidateDocument() throws Exception {
+        URL xsd = OaiDcType.class.getResource("dc_oai.xsd");
+        assertTrue(MetsUtils.validateAgainstXSD(parse(VALID_DC, true), xsd).isEmpty());
+        List<String> errors = MetsUtils.validateAgainstXSD(parse(INVALID_DC, true), xsd);
+        assertFalse(errors.isEmpty());
+        // the validator must not keep the state of the previous run
+        assertTrue(MetsUtils.validateAgainstXSD(parse(VALID_DC, true), xsd).isEmpty());
+    }
+
+    @Test
+    public void testValidateNotNamespaceAwareDocument() throws Exception {
+        URL xsd = OaiDcType.class.getResource("dc_oai.xsd");
+        assertTrue(MetsUtils.validateAgainstXSD(parse(VALID_DC, false), xsd).isEmpty());
+        assertFalse(MetsUtils.validateAgainstXSD(parse(INVALID_DC, false), xsd).isEmpty());
+    }
+
+    private static Document parse(String xml, boolean namespaceAware) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(namespaceAware);
+        return dbf.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.metrics.Counter;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ContentBufferTest {
+
+    @Test
+    public void testInMemory() throws Exception {
+        byte[] contents = createContents(1000);
+        ContentBuffer buffer = new ContentBuffer(1000);
+        buffer.write(contents);
+        buffer.close();
+
+        assertFalse(buffer.isSpilled());
+        assertEquals(1000, buffer.size());
+        assertArrayEquals(contents, buffer.toByteArray());
+        assertArrayEquals(contents, read(buffer));
+        // repeated read
+        assertArrayEquals(contents, read(buffer));
+        buffer.dispose();
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        byte[] contents = createContents(5000);
+        ContentBuffer buffer = new ContentBuffer(1000);
+        buffer.write(contents, 0, 600);
+        assertFalse(buffer.isSpilled());
+        buffer.write(contents, 600, 4400);
+        buffer.close();
+
+        assertTrue(buffer.isSpilled());
+        assertEquals(5000, buffer.size());
+        assertArrayEquals(contents, buffer.toByteArray());
+        assertArrayEquals(contents, read(buffer));
+
+        buffer.dispose();
+        try {
+            buffer.asInputStream();
+            fail();
+        } catch (IllegalStateException ex) {
+            // disposed
+        }
+    }
+
+    @Test
+    public void testFrom() throws Exception {
+        byte[] contents = createContents(3 * BufferPool.BUFFER_SIZE + 7);
+        ContentBuffer buffer = ContentBuffer.from(new ByteArrayInputStream(contents));
+        assertEquals(contents.length, buffer.size());
+        assertArrayEquals(contents, read(buffer));
+        buffer.dispose();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReadOpenBuffer() throws Exception {
+        ContentBuffer buffer = new ContentBuffer();
+        buffer.write(1);
+        buffer.asInputStream();
+    }
+
+    @Test
+    public void testPoolReuse() throws Exception {
+        Counter hits = Metrics.getInstance().counter("fedora.buffer.pool.hit");
+        byte[] buffer = BufferPool.acquire();
+        assertEquals(BufferPool.BUFFER_SIZE, buffer.length);
+        BufferPool.release(buffer);
+        long count = hits.getCount();
+        BufferPool.release(BufferPool.acquire());
+        assertEquals(count + 1, hits.getCount());
+    }
+
+    private static byte[] read(ContentBuffer buffer) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream is = buffer.asInputStream()) {
+            BufferPool.copy(is, bos);
+        }
+        return bos.toByteArray();
+    }
+
+    private static byte[] createContents(int length) {
+        byte[] contents = new byte[length];
+        new Random(length).nextBytes(contents);
+        return contents;
+    }
+
+}
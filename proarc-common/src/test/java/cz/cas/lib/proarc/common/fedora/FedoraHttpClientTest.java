@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yourmediashelf.fedora.client.FedoraCredentials;
+import cz.cas.lib.proarc.common.fedora.FedoraClientMetrics.EndpointStats;
+import cz.cas.lib.proarc.common.fedora.FedoraHttpClient.GzipFilter;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.Timer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link FedoraHttpClient} against a local stub of Fedora.
+ *
+ * @author Jan Pokorsky
+ */
+public class FedoraHttpClientTest {
+
+    private static final String DC = "<oai_dc:dc xmlns:oai_dc=\"http://www.openarchives.org/OAI/2.0/oai_dc/\"/>";
+
+    private HttpServer server;
+    private StubHandler handler;
+    private String url;
+
+    @Before
+    public void setUp() throws Exception {
+        handler = new StubHandler();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/fedora/", handler);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/fedora";
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testGzipAndMetrics() throws Exception {
+        FedoraHttpClient client = new FedoraHttpClient(
+                new FedoraCredentials(url, "fedoraAdmin", "fedoraAdmin"), new FedoraHttpClient.Options());
+        String dc = client.resource().path("objects/uuid:1/datastreams/DC/content").get(String.class);
+        assertEquals(DC, dc);
+        assertEquals("gzip", handler.acceptEncoding);
+
+        EndpointStats stats = client.getMetrics().getEndpoints().get("GET content");
+        assertNotNull(client.getMetrics().toString(), stats);
+        Timer timer = stats.getTimer();
+        assertSame(timer, Metrics.getInstance().timer("fedora.request.get.content"));
+        long count = timer.getCount();
+        long failures = timer.getFailures();
+        long bytesIn = stats.getBytesIn();
+
+        client.resource().path("objects/uuid:1/datastreams/DC/content").get(String.class);
+        assertEquals(count + 1, timer.getCount());
+        assertEquals(failures, timer.getFailures());
+        assertTrue(stats.getBytesIn() > bytesIn);
+    }
+
+    @Test
+    public void testGzipResponseHeaders() throws Exception {
+        FedoraHttpClient client = new FedoraHttpClient(
+                new FedoraCredentials(url, "fedoraAdmin", "fedoraAdmin"), new FedoraHttpClient.Options());
+        ClientResponse response = client.resource().path("objects/uuid:1/datastreams/DC/content")
+                .get(ClientResponse.class);
+        // the decoded entity must not be sent with the encoded length
+        assertNull(response.getHeaders().getFirst("Content-Length"));
+        assertNull(response.getHeaders().getFirst("Content-Encoding"));
+        assertEquals(DC, response.getEntity(String.class));
+
+        response = client.resource().path("objects/uuid:1/datastreams/DC/content")
+                .header("Range", "bytes=0-").get(ClientResponse.class);
+        assertNull(handler.acceptEncoding);
+        assertEquals(String.valueOf(DC.length()), response.getHeaders().getFirst("Content-Length"));
+        response.close();
+    }
+
+    @Test
+    public void testGzipXmlOnly() throws Exception {
+        FedoraHttpClient client = new FedoraHttpClient(
+                new FedoraCredentials(url, "fedoraAdmin", "fedoraAdmin"), new FedoraHttpClient.Options());
+        client.resource().path("objects/uuid:1/datastreams/RAW/content").get(String.class);
+        assertNull(handler.acceptEncoding);
+        client.resource().path("risearch").get(String.class);
+        assertEquals("gzip", handler.acceptEncoding);
+
+        Set<String> datastreams = new FedoraHttpClient.Options().getGzipDatastreams();
+        assertTrue(GzipFilter.isCompressible("/fedora/objects/uuid:1/datastreams/BIBLIO_MODS/content", datastreams));
+        assertFalse(GzipFilter.isCompressible("/fedora/objects/uuid:1/datastreams/FULL/content", datastreams));
+        assertFalse(GzipFilter.isCompressible("/fedora/objects/uuid:1/methods/sdef:1/getImage", datastreams));
+        assertTrue(GzipFilter.isCompressible("/fedora/objects/uuid:1/datastreams/FULL", datastreams));
+        assertTrue(GzipFilter.isCompressible("/fedora/objects/uuid:1/objectXML", datastreams));
+        assertTrue(GzipFilter.isCompressible("/fedora/objects", datastreams));
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        FedoraHttpClient.Options options = new FedoraHttpClient.Options();
+        options.setReadTimeout(100);
+        options.setGzip(false);
+        FedoraHttpClient client = new FedoraHttpClient(
+                new FedoraCredentials(url, "fedoraAdmin", "fedoraAdmin"), options);
+        handler.delay = 1000;
+        Timer timer = Metrics.getInstance().timer("fedora.request.get.content");
+        long failures = timer.getFailures();
+        try {
+            client.resource().path("objects/uuid:1/datastreams/DC/content").get(String.class);
+            fail();
+        } catch (ClientHandlerException ex) {
+            assertTrue(String.valueOf(ex.getCause()), ex.getCause() instanceof SocketTimeoutException);
+        }
+        assertNull(handler.acceptEncoding);
+        assertEquals(failures + 1, timer.getFailures());
+    }
+
+    @Test
+    public void testGetEndpointType() {
+        assertEquals("content", FedoraClientMetrics.getEndpointType("/fedora/objects/uuid:1/datastreams/DC/content"));
+        assertEquals("datastream", FedoraClientMetrics.getEndpointType("/fedora/objects/uuid:1/datastreams/DC"));
+        assertEquals("datastream", FedoraClientMetrics.getEndpointType("/fedora/objects/uuid:1/datastreams"));
+        assertEquals("objectXML", FedoraClientMetrics.getEndpointType("/fedora/objects/uuid:1/objectXML"));
+        assertEquals("object", FedoraClientMetrics.getEndpointType("/fedora/objects/uuid:1"));
+        assertEquals("objects", FedoraClientMetrics.getEndpointType("/fedora/objects/nextPID"));
+        assertEquals("risearch", FedoraClientMetrics.getEndpointType("/fedora/risearch"));
+        assertEquals("other", FedoraClientMetrics.getEndpointType("/fedora/describe"));
+    }
+
+    private static final class StubHandler implements HttpHandler {
+
+        volatile String acceptEncoding;
+        volatile long delay;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                byte[] response = DC.getBytes(StandardCharsets.UTF_8);
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    GZIPOutputStream gzip = new GZIPOutputStream(buffer);
+                    gzip.write(response);
+                    gzip.close();
+                    response = buffer.toByteArray();
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().add("Content-Type", "text/xml");
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(response);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } catch (IOException ex) {
+                // the client closed the connection
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import com.yourmediashelf.fedora.client.response.FindObjectsResponse;
 import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
 import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.junit.Assume;
  */
 public class FedoraTestSupport {
 
+    private FedoraCredentials credentials;
     private FedoraClient client;
     private RemoteStorage storage;
 
@@ -43,19 +45,29 @@ public class FedoraTestSupport {
      * @throws Exception
      */
     public FedoraTestSupport() {
-        client = fedoraClientSetup();
+        credentials = fedoraCredentials();
+        client = fedoraClientSetup(credentials);
         storage = new RemoteStorage(client);
         RemoteStorage.setInstance(storage);
     }
 
-    private static FedoraClient fedoraClientSetup() {
+    private static FedoraCredentials fedoraCredentials() {
         String user = System.getProperty("proarc-common.FedoraTestSupport.user");
         String passwd = System.getProperty("proarc-common.FedoraTestSupport.passwd");
         String url = System.getProperty("proarc-common.FedoraTestSupport.url");
         Assume.assumeNotNull(url, user, passwd);
+        try {
+            return new FedoraCredentials(url, user, passwd);
+        } catch (MalformedURLException ex) {
+            Assume.assumeNoException(ex);
+            return null;
+        }
+    }
+
+    private static FedoraClient fedoraClientSetup(FedoraCredentials credentials) {
         FedoraClient client = null;
         try {
-            client = new FedoraClient(new FedoraCredentials(url, user, passwd));
+            client = new FedoraClient(credentials);
             client.getServerVersion();
         } catch (Exception ex) {
             Assume.assumeNoException(ex);
@@ -63,6 +75,10 @@ public class FedoraTestSupport {
         return client;
     }
 
+    public FedoraCredentials getCredentials() {
+        return credentials;
+    }
+
     public FedoraClient getClient() {
         return client;
     }
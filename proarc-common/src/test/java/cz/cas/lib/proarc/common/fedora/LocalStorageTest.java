@@ -19,6 +19,7 @@ package cz.cas.lib.proarc.common.fedora;
 import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
 import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
 import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import com.yourmediashelf.fedora.generated.foxml.StateType;
 import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
 import cz.cas.lib.proarc.common.CustomTemporaryFolder;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils.ControlGroup;
@@ -85,6 +86,43 @@ public class LocalStorageTest {
         assertEquals(foxml, result.getFoxml());
     }
 
+    @Test
+    public void testLoadPartial() throws Exception {
+        File foxml = tmp.newFile();
+        String pid = "PID";
+        LocalObject lobject = new LocalStorage().create(pid, foxml);
+        lobject.setLabel("label");
+        DigitalObject dobj = lobject.getDigitalObject();
+        DatastreamVersionType v0 = FoxmlUtils.createDataStreamVersion(
+                dobj, "dsID", ControlGroup.MANAGED, true, StateType.A);
+        v0.setMIMETYPE(MediaType.TEXT_PLAIN);
+        v0.setBinaryContent("v0".getBytes("UTF-8"));
+        DatastreamVersionType v1 = new DatastreamVersionType();
+        v1.setID("dsID.1");
+        v1.setMIMETYPE(MediaType.TEXT_PLAIN);
+        v1.setBinaryContent("v1".getBytes("UTF-8"));
+        FoxmlUtils.findDatastream(dobj, "dsID").getDatastreamVersion().add(v1);
+        FoxmlUtils.createDataStreamVersion(dobj, "skipped", ControlGroup.MANAGED, false, StateType.A)
+                .setBinaryContent("skipped".getBytes("UTF-8"));
+        lobject.flush();
+
+        LocalObject result = new LocalStorage().loadPartial(pid, foxml, "dsID");
+        assertEquals(pid, result.getPid());
+        assertEquals("label", result.getLabel());
+        List<DatastreamType> datastreams = result.getDigitalObject().getDatastream();
+        assertEquals(1, datastreams.size());
+        assertEquals("dsID", datastreams.get(0).getID());
+        assertEquals(1, datastreams.get(0).getDatastreamVersion().size());
+        assertArrayEquals("v1".getBytes("UTF-8"),
+                datastreams.get(0).getDatastreamVersion().get(0).getBinaryContent());
+        try {
+            result.flush();
+            fail();
+        } catch (DigitalObjectException ex) {
+            // read only
+        }
+    }
+
     @Test
     public void testCreate_0args() throws Exception {
         LocalStorage instance = new LocalStorage();
@@ -16,17 +16,27 @@
  */
 package cz.cas.lib.proarc.common.fedora;
 
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.*;
 import org.junit.Before;
 import org.junit.BeforeClass;
+import org.junit.Rule;
 import org.junit.Test;
 
 /**
@@ -35,6 +45,8 @@ import org.junit.Test;
  */
 public class PurgeFedoraObjectTest {
 
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
     private FedoraTestSupport support;
 
     public PurgeFedoraObjectTest() {
@@ -200,4 +212,53 @@ public class PurgeFedoraObjectTest {
         found = support.getRemoteStorage().getSearch().find(pids);
         assertTrue(found.isEmpty());
     }
+
+    @Test
+    public void testJournal() throws Exception {
+        File journal = new File(temp.getRoot(), "job.purge");
+        PurgeFedoraObject purge = new PurgeFedoraObject(support.getRemoteStorage());
+        purge.setJournal(journal);
+        purge.purge("uuid:tree1-child2", true, "junit");
+        assertFalse(journal.exists());
+        assertEquals(3, purge.getProgress().size());
+        for (PurgeFedoraObject.LevelProgress level : purge.getProgress()) {
+            assertEquals(1, level.getTotal());
+            assertEquals(1, level.getDone());
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        // the deletion of uuid:tree1-child2 interrupted after its deepest level
+        File journal = new File(temp.getRoot(), "job.purge");
+        Files.write(journal.toPath(), Arrays.asList(
+                "purge", "junit", "uuid:tree1-child2-child1", "uuid:tree1-child2"), StandardCharsets.UTF_8);
+        PurgeFedoraObject purge = new PurgeFedoraObject(support.getRemoteStorage());
+        purge.resume(journal);
+        assertFalse(journal.exists());
+        assertEquals(2, purge.getProgress().size());
+
+        String[] removed = {"uuid:tree1-child2", "uuid:tree1-child2-child1"};
+        List<Item> found = support.getRemoteStorage().getSearch().find(false, removed);
+        FedoraTestSupport.assertNoItem(found, removed);
+        found = support.getRemoteStorage().getSearch().find(false, "uuid:tree1-child2-child1-child1");
+        FedoraTestSupport.assertItem(found, "uuid:tree1-child2-child1-child1");
+    }
+
+    @Test
+    public void testLevels() throws Exception {
+        Map<String, Set<String>> parents = new HashMap<String, Set<String>>();
+        parents.put("child1", Collections.singleton("root"));
+        parents.put("child1-child1", Collections.singleton("child1"));
+        parents.put("child2", Collections.singleton("root"));
+        // shared member
+        parents.put("shared", new HashSet<String>(Arrays.asList("root", "child1-child1")));
+        List<List<String>> levels = PurgeFedoraObject.levels(
+                Arrays.asList("root", "child1", "child1-child1", "child2", "shared"), parents);
+        assertEquals(4, levels.size());
+        assertEquals(Arrays.asList("root"), levels.get(0));
+        assertEquals(Arrays.asList("child1", "child2"), levels.get(1));
+        assertEquals(Arrays.asList("child1-child1"), levels.get(2));
+        assertEquals(Arrays.asList("shared"), levels.get(3));
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class DerivativeStoreTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testPutAndFind() throws Exception {
+        File storeFolder = temp.newFolder("store");
+        File batchFolder = temp.newFolder("batch");
+        DerivativeStore store = new DerivativeStore(storeFolder, 1024 * 1024);
+        File scan = write(temp.newFile("scan.tif"), "scan");
+
+        DerivativeStore.Entry entry = store.find(scan, "params");
+        assertFalse(entry.isFound());
+        assertNull(entry.get("FULL"));
+        entry.add("FULL", write(new File(batchFolder, "scan.full.jpg"), "full"));
+        entry.add("RAW_MIX", "mix".getBytes(StandardCharsets.UTF_8));
+        store.put(entry);
+        assertEquals(7, store.getSize());
+
+        // the same contents in another file
+        File copy = write(temp.newFile("copy.tif"), "scan");
+        DerivativeStore.Entry found = store.find(copy, "params");
+        assertTrue(found.isFound());
+        assertEquals(entry.getKey(), found.getKey());
+        assertTrue(found.contains("FULL", "RAW_MIX"));
+        assertFalse(found.contains("FULL", "PREVIEW"));
+        File target = new File(batchFolder, "copy.full.jpg");
+        assertTrue(found.copyTo("FULL", target));
+        assertEquals("full", read(target));
+        assertFalse(found.copyTo("PREVIEW", new File(batchFolder, "copy.preview.jpg")));
+
+        // other processing parameters
+        assertFalse(store.find(scan, "params2").isFound());
+
+        // the store survives the restart
+        store = new DerivativeStore(storeFolder, 1024 * 1024);
+        assertEquals(7, store.getSize());
+        assertTrue(store.find(scan, "params").isFound());
+    }
+
+    @Test
+    public void testChangedContents() throws Exception {
+        DerivativeStore store = new DerivativeStore(temp.newFolder("store"), 1024 * 1024);
+        File scan = write(temp.newFile("scan.tif"), "scan");
+        DerivativeStore.Entry entry = store.find(scan, "params");
+        entry.add("FULL", "full".getBytes(StandardCharsets.UTF_8));
+        store.put(entry);
+
+        write(scan, "scan2");
+        assertFalse(store.find(scan, "params").isFound());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        File storeFolder = temp.newFolder("store");
+        DerivativeStore store = new DerivativeStore(storeFolder, 10);
+        File scan1 = write(temp.newFile("scan1.tif"), "scan1");
+        File scan2 = write(temp.newFile("scan2.tif"), "scan2");
+        DerivativeStore.Entry entry1 = store.find(scan1, "params");
+        entry1.add("FULL", "123456".getBytes(StandardCharsets.UTF_8));
+        store.put(entry1);
+        DerivativeStore.Entry entry2 = store.find(scan2, "params");
+        entry2.add("FULL", "123456".getBytes(StandardCharsets.UTF_8));
+        store.put(entry2);
+
+        assertEquals(6, store.getSize());
+        assertFalse(store.find(scan1, "params").isFound());
+        assertTrue(store.find(scan2, "params").isFound());
+        assertFalse(new File(storeFolder, entry1.getKey()).exists());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        File storeFolder = temp.newFolder("store");
+        DerivativeStore store = new DerivativeStore(storeFolder, 1024 * 1024);
+        File scan = write(temp.newFile("scan.tif"), "scan");
+        DerivativeStore.Entry entry = store.find(scan, "params");
+        entry.add("FULL", "full".getBytes(StandardCharsets.UTF_8));
+        store.discard(entry);
+
+        // just the remembered hash of the scan
+        assertArrayEquals(new String[] {DerivativeStore.HASH_INDEX_FILENAME}, storeFolder.list());
+        assertFalse(store.find(scan, "params").isFound());
+    }
+
+    @Test
+    public void testHashIndex() throws Exception {
+        File storeFolder = temp.newFolder("store");
+        DerivativeStore store = new DerivativeStore(storeFolder, 1024 * 1024);
+        File scan = write(temp.newFile("scan.tif"), "scan");
+        long modified = scan.lastModified();
+        String hash = store.contentHash(scan);
+
+        // the same size and modification time; the scan is not read after the restart
+        write(scan, "scam");
+        scan.setLastModified(modified);
+        store = new DerivativeStore(storeFolder, 1024 * 1024);
+        assertEquals(hash, store.contentHash(scan));
+
+        // a changed scan is read again
+        scan.setLastModified(modified + 2000);
+        String changed = store.contentHash(scan);
+        assertNotEquals(hash, changed);
+        store = new DerivativeStore(storeFolder, 1024 * 1024);
+        assertEquals(changed, store.contentHash(scan));
+    }
+
+    private static File write(File file, String contents) throws Exception {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        // a new modification time for the rewritten file
+        file.setLastModified(System.currentTimeMillis() + contents.length() * 1000L);
+        return file;
+    }
+
+    private static String read(File file) throws Exception {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
+import cz.cas.lib.proarc.common.dao.empiredb.DbUnitSupport;
+import cz.cas.lib.proarc.common.dao.empiredb.EmpireDaoFactory;
+import cz.cas.lib.proarc.common.dao.empiredb.EmpireUserDaoTest;
+import cz.cas.lib.proarc.common.dao.empiredb.ProarcDatabase;
+import cz.cas.lib.proarc.common.export.mets.JhoveContext;
+import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
+import cz.cas.lib.proarc.common.imports.ImportProcess.ImportOptions;
+import cz.cas.lib.proarc.common.object.DigitalObjectManager;
+import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import cz.cas.lib.proarc.common.user.UserManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import java.io.File;
+import java.net.URL;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.custommonkey.xmlunit.XMLAssert;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ReplacementDataSet;
+import org.easymock.EasyMock;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.xml.sax.InputSource;
+
+/**
+ * Integration tests.
+ *
+ * @author Jan Pokorsky
+ */
+public class FileSetImportTest {
+
+    private static final String PAGE_INDEX_XPATH = "//*[local-name()='detail'][@type='pageIndex']"
+            + "/*[local-name()='number']";
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private DbUnitSupport db;
+    private AppConfiguration config;
+    private ImportBatchManager ibm;
+    private JhoveContext jhoveContext;
+    private UserProfile user;
+    private File importFolder;
+
+    @Before
+    public void setUp() throws Exception {
+        // rdbms init
+        db = new DbUnitSupport();
+        EmpireDaoFactory daos = new EmpireDaoFactory(db.getEmireCfg());
+        daos.init();
+        ReplacementDataSet database = new ReplacementDataSet(
+                db.loadFlatXmlDataStream(EmpireUserDaoTest.class, "user.xml"));
+        database.addReplacementObject("{$user.home}", "relative/path/");
+        database.addReplacementObject("{$now}", new Timestamp(System.currentTimeMillis()));
+        IDatabaseConnection con = db.getConnection();
+        try {
+            db.cleanInsert(con, database);
+            ProarcDatabase schema = db.getEmireCfg().getSchema();
+            db.initSequences(con.getConnection(), 1,
+                    schema.tableBatch.id.getSequenceName(),
+                    schema.tableBatchItem.id.getSequenceName());
+            con.getConnection().commit();
+        } finally {
+            con.getConnection().close();
+        }
+
+        config = AppConfigurationFactory.getInstance().create(new HashMap<String, String>() {{
+            put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
+        }});
+        ImportBatchManager.setInstance(config, daos);
+        ibm = ImportBatchManager.getInstance();
+        MetaModelRepository.setInstance(new String[]{NdkPlugin.ID});
+        DigitalObjectManager.setDefault(new DigitalObjectManager(config,
+                ibm,
+                null,
+                MetaModelRepository.getInstance(),
+                EasyMock.createNiceMock(UserManager.class))
+        );
+        jhoveContext = JhoveUtility.createContext(temp.newFolder("jhove"));
+        user = new UserProfile();
+        user.setId(1);
+        user.setUserName("test");
+
+        importFolder = temp.newFolder("scans");
+        for (String name : Arrays.asList("img1", "img2", "img3")) {
+            createFileSet(name);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (jhoveContext != null) {
+            jhoveContext.destroy();
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        File targetFolder = ImportProcess.createTargetFolder(importFolder);
+        ImportOptions ctx = createOptions(targetFolder);
+        Batch batch = ibm.add(importFolder, "testResume", user, 3, ctx);
+        ctx.setBatch(batch);
+        FileSetImport fileSetImport = new FileSetImport();
+        fileSetImport.start(ctx);
+
+        List<BatchItemObject> loaded = findLoadedObjects(batch);
+        assertEquals(3, loaded.size());
+        BatchItemObject img1 = loaded.get(0);
+        BatchItemObject img2 = loaded.get(1);
+        BatchItemObject img3 = loaded.get(2);
+        assertEquals("img3.foxml", img3.getFile().getName());
+        ThumbnailPack thumbnails = ibm.getThumbnailPack(batch);
+        assertNotNull(thumbnails.getIndex().get(img3.getPid()));
+
+        // interrupt the import while loading img3
+        img3.setState(ObjectState.LOADING);
+        ibm.update(img3);
+        long img1Modified = 1000;
+        assertTrue(img1.getFile().setLastModified(img1Modified));
+
+        ibm.resumeBatch(batch);
+        assertEquals(Arrays.asList(img1.getPid(), img2.getPid()),
+                new RelationEditor(ibm.getRootObject(batch)).getMembers());
+        assertNull(thumbnails.getIndex().get(img3.getPid()));
+        assertNotNull(thumbnails.getIndex().get(img1.getPid()));
+        assertNull(ibm.findBatchObject(batch.getId(), img3.getPid()));
+
+        ctx = createOptions(targetFolder);
+        ctx.setBatch(batch);
+        fileSetImport.start(ctx);
+
+        assertEquals(3, ctx.getConsumedFileCounter());
+        List<BatchItemObject> resumed = findLoadedObjects(batch);
+        assertEquals(3, resumed.size());
+        // loaded file sets are skipped
+        assertEquals(img1.getPid(), resumed.get(0).getPid());
+        assertEquals(img1Modified, resumed.get(0).getFile().lastModified());
+        assertEquals(img2.getPid(), resumed.get(1).getPid());
+        BatchItemObject img3Resumed = resumed.get(2);
+        assertNotEquals(img3.getPid(), img3Resumed.getPid());
+        assertEquals(ObjectState.LOADED, img3Resumed.getState());
+        assertEquals(Arrays.asList(img1.getPid(), img2.getPid(), img3Resumed.getPid()),
+                new RelationEditor(ibm.getRootObject(batch)).getMembers());
+        assertNotNull(thumbnails.getIndex().get(img3Resumed.getPid()));
+        // page indices continue
+        XMLAssert.assertXpathEvaluatesTo("2", PAGE_INDEX_XPATH,
+                new InputSource(img2.getFile().toURI().toASCIIString()));
+        XMLAssert.assertXpathEvaluatesTo("3", PAGE_INDEX_XPATH,
+                new InputSource(img3Resumed.getFile().toURI().toASCIIString()));
+    }
+
+    /**
+     * Gets loaded objects in the order of their file sets.
+     */
+    private List<BatchItemObject> findLoadedObjects(Batch batch) {
+        List<BatchItemObject> loaded = ibm.findBatchObjects(batch.getId(), null, ObjectState.LOADED);
+        Collections.sort(loaded, new Comparator<BatchItemObject>() {
+
+            @Override
+            public int compare(BatchItemObject o1, BatchItemObject o2) {
+                return o1.getFile().getName().compareTo(o2.getFile().getName());
+            }
+        });
+        return loaded;
+    }
+
+    private ImportOptions createOptions(File targetFolder) {
+        ImportOptions ctx = new ImportOptions(importFolder,
+                "scanner:scanner1", true, user, config.getImportConfiguration());
+        ctx.setTargetFolder(targetFolder);
+        ctx.setJhoveContext(jhoveContext);
+        return ctx;
+    }
+
+    private void createFileSet(String name) throws Exception {
+        URL tiff = FileSetImportTest.class.getResource("testscan-lzw.tiff");
+        URL jp2 = FileSetImportTest.class.getResource("testscan.uc.jp2");
+        FileUtils.copyURLToFile(tiff, new File(importFolder, name + ".tiff"));
+        FileUtils.copyURLToFile(jp2, new File(importFolder, name + ".ac.jp2"));
+        FileUtils.copyURLToFile(jp2, new File(importFolder, name + ".uc.jp2"));
+        FileUtils.writeStringToFile(new File(importFolder, name + ".ocr.txt"), "test", "UTF-8");
+        FileUtils.writeStringToFile(new File(importFolder, name + ".ocr.xml"),
+                "<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v2#\">"
+                    + "<Layout><Page ID=\"Page1\" PHYSICAL_IMG_NR=\"1\"/></Layout>"
+                + "</alto>",
+                "UTF-8");
+    }
+
+}
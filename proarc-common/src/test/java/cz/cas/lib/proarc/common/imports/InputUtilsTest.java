@@ -85,6 +85,29 @@ public class InputUtilsTest {
         assertFalse(result.getName(), InputUtils.isTiff(result));
     }
 
+    @Test
+    public void testGetContentType() throws Exception {
+        assertEquals(InputUtils.ContentType.JP2000, InputUtils.getContentType(
+                createTestFile("testscan.uc.jp2", new File(temp.getRoot(), "test.jp2"))));
+        assertEquals(InputUtils.ContentType.JPEG, InputUtils.getContentType(
+                createTestFile("testscan.jpg", new File(temp.getRoot(), "test.jpg"))));
+        assertEquals(InputUtils.ContentType.PDF, InputUtils.getContentType(
+                createTestFile("pdfa_test.pdf", new File(temp.getRoot(), "test.pdf"))));
+        assertEquals(InputUtils.ContentType.TIFF, InputUtils.getContentType(
+                createTestFile("testscan-lzw.tiff", new File(temp.getRoot(), "test.tiff"))));
+        assertNull(InputUtils.getContentType(temp.newFile("empty.tif")));
+    }
+
+    @Test
+    public void testFileEntryContentType() throws Exception {
+        File file = createTestFile("testscan-lzw.tiff", new File(temp.getRoot(), "test.tiff"));
+        FileSet.FileEntry entry = new FileSet.FileEntry(file);
+        assertEquals(InputUtils.ContentType.TIFF, entry.getContentType());
+        // the header is read once
+        assertTrue(file.delete());
+        assertEquals(InputUtils.ContentType.TIFF, entry.getContentType());
+    }
+
     private File createTestFile(String templatePath, File file) throws IOException {
         URL resource = TiffImporterTest.class.getResource(templatePath);
         assertNotNull(resource);
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ThumbnailPackTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testAddAndRemove() throws Exception {
+        File folder = temp.getRoot();
+        ThumbnailPack pack = new ThumbnailPack(folder);
+        assertNull(pack.getIndex().get("uuid:1"));
+
+        pack.add("uuid:1", createThumbnail("1.jpg", 90, 120, Color.RED));
+        pack.add("uuid:2", createThumbnail("2.jpg", 120, 80, Color.BLUE));
+        ThumbnailPack.Index index = pack.getIndex();
+        ThumbnailPack.Entry entry1 = index.get("uuid:1");
+        assertEquals(0, entry1.getSprite());
+        assertEquals(0, entry1.getTop());
+        assertEquals(90, entry1.getWidth());
+        assertEquals(120, entry1.getHeight());
+        ThumbnailPack.Entry entry2 = index.get("uuid:2");
+        assertEquals(0, entry2.getSprite());
+        assertEquals(120, entry2.getTop());
+        assertNotNull(index.getSpriteTag(0));
+        assertNull(index.getSpriteTag(1));
+
+        pack.remove("uuid:1");
+        index = pack.getIndex();
+        assertNull(index.get("uuid:1"));
+        assertEquals(120, index.get("uuid:2").getTop());
+    }
+
+    @Test
+    public void testSprite() throws Exception {
+        File folder = temp.getRoot();
+        ThumbnailPack pack = new ThumbnailPack(folder);
+        pack.add("uuid:1", createThumbnail("1.jpg", 90, 120, Color.RED));
+        pack.add("uuid:2", createThumbnail("2.jpg", 120, 80, Color.BLUE));
+        ThumbnailPack.Index index = pack.getIndex();
+        assertNull("incomplete sprite", pack.getSpriteFile(index, 0));
+
+        BufferedImage sprite = ImageIO.read(new ByteArrayInputStream(pack.getSprite(index, 0)));
+        assertEquals(120, sprite.getWidth());
+        assertEquals(200, sprite.getHeight());
+        assertColor(Color.RED, sprite.getRGB(45, 60));
+        assertColor(Color.BLUE, sprite.getRGB(60, 160));
+
+        for (int i = 3; i <= ThumbnailPack.SPRITE_SIZE + 1; i++) {
+            pack.add("uuid:" + i, createThumbnail(i + ".jpg", 100, 100, Color.GREEN));
+        }
+        index = pack.getIndex();
+        assertEquals(1, index.get("uuid:" + (ThumbnailPack.SPRITE_SIZE + 1)).getSprite());
+        assertEquals(0, index.get("uuid:" + (ThumbnailPack.SPRITE_SIZE + 1)).getTop());
+        File spriteFile = pack.getSpriteFile(index, 0);
+        assertNotNull(spriteFile);
+        assertEquals(spriteFile, pack.getSpriteFile(index, 0));
+    }
+
+    private File createThumbnail(String name, int width, int height, Color color) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        File file = temp.newFile(name);
+        ImageIO.write(image, "jpeg", file);
+        return file;
+    }
+
+    private static void assertColor(Color expected, int rgb) {
+        Color c = new Color(rgb);
+        assertTrue(c.toString(), Math.abs(expected.getRed() - c.getRed()) < 16
+                && Math.abs(expected.getGreen() - c.getGreen()) < 16
+                && Math.abs(expected.getBlue() - c.getBlue()) < 16);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.metrics;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class MetricsTest {
+
+    @Test
+    public void testTimer() {
+        Metrics metrics = new Metrics();
+        Timer timer = metrics.timer("import.tiff.read");
+        assertSame(timer, metrics.timer("import.tiff.read"));
+        timer.record(7, TimeUnit.MILLISECONDS);
+        timer.recordFailure(2, TimeUnit.SECONDS);
+        Timer.Sample sample = timer.start();
+        sample.stop();
+        sample.stop();
+        assertEquals(3, timer.getCount());
+        assertEquals(1, timer.getFailures());
+        assertEquals(2000, timer.getMaxTime());
+        long[] buckets = timer.getHistogram().getBuckets();
+        long[] bounds = timer.getHistogram().getBounds();
+        assertEquals(Long.MAX_VALUE, bounds[bounds.length - 1]);
+        long sum = 0;
+        for (long bucket : buckets) {
+            sum += bucket;
+        }
+        assertEquals(3, sum);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNameClash() {
+        Metrics metrics = new Metrics();
+        metrics.counter("import.fileset");
+        metrics.timer("import.fileset");
+    }
+
+    @Test
+    public void testHistogramBounds() {
+        Histogram histogram = new Histogram(10, 100);
+        histogram.record(5);
+        histogram.record(50);
+        histogram.record(500);
+        assertArrayEquals(new long[] {10, 100, Long.MAX_VALUE}, histogram.getBounds());
+        assertArrayEquals(new long[] {1, 1, 1}, histogram.getBuckets());
+        assertEquals(555, histogram.getSum());
+        assertEquals(500, histogram.getMax());
+    }
+
+    @Test
+    public void testWriteText() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.counter("import.fileset.skipped").add(3);
+        Timer timer = metrics.timer("import.tiff.read");
+        timer.record(7, TimeUnit.MILLISECONDS);
+        timer.record(70, TimeUnit.MILLISECONDS);
+        StringWriter out = new StringWriter();
+        metrics.writeText(out);
+        String text = out.toString();
+        assertTrue(text, text.contains("# TYPE proarc_import_fileset_skipped_total counter\n"
+                + "proarc_import_fileset_skipped_total 3\n"));
+        assertTrue(text, text.contains("# TYPE proarc_import_tiff_read_milliseconds histogram\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_milliseconds_bucket{le=\"5\"} 0\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_milliseconds_bucket{le=\"10\"} 1\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_milliseconds_bucket{le=\"100\"} 2\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_milliseconds_bucket{le=\"+Inf\"} 2\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_milliseconds_sum 77\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_milliseconds_count 2\n"));
+        assertTrue(text, text.contains("proarc_import_tiff_read_failures_total 0\n"));
+    }
+
+    @Test
+    public void testToTextName() {
+        assertEquals("process_kdu_compress", Metrics.toTextName("process.kdu-compress"));
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        Metrics metrics = new Metrics();
+        metrics.timer("jhove").record(10, TimeUnit.MILLISECONDS);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertTrue(MetricsJmx.register(server, metrics));
+        try {
+            ObjectName name = new ObjectName(MetricsJmx.OBJECT_NAME);
+            assertEquals(1L, server.getAttribute(name, "jhove.count"));
+            assertEquals(10L, server.getAttribute(name, "jhove.totalTime"));
+            Map<String, Long> values = metrics.getValues();
+            assertEquals(values.size(), server.getMBeanInfo(name).getAttributes().length);
+        } finally {
+            MetricsJmx.unregister(server);
+        }
+    }
+
+}
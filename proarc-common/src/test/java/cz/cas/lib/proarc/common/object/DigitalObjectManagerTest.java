@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.yourmediashelf.fedora.client.FedoraClient;
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectConcurrentModificationException;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.FedoraTestSupport;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager;
+import cz.cas.lib.proarc.common.object.DigitalObjectManager.CreateHandler;
+import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import cz.cas.lib.proarc.common.user.UserManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class DigitalObjectManagerTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    private FedoraTestSupport fedora;
+    private UserProfile user;
+    /** Issues ingested by workers. */
+    private final List<String> ingested = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger ingestCount = new AtomicInteger();
+    /** The issue date of the ingest to fail. */
+    private String failIssue;
+    /** Modifies the parent on the first ingest. */
+    private boolean modifyParent;
+    private String parentPid;
+
+    @Before
+    public void setUp() throws Exception {
+        fedora = new FedoraTestSupport();
+        fedora.cleanUp();
+        AppConfiguration config = AppConfigurationFactory.getInstance().create(new HashMap<String, String>() {{
+            put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
+        }});
+        MetaModelRepository.setInstance(config.getPlugins());
+        FedoraClient client = new FedoraClient(fedora.getCredentials()) {
+
+            @Override
+            public WebResource resource() {
+                WebResource resource = super.resource();
+                resource.addFilter(new IngestFilter());
+                return resource;
+            }
+        };
+        RemoteStorage remotes = new RemoteStorage(client);
+        DigitalObjectManager.setDefault(new DigitalObjectManager(config,
+                EasyMock.createNiceMock(ImportBatchManager.class),
+                remotes,
+                MetaModelRepository.getInstance(),
+                EasyMock.createNiceMock(UserManager.class)));
+        user = UserProfile.create(fedora.getTestUser(), "junit", "junit");
+    }
+
+    @Test
+    public void testCreateIssueSeries() throws Exception {
+        DigitalObjectManager dom = DigitalObjectManager.getDefault();
+        parentPid = dom.createDigitalObject(NdkPlugin.MODEL_PERIODICALVOLUME, null, null, user, null, "junit").getPid();
+        failIssue = "05.01.2017";
+
+        CreateHandler handler = dom.create(NdkPlugin.MODEL_PERIODICALISSUE, null, parentPid, user, null, "junit")
+                .issueSeries(LocalDate.of(2017, 1, 2), LocalDate.of(2017, 1, 8), null, 1);
+        List<Item> items = handler.create();
+
+        assertEquals(6, items.size());
+        assertEquals(handler.getFailures().toString(), 1, handler.getFailures().size());
+        assertTrue(handler.getFailures().toString(), handler.getFailures().containsKey("05.01.2017"));
+        List<String> pids = new ArrayList<>();
+        for (Item item : items) {
+            assertEquals(parentPid, item.getParentPid());
+            pids.add(item.getPid());
+        }
+        assertEquals(new HashSet<>(ingested), new HashSet<>(pids));
+        List<String> members = dom.createHandler(dom.find(parentPid, null)).relations().getMembers();
+        assertEquals(pids, members);
+    }
+
+    @Test
+    public void testCreateIssueSeriesWithModifiedParent() throws Exception {
+        DigitalObjectManager dom = DigitalObjectManager.getDefault();
+        parentPid = dom.createDigitalObject(NdkPlugin.MODEL_PERIODICALVOLUME, null, null, user, null, "junit").getPid();
+        modifyParent = true;
+
+        CreateHandler handler = dom.create(NdkPlugin.MODEL_PERIODICALISSUE, null, parentPid, user, null, "junit")
+                .issueSeries(LocalDate.of(2017, 1, 2), LocalDate.of(2017, 1, 4), null, 1);
+        try {
+            handler.create();
+            fail();
+        } catch (DigitalObjectConcurrentModificationException ex) {
+            // the parent changed during the series
+        }
+        assertEquals(3, ingested.size());
+        for (String pid : ingested) {
+            assertFalse(pid, fedora.getRemoteStorage().exist(pid));
+        }
+    }
+
+    /**
+     * Fails or follows ingests of issues.
+     */
+    private final class IngestFilter extends ClientFilter {
+
+        @Override
+        public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+            boolean ingest = parentPid != null && "POST".equals(cr.getMethod())
+                    && cr.getURI().getPath().matches(".*/objects/[^/]+");
+            if (!ingest) {
+                return getNext().handle(cr);
+            }
+            int count = ingestCount.incrementAndGet();
+            if (failIssue != null && String.valueOf(cr.getEntity()).contains(failIssue)) {
+                throw new ClientHandlerException("junit failure");
+            }
+            ClientResponse response = getNext().handle(cr);
+            String path = cr.getURI().getPath();
+            ingested.add(path.substring(path.lastIndexOf('/') + 1).replace("%3A", ":"));
+            if (count == 1 && modifyParent) {
+                try {
+                    updateParent(parentPid);
+                } catch (DigitalObjectException ex) {
+                    throw new ClientHandlerException(ex);
+                }
+            }
+            return response;
+        }
+    }
+
+    private void updateParent(String pid) throws DigitalObjectException {
+        DigitalObjectManager dom = DigitalObjectManager.getDefault();
+        DigitalObjectHandler parent = dom.createHandler(dom.find(pid, null));
+        RelationEditor relations = parent.relations();
+        relations.setMembers(new ArrayList<String>());
+        relations.write(relations.getLastModified(), "junit");
+        parent.commit();
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2014 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class DisseminationCacheTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testPutGet() throws Exception {
+        DisseminationCache cache = new DisseminationCache(temp.getRoot(), 100,
+                new HashSet<String>(Arrays.asList("THUMBNAIL")));
+        assertTrue(cache.accepts("THUMBNAIL"));
+        assertFalse(cache.accepts("RAW"));
+        String key = DisseminationCache.key("uuid:1", "THUMBNAIL", "THUMBNAIL.0/2017-01-01");
+        assertNotEquals(key, DisseminationCache.key("uuid:1", "THUMBNAIL", "THUMBNAIL.1/2017-01-02"));
+        assertNull(cache.get(key));
+        File file = cache.put(key, new ByteArrayInputStream(new byte[10]));
+        assertEquals(10, file.length());
+        assertEquals(file, cache.get(key));
+        assertEquals(10, cache.getSize());
+        assertEquals(1, temp.getRoot().list().length);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        DisseminationCache cache = new DisseminationCache(temp.getRoot(), 25,
+                new HashSet<String>(Arrays.asList("THUMBNAIL")));
+        cache.put("a", new ByteArrayInputStream(new byte[10]));
+        cache.put("b", new ByteArrayInputStream(new byte[10]));
+        // touch a to make b the least recently used
+        assertNotNull(cache.get("a"));
+        cache.put("c", new ByteArrayInputStream(new byte[10]));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(20, cache.getSize());
+
+        // reload entries of the previous run
+        DisseminationCache reloaded = new DisseminationCache(temp.getRoot(), 25,
+                new HashSet<String>(Arrays.asList("THUMBNAIL")));
+        assertNotNull(reloaded.get("a"));
+        assertNotNull(reloaded.get("c"));
+        assertEquals(20, reloaded.getSize());
+    }
+
+    @Test
+    public void testOpen() throws Exception {
+        DisseminationCache cache = new DisseminationCache(temp.getRoot(), 15,
+                new HashSet<String>(Arrays.asList("THUMBNAIL")));
+        assertNull(cache.open("a"));
+        FileChannel stored = cache.putAndOpen("a", new ByteArrayInputStream(new byte[10]));
+        assertEquals(10, stored.size());
+        stored.close();
+        FileChannel opened = cache.open("a");
+        assertNotNull(opened);
+        // evict the open entry
+        cache.put("b", new ByteArrayInputStream(new byte[10]));
+        assertNull(cache.get("a"));
+        assertNull(cache.open("a"));
+        assertEquals(10, opened.size());
+        opened.close();
+
+        // the file deleted behind the cache
+        assertTrue(cache.get("b").delete());
+        assertNull(cache.open("b"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testMasters() throws Exception {
+        DisseminationCache.Options options = new DisseminationCache.Options();
+        options.setFolder(temp.getRoot());
+        options.setMaxSize(15);
+        options.setMastersMaxSize(100);
+        DisseminationCache cache = DisseminationCache.create(options);
+        DisseminationCache masters = DisseminationCache.createMasters(options);
+        cache.put("a", new ByteArrayInputStream(new byte[10]));
+        masters.put("raw", new ByteArrayInputStream(new byte[50]));
+        assertTrue(masters.accepts("RAW"));
+        assertFalse(masters.accepts("THUMBNAIL"));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("raw"));
+        assertEquals(10, cache.getSize());
+
+        // the master store is ignored by the reloaded cache
+        DisseminationCache reloaded = DisseminationCache.create(options);
+        assertEquals(10, reloaded.getSize());
+        assertNotNull(DisseminationCache.createMasters(options).get("raw"));
+
+        options.setMastersMaxSize(0);
+        assertNull(DisseminationCache.createMasters(options));
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2014 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Date;
+import javax.ws.rs.core.EntityTag;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class FileRangeOutputTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testParseRange() {
+        assertNull(FileRangeOutput.parseRange(null, 100));
+        assertArrayEquals(new long[] {0, 49}, FileRangeOutput.parseRange("bytes=0-49", 100));
+        assertArrayEquals(new long[] {50, 99}, FileRangeOutput.parseRange("bytes=50-", 100));
+        assertArrayEquals(new long[] {90, 99}, FileRangeOutput.parseRange("bytes=-10", 100));
+        assertArrayEquals(new long[] {0, 99}, FileRangeOutput.parseRange("bytes=-200", 100));
+        assertArrayEquals(new long[] {10, 99}, FileRangeOutput.parseRange("bytes=10-500", 100));
+        assertSame(FileRangeOutput.UNSATISFIABLE, FileRangeOutput.parseRange("bytes=100-", 100));
+        assertSame(FileRangeOutput.UNSATISFIABLE, FileRangeOutput.parseRange("bytes=-0", 100));
+        // unsupported or invalid ranges are ignored
+        assertNull(FileRangeOutput.parseRange("bytes=0-1,5-6", 100));
+        assertNull(FileRangeOutput.parseRange("bytes=5-1", 100));
+        assertNull(FileRangeOutput.parseRange("items=0-1", 100));
+        assertNull(FileRangeOutput.parseRange("bytes=x-1", 100));
+    }
+
+    @Test
+    public void testIfRange() {
+        EntityTag etag = new EntityTag("abc");
+        assertTrue(FileRangeOutput.isIfRangeMatching(null, etag, null));
+        assertTrue(FileRangeOutput.isIfRangeMatching("\"abc\"", etag, null));
+        assertFalse(FileRangeOutput.isIfRangeMatching("\"xyz\"", etag, null));
+        assertFalse(FileRangeOutput.isIfRangeMatching("W/\"abc\"", etag, null));
+        assertTrue(FileRangeOutput.isIfRangeMatching("Thu, 01 Jan 1970 00:00:01 GMT", etag, new Date(1000)));
+        assertFalse(FileRangeOutput.isIfRangeMatching("Thu, 01 Jan 1970 00:00:02 GMT", etag, new Date(1000)));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+        File file = temp.newFile();
+        Files.write(file.toPath(), "0123456789".getBytes("UTF-8"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FileChannel channel = new FileInputStream(file).getChannel();
+        new FileRangeOutput(channel, 2, 5).write(out);
+        assertEquals("23456", out.toString("UTF-8"));
+        assertFalse(channel.isOpen());
+    }
+
+}
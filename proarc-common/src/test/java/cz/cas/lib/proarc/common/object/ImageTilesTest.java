@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ImageTilesTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testParseRegion() {
+        ImageTiles.Info info = new ImageTiles.Info(1000, 800);
+        assertEquals(new Rectangle(0, 0, 1000, 800), ImageTiles.parseRegion(null, info));
+        assertEquals(new Rectangle(0, 0, 1000, 800), ImageTiles.parseRegion("full", info));
+        assertEquals(new Rectangle(512, 512, 488, 288), ImageTiles.parseRegion("512,512,512,512", info));
+        try {
+            ImageTiles.parseRegion("1000,0,10,10", info);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            ImageTiles.parseRegion("0,0,10", info);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseSize() {
+        Rectangle region = new Rectangle(0, 0, 1000, 800);
+        assertArrayEquals(new int[] {1000, 800}, ImageTiles.parseSize("full", region));
+        assertArrayEquals(new int[] {500, 400}, ImageTiles.parseSize("500,", region));
+        assertArrayEquals(new int[] {250, 200}, ImageTiles.parseSize(",200", region));
+        assertArrayEquals(new int[] {100, 80}, ImageTiles.parseSize("!100,100", region));
+        try {
+            ImageTiles.parseSize("2000,", region);
+            fail("upscaling");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            ImageTiles.parseSize(",", region);
+            fail();
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testParseSizeLimit() {
+        Rectangle region = new Rectangle(0, 0, 5000, 4000);
+        assertArrayEquals(new int[] {2048, 1638}, ImageTiles.parseSize("max", region));
+        assertArrayEquals(new int[] {2048, 1638}, ImageTiles.parseSize("!2048,2048", region));
+        try {
+            ImageTiles.parseSize("full", region);
+            fail("full exceeds the limit");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+        try {
+            ImageTiles.parseSize("3000,", region);
+            fail("width exceeds the limit");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInfo() {
+        ImageTiles.Info info = new ImageTiles.Info(3000, 2000);
+        assertEquals(Arrays.asList(1, 2, 4, 8), info.getScaleFactors());
+        assertEquals(Arrays.asList(1), new ImageTiles.Info(512, 100).getScaleFactors());
+        ImageTiles.Info parsed = ImageTiles.Info.valueOf(info.toString());
+        assertEquals(3000, parsed.getWidth());
+        assertEquals(2000, parsed.getHeight());
+        assertNull(ImageTiles.Info.valueOf("3000"));
+    }
+
+    @Test
+    public void testReadRegion() throws Exception {
+        BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 600, 900);
+        g.setColor(Color.BLACK);
+        g.fillRect(600, 0, 600, 900);
+        g.dispose();
+        File file = temp.newFile("image.png");
+        ImageIO.write(image, "png", file);
+
+        BufferedImage tile = ImageTiles.readRegion(file, new Rectangle(512, 0, 512, 512), 128, 128);
+        assertEquals(128, tile.getWidth());
+        assertEquals(128, tile.getHeight());
+        assertEquals(Color.WHITE.getRGB(), tile.getRGB(2, 64));
+        assertEquals(Color.BLACK.getRGB(), tile.getRGB(125, 64));
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(ImageTiles.encode(tile)));
+        assertEquals(128, decoded.getWidth());
+        assertEquals(128, decoded.getHeight());
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.fedora.DigitalObjectValidationException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class MemberUpdaterTest {
+
+    @Test
+    public void testAddMembers() throws Exception {
+        List<String> members = Arrays.asList("uuid:1", "uuid:2");
+        assertEquals(Arrays.asList("uuid:1", "uuid:2", "uuid:4", "uuid:3"),
+                MemberUpdater.addMembers("uuid:p", members, Arrays.asList("uuid:4", "uuid:3")));
+        assertNull(MemberUpdater.addMembers("uuid:p", members, Collections.<String>emptyList()));
+        try {
+            MemberUpdater.addMembers("uuid:p", members, Arrays.asList("uuid:3", "uuid:2"));
+            fail();
+        } catch (DigitalObjectValidationException ex) {
+            assertEquals("uuid:p", ex.getPid());
+        }
+    }
+
+    @Test
+    public void testRemoveMembers() throws Exception {
+        List<String> members = Arrays.asList("uuid:1", "uuid:2", "uuid:3", "uuid:4");
+        assertEquals(Arrays.asList("uuid:1", "uuid:4"),
+                MemberUpdater.removeMembers("uuid:p", members, Arrays.asList("uuid:3", "uuid:2")));
+        assertNull(MemberUpdater.removeMembers("uuid:p", members, Collections.<String>emptyList()));
+        try {
+            MemberUpdater.removeMembers("uuid:p", members, Arrays.asList("uuid:1", "uuid:5"));
+            fail();
+        } catch (DigitalObjectValidationException ex) {
+            assertEquals("uuid:p", ex.getPid());
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.easymock.EasyMock;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class DbRoundTripsTest {
+
+    @Test
+    public void testWrap() throws Exception {
+        ResultSet rs = EasyMock.createNiceMock(ResultSet.class);
+        PreparedStatement pstmt = EasyMock.createNiceMock(PreparedStatement.class);
+        EasyMock.expect(pstmt.executeQuery()).andReturn(rs);
+        Statement stmt = EasyMock.createNiceMock(Statement.class);
+        Connection c = EasyMock.createNiceMock(Connection.class);
+        EasyMock.expect(c.prepareStatement("select")).andReturn(pstmt);
+        EasyMock.expect(c.createStatement()).andReturn(stmt);
+        DataSource source = EasyMock.createNiceMock(DataSource.class);
+        EasyMock.expect(source.getConnection()).andReturn(c);
+        EasyMock.replay(rs, pstmt, stmt, c, source);
+
+        DbRoundTrips.reset();
+        long total = DbRoundTrips.getTotal();
+        Connection wrapped = DbRoundTrips.wrap(source).getConnection();
+        PreparedStatement query = wrapped.prepareStatement("select");
+        query.setInt(1, 1);
+        assertEquals(0, DbRoundTrips.get());
+        assertSame(rs, query.executeQuery());
+        query.close();
+        Statement batch = wrapped.createStatement();
+        batch.addBatch("update 1");
+        batch.addBatch("update 2");
+        batch.executeBatch();
+        wrapped.close();
+
+        assertEquals(2, DbRoundTrips.reset());
+        assertEquals(0, DbRoundTrips.get());
+        assertEquals(total + 2, DbRoundTrips.getTotal());
+        assertEquals(wrapped, wrapped);
+        EasyMock.verify(pstmt, c, source);
+    }
+
+}
@@ -22,10 +22,13 @@ import cz.cas.lib.proarc.common.dao.empiredb.EmpireDaoFactory;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireUserDaoTest;
 import cz.cas.lib.proarc.common.fedora.FedoraTestSupport;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.sql.DbRoundTrips;
 import java.sql.Connection;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import javax.sql.DataSource;
 import org.dbunit.database.IDatabaseConnection;
 import org.dbunit.dataset.CompositeDataSet;
@@ -100,7 +103,7 @@ public class UserManagerSqlTest {
         }
 
         EasyMock.replay(dataSource);
-        manager = new UserManagerSql(dataSource, temp.getRoot(), remoteStorage, daos);
+        manager = new UserManagerSql(DbRoundTrips.wrap(dataSource), temp.getRoot(), remoteStorage, daos);
     }
 
     @After
@@ -163,4 +166,56 @@ public class UserManagerSqlTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testPermissionCache() {
+        UserProfile user = UserProfile.create("datel", "123456", "Datel");
+        manager.add(user, Collections.<Group>emptyList(), fedora.getTestUser(), "add user");
+        manager.setPermissions(user.getUserGroup(), Permissions.ADMIN);
+
+        Set<Permission> permissions = manager.findUserPermissions(user.getId());
+        assertEquals(Collections.singleton(Permissions.ADMIN), permissions);
+        // the cached result must not be changed by the caller
+        permissions.clear();
+        int queries = DbRoundTrips.get();
+        assertEquals(Collections.singleton(Permissions.ADMIN), manager.findUserPermissions(user.getId()));
+        assertEquals(queries, DbRoundTrips.get());
+
+        // invalidation
+        manager.setPermissions(user.getUserGroup(), Permissions.REPO_SEARCH_GROUPOWNER);
+        queries = DbRoundTrips.get();
+        assertEquals(Collections.singleton(Permissions.REPO_SEARCH_GROUPOWNER),
+                manager.findUserPermissions(user.getId()));
+        assertEquals(queries + 1, DbRoundTrips.get());
+        manager.removePermissions(user.getUserGroup());
+        assertTrue(manager.findUserPermissions(user.getId()).isEmpty());
+
+        Group group = manager.findGroup(user.getUserGroup());
+        queries = DbRoundTrips.get();
+        assertEquals(group.getName(), manager.findGroup(user.getUserGroup()).getName());
+        assertEquals(queries, DbRoundTrips.get());
+    }
+
+    @Test
+    public void testUserGroupCache() {
+        UserProfile user = UserProfile.create("datel", "123456", "Datel");
+        manager.add(user, Collections.<Group>emptyList(), fedora.getTestUser(), "add user");
+        List<Group> groups = manager.findUserGroups(user.getId());
+        assertEquals(1, groups.size());
+        // the cached result must not be changed by the caller
+        groups.clear();
+        int queries = DbRoundTrips.get();
+        assertEquals(1, manager.findUserGroups(user.getId()).size());
+        assertEquals(queries, DbRoundTrips.get());
+
+        // invalidation
+        Group group = manager.addGroup(Group.create("group", "Group"),
+                Collections.<Permission>emptyList(), fedora.getTestUser(), "add group");
+        manager.setUserGroups(user, Arrays.asList(group), fedora.getTestUser(), "set groups");
+        queries = DbRoundTrips.get();
+        groups = manager.findUserGroups(user.getId());
+        assertEquals(1, groups.size());
+        assertEquals(group.getId(), groups.get(0).getId());
+        assertEquals(queries + 1, DbRoundTrips.get());
+    }
+
+}
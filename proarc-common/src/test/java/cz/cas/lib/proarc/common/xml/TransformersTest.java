@@ -24,11 +24,13 @@ import cz.cas.lib.proarc.mods.ModsDefinition;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.net.Proxy;
 import java.net.ProxySelector;
 import java.net.SocketAddress;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -36,6 +38,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Validator;
 import org.custommonkey.xmlunit.SimpleNamespaceContext;
@@ -518,6 +521,86 @@ public class TransformersTest {
         assertEquals("?", label);
     }
 
+    @Test
+    public void testTransformChain() throws Exception {
+        Transformers mt = new Transformers();
+        byte[] mods = mt.transformAsBytes(
+                new StreamSource(TransformersTest.class.getResourceAsStream("marc.xml")),
+                Transformers.Format.MarcxmlAsMods3);
+        String expectedTitle = new String(mt.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(mods)), Transformers.Format.ModsAsTitle), "UTF-8");
+        String expectedHtml = new String(mt.transformAsBytes(
+                new StreamSource(new ByteArrayInputStream(mods)), Transformers.Format.ModsAsHtml,
+                ModsUtils.modsAsHtmlParameters(Locale.ENGLISH)), "UTF-8");
+
+        String title = new String(mt.transformAsBytes(
+                new StreamSource(TransformersTest.class.getResourceAsStream("marc.xml")),
+                Collections.<String, Object>emptyMap(),
+                Transformers.Format.MarcxmlAsMods3, Transformers.Format.ModsAsTitle), "UTF-8");
+        assertEquals(expectedTitle, title);
+        String html = new String(mt.transformAsBytes(
+                new StreamSource(TransformersTest.class.getResourceAsStream("marc.xml")),
+                ModsUtils.modsAsHtmlParameters(Locale.ENGLISH),
+                Transformers.Format.MarcxmlAsMods3, Transformers.Format.ModsAsHtml), "UTF-8");
+        // the chained MODS is not indented
+        assertEquals(expectedHtml.replaceAll("\\s+", " "), html.replaceAll("\\s+", " "));
+    }
+
+    @Test
+    public void testTransformChainOaiMarcAsMods() throws Exception {
+        XMLUnit.setNormalizeWhitespace(true);
+        InputStream goldenIS = TransformersTest.class.getResourceAsStream("alephXServerDetailResponseAsMods.xml");
+        assertNotNull(goldenIS);
+        InputStream xmlIS = TransformersTest.class.getResourceAsStream("alephXServerDetailResponseAsOaiMarc.xml");
+        assertNotNull(xmlIS);
+        Transformers mt = new Transformers();
+
+        try {
+            byte[] contents = mt.transformAsBytes(new StreamSource(xmlIS), Collections.<String, Object>emptyMap(),
+                    Transformers.Format.OaimarcAsMarc21slim, Transformers.Format.MarcxmlAsMods3);
+            assertNotNull(contents);
+            XMLAssert.assertXMLEqual(new InputSource(goldenIS), new InputSource(new ByteArrayInputStream(contents)));
+        } finally {
+            close(xmlIS);
+            close(goldenIS);
+        }
+    }
+
+    @Test
+    public void testReusedTransformer() throws Exception {
+        String page = modsAsFedoraLabel(PageMapperTest.class.getResourceAsStream("page_mods.xml"), "model:page");
+        String volume = modsAsFedoraLabel(PageMapperTest.class.getResourceAsStream("volume_mods.xml"), "model:periodicalvolume");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(page, modsAsFedoraLabel(PageMapperTest.class.getResourceAsStream("page_mods.xml"), "model:page"));
+            assertEquals(volume, modsAsFedoraLabel(PageMapperTest.class.getResourceAsStream("volume_mods.xml"), "model:periodicalvolume"));
+        }
+    }
+
+    @Test
+    public void testPooledTransformers() throws Exception {
+        Transformers mt = new Transformers();
+        InputStream xmlIS = TransformersTest.class.getResourceAsStream("alephXServerDetailResponseAsOaiMarc.xml");
+        assertNotNull(xmlIS);
+        try {
+            mt.transformAsBytes(new StreamSource(xmlIS), Collections.<String, Object>emptyMap(),
+                    Transformers.Format.OaimarcAsMarc21slim, Transformers.Format.MarcxmlAsMods3);
+        } finally {
+            close(xmlIS);
+        }
+        // the chain returns transformers of all formats
+        assertTrue(Transformers.getIdleCount(Transformers.Format.OaimarcAsMarc21slim) > 0);
+        int idle = Transformers.getIdleCount(Transformers.Format.MarcxmlAsMods3);
+        assertTrue(idle > 0);
+
+        try {
+            mt.transformAsBytes(new StreamSource(new StringReader("<invalid")), Transformers.Format.MarcxmlAsMods3);
+            fail();
+        } catch (TransformerException ex) {
+            // the failed transformer is discarded
+        }
+        assertEquals(idle - 1, Transformers.getIdleCount(Transformers.Format.MarcxmlAsMods3));
+    }
+
     private String modsAsFedoraLabel(InputStream xmlIS, String model) throws Exception {
         assertNotNull(xmlIS);
         StreamSource streamSource = new StreamSource(xmlIS);
@@ -626,12 +626,25 @@ public final class SIP2DESATransporter {
     }
 
     /**
-     * Calculate the MD5 checksum of the given file
+     * Calculate the MD5 checksum of the given file. The checksum computed
+     * while the package was written ({@code <file>.md5}) is reused if it is
+     * not older than the file.
      *
      * @param file
      * @return
      */
     private static String getMD5Checksum(File file) {
+        File checksumFile = new File(file.getPath() + ".md5");
+        if (checksumFile.isFile() && checksumFile.lastModified() >= file.lastModified()) {
+            try {
+                String checksum = FileUtils.readFileToString(checksumFile, "US-ASCII").trim();
+                if (checksum.length() == 32) {
+                    return checksum;
+                }
+            } catch (IOException e) {
+                log.log(Level.WARNING, checksumFile.toString(), e);
+            }
+        }
         try {
             InputStream fis = new FileInputStream(file);
 
@@ -18,15 +18,18 @@ package cz.cas.lib.proarc.urnnbn;
 
 import cz.cas.lib.proarc.urnnbn.model.registration.Import;
 import cz.cas.lib.proarc.urnnbn.model.response.Response;
+import java.net.ConnectException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
@@ -41,6 +44,10 @@ import org.glassfish.jersey.logging.LoggingFeature;
 /**
  * The resolver HTTP client.
  *
+ * <p>The client is thread safe. It limits the number of concurrent requests
+ * sent to the resolver and retries registrations that the resolver
+ * did not accept because it was unreachable or overloaded.
+ *
  * @author Jan Pokorsky
  */
 public final class ResolverClient {
@@ -50,9 +57,24 @@ public final class ResolverClient {
      */
     public static final String API_VERSION = "v3";
 
+    /**
+     * The default limit of concurrent requests.
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 2;
+
+    /**
+     * The default number of retries of a failed request.
+     */
+    public static final int DEFAULT_RETRIES = 3;
+
     private static final Logger LOG = Logger.getLogger(ResolverClient.class.getName());
 
     private Client httpClient;
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private Semaphore connections = new Semaphore(maxConnections, true);
+    private int retries = DEFAULT_RETRIES;
+    /** The delay in milliseconds before the first retry. It doubles with each next retry. */
+    private long retryDelay = 1000;
     private final String serviceUrl;
     private final String registrar;
     private final Long archiver;
@@ -91,7 +113,29 @@ public final class ResolverClient {
             object.getDigitalDocument().setArchiverId(archiver);
         }
 
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return registerObjectImpl(object);
+            } catch (RuntimeException ex) {
+                if (attempt >= retries || !isRetryable(ex)) {
+                    throw ex;
+                }
+                long delay = retryDelay << attempt;
+                LOG.log(Level.WARNING, String.format("Registration attempt %s of %s failed, retry in %s ms.",
+                        attempt + 1, retries + 1, delay), ex);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    private Response registerObjectImpl(Import object) {
         Response response = null;
+        connections.acquireUninterruptibly();
         try {
             response = resource()
                     .path("registrars")
@@ -103,10 +147,31 @@ public final class ResolverClient {
             response = readResponseError(ex.getResponse(), ex);
         } catch (ResponseProcessingException ex) {
             response = readResponseError(ex.getResponse(), ex);
+        } finally {
+            connections.release();
         }
         return response;
     }
 
+    /**
+     * Checks whether the failed request can be repeated. The registration
+     * is not idempotent so it retries only requests that could not reach
+     * the resolver or that the resolver refused to process.
+     */
+    static boolean isRetryable(RuntimeException ex) {
+        if (ex instanceof WebApplicationException) {
+            int status = ((WebApplicationException) ex).getResponse().getStatus();
+            return status == 503 || status == 429;
+        } else if (ex instanceof ProcessingException && !(ex instanceof ResponseProcessingException)) {
+            for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof ConnectException) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private Response readResponseError(javax.ws.rs.core.Response errResponse, RuntimeException ex) {
         try {
             Response response = null;
@@ -139,7 +204,7 @@ public final class ResolverClient {
         return target;
     }
 
-    Client getHttpClient() {
+    synchronized Client getHttpClient() {
         if (httpClient == null) {
             try {
                 SSLContext sslCtx = SSLContext.getInstance("SSL");
@@ -159,6 +224,46 @@ public final class ResolverClient {
         return httpClient;
     }
 
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the limit of concurrent requests. Call it before the client is shared.
+     * @param maxConnections number of requests
+     */
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections: " + maxConnections);
+        }
+        this.maxConnections = maxConnections;
+        this.connections = new Semaphore(maxConnections, true);
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Sets how many times to repeat a request that did not reach the resolver.
+     * @param retries number of retries; 0 disables retrying
+     */
+    public void setRetries(int retries) {
+        this.retries = Math.max(0, retries);
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Sets the delay before the first retry. Each next retry doubles it.
+     * @param retryDelay delay in milliseconds
+     */
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = Math.max(0, retryDelay);
+    }
+
     public boolean isDebug() {
         return LOG.isLoggable(Level.FINEST);
     }
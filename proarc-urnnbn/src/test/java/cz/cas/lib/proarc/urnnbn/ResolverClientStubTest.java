@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.urnnbn;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import cz.cas.lib.proarc.urnnbn.model.registration.Import;
+import cz.cas.lib.proarc.urnnbn.model.response.Response;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.ws.rs.WebApplicationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link ResolverClient} against a local stub of the resolver.
+ *
+ * @author Jan Pokorsky
+ */
+public class ResolverClientStubTest {
+
+    private static final String RESPONSE_OK = "<?xml version='1.0' encoding='UTF-8'?>"
+            + "<response xmlns='http://resolver.nkp.cz/v3/'>"
+            + "<urnNbn><value>urn:nbn:cz:aba007-%06d</value></urnNbn>"
+            + "</response>";
+
+    private HttpServer server;
+    private StubHandler handler;
+    private ResolverClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        handler = new StubHandler();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v3/", handler);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        String url = "http://localhost:" + server.getAddress().getPort() + "/api/v3";
+        client = new ResolverClient(url, "aba007", null, "user", "passwd");
+        client.setRetryDelay(10);
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testRegisterObject() {
+        Response response = client.registerObject(new Import());
+        assertNull(response.getError());
+        assertEquals("urn:nbn:cz:aba007-000001", response.getUrnNbn().getValue());
+        assertEquals(1, handler.requests.get());
+    }
+
+    @Test
+    public void testRegisterObjectRetryOnServiceUnavailable() {
+        handler.failures.set(2);
+        Response response = client.registerObject(new Import());
+        assertEquals("urn:nbn:cz:aba007-000003", response.getUrnNbn().getValue());
+        assertEquals(3, handler.requests.get());
+    }
+
+    @Test
+    public void testRegisterObjectRetriesExhausted() {
+        handler.failures.set(10);
+        client.setRetries(1);
+        try {
+            client.registerObject(new Import());
+            fail();
+        } catch (WebApplicationException ex) {
+            assertEquals(503, ex.getResponse().getStatus());
+        }
+        assertEquals(2, handler.requests.get());
+    }
+
+    @Test
+    public void testRegisterObjectConcurrencyLimit() throws Exception {
+        client.setMaxConnections(2);
+        handler.delay = 50;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Response>> results = new ArrayList<Future<Response>>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(new Callable<Response>() {
+
+                    @Override
+                    public Response call() throws Exception {
+                        return client.registerObject(new Import());
+                    }
+                }));
+            }
+            for (Future<Response> result : results) {
+                assertNotNull(result.get().getUrnNbn());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(16, handler.requests.get());
+        assertTrue(String.valueOf(handler.maxActive.get()), handler.maxActive.get() <= 2);
+    }
+
+    private static final class StubHandler implements HttpHandler {
+
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        volatile long delay;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            int current = active.incrementAndGet();
+            try {
+                for (int max = maxActive.get(); current > max; max = maxActive.get()) {
+                    if (maxActive.compareAndSet(max, current)) {
+                        break;
+                    }
+                }
+                InputStream body = exchange.getRequestBody();
+                while (body.read() >= 0) {
+                    // consume the request
+                }
+                int count = requests.incrementAndGet();
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                if (failures.getAndDecrement() > 0) {
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                byte[] response = String.format(RESPONSE_OK, count).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/xml");
+                exchange.sendResponseHeaders(201, response.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(response);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            } finally {
+                active.decrementAndGet();
+                exchange.close();
+            }
+        }
+    }
+
+}
@@ -58,6 +58,10 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
     public static final String FIELD_PREVIEW = "preview";
     /** synthetic field holding batchid and pid URL parameters */
     public static final String FIELD_THUMBNAIL = "thumbnail";
+    public static final String FIELD_THUMBNAIL_SPRITE = ImportResourceApi.BATCHITEM_THUMBNAIL_SPRITE;
+    public static final String FIELD_THUMBNAIL_TOP = ImportResourceApi.BATCHITEM_THUMBNAIL_TOP;
+    public static final String FIELD_THUMBNAIL_WIDTH = ImportResourceApi.BATCHITEM_THUMBNAIL_WIDTH;
+    public static final String FIELD_THUMBNAIL_HEIGHT = ImportResourceApi.BATCHITEM_THUMBNAIL_HEIGHT;
 
     public ImportBatchItemDataSource() {
         setID(ID);
@@ -94,7 +98,17 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
         DataSourceField pageIndex = new DataSourceField(FIELD_PAGE_INDEX, FieldType.INTEGER, "Page Index");
         DataSourceField pageNumber = new DataSourceField(FIELD_PAGE_NUMBER, FieldType.TEXT, "Page Number");
 
-        setFields(pid, batchId, timestamp, filename, user, model, preview, thumbnail, pageIndex, pageNumber, pageType, pageTypeLabel);
+        DataSourceIntegerField thumbnailSprite = new DataSourceIntegerField(FIELD_THUMBNAIL_SPRITE);
+        thumbnailSprite.setHidden(true);
+        DataSourceIntegerField thumbnailTop = new DataSourceIntegerField(FIELD_THUMBNAIL_TOP);
+        thumbnailTop.setHidden(true);
+        DataSourceIntegerField thumbnailWidth = new DataSourceIntegerField(FIELD_THUMBNAIL_WIDTH);
+        thumbnailWidth.setHidden(true);
+        DataSourceIntegerField thumbnailHeight = new DataSourceIntegerField(FIELD_THUMBNAIL_HEIGHT);
+        thumbnailHeight.setHidden(true);
+
+        setFields(pid, batchId, timestamp, filename, user, model, preview, thumbnail, pageIndex, pageNumber, pageType, pageTypeLabel,
+                thumbnailSprite, thumbnailTop, thumbnailWidth, thumbnailHeight);
 
         setOperationBindings(RestConfig.createDeleteOperation());
 
@@ -123,6 +137,28 @@ public final class ImportBatchItemDataSource extends ProarcDataSource {
         }
     }
 
+    /**
+     * Gets HTML of the item thumbnail. Packed thumbnails are cut from the shared
+     * sprite image so that the browser fetches thumbnails of many items at once.
+     * @param record batch item
+     * @return HTML
+     */
+    public static String getThumbnailHtml(Record record) {
+        Integer sprite = record.getAttributeAsInt(FIELD_THUMBNAIL_SPRITE);
+        if (sprite == null) {
+            return ClientUtils.format("<img src='%s?%s'>",
+                    RestConfig.URL_DIGOBJECT_THUMBNAIL, record.getAttribute(FIELD_THUMBNAIL));
+        }
+        String spriteUrl = ClientUtils.format("%s?%s=%s&%s=%s",
+                RestConfig.URL_IMPORT_BATCH_ITEM_THUMBNAILS,
+                ImportResourceApi.BATCHITEM_BATCHID, record.getAttribute(FIELD_BATCHID),
+                ImportResourceApi.BATCHITEM_THUMBNAILS_SPRITE, sprite);
+        return ClientUtils.format("<div style='width:%spx; height:%spx; margin:auto;"
+                + " background:url(\"%s\") 0 -%spx no-repeat;'></div>",
+                record.getAttributeAsInt(FIELD_THUMBNAIL_WIDTH), record.getAttributeAsInt(FIELD_THUMBNAIL_HEIGHT),
+                spriteUrl, record.getAttributeAsInt(FIELD_THUMBNAIL_TOP));
+    }
+
     /**
      * Removes list of digital objects from the given batch import.
      * @param callback callback to get the result
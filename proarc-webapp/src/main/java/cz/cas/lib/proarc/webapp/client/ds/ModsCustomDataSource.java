@@ -184,6 +184,26 @@ public final class ModsCustomDataSource extends ProarcDataSource implements Mods
         updateData(customRecord, callback, callback.getUpdateRequest());
     }
 
+    /**
+     * Updates index, number or type of many pages in a single request.
+     *
+     * @param update the record with {@code DigitalObjectResourceApi.MODS_PAGES_*} attributes
+     *          and the ordered selection of page PIDs
+     * @param call the callback notified with {@code true} on success
+     */
+    public void updatePages(Record update, final BooleanCallback call) {
+        DSRequest request = new DSRequest();
+        request.setActionURL(RestConfig.URL_DIGOBJECT_MODS_PAGES);
+        request.setShowPrompt(false);
+        updateData(update, new DSCallback() {
+
+            @Override
+            public void execute(DSResponse response, Object rawData, DSRequest request) {
+                call.execute(RestConfig.isStatusOk(response));
+            }
+        }, request);
+    }
+
     public static class DescriptionMetadata {
 
         private Record wrapper;
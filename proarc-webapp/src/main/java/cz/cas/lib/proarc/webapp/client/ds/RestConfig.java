@@ -55,6 +55,8 @@ public final class RestConfig {
     public static final String URL_IMPORT_FOLDER = path(URL_IMPORT, ImportResourceApi.FOLDER_PATH);
     public static final String URL_IMPORT_BATCH = path(URL_IMPORT, ImportResourceApi.BATCH_PATH);
     public static final String URL_IMPORT_BATCH_ITEM = path(URL_IMPORT_BATCH, ImportResourceApi.BATCHITEM_PATH);
+    public static final String URL_IMPORT_BATCH_ITEM_THUMBNAILS = path(
+            URL_IMPORT_BATCH_ITEM, ImportResourceApi.BATCHITEM_THUMBNAILS_PATH);
     public static final String URL_DIGOBJECT =  path(URL_ROOT, DigitalObjectResourceApi.PATH);
     public static final String URL_DIGOBJECT_ATM =  path(URL_DIGOBJECT, DigitalObjectResourceApi.ATM_PATH);
     public static final String URL_DIGOBJECT_CHILDREN =  path(URL_DIGOBJECT, DigitalObjectResourceApi.MEMBERS_PATH);
@@ -70,6 +72,8 @@ public final class RestConfig {
             URL_DIGOBJECT_MODS, DigitalObjectResourceApi.MODS_CUSTOM_PATH);
     public static final String URL_DIGOBJECT_MODS_PLAIN = path(
             URL_DIGOBJECT_MODS, DigitalObjectResourceApi.MODS_PLAIN_PATH);
+    public static final String URL_DIGOBJECT_MODS_PAGES = path(
+            URL_DIGOBJECT_MODS, DigitalObjectResourceApi.MODS_PAGES_PATH);
     public static final String URL_DIGOBJECT_OCR = path(URL_DIGOBJECT, DigitalObjectResourceApi.OCR_PATH);
     public static final String URL_DIGOBJECT_PREVIEW = path(URL_DIGOBJECT, DigitalObjectResourceApi.PREVIEW_PATH);
     public static final String URL_DIGOBJECT_PRIVATE_NOTE = path(
@@ -78,6 +82,9 @@ public final class RestConfig {
     public static final String URL_DIGOBJECT_SEARCH =  path(URL_DIGOBJECT, DigitalObjectResourceApi.SEARCH_PATH);
     public static final String URL_DIGOBJECT_STREAMPROFILE = path(URL_DIGOBJECT, DigitalObjectResourceApi.STREAMPROFILE_PATH);
     public static final String URL_DIGOBJECT_THUMBNAIL = path(URL_DIGOBJECT, DigitalObjectResourceApi.THUMB_PATH);
+    public static final String URL_DIGOBJECT_TILE = path(URL_DIGOBJECT, DigitalObjectResourceApi.TILE_PATH);
+    public static final String URL_DIGOBJECT_TILE_INFO = path(
+            URL_DIGOBJECT_TILE, DigitalObjectResourceApi.TILE_INFO_PATH);
     public static final String URL_DIGOBJECT_URNNBN =  path(
             URL_DIGOBJECT, DigitalObjectResourceApi.URNNBN_PATH);
     public static final String URL_LOCALIZATION =  path(URL_ROOT, LocalizationResourceApi.PATH);
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.client.ds;
+
+import com.smartgwt.client.data.fields.DataSourceIntegerField;
+import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi;
+
+/**
+ * Gets dimensions of page images to display them as tiles.
+ *
+ * @author Jan Pokorsky
+ */
+public class TileInfoDataSource extends ProarcDataSource {
+
+    public static final String ID = "TileInfoDataSource";
+    public static final String FIELD_WIDTH = DigitalObjectResourceApi.TILE_INFO_WIDTH;
+    public static final String FIELD_HEIGHT = DigitalObjectResourceApi.TILE_INFO_HEIGHT;
+    public static final String FIELD_TILESIZE = DigitalObjectResourceApi.TILE_INFO_TILESIZE;
+
+    private static TileInfoDataSource INSTANCE;
+
+    public static TileInfoDataSource getInstance() {
+        if (INSTANCE == null) {
+            INSTANCE = new TileInfoDataSource();
+        }
+        return INSTANCE;
+    }
+
+    public TileInfoDataSource() {
+        setID(ID);
+        setDataURL(RestConfig.URL_DIGOBJECT_TILE_INFO);
+        setFields(new DataSourceIntegerField(FIELD_WIDTH),
+                new DataSourceIntegerField(FIELD_HEIGHT),
+                new DataSourceIntegerField(FIELD_TILESIZE));
+        setRequestProperties(RestConfig.createRestRequest(getDataFormat()));
+    }
+
+}
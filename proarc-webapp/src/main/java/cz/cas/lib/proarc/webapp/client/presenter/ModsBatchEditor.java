@@ -38,7 +38,7 @@ import cz.cas.lib.proarc.webapp.client.widget.BatchDatastreamEditor;
 import cz.cas.lib.proarc.webapp.client.widget.CopyPageMetadataWidget;
 import cz.cas.lib.proarc.webapp.client.widget.PageMetadataEditor;
 import cz.cas.lib.proarc.webapp.client.widget.ProgressTracker;
-import java.util.Iterator;
+import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi;
 
 /**
  * Support for batch edits of MODS of digital objects.
@@ -178,6 +178,15 @@ public final class ModsBatchEditor extends AbstractDatastreamEditor implements B
             execute();
         }
 
+        /**
+         * Marks all items as processed.
+         */
+        public void nextAll() {
+            index = length;
+            getProgress().setProgress(index, length);
+            execute();
+        }
+
         public void stop(String reason) {
             stop = true;
             errorMsg = reason;
@@ -258,18 +267,12 @@ public final class ModsBatchEditor extends AbstractDatastreamEditor implements B
     }
 
     /**
-     * Generates metadata for selected digital objects.
+     * Generates metadata for selected digital objects. The selection is
+     * updated on the server in a single request.
      */
     private static class GenerateJob extends BatchJob {
 
         private final PageMetadataEditor editor;
-        /** An increment of the job item index used to process only required pages. */
-        private int batchApplyTo;
-        /** If {@code 0} then values are applied from the first item, otherwise use {@code 1}. */
-        private int batchApplyFromFirstItem;
-        private Integer batchIndexStart;
-        private Iterator<String> batchSequence;
-        private String batchNumberFormat;
         private Canvas panel;
 
         public GenerateJob(final ModsBatchEditor editor) {
@@ -309,27 +312,9 @@ public final class ModsBatchEditor extends AbstractDatastreamEditor implements B
         @Override
         protected void init() {
             super.init();
-            batchIndexStart = null;
-            batchSequence = null;
-            batchNumberFormat = "%s";
-            if (editor.getAllowPageIndexes()) {
-                batchIndexStart = editor.getIndexStart();
-            }
-            if (editor.getAllowPageNumbers()) {
-                batchSequence = editor.getSequence();
-                String prefix = editor.getPrefix();
-                String suffix = editor.getSuffix();
-                if (prefix != null) {
-                    batchNumberFormat = prefix + batchNumberFormat;
-                }
-                if (suffix != null) {
-                    batchNumberFormat += suffix;
-                }
-            }
-            batchApplyTo = editor.getApplyTo();
-            batchApplyFromFirstItem = editor.getApplyFromFirstItem() ? 0 : 1;
-            if (batchApplyTo > getSelection().length) {
-                stop(i18n.PageMetadataEditor_ApplyToErrOutOfBounds_Msg(String.valueOf(batchApplyTo)));
+            int applyTo = editor.getApplyTo();
+            if (applyTo > getSelection().length) {
+                stop(i18n.PageMetadataEditor_ApplyToErrOutOfBounds_Msg(String.valueOf(applyTo)));
             }
         }
 
@@ -353,54 +338,53 @@ public final class ModsBatchEditor extends AbstractDatastreamEditor implements B
 
         @Override
         protected void processStep() {
-            if ((getCurrentIndex() + batchApplyFromFirstItem) % batchApplyTo == 0) {
-                fetchMods(getCurrent());
-            } else {
-                next();
-            }
-        }
-
-        private void fetchMods(final DigitalObject dobj) {
-            ModsCustomDataSource.getInstance().fetchDescription(dobj, new Callback<DescriptionMetadata, String>() {
-
-                @Override
-                public void onFailure(String reason) {
-                    stop(reason);
-                }
+            ModsCustomDataSource.getInstance().updatePages(createUpdate(), new BooleanCallback() {
 
                 @Override
-                public void onSuccess(DescriptionMetadata result) {
-                    updatePage(result);
+                public void execute(Boolean value) {
+                    if (value != null && value) {
+                        nextAll();
+                    } else {
+                        stop("Update failed!");
+                    }
                 }
-            }, false);
+            });
         }
 
-        private void updatePage(DescriptionMetadata description) {
-            Record customModsRecord = description.getDescription();
-            // fill data
-//            RPCManager.startQueue();
+        private Record createUpdate() {
+            DigitalObject[] selection = getSelection();
+            String[] pids = new String[selection.length];
+            for (int i = 0; i < selection.length; i++) {
+                pids[i] = selection[i].getPid();
+            }
+            Record update = new Record();
+            update.setAttribute(ModsCustomDataSource.FIELD_PID, pids);
+            String batchId = selection[0].getBatchId();
+            if (batchId != null) {
+                update.setAttribute(ModsCustomDataSource.FIELD_BATCHID, batchId);
+            }
+            update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_APPLYTO, editor.getApplyTo());
+            update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_APPLYTOFIRST, editor.getApplyFromFirstItem());
             if (editor.getAllowPageIndexes()) {
-                String old = customModsRecord.getAttributeAsString(ModsCustomDataSource.FIELD_PAGE_INDEX);
-                String newVal = batchIndexStart == null ? null : String.valueOf(batchIndexStart++);
-                newVal = (old != null && newVal == null) ? "" : newVal;
-                customModsRecord.setAttribute(ModsCustomDataSource.FIELD_PAGE_INDEX, newVal);
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_UPDATEINDEX, true);
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_INDEXSTART, editor.getIndexStart());
             }
             if (editor.getAllowPageNumbers()) {
-                String old = customModsRecord.getAttributeAsString(ModsCustomDataSource.FIELD_PAGE_NUMBER);
-                String newVal = batchSequence != null
-                        ? ClientUtils.format(batchNumberFormat, batchSequence.next())
-                        : ClientUtils.format(batchNumberFormat, "");
-                newVal = newVal.isEmpty() ? null : newVal;
-                newVal = (old != null && newVal == null) ? "" : newVal;
-                customModsRecord.setAttribute(ModsCustomDataSource.FIELD_PAGE_NUMBER, newVal);
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_UPDATENUMBER, true);
+                if (editor.getSequence() != null) {
+                    update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_NUMBERSERIES, editor.getSeriesType());
+                    update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_NUMBERSTART, editor.getNumberStart());
+                    update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_NUMBERINCREMENT, editor.getIncrement());
+                }
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_NUMBERPREFIX, editor.getPrefix());
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_NUMBERSUFFIX, editor.getSuffix());
             }
             if (editor.getAllowPageTypes()) {
-                String pageType = editor.getPageType();
-                customModsRecord.setAttribute(ModsCustomDataSource.FIELD_PAGE_TYPE, pageType);
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_UPDATETYPE, true);
+                update.setAttribute(DigitalObjectResourceApi.MODS_PAGES_TYPE, editor.getPageType());
             }
-            ClientUtils.removeNulls(customModsRecord);
-//            RPCManager.sendQueue();
-            saveMods(description);
+            ClientUtils.removeNulls(update);
+            return update;
         }
 
     }
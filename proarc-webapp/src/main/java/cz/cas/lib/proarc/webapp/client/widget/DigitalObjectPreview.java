@@ -46,6 +46,8 @@ import com.smartgwt.client.widgets.events.DrawEvent;
 import com.smartgwt.client.widgets.events.DrawHandler;
 import com.smartgwt.client.widgets.events.ResizedEvent;
 import com.smartgwt.client.widgets.events.ResizedHandler;
+import com.smartgwt.client.widgets.events.ScrolledEvent;
+import com.smartgwt.client.widgets.events.ScrolledHandler;
 import com.smartgwt.client.widgets.form.DynamicForm;
 import com.smartgwt.client.widgets.form.ValuesManager;
 import com.smartgwt.client.widgets.form.fields.SelectItem;
@@ -55,6 +57,7 @@ import com.smartgwt.client.widgets.layout.Layout;
 import com.smartgwt.client.widgets.layout.VLayout;
 import cz.cas.lib.proarc.webapp.client.ClientMessages;
 import cz.cas.lib.proarc.webapp.client.ClientUtils;
+import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.logging.Level;
@@ -124,6 +127,18 @@ public final class DigitalObjectPreview {
         }
     }
 
+    /**
+     * Shows the large image composed of tiles. Only tiles visible
+     * in the panel are loaded.
+     * @param tileUrl URL of tiles with the object parameters
+     * @param width image width
+     * @param height image height
+     * @param tileSize tile size in pixels
+     */
+    public void showTiles(String tileUrl, int width, int height, int tileSize) {
+        previewLoadTask.loadTiles(tileUrl, width, height, tileSize);
+    }
+
     /**
      * Gets widget to zoom image in the preview panel.
      * @return
@@ -252,7 +267,7 @@ public final class DigitalObjectPreview {
      * @param container image container
      * @param image image
      */
-    private static void addContainerMoveListener(final Layout container, final Img image) {
+    private static void addContainerMoveListener(final Layout container, final Canvas image) {
         final int[] lastX = { 0 };
         final int[] lastY = { 0 };
         final Cursor[] cursor = new Cursor[1];
@@ -357,13 +372,16 @@ public final class DigitalObjectPreview {
      * Loads the image to get its parameters in order to zoom and layout it properly.
      */
     private static final class ImageLoadTask extends Timer implements
-            LoadHandler, ErrorHandler, DrawHandler, ResizedHandler {
+            LoadHandler, ErrorHandler, DrawHandler, ResizedHandler, ScrolledHandler {
 
         private final Layout imgContainer;
         private final Layout display;
         private Image image;
         private HandlerRegistration drawHandler;
         private HandlerRegistration resizedHandler;
+        private HandlerRegistration scrolledHandler;
+        /** The tiled image or {@code null}. */
+        private Tiles tiles;
         private Zoom zoom;
         private final boolean focus;
         private final ClientMessages i18n;
@@ -408,6 +426,7 @@ public final class DigitalObjectPreview {
         public void load(String url, String mime) {
             stop();
             loadFailed = false;
+            tiles = null;
             if (SUPPORTED_IMAGES.contains(mime)) {
                 loadImage(url);
             } else {
@@ -446,6 +465,23 @@ public final class DigitalObjectPreview {
             ClientUtils.setMembers(display, objectWidget);
         }
 
+        /**
+         * Shows the tiled image.
+         */
+        public void loadTiles(String url, int width, int height, int tileSize) {
+            stop();
+            loadFailed = false;
+            image = null;
+            tiles = new Tiles(url, width, height, tileSize);
+            ClientUtils.setMembers(display, imgContainer);
+            imgContainer.removeMembers(imgContainer.getMembers());
+            drawHandler = imgContainer.addDrawHandler(this);
+            resizedHandler = imgContainer.addResizedHandler(this);
+            scrolledHandler = imgContainer.addScrolledHandler(this);
+            ClientUtils.fine(LOG, "loadTiles url: %s, width: %s, height: %s", url, width, height);
+            scheduleForRender();
+        }
+
         /**
          * Shows a resource as the {@code <img>} element.
          */
@@ -481,6 +517,10 @@ public final class DigitalObjectPreview {
                 drawHandler = null;
                 resizedHandler = null;
             }
+            if (scrolledHandler != null) {
+                scrolledHandler.removeHandler();
+                scrolledHandler = null;
+            }
             cancel();
             scrollHorizontal = (double) imgContainer.getScrollLeft() / (double) imgContainer.getWidth();
             scrollVertical = (double) imgContainer.getScrollTop() / (double) imgContainer.getHeight();
@@ -488,7 +528,7 @@ public final class DigitalObjectPreview {
         }
 
         private void scheduleForRender() {
-            if (image.getWidth() == 0) {
+            if (tiles == null && image.getWidth() == 0) {
                 return ;
             } else if (imgContainer.isDirty() || !imgContainer.isDrawn()) {
                 return ;
@@ -500,6 +540,10 @@ public final class DigitalObjectPreview {
             if (loadFailed) {
                 return ;
             }
+            if (tiles != null) {
+                renderTiles();
+                return ;
+            }
 
             double ratio = zoom.ratio(
                     imgContainer.getInnerWidth(), imgContainer.getInnerHeight(),
@@ -526,12 +570,76 @@ public final class DigitalObjectPreview {
             }
         }
 
+        /**
+         * Lays out the canvas of the image size and fills it with visible tiles
+         * of the level matching the zoom.
+         */
+        private void renderTiles() {
+            double ratio = zoom.ratio(
+                    imgContainer.getInnerWidth(), imgContainer.getInnerHeight(),
+                    tiles.width, tiles.height);
+            // leave room for scrollbars as the Img of the whole image does
+            int margin = imgContainer.getScrollbarSize() + 4;
+            ratio = Math.min((tiles.width * ratio - margin) / tiles.width,
+                    (tiles.height * ratio - margin) / tiles.height);
+            ratio = Math.max(ratio, 1d / Math.max(tiles.width, tiles.height));
+            tiles.setRatio(ratio);
+            int width = Math.max(1, (int) Math.ceil(tiles.width * ratio));
+            int height = Math.max(1, (int) Math.ceil(tiles.height * ratio));
+            log("renderTiles", width, height);
+            Canvas canvas = new Canvas();
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            canvas.setCanFocus(Boolean.TRUE);
+            tiles.canvas = canvas;
+            imgContainer.setMembers(canvas);
+            imgContainer.adjustForContent(true);
+            int scrollLeft = (int) (imgContainer.getWidth() * scrollHorizontal);
+            int scrollTop = (int) (imgContainer.getHeight() * scrollVertical);
+            imgContainer.scrollTo(scrollLeft, scrollTop);
+            addContainerMoveListener(imgContainer, canvas);
+            loadVisibleTiles();
+            if (focus) {
+                canvas.focus();
+            }
+        }
+
+        /**
+         * Adds tiles intersecting the viewport that have not been loaded yet.
+         */
+        private void loadVisibleTiles() {
+            if (tiles == null || tiles.canvas == null) {
+                return ;
+            }
+            int left = imgContainer.getScrollLeft();
+            int top = imgContainer.getScrollTop();
+            int right = left + imgContainer.getViewportWidth();
+            int bottom = top + imgContainer.getViewportHeight();
+            double displayTile = tiles.getRegionSize() * tiles.displayRatio;
+            int firstCol = Math.max(0, (int) (left / displayTile));
+            int firstRow = Math.max(0, (int) (top / displayTile));
+            int lastCol = Math.min(tiles.getColumns() - 1, (int) (right / displayTile));
+            int lastRow = Math.min(tiles.getRows() - 1, (int) (bottom / displayTile));
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int col = firstCol; col <= lastCol; col++) {
+                    Img tile = tiles.createTile(col, row);
+                    if (tile != null) {
+                        tiles.canvas.addChild(tile);
+                    }
+                }
+            }
+        }
+
         public void resize(Zoom zoom) {
             this.zoom = zoom;
             if (loadFailed) {
                 return ;
             }
-            if (image.getWidth() != 0) {
+            if (tiles != null) {
+                scrollHorizontal = (double) imgContainer.getScrollLeft() / (double) imgContainer.getWidth();
+                scrollVertical = (double) imgContainer.getScrollTop() / (double) imgContainer.getHeight();
+                renderTiles();
+            } else if (image.getWidth() != 0) {
                 final Canvas img = imgContainer.getMember(0);
                 scrollHorizontal = (double) imgContainer.getScrollLeft() / (double) imgContainer.getWidth();
                 scrollVertical = (double) imgContainer.getScrollTop() / (double) imgContainer.getHeight();
@@ -567,9 +675,9 @@ public final class DigitalObjectPreview {
                         + "\nsize[%s, %s], innerSize[%s, %s], innerContentSize[%s, %s], viewport[%s, %s], visible[%s, %s]"
                         + "\nscrollCurrent[%s, %s], scrollSize[%s, %s]",
                         msg,
-                        image.getUrl(),
+                        getUrl(),
                         imgContainer.getScrollbarSize(),
-                        image.getWidth(), image.getHeight(), (int) width, (int) height,
+                        getImageWidth(), getImageHeight(), (int) width, (int) height,
                         imgContainer.isVisible(), imgContainer.isDrawn(), imgContainer.isAttached(), imgContainer.isDirty(),
                         imgDebug,
                         imgContainer.getWidth(), imgContainer.getHeight(),
@@ -583,6 +691,18 @@ public final class DigitalObjectPreview {
             }
         }
 
+        private String getUrl() {
+            return tiles != null ? tiles.url : image.getUrl();
+        }
+
+        private int getImageWidth() {
+            return tiles != null ? tiles.width : image.getWidth();
+        }
+
+        private int getImageHeight() {
+            return tiles != null ? tiles.height : image.getHeight();
+        }
+
         @Override
         public void onLoad(LoadEvent event) {
             ClientUtils.fine(LOG, "image onLoad: %s", image.getUrl());
@@ -602,16 +722,21 @@ public final class DigitalObjectPreview {
 
         @Override
         public void onDraw(DrawEvent event) {
-            ClientUtils.fine(LOG, "image onDraw: %s", image.getUrl());
+            ClientUtils.fine(LOG, "image onDraw: %s", getUrl());
             scheduleForRender();
         }
 
         @Override
         public void onResized(ResizedEvent event) {
-            ClientUtils.fine(LOG, "image onResized: %s", image.getUrl());
+            ClientUtils.fine(LOG, "image onResized: %s", getUrl());
             scheduleForRender();
         }
 
+        @Override
+        public void onScrolled(ScrolledEvent event) {
+            loadVisibleTiles();
+        }
+
         @Override
         public void run() {
             render();
@@ -619,4 +744,84 @@ public final class DigitalObjectPreview {
 
     }
 
+    /**
+     * The image split to tiles. The level of tiles is selected with
+     * the largest power of 2 not exceeding the zoom out so that the browser
+     * never scales tiles up. Tile regions and sizes are computed the same way
+     * as on the server to hit the pregenerated tiles.
+     */
+    private static final class Tiles {
+
+        private final String url;
+        private final int width;
+        private final int height;
+        private final int tileSize;
+        private final HashSet<String> loaded = new HashSet<String>();
+        private Canvas canvas;
+        private double displayRatio;
+        private int scale;
+
+        Tiles(String url, int width, int height, int tileSize) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+            this.tileSize = tileSize;
+        }
+
+        /**
+         * Sets the displayed size to the image size ratio. It resets loaded tiles.
+         */
+        void setRatio(double ratio) {
+            displayRatio = ratio;
+            scale = 1;
+            while (scale * 2 <= 1 / ratio && tileSize * scale < Math.max(width, height)) {
+                scale *= 2;
+            }
+            loaded.clear();
+        }
+
+        /** Gets the tile size in image pixels. */
+        int getRegionSize() {
+            return tileSize * scale;
+        }
+
+        int getColumns() {
+            return (width + getRegionSize() - 1) / getRegionSize();
+        }
+
+        int getRows() {
+            return (height + getRegionSize() - 1) / getRegionSize();
+        }
+
+        /**
+         * Creates the tile widget.
+         * @return the tile or {@code null} if already loaded
+         */
+        Img createTile(int col, int row) {
+            String key = col + "," + row;
+            if (!loaded.add(key)) {
+                return null;
+            }
+            int regionSize = getRegionSize();
+            int x = col * regionSize;
+            int y = row * regionSize;
+            int w = Math.min(regionSize, width - x);
+            int h = Math.min(regionSize, height - y);
+            String tileUrl = ClientUtils.format("%s&%s=%s,%s,%s,%s&%s=%s,",
+                    url, DigitalObjectResourceApi.TILE_REGION, x, y, w, h,
+                    DigitalObjectResourceApi.TILE_SIZE, (w + scale - 1) / scale);
+            int left = (int) Math.floor(x * displayRatio);
+            int top = (int) Math.floor(y * displayRatio);
+            // round the far edges so that neighbouring tiles do not leave gaps
+            int tileWidth = Math.max(1, (int) Math.ceil((x + w) * displayRatio) - left);
+            int tileHeight = Math.max(1, (int) Math.ceil((y + h) * displayRatio) - top);
+            Img tile = new Img(tileUrl, tileWidth, tileHeight);
+            tile.setImageType(ImageStyle.STRETCH);
+            tile.setLeft(left);
+            tile.setTop(top);
+            return tile;
+        }
+
+    }
+
 }
@@ -550,8 +550,13 @@ public final class ImportBatchItemEditor extends HLayout implements Selectable<R
             }
         });
         final DetailViewerField dvfThumbnail = new DetailViewerField(ImportBatchItemDataSource.FIELD_THUMBNAIL);
-        dvfThumbnail.setImageURLPrefix(RestConfig.URL_DIGOBJECT_THUMBNAIL + "?");
-        dvfThumbnail.setType("image");
+        dvfThumbnail.setDetailFormatter(new DetailFormatter() {
+
+            @Override
+            public String format(Object value, Record record, DetailViewerField field) {
+                return ImportBatchItemDataSource.getThumbnailHtml(record);
+            }
+        });
         thumbGrid.setFields(dvfThumbnail, dvfPageIndex);
         // TileLayoutPolicy.FLOW does not work as expected
         // thumbGrid.setLayoutPolicy(TileLayoutPolicy.FLOW);
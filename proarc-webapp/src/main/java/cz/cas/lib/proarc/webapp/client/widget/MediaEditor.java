@@ -17,6 +17,10 @@
 package cz.cas.lib.proarc.webapp.client.widget;
 
 import com.smartgwt.client.data.Criteria;
+import com.smartgwt.client.data.DSCallback;
+import com.smartgwt.client.data.DSRequest;
+import com.smartgwt.client.data.DSResponse;
+import com.smartgwt.client.data.Record;
 import com.smartgwt.client.data.ResultSet;
 import com.smartgwt.client.data.SortSpecifier;
 import com.smartgwt.client.types.Alignment;
@@ -48,8 +52,12 @@ import cz.cas.lib.proarc.webapp.client.ds.RelationDataSource;
 import cz.cas.lib.proarc.webapp.client.ds.RestConfig;
 import cz.cas.lib.proarc.webapp.client.ds.StreamProfileDataSource;
 import cz.cas.lib.proarc.webapp.client.ds.StreamProfileDataSource.StreamProfile;
+import cz.cas.lib.proarc.webapp.client.ds.TileInfoDataSource;
 import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Edits data streams containing digitized multimedia content.
@@ -59,6 +67,8 @@ import java.util.ArrayList;
 public final class MediaEditor implements DatastreamEditor, Refreshable {
 
     private static String REFRESH;
+    /** Streams of large images displayed as tiles. */
+    private static final Set<String> TILED_STREAMS = new HashSet<String>(Arrays.asList("FULL", "RAW"));
 
     private final ClientMessages i18n;
     private final DigitalObjectPreview doPreview;
@@ -286,12 +296,52 @@ public final class MediaEditor implements DatastreamEditor, Refreshable {
             }
             imgParams = sb.toString();
             String previewUrl = buildResourceUrl(RestConfig.URL_DIGOBJECT_DISSEMINATION, imgParams);
-            doPreview.show(previewUrl, stream.getMime());
+            if (TILED_STREAMS.contains(stream.getId())) {
+                showTiles(previewUrl, stream.getMime());
+            } else {
+                doPreview.show(previewUrl, stream.getMime());
+            }
         } else {
             doPreview.show(null);
         }
     }
 
+    /**
+     * Shows the large image as tiles. It falls back to the whole stream
+     * in case the server cannot read the image.
+     */
+    private void showTiles(final String previewUrl, final String mime) {
+        final String params = imgParams;
+        Criteria criteria = new Criteria(DigitalObjectResourceApi.DIGITALOBJECT_PID, digitalObject.getPid());
+        String batchId = digitalObject.getBatchId();
+        if (batchId != null) {
+            criteria.addCriteria(DigitalObjectResourceApi.BATCHID_PARAM, batchId);
+        }
+        DSRequest dsRequest = new DSRequest();
+        dsRequest.setWillHandleError(true);
+        TileInfoDataSource.getInstance().fetchData(criteria, new DSCallback() {
+
+            @Override
+            public void execute(DSResponse response, Object rawData, DSRequest request) {
+                if (!params.equals(imgParams)) {
+                    // another stream has been selected meanwhile
+                    return ;
+                }
+                Record[] data = response.getData();
+                if (RestConfig.isStatusOk(response) && data != null && data.length == 1) {
+                    String tileParams = imgParams.replaceFirst(
+                            "&" + DigitalObjectResourceApi.DISSEMINATION_DATASTREAM + "=[^&]*", "");
+                    doPreview.showTiles(buildResourceUrl(RestConfig.URL_DIGOBJECT_TILE, tileParams),
+                            data[0].getAttributeAsInt(TileInfoDataSource.FIELD_WIDTH),
+                            data[0].getAttributeAsInt(TileInfoDataSource.FIELD_HEIGHT),
+                            data[0].getAttributeAsInt(TileInfoDataSource.FIELD_TILESIZE));
+                } else {
+                    doPreview.show(previewUrl, mime);
+                }
+            }
+        }, dsRequest);
+    }
+
     private String getObjectTitle() {
         String label = digitalObject.getRecord().getAttribute(DigitalObjectResourceApi.MEMBERS_ITEM_LABEL);
         MetaModelRecord model = digitalObject.getModel();
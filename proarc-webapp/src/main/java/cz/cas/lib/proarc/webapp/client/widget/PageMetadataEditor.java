@@ -472,28 +472,32 @@ public final class PageMetadataEditor {
         if (start == null || increment == null || !numberStart.validate() || !numberIncrement.validate()) {
             return null;
         }
+        return Series.create(getSeriesType(type), start, increment);
+    }
+
+    /**
+     * Gets the {@link Series} type of the selected numbering.
+     */
+    public String getSeriesType() {
+        return getSeriesType(seriesType.getValueAsString());
+    }
+
+    private static String getSeriesType(String type) {
         if (ARABIC_SERIES.equals(type)) {
-            Integer arabicStart = getInt(start);
-            return arabicStart == null ? null : Series.arabic(arabicStart, increment).iterator();
-        } else if (ROMAN_UPPER_SERIES.equals(type) || ROMAN_LOWER_SERIES.equals(type)) {
-            boolean upperCase = ROMAN_UPPER_SERIES.equals(type);
-            if (Series.validRoman(start)) {
-                return Series.roman(start, increment, upperCase).iterator();
-            } else {
-                Integer romanStart = getPositiveInt(start);
-                return romanStart == null ? null : Series.roman(romanStart, increment, upperCase).iterator();
-            }
-        } else if (ALPHABET_UPPER_SERIES.equals(type) || ALPHABET_LOWER_SERIES.equals(type)) {
-            boolean upperCase = ALPHABET_UPPER_SERIES.equals(type);
-            if (!Series.validAlphabet(start) || Math.abs(increment) > 26) {
-                return null;
-            }
-            return Series.alphabet(start, increment, upperCase).iterator();
+            return Series.TYPE_ARABIC;
+        } else if (ROMAN_UPPER_SERIES.equals(type)) {
+            return Series.TYPE_ROMAN_UPPER;
+        } else if (ROMAN_LOWER_SERIES.equals(type)) {
+            return Series.TYPE_ROMAN_LOWER;
+        } else if (ALPHABET_UPPER_SERIES.equals(type)) {
+            return Series.TYPE_ALPHABET_UPPER;
+        } else if (ALPHABET_LOWER_SERIES.equals(type)) {
+            return Series.TYPE_ALPHABET_LOWER;
         }
         throw new IllegalStateException(type);
     }
 
-    private Integer getIncrement() {
+    public Integer getIncrement() {
         return getInt(getNormalizedString(numberIncrement.getValueAsString()));
     }
 
@@ -508,11 +512,6 @@ public final class PageMetadataEditor {
         }
     }
 
-    private static Integer getPositiveInt(String value) {
-        Integer result = getInt(value);
-        return result == null || result < 1 ? null : result;
-    }
-
     /**
      * Workaround for {@link IntegerItem#getValueAsInteger() } that fails in
      * the development mode. (SmartGWT 2.5)
@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.webapp.server;
 
 import cz.cas.lib.proarc.authentication.Authenticators;
+import cz.cas.lib.proarc.common.catalog.Z3950Catalog;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationException;
 import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
@@ -24,11 +25,16 @@ import cz.cas.lib.proarc.common.dao.DaoFactory;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireConfiguration;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireDaoFactory;
 import cz.cas.lib.proarc.common.fedora.FedoraStorageInitializer;
+import cz.cas.lib.proarc.common.fedora.PurgeJobManager;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.imports.DerivativeStore;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager;
 import cz.cas.lib.proarc.common.imports.ImportDispatcher;
 import cz.cas.lib.proarc.common.imports.ImportProcess;
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.metrics.MetricsJmx;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
+import cz.cas.lib.proarc.common.object.DisseminationCache;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import cz.cas.lib.proarc.common.sql.DbUtils;
 import cz.cas.lib.proarc.common.user.UserManager;
@@ -37,12 +43,14 @@ import cz.cas.lib.proarc.common.workflow.WorkflowManager;
 import cz.cas.lib.proarc.common.workflow.profile.WorkflowProfiles;
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -88,12 +96,16 @@ public final class ProarcInitializer {
         initProarcModel(config);
         DataSource proarcSource = initProarcDb();
         initUsers(config, proarcSource, daoFactory);
+        initDerivativeStore(config);
         initImport(config, daoFactory);
         DigitalObjectManager.setDefault(new DigitalObjectManager(
                 config, ImportBatchManager.getInstance(), null,
                 MetaModelRepository.getInstance(), UserUtil.getDefaultManger()));
         Authenticators.setInstance(new Authenticators(config.getAuthenticators()));
         initWorkflow(config, daoFactory, UserUtil.getDefaultManger());
+        initDisseminationCache(config);
+        initPurgeJobs(config);
+        initMetrics(config);
         asyncTask = executor.submit(new Callable<Void>() {
 
             @Override
@@ -112,6 +124,9 @@ public final class ProarcInitializer {
 //        LOG.info("Destroing " + AppConfiguration.FULL_VERSION);
         ImportDispatcher importDispatcher = ImportDispatcher.getDefault();
         importDispatcher.stop();
+        PurgeJobManager.getInstance().stop();
+        Z3950Catalog.closePools();
+        MetricsJmx.unregister(ManagementFactory.getPlatformMBeanServer());
         daoFactory = null;
     }
 
@@ -124,6 +139,7 @@ public final class ProarcInitializer {
         FedoraStorageInitializer rsi = new FedoraStorageInitializer(RemoteStorage.getInstance());
         rsi.init();
         UserUtil.initDefaultAdmin();
+        PurgeJobManager.getInstance().resumeAll(RemoteStorage.getInstance());
     }
 
     /**
@@ -180,6 +196,52 @@ public final class ProarcInitializer {
         ImportProcess.resumeAll(ibm, importDispatcher, config);
     }
 
+    private void initDerivativeStore(AppConfiguration config) {
+        DerivativeStore.Options options = config.getDerivativeStoreOptions();
+        try {
+            DerivativeStore.setInstance(DerivativeStore.create(options));
+        } catch (IOException ex) {
+            // the store is optional
+            LOG.log(Level.WARNING, "The import derivative store is disabled: " + options, ex);
+        }
+    }
+
+    private void initDisseminationCache(AppConfiguration config) {
+        DisseminationCache.Options options = config.getDisseminationCacheOptions();
+        try {
+            DisseminationCache.setInstance(DisseminationCache.create(options));
+        } catch (IOException ex) {
+            // the cache is optional
+            LOG.log(Level.WARNING, "The dissemination cache is disabled: " + options, ex);
+        }
+        try {
+            DisseminationCache.setMasterInstance(DisseminationCache.createMasters(options));
+        } catch (IOException ex) {
+            // the store is optional
+            LOG.log(Level.WARNING, "The image master store is disabled: " + options, ex);
+        }
+    }
+
+    private void initPurgeJobs(AppConfiguration config) {
+        try {
+            PurgeJobManager.setInstance(new PurgeJobManager(config.getPurgeJobFolder(), config.getPurgeThreads()));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void initMetrics(AppConfiguration config) {
+        try {
+            // registers Fedora client statistics
+            RemoteStorage.getInstance(config);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Fedora client metrics are not available.", ex);
+        }
+        if (config.isMetricsJmx()) {
+            MetricsJmx.register(ManagementFactory.getPlatformMBeanServer(), Metrics.getInstance());
+        }
+    }
+
     private void initWorkflow(AppConfiguration config, DaoFactory daoFactory, UserManager users) {
         try {
             File workflowFile = config.getWorkflowConfiguration();
@@ -77,4 +77,20 @@ public abstract class AnnotatedPageViewItem extends Item {
     @Override
     public abstract String getLabel();
 
+    @XmlElement(name = ImportResourceApi.BATCHITEM_THUMBNAIL_SPRITE)
+    @Override
+    public abstract Integer getThumbnailSprite();
+
+    @XmlElement(name = ImportResourceApi.BATCHITEM_THUMBNAIL_TOP)
+    @Override
+    public abstract Integer getThumbnailTop();
+
+    @XmlElement(name = ImportResourceApi.BATCHITEM_THUMBNAIL_WIDTH)
+    @Override
+    public abstract Integer getThumbnailWidth();
+
+    @XmlElement(name = ImportResourceApi.BATCHITEM_THUMBNAIL_HEIGHT)
+    @Override
+    public abstract Integer getThumbnailHeight();
+
 }
@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.webapp.server.rest;
 
 import cz.cas.lib.proarc.common.catalog.BibliographicCatalog;
+import cz.cas.lib.proarc.common.catalog.FederatedCatalog;
 import cz.cas.lib.proarc.common.catalog.MetadataItem;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationException;
@@ -31,8 +32,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
@@ -57,6 +61,8 @@ import javax.xml.transform.TransformerException;
 public class BibliographicCatalogResource {
 
     private static final Logger LOG = Logger.getLogger(BibliographicCatalogResource.class.getName());
+    /** The maximum time to wait for new records of the federated query. */
+    private static final long FEDERATED_POLL_TIMEOUT = TimeUnit.SECONDS.toMillis(20);
     private final HttpHeaders httpHeaders;
     private final AppConfiguration appConfig;
 
@@ -120,6 +126,77 @@ public class BibliographicCatalogResource {
         return new MetadataList(result);
     }
 
+    /**
+     * Finds metadata in all or selected bibliographic catalogs at once.
+     * Catalogs not supporting the field are skipped. The query runs
+     * in the background and the response is sent as soon as the first records
+     * arrive; remaining records are read with {@link #pollFederated}.
+     *
+     * @param catalogs IDs of catalogs to query; all catalogs if empty
+     * @param fieldName issn|isbn|ccnb
+     * @param value value to query
+     * @return the query ID, records arrived so far without duplicates,
+     *      pending catalogs and catalogs that failed or timed out
+     */
+    @Path(BibliographicCatalogResourceApi.FEDERATED_FIND_PATH)
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public MetadataList findFederated(
+            @QueryParam(BibliographicCatalogResourceApi.FIND_CATALOG_PARAM) List<String> catalogs,
+            @QueryParam(BibliographicCatalogResourceApi.FIND_FIELDNAME_PARAM) String fieldName,
+            @QueryParam(BibliographicCatalogResourceApi.FIND_VALUE_PARAM) String value) throws IOException {
+
+        List<Locale> acceptableLanguages = httpHeaders.getAcceptableLanguages();
+        Locale locale = acceptableLanguages.isEmpty() ? null : acceptableLanguages.get(0);
+        FederatedCatalog federated = appConfig.getCatalogs().findFederatedCatalog(catalogs, fieldName);
+        FederatedCatalog.Query query = federated.start(fieldName, value, locale);
+        return poll(query, 0);
+    }
+
+    /**
+     * Gets records of the federated query that arrived after the already read
+     * ones. It waits until a new record arrives or no catalog is pending.
+     *
+     * @param queryId the query ID returned by {@link #findFederated}
+     * @param from the number of already read records
+     * @return the newer records, pending catalogs and catalogs that failed
+     *      or timed out
+     */
+    @Path(BibliographicCatalogResourceApi.FEDERATED_POLL_PATH)
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public MetadataList pollFederated(
+            @QueryParam(BibliographicCatalogResourceApi.FEDERATED_QUERY_ID) String queryId,
+            @QueryParam(BibliographicCatalogResourceApi.FEDERATED_FROM_PARAM) @DefaultValue("0") int from
+            ) throws IOException {
+
+        FederatedCatalog.Query query = queryId == null ? null : FederatedCatalog.getQuery(queryId);
+        if (query == null) {
+            throw RestException.plainText(Status.NOT_FOUND, "Unknown query: " + queryId);
+        }
+        return poll(query, from);
+    }
+
+    private static MetadataList poll(FederatedCatalog.Query query, int from) throws IOException {
+        FederatedCatalog.Results results;
+        try {
+            results = query.poll(from, FEDERATED_POLL_TIMEOUT);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        MetadataList list = new MetadataList(results.getItems());
+        list.queryId = query.getId();
+        list.pending = results.getPending();
+        if (!results.getFailures().isEmpty()) {
+            list.failures = new ArrayList<CatalogFailure>();
+            for (Map.Entry<String, String> failure : results.getFailures().entrySet()) {
+                list.failures.add(new CatalogFailure(failure.getKey(), failure.getValue()));
+            }
+        }
+        return list;
+    }
+
     @XmlAccessorType(XmlAccessType.FIELD)
     public static class CatalogDescriptor {
 
@@ -177,6 +254,15 @@ public class BibliographicCatalogResource {
 
         @XmlElement(name = "entry")
         List<MetadataItem> list;
+        /** The ID to poll the federated query. */
+        @XmlElement(name = BibliographicCatalogResourceApi.FEDERATED_QUERY_ID)
+        String queryId;
+        /** Catalogs of the federated query without response yet. */
+        @XmlElement(name = BibliographicCatalogResourceApi.FEDERATED_PENDING)
+        List<String> pending;
+        /** Catalogs of the federated query without results. */
+        @XmlElement(name = BibliographicCatalogResourceApi.FEDERATED_FAILURE)
+        List<CatalogFailure> failures;
 
         public MetadataList() {
         }
@@ -187,6 +273,24 @@ public class BibliographicCatalogResource {
 
     }
 
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class CatalogFailure {
+
+        @XmlElement(name = BibliographicCatalogResourceApi.FEDERATED_FAILURE_CATALOG)
+        private String catalog;
+        @XmlElement(name = BibliographicCatalogResourceApi.FEDERATED_FAILURE_MESSAGE)
+        private String message;
+
+        public CatalogFailure(String catalog, String message) {
+            this.catalog = catalog;
+            this.message = message;
+        }
+
+        public CatalogFailure() {
+        }
+
+    }
+
 //    @XmlRootElement
 //    @XmlAccessorType(XmlAccessType.FIELD)
 //    public static class Criterion {
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.server.rest;
+
+import cz.cas.lib.proarc.common.sql.DbRoundTrips;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Logs the number of database round trips per REST request, see {@link DbRoundTrips}.
+ * Enable the {@code FINE} level of this logger to check that cached lookups
+ * like permissions do not query the database in the steady state.
+ *
+ * @author Jan Pokorsky
+ */
+@Provider
+public final class DbRoundTripFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOG = Logger.getLogger(DbRoundTripFilter.class.getName());
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        DbRoundTrips.reset();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        int count = DbRoundTrips.reset();
+        if (LOG.isLoggable(Level.FINE)) {
+            LOG.log(Level.FINE, "{0} {1}: {2} DB round trips, {3} total",
+                    new Object[] {request.getMethod(), request.getUriInfo().getPath(),
+                        count, DbRoundTrips.getTotal()});
+        }
+    }
+
+}
@@ -35,8 +35,9 @@ import cz.cas.lib.proarc.common.fedora.FedoraObject;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.LocalStorage;
 import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.PageView.PageViewItem;
 import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject;
-import cz.cas.lib.proarc.common.fedora.PurgeFedoraObject.PurgeException;
+import cz.cas.lib.proarc.common.fedora.PurgeJobManager;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.SearchView;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
@@ -53,7 +54,10 @@ import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager.CreateHandler;
 import cz.cas.lib.proarc.common.object.DisseminationHandler;
 import cz.cas.lib.proarc.common.object.DisseminationInput;
+import cz.cas.lib.proarc.common.object.ImageTiles;
+import cz.cas.lib.proarc.common.object.MemberUpdater;
 import cz.cas.lib.proarc.common.object.MetadataHandler;
+import cz.cas.lib.proarc.common.object.PageUpdater;
 import cz.cas.lib.proarc.common.object.model.MetaModel;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import cz.cas.lib.proarc.common.urnnbn.UrnNbnConfiguration;
@@ -72,6 +76,7 @@ import cz.cas.lib.proarc.webapp.server.ServerMessages;
 import cz.cas.lib.proarc.webapp.server.rest.SmartGwtResponse.ErrorBuilder;
 import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi;
 import cz.cas.lib.proarc.webapp.shared.rest.DigitalObjectResourceApi.SearchType;
+import cz.cas.lib.proarc.webapp.shared.series.Series;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -81,6 +86,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -226,6 +233,11 @@ public class DigitalObjectResource {
                         seriesDaysIncluded, seriesPartNumberFrom);
             }
             List<Item> items = handler.create();
+            if (!handler.getFailures().isEmpty()) {
+                // the created issues are already members of the parent
+                return SmartGwtResponse.asError(String.format("Created %s issues. Failed issues: %s",
+                        items.size(), handler.getFailures().keySet()));
+            }
             return new SmartGwtResponse<>(items);
         } catch (DigitalObjectExistException ex) {
             return SmartGwtResponse.<Item>asError().error("pid", "Object already exists!").build();
@@ -233,7 +245,10 @@ public class DigitalObjectResource {
     }
 
     /**
+     * Schedules the deletion. The returned objects hold the ID of the background
+     * job to query its progress with {@link #getDeletion}.
      * @see PurgeFedoraObject
+     * @see PurgeJobManager
      */
     @DELETE
     @Produces({MediaType.APPLICATION_JSON})
@@ -243,23 +258,42 @@ public class DigitalObjectResource {
             @DefaultValue("true") boolean hierarchy,
             @QueryParam(DigitalObjectResourceApi.DELETE_PURGE_PARAM)
             @DefaultValue("false") boolean purge
-            ) throws IOException, PurgeException {
+            ) throws IOException {
 
         RemoteStorage fedora = RemoteStorage.getInstance(appConfig);
         ArrayList<DigitalObject> result = new ArrayList<DigitalObject>(pids.size());
-        PurgeFedoraObject service = new PurgeFedoraObject(fedora);
         if (purge) {
             session.requirePermission(Permissions.ADMIN);
-            service.purge(pids, hierarchy, session.asFedoraLog());
-        } else {
-            service.delete(pids, hierarchy, session.asFedoraLog());
         }
+        PurgeJobManager.Job job = PurgeJobManager.getInstance().submit(
+                fedora, pids, hierarchy, purge, session.asFedoraLog());
         for (String pid : pids) {
-            result.add(new DigitalObject(pid, null));
+            DigitalObject dobj = new DigitalObject(pid, null);
+            dobj.jobId = job.getId();
+            result.add(dobj);
         }
         return new SmartGwtResponse<DigitalObject>(result);
     }
 
+    /**
+     * Gets the progress of the deletion job.
+     * @param jobId the job ID returned by {@link #deleteObject}
+     * @return the job state with done and total counts of hierarchy levels
+     */
+    @GET
+    @Path(DigitalObjectResourceApi.DELETION_PATH)
+    @Produces({MediaType.APPLICATION_JSON})
+    public SmartGwtResponse<DeletionResult> getDeletion(
+            @QueryParam(DigitalObjectResourceApi.DELETION_JOB_ID) String jobId
+            ) {
+
+        PurgeJobManager.Job job = jobId == null ? null : PurgeJobManager.getInstance().getJob(jobId);
+        if (job == null) {
+            throw RestException.plainText(Status.NOT_FOUND, "Unknown deletion: " + jobId);
+        }
+        return new SmartGwtResponse<DeletionResult>(new DeletionResult(job));
+    }
+
     @GET
     @Path(DigitalObjectResourceApi.SEARCH_PATH)
     @Produces({MediaType.APPLICATION_JSON})
@@ -509,6 +543,26 @@ public class DigitalObjectResource {
         return memberSearchMap;
     }
 
+    /**
+     * Fetches descriptions of the parent's children with a single query
+     * instead of querying the index for each page of PIDs.
+     * @param parentPid PID of the parent
+     * @param pids children to search
+     * @return the map of found PIDs and descriptions
+     */
+    private Map<String, Item> loadChildItems(String parentPid, Set<String> pids) throws IOException, FedoraClientException {
+        RemoteStorage storage = RemoteStorage.getInstance(appConfig);
+        SearchView search = storage.getSearch(session.getLocale(httpHeaders));
+        HashMap<String, Item> memberSearchMap = new HashMap<String, Item>(pids.size());
+        for (Item item : search.findChildren(parentPid)) {
+            if (pids.contains(item.getPid())) {
+                memberSearchMap.put(item.getPid(), item);
+            }
+        }
+        checkSearchedMembers(pids, memberSearchMap);
+        return memberSearchMap;
+    }
+
     private Map<String, Item> loadLocalSearchItems(Batch batch) throws IOException, DigitalObjectException {
         if (batch == null) {
             throw new NullPointerException();
@@ -573,46 +627,13 @@ public class DigitalObjectResource {
 
         // XXX loadLocalSearchItems
         Map<String, Item> memberSearchMap = loadSearchItems(addPidSet);
-        DigitalObjectHandler handler = findHandler(parentPid, batchId, false);
-        List<Item> added = addMembers(handler, toAddPids, memberSearchMap);
-        handler.commit();
-        return new SmartGwtResponse<Item>(added);
-    }
-
-    private List<Item> addMembers(DigitalObjectHandler parent,
-            List<String> toAddPids,
-            Map<String, Item> memberSearchMap
-            ) throws DigitalObjectException {
-
-        String parentPid = parent.getFedoraObject().getPid();
-        HashSet<String> toAddPidSet = new HashSet<String>(toAddPids);
-        ArrayList<Item> added = new ArrayList<Item>(toAddPidSet.size());
-        if (toAddPidSet.isEmpty()) {
-            return added;
-        }
-        RelationEditor editor = parent.relations();
-        List<String> members = editor.getMembers();
-        // add new members
-        for (String addPid : toAddPids) {
-            if (!members.contains(addPid)) {
-                members.add(addPid);
-                Item item = memberSearchMap.get(addPid);
-                if (item == null) {
-                    throw RestException.plainNotFound("pid", toAddPidSet.toString());
-                }
-                item.setParentPid(parentPid);
-                added.add(item);
-            } else {
-                throw RestException.plainText(Status.BAD_REQUEST,
-                        parentPid + " already contains: " + addPid);
-            }
-        }
-        // write if any change
-        if (!added.isEmpty()) {
-            editor.setMembers(members);
-            editor.write(editor.getLastModified(), session.asFedoraLog());
+        Batch batch = batchId == null ? null : importManager.get(batchId);
+        try {
+            createMemberUpdater(batch).add(parentPid, toAddPids);
+        } catch (DigitalObjectValidationException ex) {
+            throw RestException.plainText(Status.BAD_REQUEST, ex.getMessage());
         }
-        return added;
+        return new SmartGwtResponse<Item>(toMemberItems(parentPid, toAddPids, memberSearchMap));
     }
 
     /**
@@ -646,9 +667,12 @@ public class DigitalObjectResource {
             return new SmartGwtResponse<Item>(Collections.<Item>emptyList());
         }
 
-        DigitalObjectHandler parent = findHandler(parentPid, batchId, false);
-        deleteMembers(parent, toRemovePidSet);
-        parent.commit();
+        Batch batch = batchId == null ? null : importManager.get(batchId);
+        try {
+            createMemberUpdater(batch).remove(parentPid, toRemovePidSet);
+        } catch (DigitalObjectValidationException ex) {
+            throw RestException.plainText(Status.BAD_REQUEST, ex.getMessage());
+        }
 
         ArrayList<Item> removed = new ArrayList<Item>(toRemovePidSet.size());
         for (String removePid : toRemovePidSet) {
@@ -661,27 +685,24 @@ public class DigitalObjectResource {
     }
 
     /**
-     * Removes given children from a parent.
-     * <p><b>Requires handler commit!</b>
-     * @param parent parent PID
-     * @param toRemovePidSet PIDs of children to remove
+     * Creates the updater of parent members. Parents of a batch import
+     * must be editable.
      */
-    private void deleteMembers(DigitalObjectHandler parent, Set<String> toRemovePidSet) throws DigitalObjectException {
-        RelationEditor editor = parent.relations();
-        List<String> members = editor.getMembers();
-        // check that PIDs being removed are members of parent object
-        HashSet<String> toRemovePidSetCopy = new HashSet<String>(toRemovePidSet);
-        toRemovePidSetCopy.removeAll(members);
-        if (!toRemovePidSetCopy.isEmpty()) {
-            String msg = String.format("Parent: %s does not contain members: %s",
-                    parent.getFedoraObject().getPid(), toRemovePidSetCopy.toString());
-            throw RestException.plainText(Status.BAD_REQUEST, msg);
-        }
-        // remove
-        if (members.removeAll(toRemovePidSet)) {
-            editor.setMembers(members);
-            editor.write(editor.getLastModified(), session.asFedoraLog());
+    private MemberUpdater createMemberUpdater(Batch batch) {
+        if (batch != null) {
+            ImportResource.checkBatchState(batch);
         }
+        return new MemberUpdater(DigitalObjectManager.getDefault(), batch, session.asFedoraLog());
+    }
+
+    private static List<Item> toMemberItems(String parentPid, List<String> pids, Map<String, Item> memberSearchMap) {
+        ArrayList<Item> items = new ArrayList<Item>(pids.size());
+        for (String pid : pids) {
+            Item item = memberSearchMap.get(pid);
+            item.setParentPid(parentPid);
+            items.add(item);
+        }
+        return items;
     }
 
     /**
@@ -753,18 +774,16 @@ public class DigitalObjectResource {
         }
 
         Batch batch = batchId == null ? null : importManager.get(batchId);
-        DigitalObjectHandler srcHandler = findHandler(srcParentPid, batch, false);
-        deleteMembers(srcHandler, movePidSet);
-
         // XXX loadLocalSearchItems
-        Map<String, Item> memberSearchMap = loadSearchItems(movePidSet);
-        DigitalObjectHandler dstHandler = findHandler(dstParentPid, batch, false);
-        List<Item> added = addMembers(dstHandler, movePids, memberSearchMap);
-
-        srcHandler.commit();
-        dstHandler.commit();
-        SmartGwtResponse<Item> result = new SmartGwtResponse<Item>(added);
-        return result;
+        Map<String, Item> memberSearchMap = batch == null
+                ? loadChildItems(srcParentPid, movePidSet)
+                : loadSearchItems(movePidSet);
+        try {
+            createMemberUpdater(batch).move(srcParentPid, dstParentPid, movePids);
+        } catch (DigitalObjectValidationException ex) {
+            throw RestException.plainText(Status.BAD_REQUEST, ex.getMessage());
+        }
+        return new SmartGwtResponse<Item>(toMemberItems(dstParentPid, movePids, memberSearchMap));
     }
 
     @GET
@@ -894,6 +913,120 @@ public class DigitalObjectResource {
         return new SmartGwtResponse<DescriptionMetadata<Object>>(mHandler.getMetadataAsJsonObject(editorId));
     }
 
+    /**
+     * Updates index, number and type of selected pages in one request.
+     * It replaces the client side loop that fetched and saved each page.
+     *
+     * @param pids ordered selection of pages
+     * @param batchId optional batch import ID
+     * @param applyTo updates every n-th page of the selection
+     * @param applyToFirstPage whether to start with the first page or with the n-th page
+     * @param updateIndex whether to set page indexes
+     * @param indexStart the first page index; {@code null} removes indexes
+     * @param updateNumber whether to set page numbers
+     * @param numberSeries the type of numbering, see {@link Series#create}; {@code null}
+     *          sets just the prefix and suffix
+     * @param numberStart the first number of the series
+     * @param numberIncrement the increment of the series
+     * @param numberPrefix optional prefix of page numbers
+     * @param numberSuffix optional suffix of page numbers
+     * @param updateType whether to set page types
+     * @param pageType the page type; {@code null} removes the type
+     * @return the updated pages
+     */
+    @PUT
+    @Path(DigitalObjectResourceApi.MODS_PATH + '/' + DigitalObjectResourceApi.MODS_PAGES_PATH)
+    @Produces({MediaType.APPLICATION_JSON})
+    public SmartGwtResponse<DigitalObject> updatePages(
+            @FormParam(DigitalObjectResourceApi.DIGITALOBJECT_PID) List<String> pids,
+            @FormParam(DigitalObjectResourceApi.BATCHID_PARAM) Integer batchId,
+            @DefaultValue("1")
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_APPLYTO) int applyTo,
+            @DefaultValue("true")
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_APPLYTOFIRST) boolean applyToFirstPage,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_UPDATEINDEX) boolean updateIndex,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_INDEXSTART) Integer indexStart,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_UPDATENUMBER) boolean updateNumber,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_NUMBERSERIES) String numberSeries,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_NUMBERSTART) String numberStart,
+            @DefaultValue("1")
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_NUMBERINCREMENT) int numberIncrement,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_NUMBERPREFIX) String numberPrefix,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_NUMBERSUFFIX) String numberSuffix,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_UPDATETYPE) boolean updateType,
+            @FormParam(DigitalObjectResourceApi.MODS_PAGES_TYPE) String pageType
+            ) throws IOException, DigitalObjectException {
+
+        if (pids == null || pids.isEmpty()) {
+            throw RestException.plainNotFound(DigitalObjectResourceApi.DIGITALOBJECT_PID, null);
+        }
+        if (applyTo < 1 || applyTo > pids.size()) {
+            throw RestException.plainText(Status.BAD_REQUEST,
+                    "Invalid " + DigitalObjectResourceApi.MODS_PAGES_APPLYTO + ": " + applyTo);
+        }
+        if (new HashSet<String>(pids).size() != pids.size()) {
+            throw RestException.plainText(Status.BAD_REQUEST, "Duplicate pages in the request!");
+        }
+        Iterator<String> numbers = null;
+        if (updateNumber && numberSeries != null) {
+            try {
+                numbers = Series.create(numberSeries, numberStart == null ? null : numberStart.trim(), numberIncrement);
+            } catch (IllegalArgumentException ex) {
+                numbers = null;
+            }
+            if (numbers == null) {
+                throw RestException.plainText(Status.BAD_REQUEST, "Invalid numbering: "
+                        + numberSeries + ", " + numberStart + ", " + numberIncrement);
+            }
+        }
+        Batch batch = null;
+        if (batchId != null) {
+            batch = importManager.get(batchId);
+            if (batch == null) {
+                throw RestException.plainNotFound(DigitalObjectResourceApi.BATCHID_PARAM, String.valueOf(batchId));
+            }
+            ImportResource.checkBatchState(batch);
+        }
+
+        // the same numbering as the client side PageMetadataEditor
+        int applyOffset = applyToFirstPage ? 0 : 1;
+        Integer index = indexStart;
+        LinkedHashMap<String, PageViewItem> pages = new LinkedHashMap<String, PageViewItem>();
+        for (int i = 0; i < pids.size(); i++) {
+            if ((i + applyOffset) % applyTo != 0) {
+                continue;
+            }
+            PageViewItem page = new PageViewItem();
+            if (updateIndex) {
+                page.setPageIndex(index == null ? "" : String.valueOf(index++));
+            }
+            if (updateNumber) {
+                StringBuilder number = new StringBuilder();
+                if (numberPrefix != null) {
+                    number.append(numberPrefix);
+                }
+                if (numbers != null) {
+                    number.append(numbers.next());
+                }
+                if (numberSuffix != null) {
+                    number.append(numberSuffix);
+                }
+                page.setPageNumber(number.toString());
+            }
+            if (updateType) {
+                page.setPageType(pageType == null ? "" : pageType);
+            }
+            pages.put(pids.get(i), page);
+        }
+
+        new PageUpdater(DigitalObjectManager.getDefault()).update(pages, batch, session.asFedoraLog());
+        ArrayList<DigitalObject> result = new ArrayList<DigitalObject>(pages.size());
+        for (String pid : pages.keySet()) {
+            result.add(new DigitalObject(pid, null));
+        }
+        return new SmartGwtResponse<DigitalObject>(result);
+    }
+
     <T> SmartGwtResponse<T> toError(DigitalObjectValidationException ex) {
         if (ex.getValidations().isEmpty()) {
             return SmartGwtResponse.asError(ex);
@@ -1050,7 +1183,7 @@ public class DigitalObjectResource {
 
         DigitalObjectHandler doHandler = findHandler(pid, batchId);
         DisseminationHandler dissemination = doHandler.dissemination(dsId);
-        return dissemination.getDissemination(httpRequest);
+        return dissemination.getDissemination(httpRequest, httpHeaders);
     }
 
     /**
@@ -1155,6 +1288,80 @@ public class DigitalObjectResource {
         return getDissemination(pid, batchId, BinaryEditor.THUMB_ID);
     }
 
+    /**
+     * Gets a JPEG tile of the page image.
+     *
+     * @param pid PID (required)
+     * @param batchId import batch ID (optional)
+     * @param region the IIIF region, {@code full} or {@code x,y,w,h}
+     * @param size the IIIF size, {@code full}, {@code w,}, {@code ,h}, {@code w,h} or {@code !w,h}
+     * @return the tile
+     */
+    @GET
+    @Path(DigitalObjectResourceApi.TILE_PATH)
+    @Produces("image/jpeg")
+    public Response getTile(
+            @QueryParam(DigitalObjectResourceApi.DIGITALOBJECT_PID) String pid,
+            @QueryParam(DigitalObjectResourceApi.BATCHID_PARAM) Integer batchId,
+            @QueryParam(DigitalObjectResourceApi.TILE_REGION) String region,
+            @QueryParam(DigitalObjectResourceApi.TILE_SIZE) String size
+            ) throws IOException, DigitalObjectException {
+
+        if (pid == null || pid.isEmpty()) {
+            throw RestException.plainNotFound(DigitalObjectResourceApi.DIGITALOBJECT_PID, pid);
+        }
+        FedoraObject fo = findFedoraObject(pid, batchId, true);
+        try {
+            return new ImageTiles(fo).getTile(region, size, httpRequest);
+        } catch (IllegalArgumentException ex) {
+            throw RestException.plainText(Status.BAD_REQUEST, ex.getMessage());
+        }
+    }
+
+    /**
+     * Gets dimensions of the page image to request its tiles.
+     *
+     * @param pid PID (required)
+     * @param batchId import batch ID (optional)
+     * @return the image info
+     */
+    @GET
+    @Path(DigitalObjectResourceApi.TILE_PATH + '/' + DigitalObjectResourceApi.TILE_INFO_PATH)
+    @Produces({MediaType.APPLICATION_JSON})
+    public SmartGwtResponse<TileInfoResult> getTileInfo(
+            @QueryParam(DigitalObjectResourceApi.DIGITALOBJECT_PID) String pid,
+            @QueryParam(DigitalObjectResourceApi.BATCHID_PARAM) Integer batchId
+            ) throws IOException, DigitalObjectException {
+
+        if (pid == null || pid.isEmpty()) {
+            throw RestException.plainNotFound(DigitalObjectResourceApi.DIGITALOBJECT_PID, pid);
+        }
+        FedoraObject fo = findFedoraObject(pid, batchId, true);
+        ImageTiles.Info info = new ImageTiles(fo).getInfo();
+        return new SmartGwtResponse<TileInfoResult>(TileInfoResult.from(info));
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class TileInfoResult {
+        @XmlElement(name = DigitalObjectResourceApi.TILE_INFO_WIDTH)
+        private int width;
+        @XmlElement(name = DigitalObjectResourceApi.TILE_INFO_HEIGHT)
+        private int height;
+        @XmlElement(name = DigitalObjectResourceApi.TILE_INFO_TILESIZE)
+        private int tileSize;
+
+        public static TileInfoResult from(ImageTiles.Info info) {
+            TileInfoResult r = new TileInfoResult();
+            r.width = info.getWidth();
+            r.height = info.getHeight();
+            r.tileSize = info.getTileSize();
+            return r;
+        }
+
+        public TileInfoResult() {
+        }
+    }
+
     @GET
     @Path(DigitalObjectResourceApi.MODS_PATH + '/' + DigitalObjectResourceApi.MODS_PLAIN_PATH)
     @Produces(MediaType.APPLICATION_JSON)
@@ -1340,7 +1547,7 @@ public class DigitalObjectResource {
                                 DigitalObjectResourceApi.URNNBN_RESOLVER, resolverId));
             }
             ResolverClient resolverClient = config.getClient(resolverConfig);
-            UrnNbnService service = new UrnNbnService(resolverClient);
+            UrnNbnService service = new UrnNbnService(resolverClient, resolverConfig.getThreads());
             UrnNbnStatusHandler status = service.register(pids, hierarchy);
             for (Entry<String, PidResult> entry : status.getPids().entrySet()) {
                 PidResult pidResult = entry.getValue();
@@ -1359,6 +1566,55 @@ public class DigitalObjectResource {
         return new SmartGwtResponse<UrnNbnResult>(result);
     }
 
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class DeletionResult {
+
+        @XmlElement(name = DigitalObjectResourceApi.DELETION_JOB_ID)
+        private String jobId;
+
+        @XmlElement(name = DigitalObjectResourceApi.DELETION_ITEM_STATE)
+        private PurgeJobManager.State state;
+
+        @XmlElement(name = DigitalObjectResourceApi.DELETION_ITEM_ERROR)
+        private String error;
+
+        @XmlElement(name = DigitalObjectResourceApi.DELETION_ITEM_LEVELS)
+        private List<LevelResult> levels;
+
+        public DeletionResult() {
+        }
+
+        public DeletionResult(PurgeJobManager.Job job) {
+            this.jobId = job.getId();
+            this.state = job.getState();
+            this.error = job.getError();
+            this.levels = new ArrayList<LevelResult>();
+            for (PurgeFedoraObject.LevelProgress level : job.getProgress()) {
+                levels.add(new LevelResult(level.getDone(), level.getTotal()));
+            }
+        }
+
+    }
+
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class LevelResult {
+
+        @XmlElement(name = DigitalObjectResourceApi.DELETION_LEVEL_DONE)
+        private int done;
+
+        @XmlElement(name = DigitalObjectResourceApi.DELETION_LEVEL_TOTAL)
+        private int total;
+
+        public LevelResult() {
+        }
+
+        public LevelResult(int done, int total) {
+            this.done = done;
+            this.total = total;
+        }
+
+    }
+
     @XmlAccessorType(XmlAccessType.FIELD)
     public static class UrnNbnResult {
 
@@ -1506,6 +1762,8 @@ public class DigitalObjectResource {
         private String pid;
         @XmlElement(name = DigitalObjectResourceApi.DIGITALOBJECT_MODEL)
         private String model;
+        @XmlElement(name = DigitalObjectResourceApi.DELETE_JOB_ID)
+        private String jobId;
 
         public DigitalObject(String pid, String model) {
             this.pid = pid;
@@ -96,7 +96,8 @@ public class ExportResource {
     public SmartGwtResponse<ExportResult> datastream(
             @FormParam(ExportResourceApi.DATASTREAM_PID_PARAM) List<String> pids,
             @FormParam(ExportResourceApi.DATASTREAM_DSID_PARAM) List<String> dsIds,
-            @FormParam(ExportResourceApi.DATASTREAM_HIERARCHY_PARAM) @DefaultValue("true") boolean hierarchy
+            @FormParam(ExportResourceApi.DATASTREAM_HIERARCHY_PARAM) @DefaultValue("true") boolean hierarchy,
+            @FormParam(ExportResourceApi.DATASTREAM_TARGET_PARAM) String resumeTarget
             ) throws IOException, ExportException {
 
         if (pids.isEmpty()) {
@@ -105,10 +106,28 @@ public class ExportResource {
         if (dsIds.isEmpty()) {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.DATASTREAM_DSID_PARAM);
         }
-        DataStreamExport export = new DataStreamExport(RemoteStorage.getInstance(appConfig));
+        DataStreamExport export = new DataStreamExport(
+                RemoteStorage.getInstance(appConfig), appConfig.getDataStreamExportThreads());
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
-        File target = export.export(exportFolder, hierarchy, pids, dsIds);
+        File target;
+        if (resumeTarget == null || resumeTarget.isEmpty()) {
+            target = export.export(exportFolder, hierarchy, pids, dsIds);
+        } else {
+            // the target of the previous result is relative to the user home
+            File previous;
+            try {
+                previous = new File(user.getUserHomeUri().resolve(resumeTarget)).getCanonicalFile();
+            } catch (IllegalArgumentException ex) {
+                previous = null;
+            }
+            if (previous == null || !previous.isDirectory()
+                    || !exportFolder.getCanonicalFile().equals(previous.getParentFile())) {
+                throw RestException.plainText(Status.BAD_REQUEST,
+                        "Invalid " + ExportResourceApi.DATASTREAM_TARGET_PARAM + ": " + resumeTarget);
+            }
+            target = export.resume(previous, hierarchy, pids, dsIds);
+        }
         URI targetPath = user.getUserHomeUri().relativize(target.toURI());
         return new SmartGwtResponse<ExportResult>(new ExportResult(targetPath));
     }
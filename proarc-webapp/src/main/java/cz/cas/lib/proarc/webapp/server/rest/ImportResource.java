@@ -36,6 +36,7 @@ import cz.cas.lib.proarc.common.imports.ImportFileScanner;
 import cz.cas.lib.proarc.common.imports.ImportFileScanner.Folder;
 import cz.cas.lib.proarc.common.imports.ImportProcess;
 import cz.cas.lib.proarc.common.imports.ImportProfile;
+import cz.cas.lib.proarc.common.imports.ThumbnailPack;
 import cz.cas.lib.proarc.common.user.UserProfile;
 import cz.cas.lib.proarc.webapp.server.ServerMessages;
 import cz.cas.lib.proarc.webapp.shared.rest.ImportResourceApi;
@@ -62,8 +63,12 @@ import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriInfo;
@@ -326,6 +331,49 @@ public class ImportResource {
         return new SmartGwtResponse<Item>(SmartGwtResponse.STATUS_SUCCESS, startRow, endRow, totalRows, records);
     }
 
+    /**
+     * Gets thumbnails of consecutive batch items as a single image.
+     * Batch items describe the sprite and the position of their thumbnails.
+     *
+     * @param batchId batch ID
+     * @param sprite sprite number
+     * @return the JPEG image
+     */
+    @GET
+    @Path(ImportResourceApi.BATCH_PATH + '/' + ImportResourceApi.BATCHITEM_PATH
+            + '/' + ImportResourceApi.BATCHITEM_THUMBNAILS_PATH)
+    @Produces("image/jpeg")
+    public Response getThumbnailSprite(
+            @QueryParam(ImportResourceApi.BATCHITEM_BATCHID) Integer batchId,
+            @QueryParam(ImportResourceApi.BATCHITEM_THUMBNAILS_SPRITE) Integer sprite,
+            @Context Request request
+            ) throws IOException {
+
+        if (batchId == null) {
+            throw RestException.plainNotFound(ImportResourceApi.BATCHITEM_BATCHID, null);
+        }
+        if (sprite == null) {
+            throw RestException.plainNotFound(ImportResourceApi.BATCHITEM_THUMBNAILS_SPRITE, null);
+        }
+        Batch batch = importManager.get(batchId);
+        if (batch == null) {
+            throw RestException.plainNotFound(ImportResourceApi.BATCHITEM_BATCHID, String.valueOf(batchId));
+        }
+        ThumbnailPack pack = importManager.getThumbnailPack(batch);
+        ThumbnailPack.Index index = pack.getIndex();
+        String tag = index.getSpriteTag(sprite);
+        if (tag == null) {
+            throw RestException.plainNotFound(ImportResourceApi.BATCHITEM_THUMBNAILS_SPRITE, String.valueOf(sprite));
+        }
+        EntityTag etag = new EntityTag(tag);
+        ResponseBuilder rb = request.evaluatePreconditions(etag);
+        if (rb == null) {
+            File spriteFile = pack.getSpriteFile(index, sprite);
+            rb = Response.ok(spriteFile != null ? spriteFile : pack.getSprite(index, sprite), "image/jpeg");
+        }
+        return rb.tag(etag).build();
+    }
+
     @DELETE
     @Path(ImportResourceApi.BATCH_PATH + '/' + ImportResourceApi.BATCHITEM_PATH)
     @Produces(MediaType.APPLICATION_JSON)
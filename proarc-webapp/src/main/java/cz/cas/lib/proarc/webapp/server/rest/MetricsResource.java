@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.server.rest;
+
+import cz.cas.lib.proarc.common.metrics.Metrics;
+import cz.cas.lib.proarc.common.user.Permissions;
+import cz.cas.lib.proarc.webapp.shared.rest.MetricsResourceApi;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Exposes application metrics in the Prometheus text format, see {@link Metrics}.
+ *
+ * @author Jan Pokorsky
+ */
+@Path(MetricsResourceApi.PATH)
+public class MetricsResource {
+
+    private final SessionContext session;
+
+    public MetricsResource(
+            @Context HttpServletRequest httpRequest
+            ) {
+        this.session = SessionContext.from(httpRequest);
+    }
+
+    @GET
+    @Produces(Metrics.TEXT_CONTENT_TYPE)
+    public StreamingOutput getMetrics() {
+        session.requirePermission(Permissions.ADMIN);
+        return new StreamingOutput() {
+
+            @Override
+            public void write(OutputStream output) throws IOException {
+                Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+                Metrics.getInstance().writeText(writer);
+                writer.flush();
+            }
+        };
+    }
+
+}
@@ -40,6 +40,8 @@ public final class SessionContext {
 
     private UserProfile user;
     private String ip;
+    /** Permissions of the user resolved once per request. */
+    private Set<Permission> grants;
 
     public SessionContext(UserProfile user, String ip) {
         this.user = user;
@@ -87,8 +89,10 @@ public final class SessionContext {
     }
 
     public boolean checkPermission(Permission... permissions) {
-        UserManager userManager = UserUtil.getDefaultManger();
-        Set<Permission> grants = userManager.findUserPermissions(user.getId());
+        if (grants == null) {
+            UserManager userManager = UserUtil.getDefaultManger();
+            grants = userManager.findUserPermissions(user.getId());
+        }
         return grants.containsAll(Arrays.asList(permissions));
     }
 
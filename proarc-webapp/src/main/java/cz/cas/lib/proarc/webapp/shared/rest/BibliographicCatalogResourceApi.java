@@ -29,6 +29,24 @@ public final class BibliographicCatalogResourceApi {
     public static final String FIND_FIELDNAME_PARAM = "fieldName";
     public static final String FIND_VALUE_PARAM = "value";
 
+    /**
+     * Queries more catalogs at once. {@link #FIND_CATALOG_PARAM} is optional and repeatable.
+     * It returns the first records with {@link #FEDERATED_QUERY_ID} and
+     * {@link #FEDERATED_PENDING} catalogs to {@link #FEDERATED_POLL_PATH poll}.
+     */
+    public static final String FEDERATED_FIND_PATH = "federatedQuery";
+    /** Polls the federated query for records following {@link #FEDERATED_FROM_PARAM}. */
+    public static final String FEDERATED_POLL_PATH = "federatedQuery/poll";
+    public static final String FEDERATED_QUERY_ID = "queryId";
+    /** The number of already read records of the federated query. */
+    public static final String FEDERATED_FROM_PARAM = "from";
+    /** Catalogs of the federated query without response yet. */
+    public static final String FEDERATED_PENDING = "pending";
+    /** Catalogs of the federated query that failed or timed out. */
+    public static final String FEDERATED_FAILURE = "failure";
+    public static final String FEDERATED_FAILURE_CATALOG = "catalog";
+    public static final String FEDERATED_FAILURE_MESSAGE = "message";
+
     public static final String CATALOG_ID = "id";
     public static final String CATALOG_NAME = "name";
     public static final String CATALOG_FIELDS = "fields";
@@ -39,6 +39,18 @@ public final class DigitalObjectResourceApi {
     public static final String DELETE_HIERARCHY_PARAM = "hierarchy";
     public static final String DELETE_PID_PARAM = DIGITALOBJECT_PID;
     public static final String DELETE_PURGE_PARAM = "purge";
+    /** The ID of the background job deleting the object. */
+    public static final String DELETE_JOB_ID = "jobId";
+
+    /** Resource /object/deletion to query the progress of the deletion job. */
+    public static final String DELETION_PATH = "deletion";
+    public static final String DELETION_JOB_ID = DELETE_JOB_ID;
+    public static final String DELETION_ITEM_STATE = "state";
+    public static final String DELETION_ITEM_ERROR = "error";
+    /** Levels of the hierarchy in the order of deletion, the deepest members first. */
+    public static final String DELETION_ITEM_LEVELS = "levels";
+    public static final String DELETION_LEVEL_TOTAL = "total";
+    public static final String DELETION_LEVEL_DONE = "done";
 
     public static final String SEARCH_PATH = "search";
     public static final String SEARCH_OWNER_PARAM = "owner";
@@ -119,6 +131,24 @@ public final class DigitalObjectResourceApi {
     // resource /object/mods/plain
     public static final String MODS_PLAIN_PATH = "plain";
 
+    // resource /object/mods/pages
+    public static final String MODS_PAGES_PATH = "pages";
+    /** Updates every n-th page of the selection. */
+    public static final String MODS_PAGES_APPLYTO = "applyTo";
+    /** Whether to start with the first page of the selection or with the n-th. */
+    public static final String MODS_PAGES_APPLYTOFIRST = "applyToFirstPage";
+    public static final String MODS_PAGES_UPDATEINDEX = "updateIndex";
+    public static final String MODS_PAGES_INDEXSTART = "indexStart";
+    public static final String MODS_PAGES_UPDATENUMBER = "updateNumber";
+    /** The type of numbering, see {@code Series.TYPE_*}. */
+    public static final String MODS_PAGES_NUMBERSERIES = "numberSeries";
+    public static final String MODS_PAGES_NUMBERSTART = "numberStart";
+    public static final String MODS_PAGES_NUMBERINCREMENT = "numberIncrement";
+    public static final String MODS_PAGES_NUMBERPREFIX = "numberPrefix";
+    public static final String MODS_PAGES_NUMBERSUFFIX = "numberSuffix";
+    public static final String MODS_PAGES_UPDATETYPE = "updateType";
+    public static final String MODS_PAGES_TYPE = "pageType";
+
     // StringRecord
     public static final String STRINGRECORD_ELEMENT = "record";
     public static final String STRINGRECORD_CONTENT = "content";
@@ -153,6 +183,19 @@ public final class DigitalObjectResourceApi {
     /** Resource /object/thumb */
     public static final String THUMB_PATH = "thumb";
 
+    /** Resource /object/tile */
+    public static final String TILE_PATH = "tile";
+    /** The IIIF region, {@code full} or {@code x,y,w,h}. */
+    public static final String TILE_REGION = "region";
+    /** The IIIF size, {@code full}, {@code w,}, {@code ,h}, {@code w,h} or {@code !w,h}. */
+    public static final String TILE_SIZE = "size";
+
+    /** Resource /object/tile/info */
+    public static final String TILE_INFO_PATH = "info";
+    public static final String TILE_INFO_WIDTH = "width";
+    public static final String TILE_INFO_HEIGHT = "height";
+    public static final String TILE_INFO_TILESIZE = "tileSize";
+
     /** Resource /object/atm */
     public static final String ATM_PATH = "atm";
     public static final String ATM_ITEM_BATCHID = ImportResourceApi.BATCHITEM_BATCHID;
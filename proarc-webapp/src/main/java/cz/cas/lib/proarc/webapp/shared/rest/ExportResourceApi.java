@@ -43,6 +43,8 @@ public final class ExportResourceApi {
     public static final String DATASTREAM_PID_PARAM = "pid";
     public static final String DATASTREAM_DSID_PARAM = "dsid";
     public static final String DATASTREAM_HIERARCHY_PARAM = "hierarchy";
+    /** The target of the interrupted export to resume, see {@link #RESULT_TARGET}. */
+    public static final String DATASTREAM_TARGET_PARAM = "target";
 
     public static final String DESA_PATH = "desa";
     public static final String DESA_DRYRUN_PARAM = "dryRun";
@@ -63,6 +63,10 @@ public final class ImportResourceApi {
     // resource /import/batch/item
     public static final String BATCHITEM_PATH = "item";
 
+    // resource /import/batch/item/thumbnails
+    public static final String BATCHITEM_THUMBNAILS_PATH = "thumbnails";
+    public static final String BATCHITEM_THUMBNAILS_SPRITE = "sprite";
+
     // BatchItem
     public static final String BATCHITEM_BATCHID = "batchId";
     public static final String BATCHITEM_FILENAME = "filename";
@@ -74,5 +78,9 @@ public final class ImportResourceApi {
     public static final String BATCHITEM_PAGETYPELABEL = "pageTypeLabel";
     public static final String BATCHITEM_TIMESTAMP = "timestamp";
     public static final String BATCHITEM_USER = "user";
+    public static final String BATCHITEM_THUMBNAIL_SPRITE = "thumbnailSprite";
+    public static final String BATCHITEM_THUMBNAIL_TOP = "thumbnailTop";
+    public static final String BATCHITEM_THUMBNAIL_WIDTH = "thumbnailWidth";
+    public static final String BATCHITEM_THUMBNAIL_HEIGHT = "thumbnailHeight";
 
 }
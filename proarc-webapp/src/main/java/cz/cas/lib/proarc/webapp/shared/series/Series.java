@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.webapp.shared.series;
 
 import com.google.gwt.regexp.shared.RegExp;
+import java.util.Iterator;
 //import java.util.regex.Pattern;
 
 /**
@@ -28,6 +29,13 @@ public final class Series {
     public static final String ALPHABET_REGEXP = "^[a-zA-Z]*$";
     public static final String ROMAN_REGEXP = "^M{0,10}(CM|CD|D?C{0,3})(XC|XL|L?X{0,3})(IX|IV|V?I{0,3})$";
 
+    /** Series types, see {@link #create}. */
+    public static final String TYPE_ALPHABET_LOWER = "alphabetLower";
+    public static final String TYPE_ALPHABET_UPPER = "alphabetUpper";
+    public static final String TYPE_ARABIC = "arabic";
+    public static final String TYPE_ROMAN_LOWER = "romanLower";
+    public static final String TYPE_ROMAN_UPPER = "romanUpper";
+
     private static final RegExp ALPHABET_PATTERN = RegExp.compile(ALPHABET_REGEXP);
 //    private static final Pattern ALPHABET_PATTERN = Pattern.compile(ALPHABET_REGEXP);
     private static final RegExp ROMAN_PATTERN = RegExp.compile(Series.ROMAN_REGEXP, "i");
@@ -49,6 +57,48 @@ public final class Series {
         return new RomanSeries(startAsRoman, increment, uppercase);
     }
 
+    /**
+     * Creates a series of the given type.
+     *
+     * @param type one of {@code TYPE_*} constants
+     * @param start the first item of the series; alphabet, roman or arabic numeral
+     * @param increment the increment
+     * @return the series or {@code null} in case of invalid start or increment
+     * @throws IllegalArgumentException unknown type
+     */
+    public static Iterator<String> create(String type, String start, int increment) {
+        if (start == null) {
+            return null;
+        }
+        if (TYPE_ARABIC.equals(type)) {
+            Integer arabicStart = getInt(start);
+            return arabicStart == null ? null : arabic(arabicStart, increment).iterator();
+        } else if (TYPE_ROMAN_UPPER.equals(type) || TYPE_ROMAN_LOWER.equals(type)) {
+            boolean upperCase = TYPE_ROMAN_UPPER.equals(type);
+            if (validRoman(start)) {
+                return roman(start, increment, upperCase).iterator();
+            } else {
+                Integer romanStart = getInt(start);
+                return romanStart == null || romanStart < 1 ? null : roman(romanStart, increment, upperCase).iterator();
+            }
+        } else if (TYPE_ALPHABET_UPPER.equals(type) || TYPE_ALPHABET_LOWER.equals(type)) {
+            boolean upperCase = TYPE_ALPHABET_UPPER.equals(type);
+            if (!validAlphabet(start) || Math.abs(increment) > 26) {
+                return null;
+            }
+            return alphabet(start, increment, upperCase).iterator();
+        }
+        throw new IllegalArgumentException(type);
+    }
+
+    private static Integer getInt(String value) {
+        try {
+            return Integer.decode(value);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
     public static boolean validRoman(String roman) {
         if (roman == null || roman.isEmpty()) {
             return false;
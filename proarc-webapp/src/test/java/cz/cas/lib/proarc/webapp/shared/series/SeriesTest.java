@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.shared.series;
+
+import java.util.Iterator;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SeriesTest {
+
+    @Test
+    public void testCreateArabic() {
+        Iterator<String> series = Series.create(Series.TYPE_ARABIC, "5", 2);
+        assertEquals("5", series.next());
+        assertEquals("7", series.next());
+        assertNull(Series.create(Series.TYPE_ARABIC, "x", 1));
+    }
+
+    @Test
+    public void testCreateRoman() {
+        Iterator<String> series = Series.create(Series.TYPE_ROMAN_LOWER, "IV", 1);
+        assertEquals("iv", series.next());
+        assertEquals("v", series.next());
+        series = Series.create(Series.TYPE_ROMAN_UPPER, "3", 1);
+        assertEquals("III", series.next());
+        assertNull(Series.create(Series.TYPE_ROMAN_UPPER, "0", 1));
+    }
+
+    @Test
+    public void testCreateAlphabet() {
+        Iterator<String> series = Series.create(Series.TYPE_ALPHABET_UPPER, "y", 1);
+        assertEquals("Y", series.next());
+        assertEquals("Z", series.next());
+        assertEquals("AA", series.next());
+        assertNull(Series.create(Series.TYPE_ALPHABET_LOWER, "a", 27));
+        assertNull(Series.create(Series.TYPE_ALPHABET_LOWER, null, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateUnknown() {
+        Series.create("unknown", "1", 1);
+    }
+
+}
@@ -51,6 +51,10 @@ import org.w3c.dom.Document;
  * Z3950Client uses prefix queries to search meta data in Marc21 format.
  * It wraps {@link SynchronousOriginBean} the same way as {@link ZClient}.
  *
+ * <p>The association with the server is kept open between searches until
+ * the client is {@link #close() closed}. The Spring context and the OID
+ * register are shared by all clients.</p>
+ *
  * <p>Not thread safe!</p>
  * <p>See  {@code src/main/resources/log4j.properties} to configure jzkit logging.</p>
  *
@@ -62,6 +66,8 @@ public final class Z3950Client {
     private static Level LEVEL = Level.FINE;
     private static final int MAX_RESULTS = 100;
     private static final int SEARCH_PAGE_SIZE = MAX_RESULTS;
+    private static ClassPathXmlApplicationContext CONTEXT;
+    private static OIDRegister OID_REGISTER;
     private final SynchronousOriginBean client;
     private final int port;
     private final String host;
@@ -69,21 +75,46 @@ public final class Z3950Client {
     private String base;
     private String recordFormat;
     private final String current_result_set_name = "RS0";
+    private boolean connected;
 
     public Z3950Client(String host, int port, String base) {
-        ClassPathXmlApplicationContext c = new ClassPathXmlApplicationContext("/z3950/Z3950ApplicationContext.xml");
-        client = new SynchronousOriginBean(new OIDRegister("/a2j.properties"));
-        client.setApplicationContext(c);
+        client = new SynchronousOriginBean(getOidRegister());
+        client.setApplicationContext(getContext());
         this.host = host;
         this.port = port;
         this.recordFormat = "marc21";
         this.base = base;
     }
 
+    private static synchronized ClassPathXmlApplicationContext getContext() {
+        if (CONTEXT == null) {
+            CONTEXT = new ClassPathXmlApplicationContext("/z3950/Z3950ApplicationContext.xml");
+        }
+        return CONTEXT;
+    }
+
+    private static synchronized OIDRegister getOidRegister() {
+        if (OID_REGISTER == null) {
+            OID_REGISTER = new OIDRegister("/a2j.properties");
+        }
+        return OID_REGISTER;
+    }
+
+    /**
+     * Closes the association with the server. The next search opens a new one.
+     */
     public void close() {
+        connected = false;
         client.disconnect();
     }
 
+    /**
+     * Checks whether the association with the server is open.
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
     /**
      * Queries Z39.50 server.
      * @param query RPN query
@@ -93,11 +124,27 @@ public final class Z3950Client {
      */
     public Iterable<byte[]> search(String query) throws Z3950ClientException {
         this.query = query;
+        if (connected) {
+            try {
+                return search();
+            } catch (Z3950ClientException ex) {
+                // the server may have dropped the idle association
+                LOG.log(Level.FINE, "Reconnecting " + this, ex);
+                close();
+            }
+        }
+        return search();
+    }
+
+    private Iterable<byte[]> search() throws Z3950ClientException {
         try {
-            InitializeResponse_type conn = connect(host, port);
-            logConnection(conn, host, port);
-            if (!conn.result.booleanValue()) {
-                throw new Z3950ClientException(this, "Connection failed.");
+            if (!connected) {
+                InitializeResponse_type conn = connect(host, port);
+                logConnection(conn, host, port);
+                if (!conn.result.booleanValue()) {
+                    throw new Z3950ClientException(this, "Connection failed.");
+                }
+                connected = true;
             }
 
             SearchResponse_type search = find(query);